@@ -1,7 +1,23 @@
+# Blocks around the spawns that belong to an arena when no region is given
+DEFAULT_MARGIN = 12
+DEFAULT_BELOW = 2
+DEFAULT_ABOVE = 14
+
 class Arena:
-    def __init__(self, spawnCoords: list, status: str, name: str):
+    def __init__(self, spawnCoords: list, status: str, name: str, region: list = None):
         self.spawnCoords = []
         for i in range(len(spawnCoords)):
             self.spawnCoords.append(spawnCoords[i])
         self.status = status
         self.name = name
+        # Name of the serverMod snapshot (/arena), without spaces
+        self.snapshotName = name.replace(" ", "_")
+        self.snapshotted = False
+        # Two opposite corners [[x1, y1, z1], [x2, y2, z2]] of the blocks reset between episodes
+        if region is None:
+            xs = [c[0] for c in spawnCoords]
+            ys = [c[1] for c in spawnCoords]
+            zs = [c[2] for c in spawnCoords]
+            region = [[min(xs) - DEFAULT_MARGIN, min(ys) - DEFAULT_BELOW, min(zs) - DEFAULT_MARGIN],
+                      [max(xs) + DEFAULT_MARGIN, max(ys) + DEFAULT_ABOVE, max(zs) + DEFAULT_MARGIN]]
+        self.region = region
@@ -0,0 +1,144 @@
+"""
+Binary wire protocol (version 1) shared with the mod.
+Mirrors mod/.../ai/cambiumInputs/BinaryProtocol.java - keep both in sync.
+All values are little-endian.
+"""
+import struct
+from typing import Dict, List, Tuple
+
+import numpy as np
+
+CONTENT_TYPE = "application/octet-stream"
+VERSION = 1
+OBSERVATION_MAGIC = b"CBOB"
+ACTION_MAGIC = b"CBAC"
+
+OBS_VECTOR_SIZE = 194
+BLOCK_SLOTS = 20
+
+# Action space flags (observation header)
+FLAG_NAMES = ["enableMovement", "enableJump", "enableSneak", "enableSprint",
+              "enableAttack", "enableUseItem", "enableHotbar", "enableLook"]
+
+# Button bits (action)
+BUTTON_JUMP = 1
+BUTTON_SNEAK = 1 << 1
+BUTTON_SPRINT = 1 << 2
+BUTTON_ATTACK = 1 << 3
+BUTTON_USE_ITEM = 1 << 4
+
+_OBS_HEADER = struct.Struct("<4sHHiBBBB")
+_ACTION = struct.Struct("<4sHHibBbBfff")
+
+# Batched requests from the server mod, see serverMod/.../BatchProtocol.java
+BATCH_REQUEST_MAGIC = b"CBBQ"
+BATCH_RESPONSE_MAGIC = b"CBBR"
+_BATCH_REQUEST_HEADER = struct.Struct("<4sHHq")
+_BATCH_RESPONSE_HEADER = struct.Struct("<4sHH")
+_FRAME_LENGTH = struct.Struct("<H")
+
+
+def decode_observation(payload: bytes) -> Tuple[str, int, Dict, np.ndarray, np.ndarray]:
+    """Returns (bot_name, sequence, action_space, observation_vector, block_ids)"""
+    magic, version, flags, sequence, movement_bins, yaw_bins, pitch_bins, name_len = _OBS_HEADER.unpack_from(payload, 0)
+    if magic != OBSERVATION_MAGIC:
+        raise ValueError(f"bad observation magic {magic!r}")
+    if version != VERSION:
+        raise ValueError(f"unsupported protocol version {version}")
+    offset = _OBS_HEADER.size
+    bot_name = payload[offset:offset + name_len].decode("utf-8")
+    offset += name_len
+
+    (feature_count,) = struct.unpack_from("<H", payload, offset)
+    offset += 2
+    if feature_count != OBS_VECTOR_SIZE:
+        raise ValueError(f"expected {OBS_VECTOR_SIZE} features, got {feature_count}")
+    vector = np.frombuffer(payload, dtype="<f4", count=feature_count, offset=offset).astype(np.float32)
+    offset += feature_count * 4
+
+    (block_count,) = struct.unpack_from("<H", payload, offset)
+    offset += 2
+    block_ids = np.frombuffer(payload, dtype="<i2", count=block_count, offset=offset).copy()
+
+    action_space = {name: bool(flags & (1 << i)) for i, name in enumerate(FLAG_NAMES)}
+    action_space["movementBins"] = movement_bins
+    action_space["yawBins"] = yaw_bins
+    action_space["pitchBins"] = pitch_bins
+    return bot_name, sequence, action_space, vector, block_ids
+
+
+def vector_to_observation(vector: np.ndarray) -> Dict:
+    """
+    Rebuilds the parts of the JSON observation that the reward code and the dashboard read
+    (player and entities) from a normalized observation vector.
+    """
+    player = {
+        "health": float(vector[0] * 20.0),
+        "x": float(vector[1] * 100.0),
+        "y": float(vector[2] * 100.0),
+        "z": float(vector[3] * 100.0),
+        "yaw": float(vector[4] * 180.0),
+        "pitch": float(vector[5] * 90.0),
+        "armor": float(vector[6] * 20.0),
+    }
+    entities = []
+    for i in range(10):
+        base = 7 + i * 6
+        slot = vector[base:base + 6]
+        if not slot.any():
+            continue
+        entities.append({
+            "isPlayer": bool(slot[0] > 0.5),
+            "isProjectile": bool(slot[1] > 0.5),
+            "health": float(slot[2] * 20.0),
+            "relativeX": float(slot[3] * 10.0),
+            "relativeY": float(slot[4] * 10.0),
+            "relativeZ": float(slot[5] * 10.0),
+        })
+    return {"player": player, "entities": entities}
+
+
+def encode_action(action: Dict, sequence: int, tick_rate: float = float("nan")) -> bytes:
+    """Encodes a Minecraft-formatted action dict (as returned by the agents) into the 28 byte action frame"""
+    buttons = 0
+    if action.get("jump"):
+        buttons |= BUTTON_JUMP
+    if action.get("sneak"):
+        buttons |= BUTTON_SNEAK
+    if action.get("sprint"):
+        buttons |= BUTTON_SPRINT
+    if action.get("attack"):
+        buttons |= BUTTON_ATTACK
+    if action.get("useItem"):
+        buttons |= BUTTON_USE_ITEM
+    movement = action.get("movement")
+    hotbar = action.get("hotbar", -1)
+    return _ACTION.pack(ACTION_MAGIC, VERSION, 0, sequence,
+                        -1 if movement is None else int(movement), buttons,
+                        -1 if hotbar is None else int(hotbar), 0,
+                        float(action.get("yaw", 0.0)), float(action.get("pitch", 0.0)),
+                        float(tick_rate))
+
+
+def decode_batch(payload: bytes) -> Tuple[int, List[bytes]]:
+    """Splits a batched request into (server tick, observation payloads), each one readable by decode_observation"""
+    magic, version, count, tick = _BATCH_REQUEST_HEADER.unpack_from(payload, 0)
+    if magic != BATCH_REQUEST_MAGIC:
+        raise ValueError(f"bad batch magic {magic!r}")
+    if version != VERSION:
+        raise ValueError(f"unsupported protocol version {version}")
+    offset = _BATCH_REQUEST_HEADER.size
+    frames = []
+    for _ in range(count):
+        (length,) = _FRAME_LENGTH.unpack_from(payload, offset)
+        offset += _FRAME_LENGTH.size
+        if offset + length > len(payload):
+            raise ValueError("truncated batch")
+        frames.append(payload[offset:offset + length])
+        offset += length
+    return tick, frames
+
+
+def encode_batch_response(actions: List[bytes]) -> bytes:
+    """Joins encode_action frames, in request order, into a batched response"""
+    return _BATCH_RESPONSE_HEADER.pack(BATCH_RESPONSE_MAGIC, VERSION, len(actions)) + b"".join(actions)
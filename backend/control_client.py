@@ -0,0 +1,182 @@
+"""
+Client for serverMod's control socket (ControlServer.java, frames in ControlProtocol.java - keep both in sync).
+Replaces one RCON connection and login per command: the connection stays open and commands are pipelined,
+everything sent before a tick runs in that tick on the server.
+
+Frames use the same 12 byte header as stream_protocol: int32 payload length, uint8 type, uint8 flags,
+uint16 reserved, int32 request id.
+
+Run `python control_client.py [port]` for a stand-in server that echoes every command, handy for testing
+clients without Minecraft.
+"""
+import asyncio
+import struct
+import sys
+from typing import Dict, List, Optional, Tuple
+
+TYPE_HELLO = 1      # UTF-8 password, answered with an empty HELLO or ERROR
+TYPE_COMMAND = 2    # UTF-8 command line
+TYPE_RESULT = 3     # int32 result (0 if the command failed), UTF-8 output
+TYPE_ERROR = 7      # UTF-8 message, the command was not run
+
+DEFAULT_PORT = 25580
+MAX_PAYLOAD = 1 << 20
+
+_HEADER = struct.Struct("<iBBHi")
+_RESULT = struct.Struct("<i")
+
+
+class ControlError(Exception):
+    pass
+
+
+def encode_frame(frame_type: int, request_id: int, payload: bytes) -> bytes:
+    return _HEADER.pack(len(payload), frame_type, 0, 0, request_id) + payload
+
+
+async def read_frame(reader: asyncio.StreamReader) -> Tuple[int, int, bytes]:
+    """Returns (type, request_id, payload). Raises asyncio.IncompleteReadError on disconnect."""
+    header = await reader.readexactly(_HEADER.size)
+    length, frame_type, _flags, _reserved, request_id = _HEADER.unpack(header)
+    if length < 0 or length > MAX_PAYLOAD:
+        raise ValueError(f"bad frame length {length}")
+    payload = await reader.readexactly(length) if length else b""
+    return frame_type, request_id, payload
+
+
+class ControlClient:
+    """
+    One shared connection, opened on first use and again after it dropped. Safe to use from many tasks at once,
+    every command gets its own request id and future.
+    """
+
+    def __init__(self, host: str, port: int = DEFAULT_PORT, password: str = "", timeout: float = 10.0):
+        self.host = host
+        self.port = port
+        self.password = password
+        self.timeout = timeout
+        self._reader: Optional[asyncio.StreamReader] = None
+        self._writer: Optional[asyncio.StreamWriter] = None
+        self._read_task: Optional[asyncio.Task] = None
+        self._pending: Dict[int, asyncio.Future] = {}
+        self._next_id = 0
+        self._connect_lock = asyncio.Lock()
+
+    @property
+    def connected(self) -> bool:
+        return self._writer is not None and not self._writer.is_closing()
+
+    async def _connect(self):
+        async with self._connect_lock:
+            if self.connected:
+                return
+            reader, writer = await asyncio.wait_for(asyncio.open_connection(self.host, self.port), self.timeout)
+            writer.write(encode_frame(TYPE_HELLO, 0, self.password.encode("utf-8")))
+            await writer.drain()
+            frame_type, _request_id, payload = await asyncio.wait_for(read_frame(reader), self.timeout)
+            if frame_type != TYPE_HELLO:
+                writer.close()
+                raise ControlError(f"login failed: {payload.decode('utf-8', 'replace')}")
+            self._reader, self._writer = reader, writer
+            self._read_task = asyncio.ensure_future(self._read_loop(reader))
+
+    async def _read_loop(self, reader: asyncio.StreamReader):
+        try:
+            while True:
+                frame_type, request_id, payload = await read_frame(reader)
+                future = self._pending.pop(request_id, None)
+                if future is None or future.done():
+                    continue
+                if frame_type == TYPE_RESULT:
+                    result, = _RESULT.unpack_from(payload)
+                    future.set_result((result, payload[_RESULT.size:].decode("utf-8", "replace")))
+                else:
+                    future.set_exception(ControlError(payload.decode("utf-8", "replace")))
+        except (asyncio.IncompleteReadError, ConnectionError, ValueError):
+            pass
+        finally:
+            if self._writer is not None:
+                self._writer.close()
+            self._reader = self._writer = None
+            pending, self._pending = self._pending, {}
+            for future in pending.values():
+                if not future.done():
+                    future.set_exception(ConnectionError("control connection lost"))
+
+    async def commands(self, commands: List[str]) -> List[Tuple[int, str]]:
+        """
+        Runs the commands pipelined in one write, they run in the same server tick.
+        Returns (result, output) per command, result is 0 if the command failed, was refused or got no answer
+        in time (the output then says why).
+        Raises OSError, asyncio.TimeoutError or ControlError only if nothing was sent: the connection or login
+        failed. Once the commands are written they may have run, so they must not be sent again.
+        """
+        if not self.connected:
+            await self._connect()
+        writer = self._writer
+        if writer is None:
+            raise ConnectionError("control connection lost")
+        loop = asyncio.get_event_loop()
+        request_ids = []
+        futures = []
+        frames = []
+        for command in commands:
+            self._next_id = self._next_id % 0x7FFFFFFF + 1
+            future = loop.create_future()
+            self._pending[self._next_id] = future
+            request_ids.append(self._next_id)
+            futures.append(future)
+            frames.append(encode_frame(TYPE_COMMAND, self._next_id, command.encode("utf-8")))
+        writer.write(b"".join(frames))
+        try:
+            await writer.drain()
+            await asyncio.wait(futures, timeout=self.timeout)
+        except (OSError, ConnectionError) as e:
+            print(f"[CONTROL] {e} after sending {len(commands)} commands")
+        results = []
+        for request_id, future in zip(request_ids, futures):
+            self._pending.pop(request_id, None)
+            if not future.done():
+                future.cancel()
+                results.append((0, "no answer from the control socket"))
+            elif future.exception() is not None:
+                results.append((0, str(future.exception())))
+            else:
+                results.append(future.result())
+        return results
+
+    async def command(self, command: str) -> Tuple[int, str]:
+        return (await self.commands([command]))[0]
+
+    async def close(self):
+        if self._read_task is not None:
+            self._read_task.cancel()
+        if self._writer is not None:
+            self._writer.close()
+
+
+async def _echo_server(port: int):
+    async def client_connected(reader, writer):
+        try:
+            while True:
+                frame_type, request_id, payload = await read_frame(reader)
+                if frame_type == TYPE_HELLO:
+                    writer.write(encode_frame(TYPE_HELLO, request_id, b""))
+                elif frame_type == TYPE_COMMAND:
+                    writer.write(encode_frame(TYPE_RESULT, request_id, _RESULT.pack(1) + payload))
+                else:
+                    writer.write(encode_frame(TYPE_ERROR, request_id, b"Unknown frame type"))
+                await writer.drain()
+        except (asyncio.IncompleteReadError, ConnectionError):
+            pass
+        finally:
+            writer.close()
+
+    server = await asyncio.start_server(client_connected, "127.0.0.1", port)
+    print(f"[CONTROL] Echo server listening on {port}")
+    async with server:
+        await server.serve_forever()
+
+
+if __name__ == "__main__":
+    asyncio.run(_echo_server(int(sys.argv[1]) if len(sys.argv) > 1 else DEFAULT_PORT))
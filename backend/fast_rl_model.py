@@ -5,8 +5,17 @@ Uses separate heads for each action component for better exploration
 import torch
 import torch.nn as nn
 import numpy as np
+import struct
 from typing import Dict, List, Tuple
 
+# Flat weight export read by the mod (ai/cambiumInputs/LocalPolicy.java), little-endian:
+# magic 'CBWT', uint16 format version, uint16 layer count, int32 revision,
+# then per layer int32 inputs, int32 outputs, float32[outputs * inputs] weights (row per output), float32[outputs] bias.
+# Layers are the two shared layers followed by the heads in HEAD_ORDER.
+WEIGHTS_MAGIC = b"CBWT"
+WEIGHTS_FORMAT_VERSION = 1
+HEAD_ORDER = ['movement', 'jump', 'attack', 'yaw', 'pitch']
+
 class MultiDiscretePolicy(nn.Module):
     """
     Multi-discrete policy with separate heads for each action component.
@@ -71,6 +80,19 @@ class MultiDiscretePolicy(nn.Module):
             return actions, total_log_prob
 
 
+    def get_actions(self, observations: np.ndarray, deterministic: bool = False) -> List[Dict[str, int]]:
+        """Like get_action for a batch of observations (one row each), with a single forward pass"""
+        with torch.no_grad():
+            logits_dict = self.forward(torch.as_tensor(observations, dtype=torch.float32))
+            chosen = {}
+            for key, logits in logits_dict.items():
+                if deterministic:
+                    chosen[key] = torch.argmax(logits, dim=-1).tolist()
+                else:
+                    chosen[key] = torch.distributions.Categorical(logits=logits).sample().tolist()
+            return [{key: chosen[key][i] for key in chosen} for i in range(len(observations))]
+
+
 class FastRLAgent:
     """Fast RL Agent with multi-discrete action space and reward-to-go"""
     
@@ -96,6 +118,9 @@ class FastRLAgent:
         # Pre-allocate observation vector size
         # Player: 7, Entities: 10*6=60, Blocks: 20*5=100, Inventory: 9*3=27 = 194
         self.obs_vector_size = 194
+        
+        # Bumped after every training step so clients running the policy locally know when to reload
+        self.weights_revision = 0
 
     def _observation_to_vector_fast(self, observation: Dict, action_space: Dict) -> np.ndarray:
         """Optimized observation vectorization using pre-allocated numpy array"""
@@ -199,6 +224,37 @@ class FastRLAgent:
         
         return minecraft_action
 
+    def predict_actions(self, obs_vectors: np.ndarray, action_spaces: List[Dict]) -> List[Dict]:
+        """Batched predict_action for already normalized observations (one row per bot), one forward pass for all"""
+        actions = self.policy.get_actions(obs_vectors, deterministic=False)
+        result = []
+        for i, actions_dict in enumerate(actions):
+            self.observations.append(obs_vectors[i])
+            self.actions.append(actions_dict)
+            self.rewards.append(0.0)
+            self.reward_types.append({})
+            result.append(self._actions_dict_to_minecraft(actions_dict, action_spaces[i]))
+        return result
+
+    def add_transition(self, obs_vector: np.ndarray, actions_dict: Dict[str, int]):
+        """Stores a step whose action was chosen by a client running the exported policy"""
+        self.observations.append(obs_vector)
+        self.actions.append(actions_dict)
+        self.rewards.append(0.0)
+        self.reward_types.append({})
+
+    def export_weights(self) -> bytes:
+        """Serializes the policy in the flat format described at WEIGHTS_MAGIC"""
+        p = self.policy
+        layers = [p.shared[0], p.shared[2], p.movement_head, p.jump_head, p.attack_head, p.yaw_head, p.pitch_head]
+        parts = [WEIGHTS_MAGIC, struct.pack("<HHi", WEIGHTS_FORMAT_VERSION, len(layers), self.weights_revision)]
+        with torch.no_grad():
+            for layer in layers:
+                parts.append(struct.pack("<ii", layer.in_features, layer.out_features))
+                parts.append(layer.weight.detach().cpu().numpy().astype("<f4").tobytes())
+                parts.append(layer.bias.detach().cpu().numpy().astype("<f4").tobytes())
+        return b"".join(parts)
+
     def add_reward(self, bot_name: str, current_state: Dict, events: List[Dict]):
         """Add reward for training - updates the last reward entry"""
         total_reward = 0.0
@@ -369,6 +425,8 @@ class FastRLAgent:
               f"return_std={returns_tensor.std().item():.4f}, "
               f"min_return={returns_tensor.min().item():.4f}, max_return={returns_tensor.max().item():.4f}")
         
+        self.weights_revision += 1
+        
         # Clear buffers
         self.observations.clear()
         self.actions.clear()
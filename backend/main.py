@@ -3,7 +3,7 @@ import time
 from datetime import datetime, timedelta
 from fastapi import FastAPI, Request
 from fastapi.staticfiles import StaticFiles
-from fastapi.responses import FileResponse
+from fastapi.responses import FileResponse, Response
 from mcrcon import MCRcon
 import asyncio
 import multiprocessing
@@ -17,6 +17,9 @@ import json
 import numpy as np
 from ppo_model import PPOAgent
 from fast_rl_model import FastRLAgent
+import binary_protocol
+import control_client
+import stream_protocol
 
 arenas = areanaA.Arenas
 
@@ -43,6 +46,17 @@ RCON_HOST = os.getenv("RCON_HOST", "mc-forge")  # "localhost" if not using Docke
 RCON_PORT = int(os.getenv("RCON_PORT", 25575))
 RCON_PASSWORD = os.getenv("RCON_PASSWORD", "minecraft")
 
+# serverMod control socket (ControlServer), used instead of RCON while it is reachable
+control = control_client.ControlClient(
+    os.getenv("CONTROL_HOST", RCON_HOST),
+    int(os.getenv("CONTROL_PORT", control_client.DEFAULT_PORT)),
+    os.getenv("CONTROL_PASSWORD", RCON_PASSWORD))
+# After a failed connect RCON is used for this long before the socket is tried again
+CONTROL_RETRY_SECONDS = 5.0
+control_retry_at = 0.0
+# Record every arena once it is snapshotted (serverMod's /record), restores mark the episodes in the recording
+RECORD_ARENAS = os.getenv("RECORD_ARENAS", "false").lower() == "true"
+
 # Global configuration storage
 action_space_config = {
     "enableMovement": False,
@@ -253,10 +267,29 @@ def run_rcon_command(command: str):
     return result
 
 async def send_mc_command(command: str):
+    return (await send_mc_commands([command]))[0]
+
+async def send_mc_commands(commands: List[str]):
+    """
+    Runs the commands over the control socket, pipelined so they run in the same tick.
+    Falls back to one RCON connection per command if the socket is not reachable. Once the commands
+    were written they are not sent again, a command that failed or timed out says so in its response.
+    """
+    global control_retry_at
+    if control.connected or time.time() >= control_retry_at:
+        try:
+            results = await control.commands(commands)
+            return [{"sent_command": command, "response": output} for command, (_result, output) in zip(commands, results)]
+        except (OSError, asyncio.TimeoutError, control_client.ControlError) as e:
+            print(f"[CONTROL] {e}, falling back to RCON")
+            control_retry_at = time.time() + CONTROL_RETRY_SECONDS
     loop = asyncio.get_event_loop()
-    # Run the RCON command in a separate process
-    result = await loop.run_in_executor(None, run_rcon_command, command)
-    return {"sent_command": command, "response": result}
+    responses = []
+    for command in commands:
+        # Run the RCON command in a separate process
+        result = await loop.run_in_executor(None, run_rcon_command, command)
+        responses.append({"sent_command": command, "response": result})
+    return responses
 
 async def calibration_mode_action(bot_name: str):
     """
@@ -407,6 +440,7 @@ async def trigger_backprop(bot_name: str = None):
             print(f"Training with {total_samples} samples, but no actions recorded!")
         
         stats = agent.train(batch_size=64, epochs=4)
+        await _publish_weights()
         print(f"Backprop completed for {bot_name or 'all bots'}: loss={stats.get('loss', 0):.6f}, "
               f"policy_loss={stats.get('policy_loss', 0):.6f}, entropy={stats.get('entropy', 0):.4f}")
         
@@ -547,6 +581,37 @@ async def trigger_backprop(bot_name: str = None):
 async def send_command(command: str):
     return await send_mc_command(command)
 
+@app.post("/send-commands/")
+async def send_commands(request: Request):
+    """
+    Runs several commands in the same server tick. Body: {"commands": [command lines]}
+    """
+    data = await request.json()
+    return await send_mc_commands(data.get("commands", []))
+
+@app.get("/tick-rate")
+async def get_tick_rate():
+    """
+    Returns the server tick rate status line (mode, target and measured TPS, tick times).
+    """
+    return await send_mc_command("/tickrate status")
+
+@app.post("/tick-rate")
+async def set_tick_rate(request: Request):
+    """
+    Changes the server tick rate (serverMod TickLoop).
+    Body: {"rate": "normal" | "max" | "pause" | "resume" | <multiplier of 20 TPS>} or {"tps": <ticks per second>}
+    """
+    data = await request.json()
+    if "tps" in data:
+        return await send_mc_command(f"/tickrate tps {float(data['tps'])}")
+    rate = data.get("rate", "status")
+    if isinstance(rate, (int, float)):
+        return await send_mc_command(f"/tickrate {float(rate)}x")
+    if rate not in ("status", "normal", "max", "pause", "resume", "reset"):
+        return {"status": "error", "message": f"Unknown tick rate {rate}"}
+    return await send_mc_command(f"/tickrate {rate}")
+
 @app.post("/predict-action-v{version}")
 async def predict_action(version: str, request: Request):
     """
@@ -565,6 +630,20 @@ async def predict_action(version: str, request: Request):
     
     start_time = time.time()
     
+    # Binary protocol (see binary_protocol.py): the mod already sends the normalized vector
+    if request.headers.get("content-type", "").startswith(binary_protocol.CONTENT_TYPE):
+        try:
+            payload = await request.body()
+            bot_name, sequence, action_space, obs_vector, _block_ids = binary_protocol.decode_observation(payload)
+        except Exception as e:
+            print(f"[PREDICT] Error decoding binary observation: {e}")
+            sys.stdout.flush()
+            return Response(content=binary_protocol.encode_action({}, 0), media_type=binary_protocol.CONTENT_TYPE)
+        observation = binary_protocol.vector_to_observation(obs_vector)
+        result = await _predict_action(version, observation, action_space, bot_name, start_time, obs_vector)
+        return Response(content=binary_protocol.encode_action(result["action"], sequence, result.get("tick_rate", float("nan"))),
+                        media_type=binary_protocol.CONTENT_TYPE)
+    
     try:
         data = await request.json()
     except Exception as e:
@@ -572,13 +651,79 @@ async def predict_action(version: str, request: Request):
         sys.stdout.flush()
         return {"action": {"movement": 0, "jump": False, "sneak": False, "sprint": False, "attack": False, "useItem": False, "hotbar": -1, "yaw": 0.0, "pitch": 0.0}}
     
+    # Reward batches queued by the mod since its last request, credited before the new action is added
+    for reward_body in data.get("rewards", []):
+        _add_reward(reward_body)
+    
     observation = data.get("observation", {})
     action_space = data.get("action_space", action_space_config)
     bot_name = data.get("bot_name", "unknown")
-    
-    #print(f"[PREDICT] Bot: {bot_name}, Version: {version}")
-    sys.stdout.flush()
-    
+    return await _predict_action(version, observation, action_space, bot_name, start_time)
+
+
+@app.post("/predict-batch-v{version}")
+async def predict_batch(version: str, request: Request):
+    """
+    Predicts actions for all bots of the server mod at once (serverMod BatchedInference).
+    Body is a binary_protocol batch of observations, the answer one action per observation in the same order.
+    Version 0.1 runs a single forward pass for the whole batch, other versions go through the per-bot path.
+    """
+    start_time = time.time()
+    try:
+        _tick, frames = binary_protocol.decode_batch(await request.body())
+        decoded = [binary_protocol.decode_observation(frame) for frame in frames]
+    except Exception as e:
+        print(f"[PREDICT-BATCH] Error decoding batch: {e}")
+        return Response(status_code=400, content=str(e))
+
+    results = None
+    if version == "0.1" and fast_rl_agent is not None and decoded:
+        try:
+            results = _predict_batch_fast(decoded, start_time)
+        except Exception as e:
+            print(f"[PREDICT-BATCH] ERROR in batched Fast RL prediction: {e}")
+            import traceback
+            traceback.print_exc()
+    if results is None:
+        results = []
+        for bot_name, _sequence, action_space, obs_vector, _block_ids in decoded:
+            observation = binary_protocol.vector_to_observation(obs_vector)
+            results.append(await _predict_action(version, observation, action_space, bot_name, start_time, obs_vector))
+
+    actions = [binary_protocol.encode_action(result["action"], sequence, result.get("tick_rate", float("nan")))
+               for (_bot_name, sequence, _action_space, _vector, _block_ids), result in zip(decoded, results)]
+    return Response(content=binary_protocol.encode_batch_response(actions), media_type=binary_protocol.CONTENT_TYPE)
+
+
+def _predict_batch_fast(decoded: List, start_time: float) -> List[Dict]:
+    """Version 0.1 for a whole batch: per-bot bookkeeping like _predict_action, then one forward pass"""
+    tick_rates = []
+    for bot_name, _sequence, _action_space, obs_vector, _block_ids in decoded:
+        observation = binary_protocol.vector_to_observation(obs_vector)
+        tick_rate, should_trigger_backprop = _track_tick(bot_name, observation)
+        bot_states[bot_name]["current_state"] = observation
+        tick_rates.append(tick_rate)
+        if should_trigger_backprop:
+            asyncio.create_task(trigger_backprop(bot_name))
+
+    vectors = np.stack([entry[3] for entry in decoded])
+    actions = fast_rl_agent.predict_actions(vectors, [entry[2] for entry in decoded])
+    processing_time = time.time() - start_time
+    now = time.time()
+    results = []
+    for (bot_name, _sequence, _action_space, _vector, _block_ids), action, tick_rate in zip(decoded, actions, tick_rates):
+        bot_last_actions[bot_name] = action
+        bot_action_timestamps[bot_name] = now
+        results.append({"action": action, "tick_rate": tick_rate, "processing_time": processing_time})
+    return results
+
+
+def _track_tick(bot_name: str, observation: Dict):
+    """
+    Per-tick bookkeeping shared by predictions and locally predicted transitions:
+    tick counter, latest observation, auto rewards and tick rate.
+    Returns (tick_rate, should_trigger_backprop).
+    """
     # IMPORTANT: Increment tick count FIRST for ALL versions (this is the accurate tick counter)
     if bot_name not in bot_tick_counts:
         bot_tick_counts[bot_name] = 0
@@ -652,6 +797,20 @@ async def predict_action(version: str, request: Request):
         bot_tick_counts[bot_name] = 0
         should_trigger_backprop = True
     
+    return tick_rate, should_trigger_backprop
+
+
+async def _predict_action(version: str, observation: Dict, action_space: Dict, bot_name: str, start_time: float, obs_vector: np.ndarray = None) -> Dict:
+    """
+    Shared prediction path for the JSON and binary protocols.
+    obs_vector is the already normalized observation when the binary protocol was used.
+    """
+    import sys
+    #print(f"[PREDICT] Bot: {bot_name}, Version: {version}")
+    sys.stdout.flush()
+    
+    tick_rate, should_trigger_backprop = _track_tick(bot_name, observation)
+    
     # Calibration mode for version 0.0
     if version == "0.0":
         #print(f"[PREDICT] Using calibration mode for {bot_name}")
@@ -673,9 +832,12 @@ async def predict_action(version: str, request: Request):
         bot_states[bot_name]["current_state"] = observation
         
         # Simple observation caching - hash observation to avoid re-processing
-        import hashlib
-        obs_str = json.dumps(observation, sort_keys=True)
-        obs_hash = hashlib.md5(obs_str.encode()).hexdigest()
+        # (not needed for the binary protocol, the vector arrives ready to use)
+        obs_hash = None
+        if obs_vector is None:
+            import hashlib
+            obs_str = json.dumps(observation, sort_keys=True)
+            obs_hash = hashlib.md5(obs_str.encode()).hexdigest()
         
         # Check if Fast RL agent is available
         if fast_rl_agent is None:
@@ -706,8 +868,8 @@ async def predict_action(version: str, request: Request):
             pred_start = time.time()
             
             # Use cached observation vector if available and observation hasn't changed
-            cached_vector = None
-            if bot_name in bot_last_observation_hash and bot_name in bot_cached_obs_vector:
+            cached_vector = obs_vector
+            if cached_vector is None and bot_name in bot_last_observation_hash and bot_name in bot_cached_obs_vector:
                 if obs_hash == bot_last_observation_hash[bot_name]:
                     cached_vector = bot_cached_obs_vector[bot_name]
             
@@ -715,7 +877,7 @@ async def predict_action(version: str, request: Request):
             action = fast_rl_agent.predict_action(observation, action_space, cached_vector=cached_vector)
             
             # Cache the observation vector for next time (if we computed a new one)
-            if cached_vector is None and len(fast_rl_agent.observations) > 0:
+            if obs_hash is not None and cached_vector is None and len(fast_rl_agent.observations) > 0:
                 bot_cached_obs_vector[bot_name] = fast_rl_agent.observations[-1].copy()
                 bot_last_observation_hash[bot_name] = obs_hash
             
@@ -902,8 +1064,7 @@ async def death(request: Request):
     return await send_mc_command(f"/say Bot {name} has died!")
 
 async def giveKit(bot: Bot):
-    for command in bot.kit.commands:
-        await send_mc_command(command)
+    await send_mc_commands(bot.kit.commands)
 
 def getBotByName(name):
     for bot in botController.bots:
@@ -923,13 +1084,15 @@ async def fightBots(bot1, bot2):
     bot1.setArena(arena)
     bot2.setArena(arena)
     arena.status = "closed"
+    await prepare_arena(arena)
     print(f"/tp {bot1.name} {arena.spawnCoords[0]}")
-    await send_mc_command(f"/tp {bot1.name} {' '.join(map(str, arena.spawnCoords[0]))}")
-    await send_mc_command(f"/tp {bot2.name} {' '.join(map(str, arena.spawnCoords[1]))}")
-    
-    # Set spawn points at arena positions
-    await send_mc_command(f"/spawnpoint {bot1.name} {' '.join(map(str, arena.spawnCoords[0]))}")
-    await send_mc_command(f"/spawnpoint {bot2.name} {' '.join(map(str, arena.spawnCoords[1]))}")
+    # Teleport and set spawn points at arena positions, all in the same tick
+    await send_mc_commands([
+        f"/tp {bot1.name} {' '.join(map(str, arena.spawnCoords[0]))}",
+        f"/tp {bot2.name} {' '.join(map(str, arena.spawnCoords[1]))}",
+        f"/spawnpoint {bot1.name} {' '.join(map(str, arena.spawnCoords[0]))}",
+        f"/spawnpoint {bot2.name} {' '.join(map(str, arena.spawnCoords[1]))}",
+    ])
 
 def getOpenArena():
     for arena in arenas:
@@ -937,6 +1100,74 @@ def getOpenArena():
             return arena
     return None
 
+def getArenaByName(name):
+    for arena in arenas:
+        if arena.name == name or arena.snapshotName == name:
+            return arena
+    return None
+
+async def snapshot_arena(arena):
+    """
+    Keeps the arena's blocks and entities in serverMod's memory (/arena snapshot), so it can be restored in one go.
+    """
+    corners = " ".join(str(v) for corner in arena.region for v in corner)
+    result = await send_mc_command(f"/arena snapshot {arena.snapshotName} {corners}")
+    arena.snapshotted = "Took arena snapshot" in str(result["response"])
+    if arena.snapshotted and RECORD_ARENAS:
+        await send_mc_command(f"/record start {arena.snapshotName}")
+    return result
+
+async def restore_arenas(arena_list):
+    """
+    Restores the given arenas with a single /arena restore, one command for all of them.
+    """
+    names = [arena.snapshotName for arena in arena_list if arena.snapshotted]
+    if not names:
+        return {"status": "error", "message": "No snapshots to restore"}
+    return await send_mc_command(f"/arena restore {' '.join(names)}")
+
+async def prepare_arena(arena):
+    """
+    Called when a duel takes the arena: the first time it is snapshotted, afterwards it is restored to that snapshot.
+    """
+    if arena.snapshotted:
+        return await restore_arenas([arena])
+    return await snapshot_arena(arena)
+
+@app.post("/arena/{name}/snapshot")
+async def arena_snapshot(name: str):
+    arena = getArenaByName(name)
+    if arena is None:
+        return {"status": "error", "message": f"Unknown arena {name}"}
+    return await snapshot_arena(arena)
+
+@app.post("/arena/{name}/restore")
+async def arena_restore(name: str):
+    arena = getArenaByName(name)
+    if arena is None:
+        return {"status": "error", "message": f"Unknown arena {name}"}
+    return await restore_arenas([arena])
+
+@app.post("/arenas/restore")
+async def arenas_restore(request: Request):
+    """
+    Restores several arenas at once. Body: {"arenas": [names]}, all open arenas if omitted.
+    """
+    try:
+        data = await request.json()
+    except Exception:
+        data = {}
+    names = data.get("arenas")
+    if names is None:
+        selected = [arena for arena in arenas if arena.status == "open"]
+    else:
+        selected = [arena for arena in (getArenaByName(name) for name in names) if arena is not None]
+    return await restore_arenas(selected)
+
+@app.get("/arenas/snapshots")
+async def arenas_snapshots():
+    return await send_mc_command("/arena status")
+
 @app.post("/backprop/{version}")
 async def backprop(version: str, request: Request):
     """
@@ -954,6 +1185,7 @@ async def backprop(version: str, request: Request):
         if agent is None:
             return {"status": "error", "message": "No agent available"}
         stats = agent.train(batch_size=batch_size, epochs=epochs)
+        await _publish_weights()
         return {
             "status": "success",
             "version": version,
@@ -1010,12 +1242,18 @@ async def get_model(request: Request):
     if not bot_name:
         return {"status": "error", "message": "bot_name query parameter required"}
     
-    model_version = bot_model_mapping.get(bot_name, "0.0")
-    return {
-        "status": "success",
-        "bot_name": bot_name,
-        "version": model_version
-    }
+    return _model_config(bot_name)
+
+
+@app.get("/model-weights-v{version}")
+async def get_model_weights(version: str):
+    """
+    Returns the policy weights for clients running inference locally (flat float32 format, see fast_rl_model.py).
+    """
+    if version != "0.1" or fast_rl_agent is None:
+        return Response(status_code=404, content=f"no exportable weights for version {version}")
+    return Response(content=fast_rl_agent.export_weights(), media_type=binary_protocol.CONTENT_TYPE,
+                    headers={"X-Weights-Revision": str(fast_rl_agent.weights_revision)})
 
 @app.post("/set-model")
 async def set_model(request: Request):
@@ -1033,6 +1271,7 @@ async def set_model(request: Request):
         bot_name = data["bot_name"]
         version = data["version"]
         bot_model_mapping[bot_name] = version
+        await _push_model_config(bot_name)
         return {
             "status": "success",
             "bot_name": bot_name,
@@ -1042,6 +1281,8 @@ async def set_model(request: Request):
     # Otherwise, treat as a mapping of bot names to versions
     if isinstance(data, dict):
         bot_model_mapping.update(data)
+        for bot_name in data:
+            await _push_model_config(bot_name)
         return {
             "status": "success",
             "mapping": bot_model_mapping
@@ -1049,6 +1290,88 @@ async def set_model(request: Request):
     
     return {"status": "error", "message": "Invalid request format"}
 
+def _model_config(bot_name: str) -> Dict:
+    version = bot_model_mapping.get(bot_name, "0.0")
+    config = {
+        "status": "success",
+        "bot_name": bot_name,
+        "version": version
+    }
+    # Clients in local inference mode pull GET /model-weights-v{version} when the revision changes
+    if version == "0.1" and fast_rl_agent:
+        config["weights_revision"] = fast_rl_agent.weights_revision
+    return config
+
+
+# Stream connections (see stream_protocol.py) by bot name, used to push config changes
+stream_connections: Dict[str, stream_protocol.StreamConnection] = {}
+
+
+async def _publish_weights():
+    """Tells connected bots about a new weights revision after training"""
+    for bot_name in list(stream_connections):
+        await _push_model_config(bot_name)
+
+
+async def _push_model_config(bot_name: str):
+    conn = stream_connections.get(bot_name)
+    if conn:
+        try:
+            await conn.send_json(stream_protocol.TYPE_CONFIG, 0, _model_config(bot_name))
+        except Exception as e:
+            print(f"[STREAM] Could not push model config to {bot_name}: {e}")
+
+
+async def _handle_stream_frame(conn: stream_protocol.StreamConnection, frame_type: int, request_id: int, payload: bytes):
+    if frame_type == stream_protocol.TYPE_OBSERVATION:
+        start_time = time.time()
+        version, frame = stream_protocol.split_observation(payload)
+        bot_name, sequence, action_space, obs_vector, _block_ids = binary_protocol.decode_observation(frame)
+        observation = binary_protocol.vector_to_observation(obs_vector)
+        result = await _predict_action(version, observation, action_space, bot_name, start_time, obs_vector)
+        await conn.send(stream_protocol.TYPE_ACTION, request_id,
+                        binary_protocol.encode_action(result["action"], sequence, result.get("tick_rate", float("nan"))))
+    elif frame_type == stream_protocol.TYPE_TRANSITION:
+        version, frame, actions_dict = stream_protocol.split_transition(payload)
+        bot_name, _sequence, _action_space, obs_vector, _block_ids = binary_protocol.decode_observation(frame)
+        observation = binary_protocol.vector_to_observation(obs_vector)
+        _tick_rate, should_trigger_backprop = _track_tick(bot_name, observation)
+        if version == "0.1" and fast_rl_agent:
+            fast_rl_agent.add_transition(obs_vector, actions_dict)
+        if should_trigger_backprop:
+            asyncio.create_task(trigger_backprop(bot_name))
+    elif frame_type == stream_protocol.TYPE_REWARD:
+        _add_reward(json.loads(payload))
+    elif frame_type == stream_protocol.TYPE_CONFIG_GET:
+        name = payload.decode("utf-8")
+        if name == "action_space":
+            config = action_space_config
+        elif name == "observation_space":
+            config = observation_space_config
+        elif name == "model":
+            config = _model_config(conn.bot_name or "unknown")
+        else:
+            raise ValueError(f"unknown config {name}")
+        await conn.send_json(stream_protocol.TYPE_CONFIG, request_id, config)
+    elif frame_type == stream_protocol.TYPE_HELLO:
+        conn.bot_name = json.loads(payload).get("bot_name")
+        stream_connections[conn.bot_name] = conn
+        print(f"[STREAM] {conn.bot_name} connected")
+
+
+def _stream_closed(conn: stream_protocol.StreamConnection):
+    if conn.bot_name and stream_connections.get(conn.bot_name) is conn:
+        del stream_connections[conn.bot_name]
+        print(f"[STREAM] {conn.bot_name} disconnected")
+
+
+@app.on_event("startup")
+async def start_stream_server():
+    port = int(os.environ.get("STREAM_PORT", stream_protocol.DEFAULT_PORT))
+    await stream_protocol.start_server(_handle_stream_frame, port=port, on_close=_stream_closed)
+    print(f"[STREAM] Listening on port {port}")
+
+
 @app.post("/save-model")
 async def save_model(request: Request):
     """
@@ -1089,7 +1412,36 @@ async def add_reward(request: Request):
     
     These rewards are ADDED to any auto-calculated rewards from observation analysis.
     """
+    return _add_reward(await request.json())
+
+@app.post("/server-rewards")
+async def add_server_rewards(request: Request):
+    """
+    Reward events measured on the server (serverMod's RewardStream), one batch per server tick:
+    {"batches": [{"tick": n, "bots": [{"bot_name", "events", "current_state"}]}]}
+
+    Event types: damage_dealt and damage_taken (health lost after armor), knockback_taken, projectile_hit,
+    kill and killed. Deaths are still rewarded through /death/, kill and killed are only logged.
+    Bots get these instead of the damage events their own mod would send.
+    """
     data = await request.json()
+    bots = 0
+    events = 0
+    for batch in data.get("batches", []):
+        tick = batch.get("tick")
+        for bot in batch.get("bots", []):
+            for event in bot.get("events", []):
+                event["tick"] = tick
+                event["source"] = "server"
+            result = _add_reward(bot)
+            if result.get("status") == "success":
+                bots += 1
+                events += result["events_count"]
+    return {"status": "success", "bots": bots, "events_count": events}
+
+
+def _add_reward(data: Dict) -> Dict:
+    """Shared by POST /add-reward/ and reward frames on the stream connection"""
     bot_name = data.get("bot_name")
     events = data.get("events", [])
     current_state = data.get("current_state", {})
@@ -1169,6 +1521,7 @@ async def start_duel(request: Request):
         bot1.setArena(arena)
         bot2.setArena(arena)
         arena.status = "closed"
+        await prepare_arena(arena)
         
         # Teleport bots to arena positions
         await send_mc_command(f"/tp {bot1_name} {' '.join(map(str, arena.spawnCoords[0]))}")
@@ -0,0 +1,148 @@
+"""
+Framed TCP stream shared with the mod.
+Mirrors mod/.../ai/cambiumInputs/StreamClient.java - keep both in sync.
+
+Every frame is a 12 byte little-endian header followed by the payload:
+int32 payload length, uint8 type, uint8 flags, uint16 reserved, int32 request id.
+Answers echo the request id; id 0 marks messages that expect no answer (rewards, config pushes).
+
+Run `python stream_protocol.py [port]` for a stand-in backend that answers every observation
+with a no-op action, handy for testing the mod without a model.
+"""
+import asyncio
+import json
+import struct
+import sys
+from typing import Awaitable, Callable, Dict, Optional, Tuple
+
+TYPE_HELLO = 1
+TYPE_OBSERVATION = 2        # uint8 version length, version, binary_protocol observation
+TYPE_ACTION = 3             # binary_protocol action
+TYPE_REWARD = 4             # /add-reward/ JSON body
+TYPE_CONFIG_GET = 5         # config name: action_space, observation_space, model
+TYPE_CONFIG = 6             # JSON
+TYPE_ERROR = 7              # UTF-8 message
+TYPE_TRANSITION = 8         # like TYPE_OBSERVATION, followed by the action bins the client chose (see split_transition)
+
+# Order of the uint8 action bins at the end of a TYPE_TRANSITION frame, same as fast_rl_model.HEAD_ORDER
+TRANSITION_HEADS = ['movement', 'jump', 'attack', 'yaw', 'pitch']
+
+DEFAULT_PORT = 8001
+MAX_PAYLOAD = 1 << 20
+
+_HEADER = struct.Struct("<iBBHi")
+
+
+def encode_frame(frame_type: int, request_id: int, payload: bytes) -> bytes:
+    return _HEADER.pack(len(payload), frame_type, 0, 0, request_id) + payload
+
+
+async def read_frame(reader: asyncio.StreamReader) -> Tuple[int, int, bytes]:
+    """Returns (type, request_id, payload). Raises asyncio.IncompleteReadError on disconnect."""
+    header = await reader.readexactly(_HEADER.size)
+    length, frame_type, _flags, _reserved, request_id = _HEADER.unpack(header)
+    if length < 0 or length > MAX_PAYLOAD:
+        raise ValueError(f"bad frame length {length}")
+    payload = await reader.readexactly(length) if length else b""
+    return frame_type, request_id, payload
+
+
+def split_observation(payload: bytes) -> Tuple[str, bytes]:
+    """Splits a TYPE_OBSERVATION payload into (model version, binary observation)"""
+    version_length = payload[0]
+    return payload[1:1 + version_length].decode("utf-8"), payload[1 + version_length:]
+
+
+def split_transition(payload: bytes) -> Tuple[str, bytes, Dict[str, int]]:
+    """Splits a TYPE_TRANSITION payload into (model version, binary observation, action bins)"""
+    version, rest = split_observation(payload)
+    heads = len(TRANSITION_HEADS)
+    actions = {name: rest[-heads + i] for i, name in enumerate(TRANSITION_HEADS)}
+    return version, rest[:-heads], actions
+
+
+class StreamConnection:
+    """One connected mod. Writes are serialized so concurrent answers never interleave."""
+
+    def __init__(self, reader: asyncio.StreamReader, writer: asyncio.StreamWriter):
+        self.reader = reader
+        self.writer = writer
+        self.bot_name: Optional[str] = None
+        self._write_lock = asyncio.Lock()
+
+    async def send(self, frame_type: int, request_id: int, payload: bytes):
+        async with self._write_lock:
+            self.writer.write(encode_frame(frame_type, request_id, payload))
+            await self.writer.drain()
+
+    async def send_json(self, frame_type: int, request_id: int, data) -> None:
+        await self.send(frame_type, request_id, json.dumps(data).encode("utf-8"))
+
+
+FrameHandler = Callable[[StreamConnection, int, int, bytes], Awaitable[None]]
+
+
+async def start_server(handle_frame: FrameHandler, host: str = "0.0.0.0", port: int = DEFAULT_PORT,
+                       on_close: Callable[[StreamConnection], None] = None) -> asyncio.AbstractServer:
+    """
+    Accepts mod connections and calls handle_frame for every frame. Observations and config requests
+    are handled in their own task so a slow prediction does not hold up rewards on the same connection.
+    """
+    async def client_connected(reader, writer):
+        conn = StreamConnection(reader, writer)
+        tasks = set()
+        try:
+            while True:
+                frame_type, request_id, payload = await read_frame(reader)
+                if frame_type in (TYPE_OBSERVATION, TYPE_CONFIG_GET):
+                    task = asyncio.ensure_future(_guarded(handle_frame, conn, frame_type, request_id, payload))
+                    tasks.add(task)
+                    task.add_done_callback(tasks.discard)
+                else:
+                    await _guarded(handle_frame, conn, frame_type, request_id, payload)
+        except (asyncio.IncompleteReadError, ConnectionError):
+            pass
+        except Exception as e:
+            print(f"[STREAM] Connection error: {e}")
+        finally:
+            for task in tasks:
+                task.cancel()
+            if on_close:
+                on_close(conn)
+            writer.close()
+
+    return await asyncio.start_server(client_connected, host, port)
+
+
+async def _guarded(handle_frame: FrameHandler, conn: StreamConnection, frame_type: int, request_id: int, payload: bytes):
+    try:
+        await handle_frame(conn, frame_type, request_id, payload)
+    except Exception as e:
+        print(f"[STREAM] Error handling frame type {frame_type}: {e}")
+        if request_id:
+            await conn.send(TYPE_ERROR, request_id, str(e).encode("utf-8"))
+
+
+async def _stub_handler(conn: StreamConnection, frame_type: int, request_id: int, payload: bytes):
+    import binary_protocol
+    if frame_type == TYPE_HELLO:
+        conn.bot_name = json.loads(payload).get("bot_name")
+        print(f"[STREAM] Hello from {conn.bot_name}")
+    elif frame_type == TYPE_OBSERVATION:
+        _version, observation = split_observation(payload)
+        _bot, sequence, _space, _vector, _blocks = binary_protocol.decode_observation(observation)
+        await conn.send(TYPE_ACTION, request_id, binary_protocol.encode_action({}, sequence))
+    elif frame_type == TYPE_CONFIG_GET:
+        await conn.send_json(TYPE_CONFIG, request_id, {"status": "success", "version": "0.0"} if payload == b"model" else {})
+    elif frame_type == TYPE_REWARD:
+        print(f"[STREAM] Reward: {payload.decode('utf-8')}")
+
+
+if __name__ == "__main__":
+    async def _main(port):
+        server = await start_server(_stub_handler, port=port)
+        print(f"[STREAM] Stub backend listening on {port}")
+        async with server:
+            await server.serve_forever()
+
+    asyncio.run(_main(int(sys.argv[1]) if len(sys.argv) > 1 else DEFAULT_PORT))
@@ -0,0 +1,124 @@
+"""
+Reads the trajectory segments the mod records (TrajectoryRecorder, "&cambium record on").
+Mirrors mod/.../ai/cambiumInputs/TrajectoryRecorder.java - keep both in sync.
+All values are little-endian.
+
+Usage: python trajectory_reader.py <segment or directory> [output.npz]
+Converts one segment, or all segments of a directory in order, into one .npz with one array per field.
+"""
+import os
+import struct
+import sys
+from typing import Dict, List
+
+import numpy as np
+
+from binary_protocol import BLOCK_SLOTS, OBS_VECTOR_SIZE
+
+MAGIC = b"CBTR"
+FORMAT_VERSION = 1
+HEADER_SIZE = 64
+
+FLAG_FRESH_ACTION = 1
+FLAG_LOCAL = 1 << 1
+FLAG_ASYNC = 1 << 2
+
+_HEADER = struct.Struct("<4sHHiiiiq32s")
+
+RECORD_DTYPE = np.dtype([
+    ("tick", "<i8"),
+    ("time_ms", "<i8"),
+    ("sequence", "<i4"),
+    ("movement", "i1"),
+    ("buttons", "u1"),
+    ("hotbar", "i1"),
+    ("flags", "u1"),
+    ("yaw", "<f4"),
+    ("pitch", "<f4"),
+    ("tick_rate", "<f4"),
+    ("damage_dealt", "<f4"),
+    ("damage_taken", "<f4"),
+    ("aim_score", "<f4"),
+    ("reward_events", "<u2"),
+    ("reserved", "<u2"),
+    ("observe_us", "<i4"),
+    ("inference_us", "<i4"),
+    ("observation", "<f4", (OBS_VECTOR_SIZE,)),
+    ("block_ids", "<i2", (BLOCK_SLOTS,)),
+])
+RECORD_SIZE = (RECORD_DTYPE.itemsize + 15) // 16 * 16
+
+
+def read_header(data: bytes) -> Dict:
+    magic, version, header_size, record_size, features, block_slots, records, created_ms, name = \
+        _HEADER.unpack_from(data, 0)
+    if magic != MAGIC:
+        raise ValueError(f"bad trajectory magic {magic!r}")
+    if version != FORMAT_VERSION:
+        raise ValueError(f"unsupported trajectory version {version}")
+    if features != OBS_VECTOR_SIZE or block_slots != BLOCK_SLOTS or record_size != RECORD_SIZE:
+        raise ValueError(f"layout mismatch: {features} features, {block_slots} block slots, "
+                         f"{record_size} byte records")
+    return {
+        "header_size": header_size,
+        "records": records,
+        "created_ms": created_ms,
+        "bot_name": name.rstrip(b"\0").decode("utf-8"),
+    }
+
+
+def read_segment(path: str) -> np.ndarray:
+    """
+    Returns the records of one segment as a structured array (RECORD_DTYPE fields).
+    Works on segments that are still being written, it only reads the records counted in the header.
+    """
+    with open(path, "rb") as f:
+        data = f.read()
+    header = read_header(data)
+    count = min(header["records"], (len(data) - header["header_size"]) // RECORD_SIZE)
+    padded = np.dtype({"names": RECORD_DTYPE.names,
+                       "formats": [RECORD_DTYPE.fields[n][0] for n in RECORD_DTYPE.names],
+                       "offsets": [RECORD_DTYPE.fields[n][1] for n in RECORD_DTYPE.names],
+                       "itemsize": RECORD_SIZE})
+    records = np.frombuffer(data, dtype=padded, count=count, offset=header["header_size"])
+    return records.astype(RECORD_DTYPE)
+
+
+def segment_paths(directory: str) -> List[str]:
+    """All segments below a directory, in recording order (the file names sort by start time and index)"""
+    paths = []
+    for root, _, files in os.walk(directory):
+        paths.extend(os.path.join(root, name) for name in files if name.endswith(".cbtr"))
+    return sorted(paths)
+
+
+def to_arrays(records: np.ndarray) -> Dict[str, np.ndarray]:
+    """Splits records into training arrays, with the buttons unpacked like the JSON action"""
+    buttons = records["buttons"]
+    arrays = {name: np.ascontiguousarray(records[name]) for name in RECORD_DTYPE.names if name != "reserved"}
+    arrays["jump"] = (buttons & 1) != 0
+    arrays["sneak"] = (buttons & (1 << 1)) != 0
+    arrays["sprint"] = (buttons & (1 << 2)) != 0
+    arrays["attack"] = (buttons & (1 << 3)) != 0
+    arrays["use_item"] = (buttons & (1 << 4)) != 0
+    arrays["fresh_action"] = (records["flags"] & FLAG_FRESH_ACTION) != 0
+    return arrays
+
+
+def main(argv: List[str]) -> None:
+    if len(argv) < 2:
+        print(__doc__)
+        sys.exit(1)
+    source = argv[1]
+    paths = segment_paths(source) if os.path.isdir(source) else [source]
+    if not paths:
+        print(f"no segments in {source}")
+        sys.exit(1)
+    records = np.concatenate([read_segment(path) for path in paths])
+    output = argv[2] if len(argv) > 2 else os.path.basename(os.path.normpath(source)).split(".")[0] + ".npz"
+    np.savez_compressed(output, **to_arrays(records))
+    print(f"{len(records)} records from {len(paths)} segments -> {output}")
+
+
+if __name__ == "__main__":
+    main(sys.argv)
@@ -10,7 +10,8 @@ import me.earth.headlessmc.lwjgl.api.Redirection;
  * redirect the {@code update()} call the loop just runs and runs and puts some
  * heavy load on the CPU. This {@link Redirection} fixes that by sleeping for a
  * set amount of time, configurable by the SystemProperty {@link
- * LwjglProperties#DISPLAY_UPDATE}.
+ * LwjglProperties#DISPLAY_UPDATE}. If a mod paces the loop by its ticks with
+ * the {@link TickPacer} we wait for the next tick instead.
  */
 @RequiredArgsConstructor
 public class DisplayUpdater implements Redirection {
@@ -34,8 +35,13 @@ public class DisplayUpdater implements Redirection {
     @Override
     public Object invoke(Object obj, String desc, Class<?> type, Object... args)
         throws Throwable {
-        // we could scale this with the refresh rate?
-        Thread.sleep(time);
+        if (TickPacer.INSTANCE.isActive()) {
+            TickPacer.INSTANCE.update(time);
+        } else {
+            // we could scale this with the refresh rate?
+            Thread.sleep(time);
+        }
+
         return null;
     }
 
@@ -0,0 +1,102 @@
+package me.earth.headlessmc.lwjgl.redirections;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces the game loop by the game's ticks instead of a fixed sleep. Once a mod
+ * reports when the next game tick is due via {@link #nextTickAt(long)}, the
+ * {@link DisplayUpdater} blocks in {@code Display.update()} until then, so that
+ * the loop only runs once per tick. {@link #wakeUp()} ends the wait early from
+ * any thread, e.g. when a server that ticks faster than usual sent its next
+ * tick. The hook set with {@link #setFrameHook(Runnable)} runs on the game
+ * thread at the end of every {@code Display.update()}, where the mod can make
+ * its timer run the next tick right away.
+ * <p>
+ * Only JDK types are used here, mods reach the {@link #INSTANCE} reflectively
+ * and do not have to depend on HeadlessMc.
+ */
+public class TickPacer {
+    public static final TickPacer INSTANCE = new TickPacer();
+    private static final long MAX_WAIT = TimeUnit.SECONDS.toNanos(1);
+
+    private volatile boolean active;
+    private volatile boolean reported;
+    private volatile long deadline;
+    private final AtomicBoolean woken = new AtomicBoolean();
+    private volatile Thread waiting;
+    private volatile Runnable frameHook;
+
+    /**
+     * @return {@code true} once a mod reported a tick.
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Called by the game thread after a tick.
+     *
+     * @param nanoTime the {@link System#nanoTime()} at which the next tick is
+     *                 due.
+     */
+    public void nextTickAt(long nanoTime) {
+        deadline = nanoTime;
+        reported = true;
+        active = true;
+    }
+
+    /**
+     * Ends the current or next wait in {@link #update(long)}.
+     */
+    public void wakeUp() {
+        woken.set(true);
+        Thread thread = waiting;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public void setFrameHook(Runnable frameHook) {
+        this.frameHook = frameHook;
+    }
+
+    /**
+     * Blocks until the next tick is due, at most a second. If the tick was due
+     * already and none ran since the last call (e.g. the game is paused) this
+     * sleeps for the given time instead, so the loop does not spin.
+     *
+     * @param fallbackMillis the time to sleep when no tick is due.
+     * @throws InterruptedException if the thread gets interrupted.
+     */
+    public void update(long fallbackMillis) throws InterruptedException {
+        long now = System.nanoTime();
+        long end = deadline;
+        if (!reported && !woken.get() && end - now <= 0) {
+            Thread.sleep(fallbackMillis);
+        } else {
+            reported = false;
+            end = end - now > MAX_WAIT ? now + MAX_WAIT : end;
+            waiting = Thread.currentThread();
+            try {
+                long remaining;
+                // consumes the wake up, one that arrives later ends the next wait
+                while (!woken.getAndSet(false) && (remaining = end - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, remaining);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            } finally {
+                waiting = null;
+            }
+        }
+
+        Runnable hook = frameHook;
+        if (hook != null) {
+            hook.run();
+        }
+    }
+
+}
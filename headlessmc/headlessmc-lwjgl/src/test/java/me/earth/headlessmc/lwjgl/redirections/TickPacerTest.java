@@ -0,0 +1,89 @@
+package me.earth.headlessmc.lwjgl.redirections;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TickPacerTest {
+    @Test
+    public void testWaitsForNextTick() throws InterruptedException {
+        TickPacer pacer = new TickPacer();
+        assertFalse(pacer.isActive());
+        long start = System.nanoTime();
+        pacer.nextTickAt(start + TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(pacer.isActive());
+        pacer.update(0L);
+        assertTrue(System.nanoTime() - start
+                       >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void testWakeUp() throws InterruptedException {
+        TickPacer pacer = new TickPacer();
+        long start = System.nanoTime();
+        pacer.nextTickAt(start + TimeUnit.SECONDS.toNanos(10));
+        Thread waker = new Thread(() -> {
+            try {
+                Thread.sleep(20L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            pacer.wakeUp();
+        });
+
+        waker.start();
+        pacer.update(0L);
+        assertTrue(System.nanoTime() - start
+                       < TimeUnit.MILLISECONDS.toNanos(500));
+        waker.join();
+
+        // a wake up before the wait ends it right away
+        pacer.nextTickAt(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+        pacer.wakeUp();
+        start = System.nanoTime();
+        pacer.update(0L);
+        assertTrue(System.nanoTime() - start
+                       < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    public void testWakeUpAfterWaitIsKept() throws InterruptedException {
+        TickPacer pacer = new TickPacer();
+        pacer.nextTickAt(System.nanoTime());
+        pacer.update(0L);
+        // arrives after the wait ended, must end the next one
+        pacer.wakeUp();
+        pacer.nextTickAt(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+        long start = System.nanoTime();
+        pacer.update(0L);
+        assertTrue(System.nanoTime() - start
+                       < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    public void testFallbackWithoutTick() throws InterruptedException {
+        TickPacer pacer = new TickPacer();
+        pacer.nextTickAt(System.nanoTime());
+        pacer.update(0L);
+        // no tick since the last update, the loop must not spin
+        long start = System.nanoTime();
+        pacer.update(30L);
+        assertTrue(System.nanoTime() - start
+                       >= TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    @Test
+    public void testFrameHook() throws InterruptedException {
+        TickPacer pacer = new TickPacer();
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        pacer.setFrameHook(() -> thread.set(Thread.currentThread()));
+        pacer.nextTickAt(System.nanoTime());
+        pacer.update(0L);
+        assertEquals(Thread.currentThread(), thread.get());
+    }
+
+}
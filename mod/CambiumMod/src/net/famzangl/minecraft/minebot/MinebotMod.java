@@ -22,6 +22,8 @@ import net.famzangl.minecraft.minebot.ai.AIController;
 import net.famzangl.minecraft.minebot.ai.ChatListener;
 import net.famzangl.minecraft.minebot.ai.DeathListener;
 import net.famzangl.minecraft.minebot.ai.RewardListener;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.HeadlessTicks;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.ServerChannel;
 import net.famzangl.minecraft.minebot.ai.path.world.BlockBoundsCache;
 import net.famzangl.minecraft.minebot.ai.strategy.cambium.LeftClickStrategy;
 import net.minecraftforge.client.event.ClientChatReceivedEvent;
@@ -63,6 +65,8 @@ public class MinebotMod {
 	public void init(FMLInitializationEvent event) {
 
 		BlockBoundsCache.initialize();
+		ServerChannel.getInstance().initialize();
+		HeadlessTicks.getInstance().initialize();
 		FMLCommonHandler.instance().bus().register(new PlayerUpdateHandler());
 		final AIController controller = AIController.getInstance();
 		controller.initialize();
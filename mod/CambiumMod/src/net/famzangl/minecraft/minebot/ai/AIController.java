@@ -19,7 +19,6 @@ package net.famzangl.minecraft.minebot.ai;
 
 import java.util.ArrayList;
 import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 
@@ -60,6 +59,9 @@ import org.lwjgl.opengl.Display;
 
 /**
  * The main class that handles the bot.
+ * <p>
+ * With cambium.headless=true (bots without a screen) the HUD is not drawn at all. Otherwise the strategy
+ * descriptions are only built when a frame is drawn, once per tick.
  * 
  * @author michael
  * 
@@ -101,6 +103,7 @@ public class AIController extends AIHelper implements IAIControllable {
     private static final Marker MARKER_STRATEGY = MarkerManager.getMarker("strategy");
     private static final Marker MARKER_MOUSE = MarkerManager.getMarker("mouse");
     private static final Logger LOGGER = LogManager.getLogger(AIController.class);
+    private static final boolean HEADLESS = Boolean.getBoolean("cambium.headless");
     private PhysicsController physicsController = new PhysicsController();
 
     private final static Hashtable<KeyBinding, AIStrategyFactory> uses = new Hashtable<KeyBinding, AIStrategyFactory>();
@@ -136,8 +139,10 @@ public class AIController extends AIHelper implements IAIControllable {
 
     private AIStrategy deactivatedStrategy;
 
-    private String strategyDescr = "";
-    private final Object strategyDescrMutex = new Object();
+    private final StrategyTickStats tickStats = StrategyTickStats.getInstance();
+    // HUD lines of the strategies, rebuilt when drawn after a tick
+    private String[] strategyDescr = new String[0];
+    private boolean strategyDescrStale = true;
 
     private AIStrategy requestedStrategy;
     
@@ -194,7 +199,9 @@ public class AIController extends AIHelper implements IAIControllable {
 
         physicsController.tick();
 
-        LOGGER.debug(MARKER_STRATEGY, "Strategy game tick. World time: " + getMinecraft().theWorld.getTotalWorldTime());
+        if (LOGGER.isDebugEnabled(MARKER_STRATEGY)) {
+            LOGGER.debug(MARKER_STRATEGY, "Strategy game tick. World time: " + getMinecraft().theWorld.getTotalWorldTime());
+        }
         testUngrabMode();
         invalidateObjectMouseOver();
         resetAllInputs();
@@ -222,32 +229,19 @@ public class AIController extends AIHelper implements IAIControllable {
             }
         }
 
-        // Iterate over a copy of the active strategies list and tick each one.
-        StringBuilder descBuilder = new StringBuilder();
-        Iterator<AIStrategy> it = strategies.iterator();
-        while (it.hasNext()) {
-            AIStrategy strat = it.next();
-            TickResult result = null;
-            // Allow the strategy to tick up to 100 times per game tick if requested.
-            for (int i = 0; i < 100; i++) {
-                result = strat.gameTick(this);
-                if (result != TickResult.TICK_AGAIN) {
-                    break;
-                }
-                LOGGER.trace(MARKER_STRATEGY, "Strategy requests to tick again: " + strat);
-            }
+        // Tick each active strategy, removing the finished ones.
+        for (int i = 0; i < strategies.size(); i++) {
+            AIStrategy strat = strategies.get(i);
+            TickResult result = tickStrategy(strat);
             if (result == TickResult.ABORT || result == TickResult.NO_MORE_WORK) {
-                LOGGER.debug(MARKER_STRATEGY, "Strategy is finished: " + strat);
+                if (LOGGER.isDebugEnabled(MARKER_STRATEGY)) {
+                    LOGGER.debug(MARKER_STRATEGY, "Strategy is finished: " + strat);
+                }
                 strat.setActive(false, this);
-                it.remove();
-            } else {
-                descBuilder.append(strat.getDescription(this));
-                descBuilder.append("\n");
+                strategies.remove(i--);
             }
         }
-        synchronized (strategyDescrMutex) {
-            strategyDescr = descBuilder.toString();
-        }
+        strategyDescrStale = true;
 
         keyboardPostTick();
         LOGGER.debug(MARKER_STRATEGY, "Strategy game tick done");
@@ -257,6 +251,29 @@ public class AIController extends AIHelper implements IAIControllable {
         }
     }
 
+    /**
+     * Ticks the strategy, again as long as it asks for it and is within its budget (see {@link StrategyTickStats}).
+     */
+    private TickResult tickStrategy(AIStrategy strat) {
+        long start = System.nanoTime();
+        long deadline = start + tickStats.getBudgetNanos();
+        TickResult result = null;
+        int calls = 0;
+        while (calls < tickStats.getMaxReticks()) {
+            result = strat.gameTick(this);
+            calls++;
+            if (result != TickResult.TICK_AGAIN || System.nanoTime() > deadline) {
+                break;
+            }
+            if (LOGGER.isTraceEnabled(MARKER_STRATEGY)) {
+                LOGGER.trace(MARKER_STRATEGY, "Strategy requests to tick again: " + strat);
+            }
+        }
+        // Still asking to tick again: cut off by the budget or the re-tick limit
+        tickStats.record(strat, System.nanoTime() - start, calls, result == TickResult.TICK_AGAIN);
+        return result;
+    }
+
     private boolean isStopPressed() {
         return stop.isPressed() || stop.isKeyDown() || Keyboard.isKeyDown(stop.getKeyCode());
     }
@@ -311,12 +328,12 @@ public class AIController extends AIHelper implements IAIControllable {
             doUngrab = false;
         }
 
+        if (HEADLESS) {
+            return;
+        }
         ScaledResolution res = new ScaledResolution(getMinecraft());
 
-        String[] str;
-        synchronized (strategyDescrMutex) {
-            str = (strategyDescr == null ? "?" : strategyDescr).split("\n");
-        }
+        String[] str = getStrategyDescription();
         int y = 10;
         for (String s : str) {
             getMinecraft().fontRendererObj.drawStringWithShadow(
@@ -327,6 +344,22 @@ public class AIController extends AIHelper implements IAIControllable {
         }
     }
 
+    /**
+     * @return The description lines of the active strategies, built at most once per tick.
+     */
+    private String[] getStrategyDescription() {
+        if (strategyDescrStale) {
+            StringBuilder descBuilder = new StringBuilder();
+            for (AIStrategy strat : strategies) {
+                descBuilder.append(strat.getDescription(this));
+                descBuilder.append("\n");
+            }
+            strategyDescr = descBuilder.toString().split("\n");
+            strategyDescrStale = false;
+        }
+        return strategyDescr;
+    }
+
     private synchronized void startUngrabMode() {
         LOGGER.trace(MARKER_MOUSE, "Starting mouse ungrab");
         getMinecraft().mouseHelper.ungrabMouseCursor();
@@ -17,9 +17,7 @@
 package net.famzangl.minecraft.minebot.ai;
 
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.LinkedList;
-import java.util.PriorityQueue;
 
 import net.minecraft.util.BlockPos;
 
@@ -30,34 +28,54 @@ import org.apache.logging.log4j.MarkerManager;
 
 /**
  * The basic path finding algorithm.
+ * <p>
+ * The search runs in a field around the center, by default 256 blocks wide
+ * and 32 high. Pathfinders that never look that far can use a smaller one.
+ * The cells of the field are reused between searches
+ * ({@link PathFinderFieldCells}).
+ * <p>
+ * Pathfinders that know where their destinations are can supply a lower
+ * bound for the distance to them ({@link #estimateDistance(int, int, int)}).
+ * The search then is an A* search and expands nodes in the order of distance
+ * plus estimate instead of visiting everything closer than the destination.
+ * Nodes with the same priority are expanded the last added first, which
+ * follows one path straight through the open areas of a grid.
+ * -Dcambium.path.astar=false ignores the estimates.
+ * <p>
+ * Pathfinders that rate destinations without looking at the world can keep a
+ * finished search ({@link #canRepairSearch()}). When blocks change, they
+ * report the nodes whose ways out changed ({@link #markNodeChanged(int, int, int)})
+ * and the next search from the same block repairs the search tree instead of
+ * starting over: nodes that lost their way are searched again from their
+ * neighbours, ways that got shorter are followed again. The same is done for
+ * a search that still needs more time. -Dcambium.path.repair=false always
+ * starts over.
  * 
  * @author michael
  * 
  */
-public class PathFinderField implements Comparator<Integer> {
+public class PathFinderField {
 	private static final Marker MARKER_PATH = MarkerManager.getMarker("path");
 	private static final Logger LOGGER = LogManager.getLogger(AIHelper.class);
 
 	private static final long MAX_RUN_TIME = 200;
-	// Power of 2!
+	private static final boolean ASTAR = !"false".equalsIgnoreCase(System
+			.getProperty("cambium.path.astar", "true"));
+	private static final boolean REPAIR = !"false".equalsIgnoreCase(System
+			.getProperty("cambium.path.repair", "true"));
+	// Power of 2! The largest field there can be.
 	private static final int Y_LEVEL = 32;
-	private static int SIZE_X_Z = 256;
-	private static int FIELD_SIZE = (1 << 16) * Y_LEVEL;
-	// Needs to be more than normal distance spread. Power of 2.
-	private static int FAST_DISTANCE_ACCESS = 64;
+	private static final int SIZE_X_Z = 256;
 
 	private final PathFinderFieldData data = new PathFinderFieldData();
 	private Dest currentDest = null;
-	// Priority queue for everything that is more than max distance spread.
-	private final PriorityQueue<Integer> pq = new PriorityQueue<Integer>(100,
-			this);
+	private final PathFinderQueue pq = new PathFinderQueue();
 
-	private final int[][] pqByDistance = new int[FAST_DISTANCE_ACCESS][256];
-	private final int[] pqByDistanceFill = new int[FAST_DISTANCE_ACCESS];
-	int pqMinDistance = -1;
-
-	// private int[] pqArray = new int[256];
-	// private int pqSize = 0;
+	// Power of 2
+	private final int sizeXZ;
+	private final int sizeY;
+	private final int shiftZ;
+	private final int shiftY;
 
 	private static int FIELD_VISITED_MASK = 0x10000000;
 	private static int FIELD_IN_QUEUE_MASK = 0x20000000;
@@ -70,71 +88,149 @@ public class PathFinderField implements Comparator<Integer> {
 	private static int FIELD_MOVEFROM_Y_SHIFT = 20;
 	private static int FIELD_MOVEFROM_Z_MASK = 0x0f000000;
 	private static int FIELD_MOVEFROM_Z_SHIFT = 24;
+	private static int FIELD_DESTINATION_MASK = 0x80000000;
+
+	private static final class NodeList {
+		private int[] nodes = new int[16];
+		private int size;
+
+		public void add(int node) {
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, size * 2);
+			}
+			nodes[size++] = node;
+		}
+
+		public int get(int index) {
+			return nodes[index];
+		}
+
+		public void clear() {
+			size = 0;
+		}
+	}
 
 	private boolean isRunning = false;
 	/**
-	 * Stored:
-	 * 
-	 * 
+	 * A finished search is kept for repairs.
+	 */
+	private boolean hasTree = false;
+	/**
+	 * The current search is kept and repaired.
+	 */
+	private boolean repairs;
+	private int startNode;
+	/**
+	 * The destinations found, only when searches are repaired.
+	 */
+	private final NodeList destinations = new NodeList();
+	/**
+	 * Nodes whose ways out changed since the last search.
+	 */
+	private final NodeList changedNodes = new NodeList();
+	private final NodeList lostNodes = new NodeList();
+	/**
+	 * Stored: distance, the direction we came from and the flags. Only set
+	 * while searching or while a search is kept.
 	 */
-	private int[] field;
+	private PathFinderFieldCells field;
 	private long startTime;
+	private int expandedNodes;
 
 	public PathFinderField() {
+		this(SIZE_X_Z, Y_LEVEL);
+	}
+
+	/**
+	 * Creates a pathfinder with a smaller field.
+	 * 
+	 * @param sizeXZ
+	 *            How wide the field should be, at most 256. Rounded up to a
+	 *            power of 2.
+	 * @param sizeY
+	 *            How high the field should be, at most 32. Rounded up to a
+	 *            power of 2.
+	 */
+	protected PathFinderField(int sizeXZ, int sizeY) {
+		if (sizeXZ < 2 || sizeXZ > SIZE_X_Z || sizeY < 2 || sizeY > Y_LEVEL) {
+			throw new IllegalArgumentException("Field size " + sizeXZ + "x"
+					+ sizeY + " not supported.");
+		}
+		shiftZ = 32 - Integer.numberOfLeadingZeros(sizeXZ - 1);
+		shiftY = 2 * shiftZ;
+		this.sizeXZ = 1 << shiftZ;
+		this.sizeY = 1 << 32 - Integer.numberOfLeadingZeros(sizeY - 1);
+	}
+
+	/**
+	 * @return The width of the search field.
+	 */
+	protected final int getFieldSizeXZ() {
+		return sizeXZ;
+	}
+
+	/**
+	 * @return The height of the search field.
+	 */
+	protected final int getFieldSizeY() {
+		return sizeY;
 	}
 
 	protected final int getIndexForBlock(int x, int y, int z) {
-		return x - data.offsetX & SIZE_X_Z - 1
-				| (z - data.offsetZ & SIZE_X_Z - 1) << 8
-				| (y - data.offsetY & Y_LEVEL - 1) << 16;
+		return x - data.offsetX & sizeXZ - 1
+				| (z - data.offsetZ & sizeXZ - 1) << shiftZ
+				| (y - data.offsetY & sizeY - 1) << shiftY;
 	}
 
 	protected final int getIndexForBlockSafe(int x, int y, int z) {
 		int dx = x - data.offsetX;
 		int dz = z - data.offsetZ;
 		int dy = y - data.offsetY;
-		return dx == (dx & SIZE_X_Z - 1) && dz == (dz & SIZE_X_Z - 1) && dy == (dy & Y_LEVEL - 1) ? dx | (dz << 8) | (dy << 16) : -1;
+		return dx == (dx & sizeXZ - 1) && dz == (dz & sizeXZ - 1) && dy == (dy & sizeY - 1) ? dx | (dz << shiftZ) | (dy << shiftY) : -1;
 	}
 
 	protected final int getX(int currentNode) {
-		return (currentNode & SIZE_X_Z - 1) + data.offsetX;
+		return (currentNode & sizeXZ - 1) + data.offsetX;
 	}
 
 	protected final int getY(int currentNode) {
-		return (currentNode >> 16 & Y_LEVEL - 1) + data.offsetY;
+		return (currentNode >> shiftY & sizeY - 1) + data.offsetY;
 	}
 
 	protected final int getZ(int currentNode) {
-		return (currentNode >> 8 & SIZE_X_Z - 1) + data.offsetZ;
+		return (currentNode >> shiftZ & sizeXZ - 1) + data.offsetZ;
 	}
 
 	private boolean isVisited(int blockIndex) {
-		return (field[blockIndex] & FIELD_VISITED_MASK) == FIELD_VISITED_MASK;
+		return (field.get(blockIndex) & FIELD_VISITED_MASK) == FIELD_VISITED_MASK;
 	}
 
 	private void setVisited(int blockIndex) {
-		field[blockIndex] |= FIELD_VISITED_MASK;
+		field.set(blockIndex, field.get(blockIndex) | FIELD_VISITED_MASK);
 	}
 
 	private boolean isInQueue(int blockIndex) {
-		return (field[blockIndex] & FIELD_IN_QUEUE_MASK) != 0;
+		return (field.get(blockIndex) & FIELD_IN_QUEUE_MASK) != 0;
 	}
 
 	private void setInQueue(int blockIndex) {
-		field[blockIndex] |= FIELD_IN_QUEUE_MASK;
+		field.set(blockIndex, field.get(blockIndex) | FIELD_IN_QUEUE_MASK);
+	}
+
+	private boolean hasDistance(int blockIndex) {
+		return (field.get(blockIndex) & FIELD_DISTANCE_SET_MASK) != 0;
 	}
 
 	private int getDistance(int blockIndex) {
-		int inField = field[blockIndex];
+		int inField = field.get(blockIndex);
 		return (inField & FIELD_DISTANCE_SET_MASK) == 0 ? Integer.MAX_VALUE
 				: (inField & FIELD_DISTANCE_MASK) >> FIELD_DISTANCE_SHIFT;
 	}
 
 	private void setDistance(int blockIndex, int distance) {
-		field[blockIndex] &= ~FIELD_DISTANCE_MASK;
-		field[blockIndex] |= distance << FIELD_DISTANCE_SHIFT
-				& FIELD_DISTANCE_MASK;
-		field[blockIndex] |= FIELD_DISTANCE_SET_MASK;
+		field.set(blockIndex, field.get(blockIndex) & ~FIELD_DISTANCE_MASK
+				| distance << FIELD_DISTANCE_SHIFT & FIELD_DISTANCE_MASK
+				| FIELD_DISTANCE_SET_MASK);
 	}
 
 	private void setMoveFrom(int newIndex, int currentNode) {
@@ -144,17 +240,15 @@ public class PathFinderField implements Comparator<Integer> {
 		final int oldx = getX(currentNode);
 		final int oldy = getY(currentNode);
 		final int oldz = getZ(currentNode);
-		field[newIndex] &= ~(FIELD_MOVEFROM_X_MASK | FIELD_MOVEFROM_Y_MASK | FIELD_MOVEFROM_Z_MASK);
-		field[newIndex] |= newx - oldx << FIELD_MOVEFROM_X_SHIFT
-				& FIELD_MOVEFROM_X_MASK;
-		field[newIndex] |= newy - oldy << FIELD_MOVEFROM_Y_SHIFT
-				& FIELD_MOVEFROM_Y_MASK;
-		field[newIndex] |= newz - oldz << FIELD_MOVEFROM_Z_SHIFT
-				& FIELD_MOVEFROM_Z_MASK;
+		field.set(newIndex, field.get(newIndex)
+				& ~(FIELD_MOVEFROM_X_MASK | FIELD_MOVEFROM_Y_MASK | FIELD_MOVEFROM_Z_MASK)
+				| newx - oldx << FIELD_MOVEFROM_X_SHIFT & FIELD_MOVEFROM_X_MASK
+				| newy - oldy << FIELD_MOVEFROM_Y_SHIFT & FIELD_MOVEFROM_Y_MASK
+				| newz - oldz << FIELD_MOVEFROM_Z_SHIFT & FIELD_MOVEFROM_Z_MASK);
 	}
 
 	private int getFromDirectionMasked(int blockIndex, int mask, int shift) {
-		int res = (field[blockIndex] & mask) >> shift;
+		int res = (field.get(blockIndex) & mask) >> shift;
 		final int signBit = (mask >> shift) + 1 >> 1;
 		if ((res & signBit) != 0) {
 			res |= ~(mask >> shift);
@@ -162,6 +256,13 @@ public class PathFinderField implements Comparator<Integer> {
 		return res;
 	}
 
+	private int getParent(int blockIndex) {
+		return getIndexForBlockSafe(
+				getX(blockIndex) - getFromDirectionX(blockIndex),
+				getY(blockIndex) - getFromDirectionY(blockIndex),
+				getZ(blockIndex) - getFromDirectionZ(blockIndex));
+	}
+
 	private int getFromDirectionX(int blockIndex) {
 		return getFromDirectionMasked(blockIndex, FIELD_MOVEFROM_X_MASK,
 				FIELD_MOVEFROM_X_SHIFT);
@@ -177,16 +278,6 @@ public class PathFinderField implements Comparator<Integer> {
 				FIELD_MOVEFROM_Z_SHIFT);
 	}
 
-	@Override
-	public int compare(Integer o1, Integer o2) {
-		int c1 = getDistance(o1) - getDistance(o2);
-		// if (c1 == 0) {
-		// return o1 - o2;
-		// } else {
-		return c1;
-		// }
-	}
-
 	private static class Dest implements Comparable<Dest> {
 		int destNode;
 		float destDistanceRating;
@@ -205,51 +296,98 @@ public class PathFinderField implements Comparator<Integer> {
 	}
 
 	protected boolean searchSomethingAround(int cx, int cy, int cz) {
-		if (data.offsetX != cx - SIZE_X_Z / 2
-				|| data.offsetY != cy - Y_LEVEL / 2
-				|| data.offsetZ != cz - SIZE_X_Z / 2) {
+		final LinkedList<BlockPos> path = searchPath(cx, cy, cz, MAX_RUN_TIME);
+		if (path == null) {
+			return false;
+		}
+		if (path.isEmpty()) {
+			noPathFound();
+		} else {
+			foundPath(path);
+		}
+		return true;
+	}
+
+	/**
+	 * Runs the search without handing the result to {@link #foundPath} or
+	 * {@link #noPathFound()}, so that the search can run on another thread.
+	 * 
+	 * @param maxRunTime
+	 *            How long to search before giving up for now, in ms. 0 for no
+	 *            limit.
+	 * @return The path to the best destination, starting at the center. An
+	 *         empty list if there is no destination, <code>null</code> if the
+	 *         search needs more time or was cancelled.
+	 */
+	protected final LinkedList<BlockPos> searchPath(int cx, int cy, int cz,
+			long maxRunTime) {
+		if (data.offsetX != cx - sizeXZ / 2
+				|| data.offsetY != cy - sizeY / 2
+				|| data.offsetZ != cz - sizeXZ / 2) {
 			LOGGER.debug(MARKER_PATH,
 					"Path finding center changed. Marking for restart.");
 			isRunning = false;
+			hasTree = false;
 		}
-		if (!isRunning) {
+		if (isRunning || hasTree) {
+			if (hasTree) {
+				expandedNodes = 0;
+			}
+			if (changedNodes.size > 0) {
+				repair();
+			}
+			isRunning = true;
+			hasTree = false;
+		} else {
 			LOGGER.debug(MARKER_PATH, "Restart path finder.");
-			field = new int[FIELD_SIZE];
-			data.offsetX = cx - SIZE_X_Z / 2;
-			data.offsetY = cy - Y_LEVEL / 2;
-			data.offsetZ = cz - SIZE_X_Z / 2;
-			pqClear();
+			if (field == null) {
+				field = PathFinderFieldCells.take(sizeXZ * sizeXZ * sizeY);
+			} else {
+				field.clear();
+			}
+			data.offsetX = cx - sizeXZ / 2;
+			data.offsetY = cy - sizeY / 2;
+			data.offsetZ = cz - sizeXZ / 2;
+			pq.clear();
+			destinations.clear();
+			changedNodes.clear();
+			expandedNodes = 0;
 			final int start = getIndexForBlock(cx, cy, cz);
+			startNode = start;
+			repairs = REPAIR && canRepairSearch();
 			setDistance(start, 1);
 			setInQueue(start);
-			pqAdd(start, 1);
-			final float startRating = rateDestination(start);
-			if (startRating >= 0) {
-				currentDest = new Dest(start, startRating);
-			} else {
-				currentDest = null;
-			}
+			pq.add(start, 1 + estimateDistance(start));
+			currentDest = null;
+			addDestination(start);
 			isRunning = true;
 		}
 		LOGGER.trace(MARKER_PATH, "Start path finding.");
 		startTime = System.currentTimeMillis();
 		long iteration = 0;
-		while (!pqEmpty()
-				&& ((iteration++ & 0xff) == 0 || hasTimeLeft(startTime))) {
-			final int currentNode = pqPoll();
+		boolean finished = false;
+		while (!pq.isEmpty() && !isCancelled()
+				&& ((iteration++ & 0xff) == 0 || hasTimeLeft(startTime,
+						maxRunTime))) {
+			final int currentNode = pq.poll();
 			final int currentDistance = getDistance(currentNode);
+			final int priority = pq.getPolledDistance();
+			if (isVisited(currentNode)
+					|| priority != currentDistance
+							+ estimateDistance(currentNode)) {
+				// Added again with a shorter distance.
+				continue;
+			}
+			// Nothing that is left can reach a destination any faster.
 			if (currentDest != null
-					&& currentDistance + 1 > currentDest.destDistanceRating) {
-				pqClear();
+					&& priority + 1 > currentDest.destDistanceRating) {
+				// A repair may need it again.
+				pq.add(currentNode, priority);
+				finished = true;
 				break;
 			}
-			final float rating = rateDestination(currentNode);
-			if (rating >= 0) {
-				final Dest newDest = new Dest(currentNode, rating);
-				if (currentDest == null || newDest.compareTo(currentDest) < 0) {
-					currentDest = newDest;
-				}
-			}
+			expandedNodes++;
+			addDestination(currentNode);
 
 			final int[] neighbours = getNeighbours(currentNode);
 			for (final int n : neighbours) {
@@ -259,7 +397,12 @@ public class PathFinderField implements Comparator<Integer> {
 				final int distance = distanceFor(currentNode, n)
 						+ currentDistance;
 				if (isVisited(n)) {
-					if (distance < getDistance(n)) {
+					if (distance < getDistance(n) && repairs) {
+						// A changed block opened a shorter way.
+						setDistance(n, distance);
+						setMoveFrom(n, currentNode);
+						reopen(n);
+					} else if (distance < getDistance(n)) {
 						LOGGER.error(
 								MARKER_PATH,
 								"A shorter path was found. THis should not happen. Node: %d.",
@@ -271,56 +414,232 @@ public class PathFinderField implements Comparator<Integer> {
 					setDistance(n, distance);
 					setMoveFrom(n, currentNode);
 					setInQueue(n);
-					pqAdd(n, distance);
-				} else {
-					int oldDistance = getDistance(n);
-					if (distance < oldDistance) {
-						setDistance(n, distance);
-						setMoveFrom(n, currentNode);
-						pqUpdate(n, oldDistance, distance);
-					}
+					pq.add(n, distance + estimateDistance(n));
+				} else if (distance < getDistance(n)) {
+					setDistance(n, distance);
+					setMoveFrom(n, currentNode);
+					pq.add(n, distance + estimateDistance(n));
 				}
 			}
 			setVisited(currentNode);
 		}
-		if (pqEmpty()) {
-			LOGGER.debug(MARKER_PATH, "Path found to " + currentDest);
-			if (currentDest != null) {
-				planPathTo(currentDest.destNode, cx, cy, cz);
-				terminated();
+		if (isCancelled()) {
+			LOGGER.debug(MARKER_PATH, "Path finding was cancelled.");
+			terminated();
+			return null;
+		} else if (finished || pq.isEmpty()) {
+			LOGGER.debug(MARKER_PATH, "Path found to " + currentDest + " after "
+					+ expandedNodes + " expanded nodes.");
+			final LinkedList<BlockPos> path = currentDest != null ? planPathTo(
+					currentDest.destNode, cx, cy, cz)
+					: new LinkedList<BlockPos>();
+			if (repairs) {
+				// Keep the tree and what is left in the queue.
+				isRunning = false;
+				hasTree = true;
 			} else {
 				terminated();
-				noPathFound();
 			}
-			return true;
+			return path;
 		} else {
 			LOGGER.debug(
 					MARKER_PATH,
 					"Warning: Path finding needs more time. Just got " + iteration + " iterations.");
-			pqStats();
+			LOGGER.debug(MARKER_PATH, "Current priority queue: " + pq.size()
+					+ " entries from " + pq.getMinDistance());
 
-			return false;
+			return null;
+		}
+	}
+
+	private boolean hasTimeLeft(long startTime, long maxRunTime) {
+		return maxRunTime <= 0
+				|| startTime + maxRunTime > System.currentTimeMillis();
+	}
+
+	private void addDestination(int node) {
+		final float rating = rateDestination(node);
+		if (rating >= 0) {
+			final Dest newDest = new Dest(node, rating);
+			if (currentDest == null || newDest.compareTo(currentDest) < 0) {
+				currentDest = newDest;
+			}
+			if (repairs && (field.get(node) & FIELD_DESTINATION_MASK) == 0) {
+				field.set(node, field.get(node) | FIELD_DESTINATION_MASK);
+				destinations.add(node);
+			}
+		}
+	}
+
+	/**
+	 * Tells the running or kept search that the ways out of a node may have
+	 * changed. Only nodes the search reached are remembered.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param z
+	 */
+	protected final void markNodeChanged(int x, int y, int z) {
+		if (repairs && field != null && (isRunning || hasTree)) {
+			final int node = getIndexForBlockSafe(x, y, z);
+			if (node >= 0 && hasDistance(node)) {
+				changedNodes.add(node);
+			}
+		}
+	}
+
+	/**
+	 * Tells the running or kept search that all blocks of a chunk may have
+	 * changed. The next search starts over if the chunk is in the field.
+	 * 
+	 * @param chunkX
+	 * @param chunkZ
+	 */
+	protected final void markChunkChanged(int chunkX, int chunkZ) {
+		final int x = (chunkX << 4) - data.offsetX;
+		final int z = (chunkZ << 4) - data.offsetZ;
+		if (x > -16 && x < sizeXZ && z > -16 && z < sizeXZ) {
+			forgetSearch();
+		}
+	}
+
+	/**
+	 * The next search starts over.
+	 */
+	protected final void forgetSearch() {
+		isRunning = false;
+		hasTree = false;
+	}
+
+	/**
+	 * Repairs the tree for the {@link #changedNodes}, like LPA* does. The
+	 * children that cannot be reached the same way any more lose their
+	 * distance, and so do their subtrees. The neighbours of those lost nodes
+	 * and the changed nodes themselves are expanded again. The search then
+	 * goes on as usual from there.
+	 */
+	private void repair() {
+		lostNodes.clear();
+		// Find the broken ways before the distances change.
+		for (int i = 0; i < changedNodes.size; i++) {
+			final int node = changedNodes.get(i);
+			// Expanded before, the node may still be waiting to be expanded again.
+			if (hasDistance(node)) {
+				final int[] neighbours = getNeighbours(node).clone();
+				for (int dx = -1; dx <= 1; dx++) {
+					for (int dy = -1; dy <= 1; dy++) {
+						for (int dz = -1; dz <= 1; dz++) {
+							final int child = getIndexForBlockSafe(getX(node)
+									+ dx, getY(node) + dy, getZ(node) + dz);
+							if (child >= 0 && child != node
+									&& child != startNode && hasDistance(child)
+									&& getParent(child) == node
+									&& !isSameWay(node, child, neighbours)) {
+								lostNodes.add(child);
+							}
+						}
+					}
+				}
+			}
+		}
+		// Their subtrees are lost as well.
+		for (int i = 0; i < lostNodes.size; i++) {
+			final int node = lostNodes.get(i);
+			if (!hasDistance(node)) {
+				continue;
+			}
+			field.set(node, 0);
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					for (int dz = -1; dz <= 1; dz++) {
+						final int child = getIndexForBlockSafe(getX(node) + dx,
+								getY(node) + dy, getZ(node) + dz);
+						if (child >= 0 && child != startNode
+								&& hasDistance(child)
+								&& getParent(child) == node) {
+							lostNodes.add(child);
+						}
+					}
+				}
+			}
+		}
+		int reopened = 0;
+		for (int i = 0; i < lostNodes.size; i++) {
+			final int node = lostNodes.get(i);
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					for (int dz = -1; dz <= 1; dz++) {
+						final int neighbour = getIndexForBlockSafe(getX(node)
+								+ dx, getY(node) + dy, getZ(node) + dz);
+						if (neighbour >= 0 && hasDistance(neighbour)
+								&& isVisited(neighbour)) {
+							reopen(neighbour);
+							reopened++;
+						}
+					}
+				}
+			}
 		}
+		for (int i = 0; i < changedNodes.size; i++) {
+			final int node = changedNodes.get(i);
+			if (hasDistance(node) && isVisited(node)) {
+				reopen(node);
+				reopened++;
+			}
+		}
+		LOGGER.debug(MARKER_PATH, "Repairing the search for "
+				+ changedNodes.size + " changed nodes: " + lostNodes.size
+				+ " lost their way, " + reopened + " are expanded again.");
+		changedNodes.clear();
+
+		// The best destination may be lost or closer now.
+		currentDest = null;
+		int kept = 0;
+		for (int i = 0; i < destinations.size; i++) {
+			final int node = destinations.get(i);
+			if (hasDistance(node)) {
+				final float rating = rateDestination(node);
+				if (rating >= 0) {
+					final Dest dest = new Dest(node, rating);
+					if (currentDest == null || dest.compareTo(currentDest) < 0) {
+						currentDest = dest;
+					}
+				}
+				destinations.nodes[kept++] = node;
+			}
+		}
+		destinations.size = kept;
 	}
 
-	private void pqStats() {
-		int min = Integer.MAX_VALUE;
-		int max = 0;
-		for (Integer i : pq) {
-			min = Math.min(min, getDistance(i));
-			max = Math.max(max, getDistance(i));
+	/**
+	 * @return <code>true</code> if the child can still be reached from the node
+	 *         with the distance it has.
+	 */
+	private boolean isSameWay(int node, int child, int[] neighbours) {
+		for (final int n : neighbours) {
+			if (n == child) {
+				return getDistance(node) + distanceFor(node, child) <= getDistance(child);
+			}
 		}
-		LOGGER.debug(MARKER_PATH, "Current priority queue range: " + min + " to " + max);
+		return false;
 	}
 
-	private boolean hasTimeLeft(long startTime) {
-		return startTime + MAX_RUN_TIME > System.currentTimeMillis();
+	private void reopen(int node) {
+		field.set(node, field.get(node) & ~FIELD_VISITED_MASK
+				| FIELD_IN_QUEUE_MASK);
+		pq.add(node, getDistance(node) + estimateDistance(node));
 	}
 
 	private void terminated() {
 		isRunning = false;
-		field = null;
-		pqClear();
+		hasTree = false;
+		destinations.clear();
+		changedNodes.clear();
+		if (field != null) {
+			PathFinderFieldCells.giveBack(field);
+			field = null;
+		}
+		pq.clear();
 		currentDest = null;
 	}
 
@@ -328,15 +647,69 @@ public class PathFinderField implements Comparator<Integer> {
 		terminated();
 	}
 
+	/**
+	 * Whether a finished search can be kept and repaired when blocks change.
+	 * Only if {@link #rateDestination(int, int, int, int)} and
+	 * {@link #estimateDistance(int, int, int)} stay the same between searches
+	 * from the same block and do not look at the world. The rating also has to
+	 * be at least the distance: a repaired search stops once nothing in the
+	 * queue can beat the best rating, so a constant rating would stop it before
+	 * the ways that got shorter are followed.
+	 * 
+	 * @return <code>true</code> to keep the search.
+	 */
+	protected boolean canRepairSearch() {
+		return false;
+	}
+
+	/**
+	 * Checked while searching, a search running on another thread stops when
+	 * this returns <code>true</code>.
+	 * 
+	 * @return <code>true</code> if the search should stop.
+	 */
+	protected boolean isCancelled() {
+		return false;
+	}
+
 	protected int distanceFor(int from, int to) {
 		return 1;
 	}
 
+	private int estimateDistance(int node) {
+		return ASTAR ? estimateDistance(getX(node), getY(node), getZ(node)) : 0;
+	}
+
+	/**
+	 * A lower bound for the distance from a block to the nearest destination.
+	 * It must never be more than the real distance (the sum of
+	 * {@link #distanceFor(int, int)} along the best path) and may not drop by
+	 * more than the distance of a single step, otherwise the search is not
+	 * exact any more. 0 searches everywhere, like pathfinders without a known
+	 * destination need it.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return The estimate, at least 0.
+	 */
+	protected int estimateDistance(int x, int y, int z) {
+		return 0;
+	}
+
+	/**
+	 * @return How many nodes the current or last search expanded.
+	 */
+	protected final int getExpandedNodes() {
+		return expandedNodes;
+	}
+
 	protected void noPathFound() {
 		LOGGER.info(MARKER_PATH, "Path finder did not find a path.");
 	}
 
-	private void planPathTo(int currentNode, int origX, int origY, int origZ) {
+	private LinkedList<BlockPos> planPathTo(int currentNode, int origX,
+			int origY, int origZ) {
 		LOGGER.debug(MARKER_PATH, "Reconstructing path.");
 		int cx = getX(currentNode);
 		int cy = getY(currentNode);
@@ -351,7 +724,7 @@ public class PathFinderField implements Comparator<Integer> {
 			cz -= getFromDirectionZ(current);
 		}
 		path.addFirst(new BlockPos(origX, origY, origZ));
-		foundPath(path);
+		return path;
 	}
 
 	protected void foundPath(LinkedList<BlockPos> path) {
@@ -405,9 +778,9 @@ public class PathFinderField implements Comparator<Integer> {
 
 	protected int getNeighbour(int currentNode, int cx, int cy, int cz) {
 		return cy > 1 && cy < 256 && cx > data.offsetX
-				&& cx < data.offsetX + 256 && cy > data.offsetY
-				&& cy < data.offsetY + Y_LEVEL && cz > data.offsetZ
-				&& cz < data.offsetZ + 256 ? getIndexForBlock(cx, cy, cz) : -1;
+				&& cx < data.offsetX + sizeXZ && cy > data.offsetY
+				&& cy < data.offsetY + sizeY && cz > data.offsetZ
+				&& cz < data.offsetZ + sizeXZ ? getIndexForBlock(cx, cy, cz) : -1;
 	}
 
 	private void debug(int nodeId) {
@@ -420,139 +793,6 @@ public class PathFinderField implements Comparator<Integer> {
 						+ getFromDirectionX(nodeId) + ", fromY="
 						+ getFromDirectionY(nodeId) + ", fromZ="
 						+ getFromDirectionZ(nodeId) + ", data="
-						+ Integer.toHexString(field[nodeId]));
-	}
-
-	private void pqClear() {
-		// pqSize = 0;
-		pq.clear();
-		pqMinDistance = -1;
-		Arrays.fill(pqByDistanceFill, 0);
-	}
-
-	private boolean pqEmpty() {
-		// return pqSize == 0;
-		return pq.isEmpty() && pqMinDistance < 0;
-	}
-
-	private void pqUpdate(int n, int oldDistance, int distance) {
-		pqRemove(n, oldDistance);
-		pqAdd(n, distance);
-	}
-
-	private void pqRemove(int n, int oldDistance) {
-		if (pqMinDistance >= 0
-				&& oldDistance < pqMinDistance + FAST_DISTANCE_ACCESS) {
-			int slot = pqSlotFor(oldDistance);
-			int[] slotArray = pqByDistance[slot];
-			int fill = pqByDistanceFill[slot];
-			pqByDistanceFill[slot] = fill - 1;
-			boolean found = false;
-			for (int i = 0; i < fill - 1; i++) {
-				if (slotArray[i] == n) {
-					slotArray[i] = slotArray[fill - 1];
-					found = true;
-					break;
-				}
-			}
-			if (!found && slotArray[fill - 1] != n) {
-				LOGGER.error(MARKER_PATH, "Warning: Trying to remove " + n
-						+ " which is not in this list (d=" + oldDistance + ")");
-				// search it in other lists...
-				for (int list = 0; list < FAST_DISTANCE_ACCESS; list++) {
-					int distance = list + pqMinDistance;
-					for (int i = 0; i < pqByDistanceFill[pqSlotFor(distance)]; i++) {
-						if (pqByDistance[pqSlotFor(distance)][i] == n) {
-							LOGGER.debug(MARKER_PATH, "    -> Found it for d="
-									+ distance);
-						}
-					}
-				}
-			}
-
-			if (fill == 1 && oldDistance == pqMinDistance) {
-				pqFindNextMin();
-			}
-		} else {
-			pq.remove(n);
-		}
-	}
-
-	private void pqAdd(int node, int distance) {
-		if (getDistance(node) != distance) {
-			throw new IllegalArgumentException("Got: " + distance
-					+ " but real distance is " + getDistance(node));
-		}
-		if (pqMinDistance < 0) {
-			pqMinDistance = distance;
-		}
-		while (distance < pqMinDistance) {
-			// Does not happen often, but we need to handle it.
-			pqMinDistance--;
-
-			int slotToEmpty = pqSlotFor(pqMinDistance);
-			for (int i = 0; i < pqByDistanceFill[slotToEmpty]; i++) {
-				pq.offer(pqByDistance[slotToEmpty][i]);
-			}
-			pqByDistanceFill[slotToEmpty] = 0;
-		}
-
-		if (distance < pqMinDistance + FAST_DISTANCE_ACCESS) {
-			int slot = pqSlotFor(distance);
-			int[] slotArray = pqByDistance[slot];
-			int fill = pqByDistanceFill[slot];
-			pqByDistanceFill[slot] = fill + 1;
-			if (slotArray.length <= fill + 1) {
-				slotArray = Arrays.copyOf(slotArray, slotArray.length * 2);
-				pqByDistance[slot] = slotArray;
-			}
-			slotArray[fill] = node;
-		} else {
-			pq.offer(node);
-		}
-	}
-
-	private int pqSlotFor(int distance) {
-		return distance & (FAST_DISTANCE_ACCESS - 1);
-	}
-
-	/**
-	 * Only allowed if pqSize < 0. Otherwise, the behaviour is undefined.
-	 * 
-	 * @return
-	 */
-	private int pqPoll() {
-		if (pqMinDistance >= 0) {
-			int slot = pqSlotFor(pqMinDistance);
-			int fill = pqByDistanceFill[slot];
-			int result = pqByDistance[slot][fill - 1];
-			pqByDistanceFill[slot] = fill - 1;
-			if (fill == 1) {
-				pqFindNextMin();
-			}
-			return result;
-		} else {
-			return pq.poll();
-		}
-	}
-
-	private void pqFindNextMin() {
-		int nextMin = -1;
-		int max = pqMinDistance + FAST_DISTANCE_ACCESS;
-		if (!pq.isEmpty()) {
-			max = Math.max(max, pq.poll());
-		}
-		for (int d = pqMinDistance; d < max; d++) {
-			pqMinDistance = d;
-			while (!pq.isEmpty() && getDistance(pq.peek()) == d) {
-				pqAdd(pq.poll(), d);
-			}
-
-			if (pqByDistanceFill[pqSlotFor(d)] > 0) {
-				nextMin = d;
-				break;
-			}
-		}
-		pqMinDistance = nextMin;
+						+ Integer.toHexString(field.get(nodeId)));
 	}
-}
\ No newline at end of file
+}
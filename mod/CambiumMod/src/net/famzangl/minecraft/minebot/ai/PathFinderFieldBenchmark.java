@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.minecraft.util.BlockPos;
+
+/**
+ * Times searches of a {@link PathFinderField} in an open field without a
+ * world: once with new cells for every search (as it used to be) and once
+ * with reused cells, then with and without an A* estimate. At last a wall is
+ * put onto or beside a straight walk, once searching again and once repairing
+ * the kept search.
+ * 
+ * @author michael
+ * 
+ */
+public final class PathFinderFieldBenchmark {
+	private static class OpenField extends PathFinderField {
+		private final int targetOffset;
+		private final int targetOffsetZ;
+		private final boolean estimate;
+		private BlockPos target;
+		private long expanded;
+		private boolean repair;
+		/**
+		 * The middle of a wall across the walk, <code>null</code> for none.
+		 */
+		private BlockPos wall;
+
+		public OpenField(int sizeXZ, int sizeY, boolean diagonal,
+				boolean estimate) {
+			super(sizeXZ, sizeY);
+			this.estimate = estimate;
+			targetOffset = getFieldSizeXZ() / 2 - 2;
+			targetOffsetZ = diagonal ? targetOffset : 0;
+		}
+
+		public void search(BlockPos center) {
+			target = center.add(targetOffset, 0, targetOffsetZ);
+			if (searchPath(center.getX(), center.getY(), center.getZ(), 0) == null) {
+				throw new IllegalStateException("Search did not finish.");
+			}
+			expanded += getExpandedNodes();
+		}
+
+		/**
+		 * Puts a wall 7 blocks wide and high 20 blocks ahead.
+		 * 
+		 * @param side
+		 *            How far the wall is beside the way.
+		 */
+		public void buildWall(BlockPos center, int side) {
+			wall = center.add(20, 0, side);
+			for (int z = -4; z <= 4; z++) {
+				for (int y = -4; y <= 4; y++) {
+					for (int x = -1; x <= 1; x++) {
+						// The ways into the wall changed.
+						markNodeChanged(wall.getX() + x, wall.getY() + y,
+								wall.getZ() + z);
+					}
+				}
+			}
+		}
+
+		@Override
+		protected boolean canRepairSearch() {
+			return repair;
+		}
+
+		@Override
+		protected int getNeighbour(int currentNode, int cx, int cy, int cz) {
+			if (wall != null && cx == wall.getX()
+					&& Math.abs(cy - wall.getY()) <= 3
+					&& Math.abs(cz - wall.getZ()) <= 3) {
+				return -1;
+			}
+			return super.getNeighbour(currentNode, cx, cy, cz);
+		}
+
+		@Override
+		protected float rateDestination(int distance, int x, int y, int z) {
+			return target.getX() == x && target.getY() == y
+					&& target.getZ() == z ? distance : -1;
+		}
+
+		@Override
+		protected int distanceFor(int from, int to) {
+			// Like walking, going up or down costs more.
+			return getY(from) == getY(to) ? 1 : 3;
+		}
+
+		@Override
+		protected int estimateDistance(int x, int y, int z) {
+			if (!estimate) {
+				return 0;
+			}
+			// A step goes at most one block sideways and one up or down.
+			final int vertical = Math.abs(target.getY() - y);
+			return Math.max(
+					Math.abs(target.getX() - x) + Math.abs(target.getZ() - z),
+					vertical) + 2 * vertical;
+		}
+	}
+
+	private PathFinderFieldBenchmark() {
+	}
+
+	/**
+	 * @param searches
+	 *            How many searches to run for each setup.
+	 * @return The results, one line per setup.
+	 */
+	public static List<String> run(int searches) {
+		final ArrayList<String> lines = new ArrayList<String>();
+		final boolean reuse = PathFinderFieldCells.reuse;
+		try {
+			for (final int size : new int[] { 256, 64 }) {
+				for (final boolean reuseCells : new boolean[] { false, true }) {
+					PathFinderFieldCells.reuse = reuseCells;
+					lines.add(size + "x" + (size == 256 ? 32 : 16) + ", "
+							+ (reuseCells ? "reused" : "new") + " cells: "
+							+ time(new OpenField(size, size == 256 ? 32 : 16,
+									true, false), searches));
+				}
+			}
+		} finally {
+			PathFinderFieldCells.reuse = reuse;
+		}
+		for (final boolean diagonal : new boolean[] { false, true }) {
+			for (final boolean estimate : new boolean[] { false, true }) {
+				final OpenField field = new OpenField(256, 32, diagonal,
+						estimate);
+				final String time = time(field, searches);
+				lines.add((diagonal ? "Diagonal" : "Straight") + " walk, "
+						+ (estimate ? "A*" : "Dijkstra") + ": "
+						+ field.expanded / searches + " nodes/search, " + time);
+			}
+		}
+		lines.add(timeRepair(searches, 0));
+		lines.add(timeRepair(searches, 10));
+		return lines;
+	}
+
+	private static String timeRepair(int searches, int side) {
+		final OpenField restarted = new OpenField(256, 32, false, true);
+		final OpenField repaired = new OpenField(256, 32, false, true);
+		repaired.repair = true;
+		long restartNanos = 0;
+		long repairNanos = 0;
+		for (int i = 0; i < searches; i++) {
+			final BlockPos center = new BlockPos(i & 7, 100, i >> 3 & 7);
+			restarted.buildWall(center, side);
+			long start = System.nanoTime();
+			restarted.search(center);
+			restartNanos += System.nanoTime() - start;
+
+			repaired.abort();
+			repaired.wall = null;
+			repaired.search(center);
+			repaired.expanded -= repaired.getExpandedNodes();
+			repaired.buildWall(center, side);
+			start = System.nanoTime();
+			repaired.search(center);
+			repairNanos += System.nanoTime() - start;
+		}
+		return String.format(
+				"Wall %s a straight walk, A*: searched again %d nodes/search, %.2f ms/search; repaired %d nodes/search, %.2f ms/search",
+				side == 0 ? "on" : "beside", restarted.expanded / searches, restartNanos / 1e6 / searches,
+				repaired.expanded / searches, repairNanos / 1e6 / searches);
+	}
+
+	private static String time(OpenField field, int searches) {
+		final BlockPos center = new BlockPos(0, 100, 0);
+		// Warm up, and let the pool have cells of that size.
+		field.search(center);
+		field.expanded = 0;
+
+		final long allocatedBefore = allocatedBytes();
+		final long start = System.nanoTime();
+		for (int i = 0; i < searches; i++) {
+			// Another center, as a moving player would cause.
+			field.search(center.add(i & 7, 0, i >> 3 & 7));
+		}
+		final long nanos = System.nanoTime() - start;
+		final long allocated = allocatedBytes() - allocatedBefore;
+
+		return String.format("%.2f ms/search, %.1f M nodes/s, %s",
+				nanos / 1e6 / searches, field.expanded * 1e3 / nanos,
+				allocatedBefore < 0 ? "allocation not measured" : String
+						.format("%.2f MB allocated/search", allocated / 1e6
+								/ searches));
+	}
+
+	/**
+	 * @return The bytes this thread allocated so far, -1 if the JVM does not
+	 *         tell.
+	 */
+	private static long allocatedBytes() {
+		final java.lang.management.ThreadMXBean bean = ManagementFactory
+				.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The cells of a {@link PathFinderField}.
+ * <p>
+ * The full field has 256*256*32 cells (8 MB). They are reused for the next
+ * search instead of allocating them again for every restart: each cell
+ * remembers the search it was written in, a cell of an older search reads as
+ * 0. So clearing the field is just starting a new search. When a pathfinder
+ * is done, it gives the cells back and the next one of the same size takes
+ * them.
+ * 
+ * @author michael
+ * 
+ */
+final class PathFinderFieldCells {
+	/**
+	 * How many unused cell arrays to keep for each size.
+	 */
+	private static final int KEEP_UNUSED = 2;
+	private static final ArrayList<PathFinderFieldCells> UNUSED = new ArrayList<PathFinderFieldCells>();
+
+	/**
+	 * If <code>false</code>, every search allocates new cells. Only to compare
+	 * with.
+	 */
+	static volatile boolean reuse = true;
+
+	private final int[] cells;
+	private final char[] searches;
+	private char search = 1;
+
+	private PathFinderFieldCells(int size) {
+		cells = new int[size];
+		searches = new char[size];
+	}
+
+	/**
+	 * @param size
+	 *            The number of cells.
+	 * @return Empty cells.
+	 */
+	public static PathFinderFieldCells take(int size) {
+		if (reuse) {
+			synchronized (UNUSED) {
+				for (int i = UNUSED.size() - 1; i >= 0; i--) {
+					if (UNUSED.get(i).size() == size) {
+						final PathFinderFieldCells cells = UNUSED.remove(i);
+						cells.clear();
+						return cells;
+					}
+				}
+			}
+		}
+		return new PathFinderFieldCells(size);
+	}
+
+	/**
+	 * @param cells
+	 *            Cells that are not used any more.
+	 */
+	public static void giveBack(PathFinderFieldCells cells) {
+		if (!reuse) {
+			return;
+		}
+		synchronized (UNUSED) {
+			int sameSize = 0;
+			for (final PathFinderFieldCells unused : UNUSED) {
+				if (unused.size() == cells.size()) {
+					sameSize++;
+				}
+			}
+			if (sameSize < KEEP_UNUSED) {
+				UNUSED.add(cells);
+			}
+		}
+	}
+
+	public int size() {
+		return cells.length;
+	}
+
+	/**
+	 * Sets all cells to 0.
+	 */
+	public void clear() {
+		search++;
+		if (search == 0) {
+			// Wrapped around, old search numbers would be valid again.
+			Arrays.fill(searches, (char) 0);
+			search = 1;
+		}
+	}
+
+	public int get(int index) {
+		return searches[index] == search ? cells[index] : 0;
+	}
+
+	public void set(int index, int value) {
+		cells[index] = value;
+		searches[index] = search;
+	}
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * This file is part of Minebot.
+ *
+ * Minebot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Minebot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Minebot.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai;
+
+import java.util.Arrays;
+
+/**
+ * The nodes a {@link PathFinderField} still has to visit, by distance.
+ * <p>
+ * Distances close to the smallest one are kept in buckets (one per distance),
+ * everything further away in a binary heap of (distance, node) pairs packed
+ * into longs, so nothing is boxed. When a node gets a shorter distance it is
+ * just added again. The old entry stays in the queue and the pathfinder skips
+ * it when it is polled ({@link #getPolledDistance()} is not the node's
+ * distance any more).
+ * 
+ * @author michael
+ * 
+ */
+final class PathFinderQueue {
+	// Needs to be more than normal distance spread. Power of 2.
+	private static final int BUCKETS = 64;
+
+	private final int[][] buckets = new int[BUCKETS][256];
+	private final int[] bucketFill = new int[BUCKETS];
+	private int inBuckets;
+	/**
+	 * The distance of the first bucket. All entries below
+	 * <code>min + BUCKETS</code> are in the buckets.
+	 */
+	private int min;
+
+	private long[] heap = new long[256];
+	private int heapSize;
+
+	private int polledDistance;
+
+	public void clear() {
+		Arrays.fill(bucketFill, 0);
+		inBuckets = 0;
+		heapSize = 0;
+	}
+
+	public boolean isEmpty() {
+		return inBuckets == 0 && heapSize == 0;
+	}
+
+	public int size() {
+		return inBuckets + heapSize;
+	}
+
+	/**
+	 * @return The smallest distance that may be in the queue.
+	 */
+	public int getMinDistance() {
+		return inBuckets > 0 || heapSize == 0 ? min : (int) (heap[0] >> 32);
+	}
+
+	public void add(int node, int distance) {
+		if (isEmpty()) {
+			min = distance;
+		} else if (distance < min) {
+			// Does not happen often, but we need to handle it.
+			lowerMin(distance);
+		}
+		if (distance < min + BUCKETS) {
+			addToBucket(node, distance);
+		} else {
+			heapAdd((long) distance << 32 | node);
+		}
+	}
+
+	/**
+	 * Only allowed if the queue is not empty.
+	 * 
+	 * @return A node with the smallest distance.
+	 */
+	public int poll() {
+		if (inBuckets == 0) {
+			min = (int) (heap[0] >> 32);
+			fillBuckets();
+		}
+		int slot = min & BUCKETS - 1;
+		while (bucketFill[slot] == 0) {
+			min++;
+			fillBuckets();
+			slot = min & BUCKETS - 1;
+		}
+		inBuckets--;
+		polledDistance = min;
+		return buckets[slot][--bucketFill[slot]];
+	}
+
+	/**
+	 * @return The distance the last polled node was added with.
+	 */
+	public int getPolledDistance() {
+		return polledDistance;
+	}
+
+	private void addToBucket(int node, int distance) {
+		final int slot = distance & BUCKETS - 1;
+		int[] bucket = buckets[slot];
+		final int fill = bucketFill[slot];
+		if (fill == bucket.length) {
+			bucket = Arrays.copyOf(bucket, bucket.length * 2);
+			buckets[slot] = bucket;
+		}
+		bucket[fill] = node;
+		bucketFill[slot] = fill + 1;
+		inBuckets++;
+	}
+
+	/**
+	 * Moves the entries that are in range of the buckets now from the heap.
+	 */
+	private void fillBuckets() {
+		while (heapSize > 0 && (int) (heap[0] >> 32) < min + BUCKETS) {
+			final long entry = heapPoll();
+			addToBucket((int) entry, (int) (entry >> 32));
+		}
+	}
+
+	/**
+	 * Lets the buckets start at a smaller distance, moving the entries that
+	 * are out of range then to the heap.
+	 */
+	private void lowerMin(int distance) {
+		for (int d = Math.max(min, distance + BUCKETS); d < min + BUCKETS; d++) {
+			final int slot = d & BUCKETS - 1;
+			final int[] bucket = buckets[slot];
+			for (int i = 0; i < bucketFill[slot]; i++) {
+				heapAdd((long) d << 32 | bucket[i]);
+			}
+			inBuckets -= bucketFill[slot];
+			bucketFill[slot] = 0;
+		}
+		min = distance;
+	}
+
+	private void heapAdd(long entry) {
+		if (heapSize == heap.length) {
+			heap = Arrays.copyOf(heap, heap.length * 2);
+		}
+		int i = heapSize++;
+		while (i > 0) {
+			final int parent = (i - 1) >> 1;
+			if (heap[parent] <= entry) {
+				break;
+			}
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = entry;
+	}
+
+	private long heapPoll() {
+		final long result = heap[0];
+		final long last = heap[--heapSize];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (last <= heap[child]) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = last;
+		return result;
+	}
+}
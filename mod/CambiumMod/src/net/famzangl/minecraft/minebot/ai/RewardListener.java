@@ -3,8 +3,9 @@ package net.famzangl.minecraft.minebot.ai;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
-import net.famzangl.minecraft.minebot.ai.cambiumInputs.APIClient;
-import net.famzangl.minecraft.minebot.ai.command.AIChatController;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.RewardQueue;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.ServerChannel;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.GetInformation.EntitySnapshot;
 import net.minecraft.client.Minecraft;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityLivingBase;
@@ -18,6 +19,7 @@ import net.minecraftforge.fml.common.gameevent.TickEvent;
 /**
  * RewardListener - Detects combat events and sends rewards to the API
  * Tracks damage dealt, damage taken, and other combat-related events
+ * Damage events are left to the server when it reports them itself (serverMod's RewardStream)
  */
 public class RewardListener {
     
@@ -46,8 +48,8 @@ public class RewardListener {
         // Debug: Log that event fired
         System.out.println("[RewardListener] LivingHurtEvent fired - isRemote: " + event.entity.worldObj.isRemote);
         
-        // Only process on client side
-        if (!event.entity.worldObj.isRemote) {
+        // Only process on client side, and only if the server does not report damage itself
+        if (!event.entity.worldObj.isRemote || ServerChannel.getInstance().hasServerRewards()) {
             return;
         }
         
@@ -173,8 +175,10 @@ public class RewardListener {
         EntityPlayer player = mc.thePlayer;
         long currentTime = System.currentTimeMillis();
         
-        // Check for damage taken/dealt every DAMAGE_CHECK_INTERVAL_MS
-        if (currentTime - lastDamageCheckTime >= DAMAGE_CHECK_INTERVAL_MS) {
+        // Check for damage taken/dealt every DAMAGE_CHECK_INTERVAL_MS, unless the server reports it
+        if (ServerChannel.getInstance().hasServerRewards()) {
+            lastHealth = -1.0f;
+        } else if (currentTime - lastDamageCheckTime >= DAMAGE_CHECK_INTERVAL_MS) {
             lastDamageCheckTime = currentTime;
             checkDamageTaken(player, currentTime);
             checkDamageDealt(player, mc, currentTime);
@@ -186,34 +190,15 @@ public class RewardListener {
         }
         lastAimCheckTime = currentTime;
         
-        // Find closest enemy player
-        EntityPlayer closestEnemy = null;
-        double closestDistance = Double.MAX_VALUE;
-        
-        for (Object obj : mc.theWorld.loadedEntityList) {
-            if (obj instanceof EntityPlayer && !obj.equals(player)) {
-                EntityPlayer enemy = (EntityPlayer) obj;
-                if (enemy.isDead || enemy.getHealth() <= 0) {
-                    continue;
-                }
-                
-                double dx = enemy.posX - player.posX;
-                double dy = enemy.posY - player.posY;
-                double dz = enemy.posZ - player.posZ;
-                double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
-                
-                if (distance < closestDistance && distance < 50.0) { // Only check within 50 blocks
-                    closestDistance = distance;
-                    closestEnemy = enemy;
-                }
-            }
-        }
+        // Find closest enemy player, only check within 50 blocks
+        EntityPlayer closestEnemy = (EntityPlayer) EntitySnapshot.recent(mc).nearestEntity(EntitySnapshot.PLAYER, true, 50.0);
         
         if (closestEnemy != null) {
             // Calculate angle to enemy
             double dx = closestEnemy.posX - player.posX;
             double dy = closestEnemy.posY - player.posY;
             double dz = closestEnemy.posZ - player.posZ;
+            double closestDistance = Math.sqrt(dx * dx + dy * dy + dz * dz);
             
             // Calculate target yaw (angle in horizontal plane)
             double targetYaw = Math.atan2(dx, dz) * 180.0 / Math.PI;
@@ -423,28 +408,7 @@ public class RewardListener {
         }
         
         // Check nearby players (within 10 blocks)
-        double maxDistance = 10.0;
-        EntityPlayer closestEnemy = null;
-        double closestDistance = Double.MAX_VALUE;
-        
-        for (Object obj : mc.theWorld.loadedEntityList) {
-            if (obj instanceof EntityPlayer && !obj.equals(player)) {
-                EntityPlayer enemy = (EntityPlayer) obj;
-                if (enemy.isDead || enemy.getHealth() <= 0) {
-                    continue;
-                }
-                
-                double dx = enemy.posX - player.posX;
-                double dy = enemy.posY - player.posY;
-                double dz = enemy.posZ - player.posZ;
-                double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
-                
-                if (distance < maxDistance && distance < closestDistance) {
-                    closestDistance = distance;
-                    closestEnemy = enemy;
-                }
-            }
-        }
+        Entity closestEnemy = EntitySnapshot.recent(mc).nearestEntity(EntitySnapshot.PLAYER, true, 10.0);
         
         return closestEnemy != null ? closestEnemy.getName() : null;
     }
@@ -476,51 +440,20 @@ public class RewardListener {
     }
     
     /**
-     * Sends reward events to the API
+     * Queues reward events, {@link RewardQueue} sends them in the background
      */
     private void sendRewardEvents(JsonArray events) {
-        try {
-            Minecraft mc = Minecraft.getMinecraft();
-            if (mc.thePlayer == null) {
-                System.err.println("[RewardListener] Cannot send rewards: thePlayer is null");
-                return;
-            }
-            
-            if (events == null || events.size() == 0) {
-                System.err.println("[RewardListener] Cannot send rewards: events array is empty");
-                return;
-            }
-            
-            String botName = mc.thePlayer.getName();
-            
-            // Build current state from player data
-            JsonObject currentState = buildCurrentState(mc.thePlayer);
-            
-            // Build request JSON
-            JsonObject request = new JsonObject();
-            request.addProperty("bot_name", botName);
-            request.add("events", events);
-            request.add("current_state", currentState);
-            
-            String requestJson = request.toString();
-            System.out.println("[RewardListener] Sending " + events.size() + " reward event(s) for " + botName + " to /add-reward/");
-            
-            // Send to API and check response
-            String response = APIClient.postRequest("/add-reward/", requestJson);
-            
-            if (response == null) {
-                // Log error - API request failed
-                System.err.println("[RewardListener] FAILED to send reward events for " + botName + ". Response was null. Check API connection.");
-                AIChatController.addChatLine("Reward API Error: Request failed for " + botName);
-            } else {
-                // Success - log for debugging
-                System.out.println("[RewardListener] Successfully sent " + events.size() + " reward event(s) for " + botName + ". Response: " + response);
-            }
-        } catch (Exception e) {
-            // Log error instead of silently failing
-            System.err.println("[RewardListener] Exception sending reward events: " + e.getMessage());
-            e.printStackTrace();
-            AIChatController.addChatLine("Reward Exception: " + e.getMessage());
+        Minecraft mc = Minecraft.getMinecraft();
+        if (mc.thePlayer == null || mc.theWorld == null) {
+            System.err.println("[RewardListener] Cannot send rewards: thePlayer is null");
+            return;
+        }
+        
+        String botName = mc.thePlayer.getName();
+        long tick = mc.theWorld.getTotalWorldTime();
+        JsonObject currentState = buildCurrentState(mc.thePlayer);
+        for (int i = 0; i < events.size(); i++) {
+            RewardQueue.getInstance().append(botName, tick, events.get(i).getAsJsonObject(), currentState);
         }
     }
     
@@ -0,0 +1,100 @@
+package net.famzangl.minecraft.minebot.ai;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.famzangl.minecraft.minebot.ai.strategy.AIStrategy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * How long the strategies take per client tick, by strategy class, for {@link AIController}.
+ *
+ * Every strategy gets cambium.strategy.budgetMicros (10000) per tick. A strategy asking to tick again (TICK_AGAIN) is
+ * only ticked again while it is within that budget, and at most cambium.strategy.maxReticks (100) times. A single
+ * gameTick cannot be interrupted, so a strategy can still run over: that is counted as an overrun and logged the
+ * first time and every 100th time. "&amp;cambium strategies" shows the counts.
+ *
+ * Client thread only.
+ */
+public class StrategyTickStats {
+    private static final Logger LOGGER = LogManager.getLogger(StrategyTickStats.class);
+    private static final StrategyTickStats INSTANCE = new StrategyTickStats();
+
+    private static final class Entry {
+        final String name;
+        long ticks;
+        long calls;
+        long totalNanos;
+        long maxNanos;
+        long overruns;
+        long cutReticks;
+
+        Entry(String name) {
+            this.name = name;
+        }
+    }
+
+    private final long budgetNanos = Long.getLong("cambium.strategy.budgetMicros", 10000L) * 1000L;
+    private final int maxReticks = Integer.getInteger("cambium.strategy.maxReticks", 100);
+    private final Map<Class<?>, Entry> entries = new LinkedHashMap<Class<?>, Entry>();
+
+    private StrategyTickStats() {
+    }
+
+    public static StrategyTickStats getInstance() {
+        return INSTANCE;
+    }
+
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    public int getMaxReticks() {
+        return maxReticks;
+    }
+
+    /**
+     * @param calls How often gameTick was called in this tick.
+     * @param cut true if the strategy still wanted to tick again, but its budget or re-ticks were used up.
+     */
+    public void record(AIStrategy strategy, long nanos, int calls, boolean cut) {
+        Entry entry = entries.get(strategy.getClass());
+        if (entry == null) {
+            entry = new Entry(strategy.getClass().getSimpleName());
+            entries.put(strategy.getClass(), entry);
+        }
+        entry.ticks++;
+        entry.calls += calls;
+        entry.totalNanos += nanos;
+        entry.maxNanos = Math.max(entry.maxNanos, nanos);
+        if (cut) {
+            entry.cutReticks++;
+        }
+        if (nanos > budgetNanos) {
+            entry.overruns++;
+            if (entry.overruns == 1 || entry.overruns % 100 == 0) {
+                LOGGER.warn(entry.name + " took " + String.format("%.1f", nanos / 1e6) + " ms in one tick ("
+                        + entry.overruns + " overruns of the " + budgetNanos / 1000 + " us budget so far)");
+            }
+        }
+    }
+
+    public void reset() {
+        entries.clear();
+    }
+
+    public String[] getStatsLines() {
+        List<String> lines = new ArrayList<String>();
+        for (Entry entry : entries.values()) {
+            lines.add(entry.name + ": " + entry.ticks + " ticks, " + entry.calls + " calls, mean "
+                    + String.format("%.3f", entry.totalNanos / 1e6 / Math.max(1, entry.ticks)) + " ms, max "
+                    + String.format("%.2f", entry.maxNanos / 1e6) + " ms, " + entry.overruns + " over the "
+                    + budgetNanos / 1000 + " us budget, " + entry.cutReticks + " re-ticks cut");
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+}
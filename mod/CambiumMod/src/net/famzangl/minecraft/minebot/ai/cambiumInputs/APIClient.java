@@ -1,6 +1,8 @@
 package net.famzangl.minecraft.minebot.ai.cambiumInputs;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
@@ -15,6 +17,40 @@ import net.famzangl.minecraft.minebot.ai.command.AIChatController;
  */
 public class APIClient {
     private static final String BASE_URL = "http://backend:8000";
+    // "stream" (default) prefers the persistent StreamClient connection, "http" always uses one request per call
+    private static final boolean USE_STREAM = !"http".equalsIgnoreCase(System.getProperty("cambium.transport", "stream"));
+    
+    /**
+     * @return true if requests should go over the {@link StreamClient} right now. Starts the connection on first use.
+     */
+    public static boolean isStreamAvailable() {
+        return USE_STREAM && StreamClient.getInstance().isConnected();
+    }
+    
+    /**
+     * Sends an /add-reward/ body, queued on the stream if it is connected, otherwise as a blocking POST.
+     * @return false if the events could not be sent
+     */
+    public static boolean postReward(String jsonPayload) {
+        if (isStreamAvailable() && StreamClient.getInstance().sendReward(jsonPayload)) {
+            return true;
+        }
+        return postRequest("/add-reward/", jsonPayload) != null;
+    }
+    
+    /**
+     * Fetches a config document over the stream if it is connected, otherwise with GET httpEndpoint.
+     * @param streamName action_space, observation_space or model
+     */
+    public static String getConfig(String streamName, String httpEndpoint) {
+        if (isStreamAvailable()) {
+            String response = StreamClient.getInstance().requestConfig(streamName, 10000);
+            if (response != null) {
+                return response;
+            }
+        }
+        return getRequest(httpEndpoint);
+    }
     
     /**
      * Makes a POST request to the API
@@ -56,18 +92,103 @@ public class APIClient {
             is.close();
             
             if (responseCode != HttpURLConnection.HTTP_OK) {
-                AIChatController.addChatLine("API Error: " + responseCode + " - " + response.toString());
+                AIChatController.addChatLineLater("API Error: " + responseCode + " - " + response.toString());
                 return null;
             }
             
             return response.toString();
         } catch (Exception e) {
-            AIChatController.addChatLine("API Request Error: " + e.getMessage());
+            AIChatController.addChatLineLater("API Request Error: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * Makes a binary POST request to the API (see {@link BinaryProtocol})
+     * @param endpoint The API endpoint
+     * @param payload The request body
+     * @param length Number of bytes of payload to send
+     * @return The raw response body, or null on error
+     */
+    public static byte[] postBinaryRequest(String endpoint, byte[] payload, int length) {
+        try {
+            URL url = new URL(BASE_URL + endpoint);
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", BinaryProtocol.CONTENT_TYPE);
+            conn.setRequestProperty("Accept", BinaryProtocol.CONTENT_TYPE);
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(length);
+            conn.setConnectTimeout(5000);
+            conn.setReadTimeout(10000);
+            
+            OutputStream os = conn.getOutputStream();
+            os.write(payload, 0, length);
+            os.close();
+            
+            return readBinaryResponse(conn, "API Error: ", BinaryProtocol.ACTION_SIZE);
+        } catch (Exception e) {
+            AIChatController.addChatLineLater("API Request Error: " + e.getMessage());
             e.printStackTrace();
             return null;
         }
     }
     
+    /**
+     * Makes a GET request for a binary resource (e.g. exported model weights)
+     * @param endpoint The API endpoint
+     * @return The raw response body, or null on error
+     */
+    public static byte[] getBinaryRequest(String endpoint) {
+        try {
+            URL url = new URL(BASE_URL + endpoint);
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            
+            conn.setRequestMethod("GET");
+            conn.setRequestProperty("Accept", BinaryProtocol.CONTENT_TYPE);
+            conn.setConnectTimeout(5000);
+            conn.setReadTimeout(10000);
+            
+            return readBinaryResponse(conn, "API GET Error: ", 256);
+        } catch (Exception e) {
+            AIChatController.addChatLineLater("API GET Request Error: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * Reads the status and body of a binary request, reporting errors in the chat
+     * @param errorPrefix Prefix of the chat line for a status other than 200
+     * @param expectedSize Expected body size, used if the server does not send a length
+     * @return The raw response body, or null if the status was not 200
+     */
+    private static byte[] readBinaryResponse(HttpURLConnection conn, String errorPrefix, int expectedSize) throws IOException {
+        int responseCode = conn.getResponseCode();
+        InputStream is = responseCode == HttpURLConnection.HTTP_OK
+                ? conn.getInputStream()
+                : conn.getErrorStream();
+        
+        ByteArrayOutputStream response = new ByteArrayOutputStream(Math.max(conn.getContentLength(), expectedSize));
+        if (is != null) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                response.write(buffer, 0, read);
+            }
+            is.close();
+        }
+        
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            AIChatController.addChatLineLater(errorPrefix + responseCode + " - " + new String(response.toByteArray(), StandardCharsets.UTF_8));
+            return null;
+        }
+        
+        return response.toByteArray();
+    }
+    
     /**
      * Makes a GET request to the API
      * @param endpoint The API endpoint
@@ -99,13 +220,13 @@ public class APIClient {
             is.close();
             
             if (responseCode != HttpURLConnection.HTTP_OK) {
-                AIChatController.addChatLine("API GET Error: " + responseCode + " - " + response.toString());
+                AIChatController.addChatLineLater("API GET Error: " + responseCode + " - " + response.toString());
                 return null;
             }
             
             return response.toString();
         } catch (Exception e) {
-            AIChatController.addChatLine("API GET Request Error: " + e.getMessage());
+            AIChatController.addChatLineLater("API GET Request Error: " + e.getMessage());
             e.printStackTrace();
             return null;
         }
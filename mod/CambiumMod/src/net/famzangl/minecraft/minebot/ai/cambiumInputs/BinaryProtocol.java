@@ -0,0 +1,223 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.ActionData;
+
+/**
+ * Fixed layout binary encoding for observations and actions (version 1).
+ * Everything is little-endian. The backend counterpart is backend/binary_protocol.py.
+ *
+ * Observation (mod -> backend, Content-Type application/octet-stream):
+ * <pre>
+ * int32   magic 'CBOB'
+ * uint16  version
+ * uint16  action space flags (see FLAG_*)
+ * int32   sequence
+ * uint8   movementBins, yawBins, pitchBins
+ * uint8   bot name length, then that many UTF-8 bytes
+ * uint16  feature count (194), then float32[feature count]
+ * uint16  block count (20), then int16[block count] block ids
+ * </pre>
+ *
+ * Action (backend -> mod), 28 bytes:
+ * <pre>
+ * int32   magic 'CBAC'
+ * uint16  version
+ * uint16  reserved
+ * int32   sequence (echoed from the observation)
+ * int8    movement (-1 = none)
+ * uint8   buttons (see BUTTON_*)
+ * int8    hotbar (-1 = none)
+ * uint8   reserved
+ * float32 yaw, pitch, tick rate (NaN if unknown)
+ * </pre>
+ */
+public final class BinaryProtocol {
+    public static final String CONTENT_TYPE = "application/octet-stream";
+    public static final int VERSION = 1;
+    public static final int OBSERVATION_MAGIC = 0x424F4243; // "CBOB" read little-endian
+    public static final int ACTION_MAGIC = 0x43414243; // "CBAC" read little-endian
+
+    public static final int FLAG_MOVEMENT = 1;
+    public static final int FLAG_JUMP = 1 << 1;
+    public static final int FLAG_SNEAK = 1 << 2;
+    public static final int FLAG_SPRINT = 1 << 3;
+    public static final int FLAG_ATTACK = 1 << 4;
+    public static final int FLAG_USE_ITEM = 1 << 5;
+    public static final int FLAG_HOTBAR = 1 << 6;
+    public static final int FLAG_LOOK = 1 << 7;
+
+    public static final int BUTTON_JUMP = 1;
+    public static final int BUTTON_SNEAK = 1 << 1;
+    public static final int BUTTON_SPRINT = 1 << 2;
+    public static final int BUTTON_ATTACK = 1 << 3;
+    public static final int BUTTON_USE_ITEM = 1 << 4;
+
+    public static final int ACTION_SIZE = 28;
+    private static final int MAX_NAME_BYTES = 255;
+    private static final int OBSERVATION_FIXED_SIZE = 4 + 2 + 2 + 4 + 3 + 1 + 2 + ObservationVector.SIZE * 4 + 2 + ObservationVector.BLOCK_SLOTS * 2;
+
+    /**
+     * Header fields of a decoded observation.
+     */
+    public static class ObservationHeader {
+        public int sequence;
+        public int actionFlags;
+        public int movementBins;
+        public int yawBins;
+        public int pitchBins;
+        public String botName;
+    }
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Upper bound of the encoded observation size, use it to size a reusable buffer.
+     */
+    public static int maxObservationSize() {
+        return OBSERVATION_FIXED_SIZE + MAX_NAME_BYTES;
+    }
+
+    public static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static int actionFlags(ActionSpaceConfig config) {
+        int flags = 0;
+        if (config.enableMovement) flags |= FLAG_MOVEMENT;
+        if (config.enableJump) flags |= FLAG_JUMP;
+        if (config.enableSneak) flags |= FLAG_SNEAK;
+        if (config.enableSprint) flags |= FLAG_SPRINT;
+        if (config.enableAttack) flags |= FLAG_ATTACK;
+        if (config.enableUseItem) flags |= FLAG_USE_ITEM;
+        if (config.enableHotbar) flags |= FLAG_HOTBAR;
+        if (config.enableLook) flags |= FLAG_LOOK;
+        return flags;
+    }
+
+    /**
+     * Writes one observation into out, starting at its current position. The buffer must be little-endian.
+     */
+    public static void encodeObservation(ByteBuffer out, int sequence, String botName, ActionSpaceConfig actionConfig, ObservationVector observation) {
+        byte[] name = botName.getBytes(StandardCharsets.UTF_8);
+        int nameLength = Math.min(name.length, MAX_NAME_BYTES);
+
+        out.putInt(OBSERVATION_MAGIC);
+        out.putShort((short) VERSION);
+        out.putShort((short) actionFlags(actionConfig));
+        out.putInt(sequence);
+        out.put((byte) actionConfig.movementBins);
+        out.put((byte) actionConfig.yawBins);
+        out.put((byte) actionConfig.pitchBins);
+        out.put((byte) nameLength);
+        out.put(name, 0, nameLength);
+
+        float[] features = observation.getFeatures();
+        out.putShort((short) features.length);
+        for (int i = 0; i < features.length; i++) {
+            out.putFloat(features[i]);
+        }
+
+        short[] blockIds = observation.getBlockIds();
+        out.putShort((short) blockIds.length);
+        for (int i = 0; i < blockIds.length; i++) {
+            out.putShort(blockIds[i]);
+        }
+    }
+
+    /**
+     * Reads one observation written by {@link #encodeObservation}.
+     * @throws IllegalArgumentException if the magic, version or section sizes do not match.
+     */
+    public static void decodeObservation(ByteBuffer in, ObservationHeader header, ObservationVector observation) {
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        checkHeader(in, OBSERVATION_MAGIC);
+        header.actionFlags = in.getShort() & 0xffff;
+        header.sequence = in.getInt();
+        header.movementBins = in.get() & 0xff;
+        header.yawBins = in.get() & 0xff;
+        header.pitchBins = in.get() & 0xff;
+        byte[] name = new byte[in.get() & 0xff];
+        in.get(name);
+        header.botName = new String(name, StandardCharsets.UTF_8);
+
+        float[] features = observation.getFeatures();
+        int featureCount = in.getShort() & 0xffff;
+        if (featureCount != features.length) {
+            throw new IllegalArgumentException("Expected " + features.length + " features, got " + featureCount);
+        }
+        for (int i = 0; i < featureCount; i++) {
+            features[i] = in.getFloat();
+        }
+
+        short[] blockIds = observation.getBlockIds();
+        int blockCount = in.getShort() & 0xffff;
+        if (blockCount != blockIds.length) {
+            throw new IllegalArgumentException("Expected " + blockIds.length + " block ids, got " + blockCount);
+        }
+        for (int i = 0; i < blockCount; i++) {
+            blockIds[i] = in.getShort();
+        }
+    }
+
+    public static void encodeAction(ByteBuffer out, ActionData action) {
+        int buttons = 0;
+        if (action.isJump()) buttons |= BUTTON_JUMP;
+        if (action.isSneak()) buttons |= BUTTON_SNEAK;
+        if (action.isSprint()) buttons |= BUTTON_SPRINT;
+        if (action.isAttack()) buttons |= BUTTON_ATTACK;
+        if (action.isUseItem()) buttons |= BUTTON_USE_ITEM;
+
+        out.putInt(ACTION_MAGIC);
+        out.putShort((short) VERSION);
+        out.putShort((short) 0);
+        out.putInt(action.getSequence());
+        out.put((byte) action.getMovement());
+        out.put((byte) buttons);
+        out.put((byte) action.getHotbar());
+        out.put((byte) 0);
+        out.putFloat(action.getYaw());
+        out.putFloat(action.getPitch());
+        out.putFloat((float) action.getTickRate());
+    }
+
+    /**
+     * Reads an action response into the given (reused) action.
+     * @throws IllegalArgumentException if the magic or version do not match.
+     */
+    public static void decodeAction(ByteBuffer in, ActionData action) {
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        checkHeader(in, ACTION_MAGIC);
+        in.getShort();
+        int sequence = in.getInt();
+        int movement = in.get();
+        int buttons = in.get() & 0xff;
+        int hotbar = in.get();
+        in.get();
+        float yaw = in.getFloat();
+        float pitch = in.getFloat();
+        float tickRate = in.getFloat();
+        action.set(sequence, movement,
+                (buttons & BUTTON_JUMP) != 0,
+                (buttons & BUTTON_SNEAK) != 0,
+                (buttons & BUTTON_SPRINT) != 0,
+                (buttons & BUTTON_ATTACK) != 0,
+                (buttons & BUTTON_USE_ITEM) != 0,
+                hotbar, yaw, pitch, tickRate);
+    }
+
+    private static void checkHeader(ByteBuffer in, int expectedMagic) {
+        int magic = in.getInt();
+        if (magic != expectedMagic) {
+            throw new IllegalArgumentException("Bad magic 0x" + Integer.toHexString(magic));
+        }
+        int version = in.getShort() & 0xffff;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported protocol version " + version);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs;
+
+import java.util.Locale;
+
+import net.famzangl.minecraft.minebot.ai.command.AIChatController;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Parses settings from -D properties and backend configs, so that a typo falls back to the default instead of
+ * failing the class or config that reads it.
+ */
+public final class ConfigValues {
+    private static final Logger LOGGER = LogManager.getLogger(ConfigValues.class);
+
+    private ConfigValues() {
+    }
+
+    /**
+     * Parses an enum constant, ignoring case. A bad value is logged and posted to the chat, naming the setting.
+     * @param setting Where the value came from, e.g. "-Dcambium.protocol"
+     * @param value The value, may be null
+     * @param fallback Used if the value names no constant
+     */
+    public static <T extends Enum<T>> T parseEnum(String setting, String value, T fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Enum.valueOf(fallback.getDeclaringClass(), value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            String message = "Unknown " + setting + " value '" + value + "', using " + fallback;
+            LOGGER.warn(message);
+            AIChatController.addChatLineLater(message);
+            return fallback;
+        }
+    }
+}
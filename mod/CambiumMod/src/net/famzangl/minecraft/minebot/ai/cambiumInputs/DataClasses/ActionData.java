@@ -0,0 +1,121 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses;
+
+import com.google.gson.JsonObject;
+
+/**
+ * One decoded model action. Mutable so the controller can reuse a single instance every tick.
+ * movement and hotbar use -1 for "no key pressed".
+ */
+public class ActionData {
+    private int sequence;
+    private int movement = -1;
+    private boolean jump;
+    private boolean sneak;
+    private boolean sprint;
+    private boolean attack;
+    private boolean useItem;
+    private int hotbar = -1;
+    private float yaw;
+    private float pitch;
+
+    //Backend tick rate hint, NaN if the response did not contain one
+    private double tickRate = Double.NaN;
+
+    public void set(int sequence, int movement, boolean jump, boolean sneak, boolean sprint, boolean attack, boolean useItem, int hotbar, float yaw, float pitch, double tickRate) {
+        this.sequence = sequence;
+        this.movement = movement;
+        this.jump = jump;
+        this.sneak = sneak;
+        this.sprint = sprint;
+        this.attack = attack;
+        this.useItem = useItem;
+        this.hotbar = hotbar;
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.tickRate = tickRate;
+    }
+
+    public void copyFrom(ActionData other) {
+        set(other.sequence, other.movement, other.jump, other.sneak, other.sprint, other.attack, other.useItem, other.hotbar, other.yaw, other.pitch, other.tickRate);
+    }
+
+    /**
+     * Resets to the no-op action (no keys, no rotation).
+     */
+    public void clear() {
+        set(sequence, -1, false, false, false, false, false, -1, 0f, 0f, Double.NaN);
+    }
+
+    /**
+     * Reads the JSON action format returned by /predict-action-v{version}. Missing keys count as not pressed.
+     */
+    public void readJson(JsonObject action, double tickRate) {
+        set(sequence,
+                action.has("movement") ? action.get("movement").getAsInt() : -1,
+                action.has("jump") && action.get("jump").getAsBoolean(),
+                action.has("sneak") && action.get("sneak").getAsBoolean(),
+                action.has("sprint") && action.get("sprint").getAsBoolean(),
+                action.has("attack") && action.get("attack").getAsBoolean(),
+                action.has("useItem") && action.get("useItem").getAsBoolean(),
+                action.has("hotbar") ? action.get("hotbar").getAsInt() : -1,
+                action.has("yaw") ? action.get("yaw").getAsFloat() : 0f,
+                action.has("pitch") ? action.get("pitch").getAsFloat() : 0f,
+                tickRate);
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(int sequence) {
+        this.sequence = sequence;
+    }
+
+    public int getMovement() {
+        return movement;
+    }
+
+    public boolean isJump() {
+        return jump;
+    }
+
+    public boolean isSneak() {
+        return sneak;
+    }
+
+    public boolean isSprint() {
+        return sprint;
+    }
+
+    public boolean isAttack() {
+        return attack;
+    }
+
+    public boolean isUseItem() {
+        return useItem;
+    }
+
+    public int getHotbar() {
+        return hotbar;
+    }
+
+    public float getYaw() {
+        return yaw;
+    }
+
+    public float getPitch() {
+        return pitch;
+    }
+
+    public double getTickRate() {
+        return tickRate;
+    }
+
+    public boolean hasTickRate() {
+        return !Double.isNaN(tickRate);
+    }
+
+    public String toString() {
+        return "Seq: " + sequence + " Movement: " + movement + " Jump: " + jump + " Sneak: " + sneak + " Sprint: " + sprint + " Attack: " + attack + " UseItem: " + useItem + " Hotbar: " + hotbar + " Yaw: " + yaw + " Pitch: " + pitch;
+    }
+}
@@ -9,14 +9,20 @@ public class BlockData {
     int z;
     boolean solid;
     String name;
+    int blockId;
 
     public BlockData(int x, int y, int z, double distance, boolean solid, String name){
+        this(x, y, z, distance, solid, name, 0);
+    }
+
+    public BlockData(int x, int y, int z, double distance, boolean solid, String name, int blockId){
         this.x = x;
         this.y = y;
         this.z = z;
         this.solid = solid;
         this.name = name;
         this.distance = distance;
+        this.blockId = blockId;
     }
 
     public int getX(){
@@ -43,6 +49,13 @@ public class BlockData {
         return name;
     }
 
+    /**
+     * Numeric block id (as in {@link net.minecraft.block.Block#getIdFromBlock}), used by the binary protocol instead of the name.
+     */
+    public int getBlockId(){
+        return blockId;
+    }
+
     public String toString(){
         return "X: " + x + " Y: " + y + " Z: " + z + " Solid: " + solid + " Name: " + name;
     }
@@ -0,0 +1,168 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs.GetInformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.BlockData;
+import net.famzangl.minecraft.minebot.ai.net.ChunkListener;
+import net.famzangl.minecraft.minebot.ai.net.NetworkHelper;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
+import net.minecraft.block.Block;
+
+/**
+ * Keeps the last block observation and only casts the rays again when it can have changed:
+ * <ul>
+ * <li>the eye moved more than the threshold (cambium.blockCache.threshold, default 0.05 blocks),</li>
+ * <li>the block the player stands in changed (the observation is relative to it),</li>
+ * <li>the world changed, or</li>
+ * <li>a chunk the ray sphere reaches into was reported by {@link ChunkListener#chunkChanged}.</li>
+ * </ul>
+ * The rays are fixed in world space, so looking around does not invalidate the observation.
+ *
+ * chunkChanged is called from the network thread as well, everything else from the client thread.
+ */
+public class BlockObservationCache implements ChunkListener {
+    private final BlockRaycaster raycaster = new BlockRaycaster();
+    private final double threshold = Double.parseDouble(System.getProperty("cambium.blockCache.threshold", "0.05"));
+    private boolean enabled = !"false".equalsIgnoreCase(System.getProperty("cambium.blockCache", "true"));
+
+    private ArrayList<BlockData> blocks;
+    private WorldData lastWorld;
+    private NetworkHelper registeredWith;
+    private double lastEyeX;
+    private double lastEyeY;
+    private double lastEyeZ;
+    private int lastPlayerX;
+    private int lastPlayerY;
+    private int lastPlayerZ;
+
+    // Chunks the last cast could reach, read by chunkChanged
+    private volatile int minChunkX;
+    private volatile int maxChunkX;
+    private volatile int minChunkZ;
+    private volatile int maxChunkZ;
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+
+    private long hits;
+    private long misses;
+    private long movedMisses;
+    private long dirtyMisses;
+    private long statsStart = System.nanoTime();
+
+    /**
+     * Makes sure the cache gets the chunk changes of the current connection. A new connection comes with a new
+     * network handler, which also means the old observation is useless.
+     */
+    private void listenTo(NetworkHelper networkHelper) {
+        if (networkHelper == registeredWith) {
+            return;
+        }
+        if (registeredWith != null) {
+            registeredWith.removeChunkChangeListener(this);
+        }
+        registeredWith = networkHelper;
+        if (networkHelper != null) {
+            networkHelper.addChunkChangeListener(this);
+        }
+        dirty.set(true);
+    }
+
+    /**
+     * @return The block observation for the given eye position, relative to the (truncated) player position, nearest
+     *         first. The list is shared between calls and must not be modified.
+     */
+    public ArrayList<BlockData> get(WorldData world, NetworkHelper networkHelper, double eyeX, double eyeY, double eyeZ,
+            int playerX, int playerY, int playerZ, double maxDistance) {
+        listenTo(networkHelper);
+        boolean wasDirty = dirty.getAndSet(false);
+        if (enabled && blocks != null && !wasDirty && world == lastWorld
+                && playerX == lastPlayerX && playerY == lastPlayerY && playerZ == lastPlayerZ
+                && Math.abs(eyeX - lastEyeX) <= threshold && Math.abs(eyeY - lastEyeY) <= threshold
+                && Math.abs(eyeZ - lastEyeZ) <= threshold) {
+            hits++;
+            return blocks;
+        }
+
+        misses++;
+        if (wasDirty) {
+            dirtyMisses++;
+        } else if (blocks != null && world == lastWorld) {
+            movedMisses++;
+        }
+        minChunkX = (int) Math.floor(eyeX - maxDistance) >> 4;
+        maxChunkX = (int) Math.floor(eyeX + maxDistance) >> 4;
+        minChunkZ = (int) Math.floor(eyeZ - maxDistance) >> 4;
+        maxChunkZ = (int) Math.floor(eyeZ + maxDistance) >> 4;
+        lastWorld = world;
+        lastEyeX = eyeX;
+        lastEyeY = eyeY;
+        lastEyeZ = eyeZ;
+        lastPlayerX = playerX;
+        lastPlayerY = playerY;
+        lastPlayerZ = playerZ;
+
+        int count = raycaster.cast(world, eyeX, eyeY, eyeZ, maxDistance);
+        blocks = new ArrayList<BlockData>(count);
+        for (int i = 0; i < count; i++) {
+            int blockId = raycaster.getBlockWithMeta(i) >> 4;
+            blocks.add(new BlockData(
+                raycaster.getX(i) - playerX,
+                raycaster.getY(i) - playerY,
+                raycaster.getZ(i) - playerZ,
+                raycaster.getDistance(i),
+                true,
+                Block.getBlockById(blockId).getLocalizedName(),
+                blockId));
+        }
+        // Stable, blocks at the same distance stay in ray order
+        Collections.sort(blocks, GetBlocks.NEAREST_FIRST);
+        return blocks;
+    }
+
+    @Override
+    public void chunkChanged(int chunkX, int chunkZ) {
+        if (chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Forces the next call to cast again.
+     */
+    public void invalidate() {
+        dirty.set(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void resetCounters() {
+        hits = 0;
+        misses = 0;
+        movedMisses = 0;
+        dirtyMisses = 0;
+        statsStart = System.nanoTime();
+    }
+
+    public String getStatsLine() {
+        double seconds = Math.max(1e-3, (System.nanoTime() - statsStart) / 1e9);
+        long total = hits + misses;
+        return (enabled ? "" : "disabled, ") + hits + " hits, " + misses + " casts (" + movedMisses + " moved, "
+                + dirtyMisses + " chunk changes), hit rate " + (total == 0 ? 0 : hits * 100 / total) + "%, "
+                + String.format("%.1f", hits / seconds) + " casts/s saved";
+    }
+}
@@ -0,0 +1,230 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs.GetInformation;
+
+import java.util.Arrays;
+
+import net.famzangl.minecraft.minebot.ai.path.world.BlockBounds;
+import net.famzangl.minecraft.minebot.ai.path.world.BlockBoundsCache;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
+
+/**
+ * Casts the block observation rays with a voxel walk (Amanatides and Woo) directly on {@link WorldData}.
+ *
+ * The rays are the same as the ones GetBlocks used to send through World.rayTraceBlocks: 13 elevation rings,
+ * each split into thetaStep degree steps. The directions are computed once. The duplicate ray at theta = 360
+ * is left out, it hits the same block as theta = 0.
+ *
+ * A cell is hit if {@link BlockBoundsCache#isRayTraceable} says vanilla would test it and the ray passes through
+ * its bounds. Bounds come from {@link BlockBoundsCache}, so blocks whose shape depends on their neighbours
+ * (fences, panes, stairs) use their stand-alone shape.
+ *
+ * Results go to reusable arrays, one entry per distinct block in the order the rays hit them. A cast does not
+ * allocate. Not thread safe.
+ */
+public class BlockRaycaster {
+    /**
+     * The rings as (thetaStep, phi) in degrees.
+     */
+    private static final int[][] RINGS = {
+            {360, -90}, {45, -60}, {20, -40}, {15, -30}, {15, -20}, {15, -10}, {15, 0},
+            {360, 90}, {45, 60}, {20, 40}, {15, 30}, {15, 20}, {15, 10}
+    };
+
+    public static final int RAY_COUNT;
+    private static final double[] DIR_X;
+    private static final double[] DIR_Y;
+    private static final double[] DIR_Z;
+
+    static {
+        int count = 0;
+        for (int[] ring : RINGS) {
+            count += 360 / ring[0];
+        }
+        RAY_COUNT = count;
+        DIR_X = new double[count];
+        DIR_Y = new double[count];
+        DIR_Z = new double[count];
+        int i = 0;
+        for (int[] ring : RINGS) {
+            double phi = Math.toRadians(ring[1]);
+            for (int theta = 0; theta < 360; theta += ring[0]) {
+                double t = Math.toRadians(theta);
+                DIR_X[i] = Math.cos(phi) * Math.cos(t);
+                DIR_Y[i] = Math.sin(phi);
+                DIR_Z[i] = Math.cos(phi) * Math.sin(t);
+                i++;
+            }
+        }
+    }
+
+    // Dedup table: cells within +-31 blocks of the eye, stamped with the cast they were last seen in
+    private static final int SEEN_BITS = 6;
+    private static final int SEEN_MASK = (1 << SEEN_BITS) - 1;
+    private static final double MAX_SUPPORTED_DISTANCE = (1 << (SEEN_BITS - 1)) - 2;
+    private final int[] seen = new int[1 << (3 * SEEN_BITS)];
+    private int generation;
+
+    private final int[] hitX = new int[RAY_COUNT];
+    private final int[] hitY = new int[RAY_COUNT];
+    private final int[] hitZ = new int[RAY_COUNT];
+    private final int[] hitBlock = new int[RAY_COUNT];
+    private final double[] hitDistance = new double[RAY_COUNT];
+    private int count;
+
+    /**
+     * Casts all rays from the eye position.
+     * @param maxDistance Ray length, at most 30 blocks.
+     * @return The number of distinct blocks hit.
+     */
+    public int cast(WorldData world, double eyeX, double eyeY, double eyeZ, double maxDistance) {
+        if (maxDistance > MAX_SUPPORTED_DISTANCE) {
+            throw new IllegalArgumentException("maxDistance must not exceed " + MAX_SUPPORTED_DISTANCE);
+        }
+        if (++generation == 0) {
+            Arrays.fill(seen, 0);
+            generation = 1;
+        }
+        count = 0;
+        int originX = floor(eyeX);
+        int originY = floor(eyeY);
+        int originZ = floor(eyeZ);
+        for (int ray = 0; ray < RAY_COUNT; ray++) {
+            castRay(world, eyeX, eyeY, eyeZ, DIR_X[ray], DIR_Y[ray], DIR_Z[ray], maxDistance, originX, originY, originZ);
+        }
+        return count;
+    }
+
+    private void castRay(WorldData world, double ox, double oy, double oz, double dx, double dy, double dz,
+            double maxDistance, int originX, int originY, int originZ) {
+        int x = floor(ox);
+        int y = floor(oy);
+        int z = floor(oz);
+        int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+        double deltaX = stepX == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dx);
+        double deltaY = stepY == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dy);
+        double deltaZ = stepZ == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dz);
+        double nextX = stepX > 0 ? (x + 1 - ox) * deltaX : stepX < 0 ? (ox - x) * deltaX : Double.POSITIVE_INFINITY;
+        double nextY = stepY > 0 ? (y + 1 - oy) * deltaY : stepY < 0 ? (oy - y) * deltaY : Double.POSITIVE_INFINITY;
+        double nextZ = stepZ > 0 ? (z + 1 - oz) * deltaZ : stepZ < 0 ? (oz - z) * deltaZ : Double.POSITIVE_INFINITY;
+
+        while (true) {
+            // Outside the build height vanilla sees air
+            if (y >= 0 && y < 256) {
+                int block = world.getBlockIdWithMeta(x, y, z);
+                if (block != 0 && BlockBoundsCache.isRayTraceable(block)) {
+                    double t = intersect(BlockBoundsCache.getBounds(block), ox - x, oy - y, oz - z, dx, dy, dz);
+                    if (t >= 0 && t <= maxDistance) {
+                        record(x, y, z, block, t, originX, originY, originZ);
+                        return;
+                    }
+                }
+            }
+
+            if (nextX < nextY && nextX < nextZ) {
+                if (nextX > maxDistance) {
+                    return;
+                }
+                x += stepX;
+                nextX += deltaX;
+            } else if (nextY < nextZ) {
+                if (nextY > maxDistance) {
+                    return;
+                }
+                y += stepY;
+                nextY += deltaY;
+            } else {
+                if (nextZ > maxDistance) {
+                    return;
+                }
+                z += stepZ;
+                nextZ += deltaZ;
+            }
+        }
+    }
+
+    /**
+     * Slab test of a ray starting at (ox, oy, oz) relative to the block corner.
+     * @return The distance to the first bounds face on the ray, the exit face if the start is inside the bounds,
+     *         or -1 on a miss.
+     */
+    private static double intersect(BlockBounds b, double ox, double oy, double oz, double dx, double dy, double dz) {
+        double near = Double.NEGATIVE_INFINITY;
+        double far = Double.POSITIVE_INFINITY;
+        if (dx != 0) {
+            double t1 = (b.getMinX() - ox) / dx;
+            double t2 = (b.getMaxX() - ox) / dx;
+            near = Math.max(near, Math.min(t1, t2));
+            far = Math.min(far, Math.max(t1, t2));
+        } else if (ox < b.getMinX() || ox > b.getMaxX()) {
+            return -1;
+        }
+        if (dy != 0) {
+            double t1 = (b.getMinY() - oy) / dy;
+            double t2 = (b.getMaxY() - oy) / dy;
+            near = Math.max(near, Math.min(t1, t2));
+            far = Math.min(far, Math.max(t1, t2));
+        } else if (oy < b.getMinY() || oy > b.getMaxY()) {
+            return -1;
+        }
+        if (dz != 0) {
+            double t1 = (b.getMinZ() - oz) / dz;
+            double t2 = (b.getMaxZ() - oz) / dz;
+            near = Math.max(near, Math.min(t1, t2));
+            far = Math.min(far, Math.max(t1, t2));
+        } else if (oz < b.getMinZ() || oz > b.getMaxZ()) {
+            return -1;
+        }
+        if (far < near || far < 0) {
+            return -1;
+        }
+        return near >= 0 ? near : far;
+    }
+
+    private void record(int x, int y, int z, int block, double distance, int originX, int originY, int originZ) {
+        int key = ((x - originX) & SEEN_MASK) << (2 * SEEN_BITS) | ((y - originY) & SEEN_MASK) << SEEN_BITS
+                | ((z - originZ) & SEEN_MASK);
+        if (seen[key] == generation) {
+            return;
+        }
+        seen[key] = generation;
+        hitX[count] = x;
+        hitY[count] = y;
+        hitZ[count] = z;
+        hitBlock[count] = block;
+        hitDistance[count] = distance;
+        count++;
+    }
+
+    private static int floor(double value) {
+        int i = (int) value;
+        return value < i ? i - 1 : i;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getX(int i) {
+        return hitX[i];
+    }
+
+    public int getY(int i) {
+        return hitY[i];
+    }
+
+    public int getZ(int i) {
+        return hitZ[i];
+    }
+
+    /**
+     * @return The block id with meta (id << 4 | meta) of hit i.
+     */
+    public int getBlockWithMeta(int i) {
+        return hitBlock[i];
+    }
+
+    public double getDistance(int i) {
+        return hitDistance[i];
+    }
+}
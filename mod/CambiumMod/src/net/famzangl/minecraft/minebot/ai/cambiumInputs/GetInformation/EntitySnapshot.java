@@ -0,0 +1,329 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs.GetInformation;
+
+import java.util.HashMap;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.projectile.EntityFishHook;
+import net.minecraft.entity.projectile.EntityThrowable;
+import net.minecraft.world.World;
+
+/**
+ * The entities around the player, collected once per tick and shared by the observation (GetEntities) and the
+ * reward code (RewardListener).
+ *
+ * Building the snapshot walks World.loadedEntityList once. The category of each entity class is looked up once per
+ * class, and every relevant entity is put into a grid of chunk columns around the player. {@link #nearest} then
+ * visits the grid ring by ring and keeps the K nearest matches in a bounded heap, so it can stop as soon as no
+ * closer entity can follow.
+ *
+ * The snapshot and its query results are reused, only use them on the client thread.
+ */
+public class EntitySnapshot {
+    public static final int LIVING = 1;
+    public static final int PLAYER = 2;
+    public static final int PROJECTILE = 4;
+    /**
+     * Everything GetEntities reports. Particles, items, xp orbs and the like are left out of the snapshot.
+     */
+    public static final int RELEVANT = LIVING | PLAYER | PROJECTILE;
+
+    // Grid of (2 * GRID_RADIUS + 1)^2 chunk columns around the player, entities further out go to an overflow list
+    private static final int GRID_RADIUS = 8;
+    private static final int GRID_SIZE = 2 * GRID_RADIUS + 1;
+
+    private static final HashMap<Class<?>, Integer> CATEGORIES = new HashMap<Class<?>, Integer>();
+    private static final EntitySnapshot INSTANCE = new EntitySnapshot();
+
+    private World world;
+    private long worldTime;
+    private int playerChunkX;
+    private int playerChunkZ;
+
+    private Entity[] entities = new Entity[64];
+    private double[] relX = new double[64];
+    private double[] relY = new double[64];
+    private double[] relZ = new double[64];
+    private int[] category = new int[64];
+    // Per grid cell a linked list through next[]
+    private int[] next = new int[64];
+    private final int[] cellHead = new int[GRID_SIZE * GRID_SIZE];
+    private int overflowHead;
+    private int count;
+
+    // Bounded max-heap for nearest(), sorted ascending after the query
+    private int[] heapIndex = new int[16];
+    private double[] heapDist = new double[16];
+    private int heapSize;
+    private int heapLimit;
+
+    private EntitySnapshot() {
+    }
+
+    /**
+     * @return The snapshot of the current world tick, built now if needed. Use this for the observation.
+     */
+    public static EntitySnapshot forTick(Minecraft mc) {
+        return INSTANCE.update(mc, 0);
+    }
+
+    /**
+     * Like {@link #forTick} but accepts the snapshot of the previous world tick. The controller ticks at the start of
+     * the client tick, the reward code at the end, after the world advanced by one tick.
+     */
+    public static EntitySnapshot recent(Minecraft mc) {
+        return INSTANCE.update(mc, 1);
+    }
+
+    private EntitySnapshot update(Minecraft mc, int maxAge) {
+        long time = mc.theWorld.getTotalWorldTime();
+        if (world != mc.theWorld || time < worldTime || time - worldTime > maxAge) {
+            build(mc, time);
+        }
+        return this;
+    }
+
+    private void build(Minecraft mc, long time) {
+        world = mc.theWorld;
+        worldTime = time;
+        Entity player = mc.thePlayer;
+        double px = player.posX;
+        double py = player.posY;
+        double pz = player.posZ;
+        playerChunkX = floor(px) >> 4;
+        playerChunkZ = floor(pz) >> 4;
+
+        for (int i = 0; i < count; i++) {
+            entities[i] = null;
+        }
+        count = 0;
+        overflowHead = -1;
+        for (int i = 0; i < cellHead.length; i++) {
+            cellHead[i] = -1;
+        }
+
+        for (int i = 0; i < world.loadedEntityList.size(); i++) {
+            Entity entity = (Entity) world.loadedEntityList.get(i);
+            if (entity == null || entity == player) {
+                continue;
+            }
+            int c = categoryOf(entity.getClass());
+            if (c == 0) {
+                continue;
+            }
+            if (count == entities.length) {
+                grow();
+            }
+            entities[count] = entity;
+            relX[count] = entity.posX - px;
+            relY[count] = entity.posY - py;
+            relZ[count] = entity.posZ - pz;
+            category[count] = c;
+
+            int cellX = (floor(entity.posX) >> 4) - playerChunkX + GRID_RADIUS;
+            int cellZ = (floor(entity.posZ) >> 4) - playerChunkZ + GRID_RADIUS;
+            if (cellX >= 0 && cellX < GRID_SIZE && cellZ >= 0 && cellZ < GRID_SIZE) {
+                int cell = cellZ * GRID_SIZE + cellX;
+                next[count] = cellHead[cell];
+                cellHead[cell] = count;
+            } else {
+                next[count] = overflowHead;
+                overflowHead = count;
+            }
+            count++;
+        }
+    }
+
+    private static int categoryOf(Class<?> entityClass) {
+        Integer c = CATEGORIES.get(entityClass);
+        if (c == null) {
+            int value = 0;
+            if (EntityLivingBase.class.isAssignableFrom(entityClass)) {
+                value |= LIVING;
+            }
+            if (EntityPlayer.class.isAssignableFrom(entityClass)) {
+                value |= PLAYER;
+            }
+            if (EntityThrowable.class.isAssignableFrom(entityClass) || EntityFishHook.class.isAssignableFrom(entityClass)) {
+                value |= PROJECTILE;
+            }
+            c = value;
+            CATEGORIES.put(entityClass, c);
+        }
+        return c;
+    }
+
+    private void grow() {
+        int size = entities.length * 2;
+        Entity[] newEntities = new Entity[size];
+        System.arraycopy(entities, 0, newEntities, 0, count);
+        entities = newEntities;
+        relX = copyOf(relX, size);
+        relY = copyOf(relY, size);
+        relZ = copyOf(relZ, size);
+        int[] newCategory = new int[size];
+        System.arraycopy(category, 0, newCategory, 0, count);
+        category = newCategory;
+        int[] newNext = new int[size];
+        System.arraycopy(next, 0, newNext, 0, count);
+        next = newNext;
+    }
+
+    private double[] copyOf(double[] values, int size) {
+        double[] copy = new double[size];
+        System.arraycopy(values, 0, copy, 0, count);
+        return copy;
+    }
+
+    /**
+     * Finds the k nearest entities (by distance to the player when the snapshot was taken).
+     * @param categoryMask Entities need at least one of these categories.
+     * @param aliveOnly Skip dead entities and living entities without health.
+     * @param maxDistance Maximum distance from the player.
+     * @param k How many entities to find at most.
+     * @return The number of results, readable with {@link #getResult} nearest first.
+     */
+    public int nearest(int categoryMask, boolean aliveOnly, double maxDistance, int k) {
+        heapSize = 0;
+        heapLimit = Math.min(k, count);
+        if (heapLimit <= 0) {
+            return 0;
+        }
+        if (heapIndex.length < heapLimit) {
+            heapIndex = new int[heapLimit];
+            heapDist = new double[heapLimit];
+        }
+        double maxDistSq = maxDistance * maxDistance;
+
+        boolean complete = true;
+        for (int ring = 0; ring <= GRID_RADIUS; ring++) {
+            // Entities in this ring are at least this far away horizontally
+            double ringDistance = Math.max(0, (ring - 1) * 16);
+            if (ringDistance > maxDistance || (heapSize == heapLimit && heapDist[0] <= ringDistance * ringDistance)) {
+                complete = false;
+                break;
+            }
+            for (int dz = -ring; dz <= ring; dz++) {
+                boolean edgeRow = dz == -ring || dz == ring;
+                for (int dx = -ring; dx <= ring; dx += edgeRow ? 1 : 2 * ring) {
+                    int cell = (dz + GRID_RADIUS) * GRID_SIZE + dx + GRID_RADIUS;
+                    offerList(cellHead[cell], categoryMask, aliveOnly, maxDistSq);
+                }
+            }
+        }
+        double overflowDistance = GRID_RADIUS * 16;
+        if (complete && overflowDistance <= maxDistance
+                && !(heapSize == heapLimit && heapDist[0] <= overflowDistance * overflowDistance)) {
+            offerList(overflowHead, categoryMask, aliveOnly, maxDistSq);
+        }
+
+        // Heap sort in place: repeatedly move the farthest entry behind the heap
+        int results = heapSize;
+        while (heapSize > 1) {
+            heapSize--;
+            swap(0, heapSize);
+            siftDown(0);
+        }
+        heapSize = results;
+        return results;
+    }
+
+    private void offerList(int head, int categoryMask, boolean aliveOnly, double maxDistSq) {
+        for (int i = head; i >= 0; i = next[i]) {
+            if ((category[i] & categoryMask) == 0) {
+                continue;
+            }
+            double distSq = relX[i] * relX[i] + relY[i] * relY[i] + relZ[i] * relZ[i];
+            if (distSq > maxDistSq || (heapSize == heapLimit && distSq >= heapDist[0])) {
+                continue;
+            }
+            if (aliveOnly && !isAlive(entities[i])) {
+                continue;
+            }
+            if (heapSize < heapLimit) {
+                heapIndex[heapSize] = i;
+                heapDist[heapSize] = distSq;
+                siftUp(heapSize++);
+            } else {
+                heapIndex[0] = i;
+                heapDist[0] = distSq;
+                siftDown(0);
+            }
+        }
+    }
+
+    private static boolean isAlive(Entity entity) {
+        return !entity.isDead && (!(entity instanceof EntityLivingBase) || ((EntityLivingBase) entity).getHealth() > 0);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heapDist[parent] >= heapDist[i]) {
+                return;
+            }
+            swap(parent, i);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < heapSize && heapDist[left] > heapDist[largest]) {
+                largest = left;
+            }
+            if (right < heapSize && heapDist[right] > heapDist[largest]) {
+                largest = right;
+            }
+            if (largest == i) {
+                return;
+            }
+            swap(i, largest);
+            i = largest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int index = heapIndex[a];
+        heapIndex[a] = heapIndex[b];
+        heapIndex[b] = index;
+        double dist = heapDist[a];
+        heapDist[a] = heapDist[b];
+        heapDist[b] = dist;
+    }
+
+    /**
+     * @return Result i of the last {@link #nearest} query.
+     */
+    public Entity getResult(int i) {
+        return entities[heapIndex[i]];
+    }
+
+    public double getResultDistance(int i) {
+        return Math.sqrt(heapDist[i]);
+    }
+
+    /**
+     * @return The nearest matching entity or <code>null</code>.
+     */
+    public Entity nearestEntity(int categoryMask, boolean aliveOnly, double maxDistance) {
+        return nearest(categoryMask, aliveOnly, maxDistance, 1) > 0 ? getResult(0) : null;
+    }
+
+    /**
+     * @return Number of relevant entities in the snapshot.
+     */
+    public int size() {
+        return count;
+    }
+
+    private static int floor(double value) {
+        int i = (int) value;
+        return value < i ? i - 1 : i;
+    }
+}
@@ -1,6 +1,8 @@
 package net.famzangl.minecraft.minebot.ai.cambiumInputs.GetInformation;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -13,6 +15,22 @@ import net.minecraft.util.Vec3;
 import net.minecraft.block.Block;
 
 public class GetBlocks {
+    public static final double MAX_DISTANCE = 20;
+    //-Dcambium.raycaster=vanilla goes back to World.rayTraceBlocks
+    private static final boolean USE_VANILLA = "vanilla".equalsIgnoreCase(System.getProperty("cambium.raycaster", "dda"));
+    //Only used from the client thread
+    private static final BlockObservationCache CACHE = new BlockObservationCache();
+    /**
+     * The observation order. Ray order would put the downward rings first, so truncating to maxBlocks or the block
+     * slots would only keep the floor.
+     */
+    static final Comparator<BlockData> NEAREST_FIRST = new Comparator<BlockData>() {
+        @Override
+        public int compare(BlockData a, BlockData b) {
+            return Double.compare(a.getDistance(), b.getDistance());
+        }
+    };
+
     AIHelper helper;
 
     public GetBlocks(AIHelper helper){
@@ -20,14 +38,50 @@ public class GetBlocks {
     }
 
     public ArrayList<BlockData> doRaytrace(){
-        return findBlocksInSphere(20);
+        Minecraft mc = helper.getMinecraft();
+        if (mc.thePlayer == null) {
+            return null;
+        }
+        return doRaytrace(mc.thePlayer.posX, mc.thePlayer.posY + mc.thePlayer.getEyeHeight(), mc.thePlayer.posZ);
+    }
+
+    /**
+     * Casts the observation rays from the given eye position. Block positions stay relative to the player.
+     */
+    public ArrayList<BlockData> doRaytrace(double eyeX, double eyeY, double eyeZ){
+        return USE_VANILLA ? doRaytraceVanilla(eyeX, eyeY, eyeZ) : castBlocksInSphere(eyeX, eyeY, eyeZ, MAX_DISTANCE);
+    }
+
+    /**
+     * The old ray trace through World.rayTraceBlocks, kept to check the raycaster against.
+     */
+    public ArrayList<BlockData> doRaytraceVanilla(double eyeX, double eyeY, double eyeZ){
+        return findBlocksInSphere(new Vec3(eyeX, eyeY, eyeZ), MAX_DISTANCE);
+    }
+
+    /**
+     * The cache behind {@link #doRaytrace()}, for its counters.
+     */
+    public static BlockObservationCache getCache() {
+        return CACHE;
+    }
+
+    // Same rays as findBlocksInSphere, walked by BlockRaycaster and only recast when something changed.
+    // Blocks come nearest first.
+    private ArrayList<BlockData> castBlocksInSphere(double eyeX, double eyeY, double eyeZ, double maxDistance) {
+        Minecraft mc = helper.getMinecraft();
+        if (mc.thePlayer == null || mc.theWorld == null || helper.getWorld() == null) {
+            return null;
+        }
+        return CACHE.get(helper.getWorld(), helper.getNetworkHelper(), eyeX, eyeY, eyeZ,
+                (int) mc.thePlayer.posX, (int) mc.thePlayer.posY, (int) mc.thePlayer.posZ, maxDistance);
     }
     //90 -> 360 60 -> 45 40 -> 20 30 -> 15 20 ->15 10 -> 15 0-> 15 2(1 + 8 + 18 + 24 * 3) + 24
     //max blocks is 234
 
 
     // Find blocks within a spherical radius of the player
-private ArrayList<BlockData> findBlocksInSphere(double maxDistance) {
+private ArrayList<BlockData> findBlocksInSphere(Vec3 playerEyePos, double maxDistance) {
     Minecraft mc = helper.getMinecraft();
     if (mc.thePlayer == null || mc.theWorld == null) {
         return null; // Ensure the player and world exist
@@ -35,8 +89,6 @@ private ArrayList<BlockData> findBlocksInSphere(double maxDistance) {
 
     ArrayList<BlockData> blocks = new ArrayList<BlockData>();
 
-    Vec3 playerEyePos = mc.thePlayer.getPositionEyes(1.0F);
-
     // Iterate over spherical coordinates and add blocks found
     blocks.addAll(getBlockFromVector(360 , -90, maxDistance, playerEyePos, mc));
     blocks.addAll(getBlockFromVector(45 , -60, maxDistance, playerEyePos, mc));
@@ -54,7 +106,9 @@ private ArrayList<BlockData> findBlocksInSphere(double maxDistance) {
 
     // Return unique blocks by using a HashSet to remove duplicates
     Set<BlockData> uniqueBlocks = new HashSet<BlockData>(blocks);
-    return new ArrayList<BlockData>(uniqueBlocks);
+    ArrayList<BlockData> sorted = new ArrayList<BlockData>(uniqueBlocks);
+    Collections.sort(sorted, NEAREST_FIRST);
+    return sorted;
 }
 
 // Ray trace in spherical coordinates (thetaStep, phi, maxDistance)
@@ -84,7 +138,8 @@ private ArrayList<BlockData> getBlockFromVector(double thetaStep, double phi, do
               hitPos.getZ() - (int) mc.thePlayer.posZ, 
                 result.hitVec.distanceTo(playerEyePos),
               true, 
-              hitBlock.getLocalizedName()));
+              hitBlock.getLocalizedName(),
+              Block.getIdFromBlock(hitBlock)));
         }
         theta += thetaStep;
     }
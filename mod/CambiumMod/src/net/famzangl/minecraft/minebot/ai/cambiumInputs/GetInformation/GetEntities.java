@@ -8,9 +8,7 @@ import net.minecraft.client.Minecraft;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityLivingBase;
 import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.entity.projectile.EntityEgg;
 import net.minecraft.entity.projectile.EntityFishHook;
-import net.minecraft.entity.projectile.EntitySnowball;
 import net.minecraft.entity.projectile.EntityThrowable;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.ItemSword;
@@ -23,13 +21,19 @@ public class GetEntities {
     }
 
     public ArrayList<EntityData> getEntities() {
-        ArrayList<EntityData> entityDataList = new ArrayList<EntityData>();
+        return getEntities(Integer.MAX_VALUE);
+    }
 
-        for (int i = 0; i < mc.theWorld.loadedEntityList.size(); i++) {
-            Entity entity = (Entity) mc.theWorld.loadedEntityList.get(i);
+    /**
+     * @return The maxEntities nearest relevant entities, nearest first.
+     */
+    public ArrayList<EntityData> getEntities(int maxEntities) {
+        EntitySnapshot snapshot = EntitySnapshot.forTick(mc);
+        int count = snapshot.nearest(EntitySnapshot.RELEVANT, false, Double.POSITIVE_INFINITY, maxEntities);
+        ArrayList<EntityData> entityDataList = new ArrayList<EntityData>(count);
 
-            // Skip null entities and the player
-            if (entity == null || entity == mc.thePlayer) continue;
+        for (int i = 0; i < count; i++) {
+            Entity entity = snapshot.getResult(i);
 
             // Determine if the entity is a projectile
             boolean isProjectile = entity instanceof EntityThrowable || entity instanceof EntityFishHook;
@@ -37,9 +41,6 @@ public class GetEntities {
             // Check if the entity is a player
             boolean isPlayer = entity instanceof EntityPlayer;
 
-            //Remove particles
-            boolean relevent = entity instanceof EntityLivingBase || isProjectile || isPlayer; 
-            if(!relevent) continue;
             // Get health and armor
             double health = entity instanceof EntityLivingBase ? ((EntityLivingBase) entity).getHealth() : 0;
             double armor = entity instanceof EntityLivingBase ? ((EntityLivingBase) entity).getTotalArmorValue() : 0;
@@ -0,0 +1,137 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs;
+
+import java.lang.reflect.Method;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.util.Timer;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.ClientTickEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.fml.relauncher.ReflectionHelper;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Client ticks without rendering for the bot containers, on with cambium.headless=true.
+ *
+ * The world and the GUI are not rendered at all (Minecraft.skipRenderWorld, set again every tick because opening a
+ * screen clears it). HeadlessMc's Display.update() would still sleep a fixed hmc.lwjgl.update_sleep (10) ms per
+ * frame, so the game loop spins about 100 times a second for 20 ticks. Instead we tell HeadlessMc's TickPacer when
+ * the timer has the next tick ready and Display.update() blocks until then: one loop iteration per tick.
+ *
+ * In lockstep the server ticks as soon as every bot acked (back to back), so the client should not wait for the next
+ * 50 ms either: a TICK from the server (with server inference its ACTION) wakes the loop up, and at the end of that
+ * frame the timer is pushed to run the client tick for it right away. The wall clock ticks keep running in between,
+ * as before.
+ *
+ * Without a HeadlessMc that has the TickPacer only rendering is skipped.
+ */
+public class HeadlessTicks {
+    private static final Logger LOGGER = LogManager.getLogger(HeadlessTicks.class);
+    private static final String PACER = "me.earth.headlessmc.lwjgl.redirections.TickPacer";
+    private static final long TICK_NANOS = 50000000L;
+    // The timer counts whole milliseconds, so wake up a bit late rather than a frame too early
+    private static final long MARGIN_NANOS = 1000000L;
+    private static final HeadlessTicks INSTANCE = new HeadlessTicks();
+
+    private final boolean enabled = Boolean.getBoolean("cambium.headless");
+    private Timer timer;
+    // HeadlessMc's TickPacer, null if there is none
+    private volatile Object pacer;
+    private Method nextTickAt;
+    private Method wakeUp;
+    // Client thread only: when the first tick of this loop iteration started, -1 before it
+    private long frameStart = -1;
+
+    private HeadlessTicks() {
+    }
+
+    public static HeadlessTicks getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Call once during mod initialization.
+     */
+    public void initialize() {
+        if (!enabled) {
+            return;
+        }
+        Minecraft minecraft = Minecraft.getMinecraft();
+        minecraft.skipRenderWorld = true;
+        timer = ReflectionHelper.getPrivateValue(Minecraft.class, minecraft, "timer", "field_71428_T");
+        try {
+            Class<?> type = Class.forName(PACER);
+            Object instance = type.getField("INSTANCE").get(null);
+            nextTickAt = type.getMethod("nextTickAt", long.class);
+            wakeUp = type.getMethod("wakeUp");
+            type.getMethod("setFrameHook", Runnable.class).invoke(instance, new Runnable() {
+                @Override
+                public void run() {
+                    onFrame();
+                }
+            });
+            pacer = instance;
+            LOGGER.info("Headless: not rendering, game loop paced by client ticks");
+        } catch (ClassNotFoundException e) {
+            LOGGER.info("Headless: not rendering, no HeadlessMc TickPacer to pace the game loop");
+        } catch (ReflectiveOperationException e) {
+            LOGGER.warn("Headless: not rendering, could not use the HeadlessMc TickPacer", e);
+        }
+        FMLCommonHandler.instance().bus().register(this);
+    }
+
+    @SubscribeEvent
+    public void onClientTick(ClientTickEvent event) {
+        if (event.phase == Phase.START) {
+            if (frameStart < 0) {
+                frameStart = System.nanoTime();
+            }
+            return;
+        }
+        Minecraft.getMinecraft().skipRenderWorld = true;
+        if (pacer == null) {
+            return;
+        }
+        ServerChannel channel = ServerChannel.getInstance();
+        long next;
+        if (channel.isLockstep() && channel.isTickPending()) {
+            next = System.nanoTime();
+        } else {
+            // The timer was updated right before the first tick of this frame, this is what it still needs
+            next = frameStart + (long) ((1 - timer.elapsedPartialTicks) * TICK_NANOS) + MARGIN_NANOS;
+        }
+        invoke(nextTickAt, next);
+    }
+
+    /**
+     * Ends the wait for the next client tick, from any thread. Used in lockstep when the server announced a tick.
+     */
+    public void wakeUp() {
+        if (pacer != null) {
+            invoke(wakeUp);
+        }
+    }
+
+    /**
+     * At the end of Display.update(), right before the timer is updated for the next frame.
+     */
+    private void onFrame() {
+        frameStart = -1;
+        ServerChannel channel = ServerChannel.getInstance();
+        if (channel.isLockstep() && channel.isTickPending()) {
+            timer.elapsedPartialTicks = Math.max(timer.elapsedPartialTicks, 1);
+        }
+    }
+
+    private void invoke(Method method, Object... args) {
+        try {
+            method.invoke(pacer, args);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.warn("Headless: the TickPacer failed, pacing by frames again", e);
+            pacer = null;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.ActionData;
+
+/**
+ * Runs prediction requests on a background thread so the client thread never waits for the backend
+ * longer than the configured deadline.
+ *
+ * At most one request is in flight. Every tick the controller first {@link #poll}s for the answer to the
+ * previous observation, then {@link #submit}s the current one if the worker is free. So the action applied
+ * on tick N normally belongs to the observation of tick N-1. If no usable answer is there in time,
+ * {@link #applyLatePolicy} decides what to do with the previous action.
+ *
+ * All methods except the submitted request itself are meant to be called from the client thread.
+ */
+public class InferencePipeline {
+
+    /**
+     * What to do on a tick without a fresh action.
+     */
+    public enum LatePolicy {
+        /** Keep applying the last received action. */
+        REUSE_LAST,
+        /** Release all keys and stop turning. */
+        NO_OP,
+        /** Reuse the last action for up to maxRepeats ticks, then fall back to a no-op. */
+        REPEAT
+    }
+
+    private long deadlineMillis = Long.getLong("cambium.inference.deadline", 5L);
+    private LatePolicy latePolicy = ConfigValues.parseEnum("-Dcambium.inference.latePolicy",
+            System.getProperty("cambium.inference.latePolicy"), LatePolicy.REPEAT);
+    private int maxRepeats = Integer.getInteger("cambium.inference.maxRepeats", 3);
+    //Answers to observations older than this many ticks are thrown away
+    private int maxStaleTicks = Integer.getInteger("cambium.inference.maxStaleTicks", 4);
+
+    private ExecutorService worker;
+    private Future<Boolean> inFlight;
+    private int inFlightTick;
+    //Written by the worker, only read after inFlight completed
+    private final ActionData received = new ActionData();
+    private int repeats;
+
+    private long submitted;
+    private long applied;
+    private long late;
+    private long dropped;
+    private long stale;
+    private long failed;
+    private long reused;
+    private long noOps;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+    private long inFlightStart;
+
+    /**
+     * The action the submitted request writes its result to.
+     */
+    public ActionData getReceivedAction() {
+        return received;
+    }
+
+    public boolean isBusy() {
+        return inFlight != null;
+    }
+
+    /**
+     * Starts a request on the worker. The request must write its answer to {@link #getReceivedAction()} and return
+     * true on success. Only call this if the pipeline is not {@link #isBusy()}.
+     */
+    public void submit(Callable<Boolean> request, int tick) {
+        if (inFlight != null) {
+            throw new IllegalStateException("A request is already in flight");
+        }
+        if (worker == null) {
+            worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Cambium inference");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        inFlight = worker.submit(request);
+        inFlightTick = tick;
+        inFlightStart = System.nanoTime();
+        submitted++;
+    }
+
+    /**
+     * Counts an observation that was not sent because the previous request is still running.
+     */
+    public void dropObservation() {
+        dropped++;
+    }
+
+    /**
+     * Waits up to the deadline for the request in flight.
+     * @return true if a fresh action was copied into action.
+     */
+    public boolean poll(int tick, ActionData action) {
+        if (inFlight == null) {
+            return false;
+        }
+        Boolean ok;
+        try {
+            ok = deadlineMillis > 0 ? inFlight.get(deadlineMillis, TimeUnit.MILLISECONDS) : (inFlight.isDone() ? inFlight.get() : null);
+        } catch (TimeoutException e) {
+            ok = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ok = null;
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            ok = Boolean.FALSE;
+        }
+
+        if (ok == null) {
+            late++;
+            return false;
+        }
+
+        inFlight = null;
+        long latency = System.nanoTime() - inFlightStart;
+        totalLatencyNanos += latency;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        if (!ok) {
+            failed++;
+            return false;
+        }
+        if (tick - inFlightTick > maxStaleTicks) {
+            stale++;
+            return false;
+        }
+        action.copyFrom(received);
+        applied++;
+        repeats = 0;
+        return true;
+    }
+
+    /**
+     * Counts a fresh action that did not come through this pipeline (server inference), so the late policy starts
+     * over.
+     */
+    public void actionArrived() {
+        applied++;
+        repeats = 0;
+    }
+
+    /**
+     * Updates action (the action applied last tick) according to the late policy.
+     */
+    public void applyLatePolicy(ActionData action) {
+        switch (latePolicy) {
+            case REUSE_LAST:
+                reused++;
+                break;
+            case REPEAT:
+                if (repeats < maxRepeats) {
+                    repeats++;
+                    reused++;
+                    break;
+                }
+                action.clear();
+                noOps++;
+                break;
+            default:
+                action.clear();
+                noOps++;
+                break;
+        }
+    }
+
+    /**
+     * Forgets the request in flight and stops the worker thread. A later {@link #submit} starts a new one.
+     */
+    public void shutdown() {
+        if (inFlight != null) {
+            inFlight.cancel(true);
+            inFlight = null;
+        }
+        if (worker != null) {
+            worker.shutdownNow();
+            worker = null;
+        }
+        repeats = 0;
+    }
+
+    public void resetCounters() {
+        submitted = 0;
+        applied = 0;
+        late = 0;
+        dropped = 0;
+        stale = 0;
+        failed = 0;
+        reused = 0;
+        noOps = 0;
+        totalLatencyNanos = 0;
+        maxLatencyNanos = 0;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * @param deadlineMillis How long the client thread may wait for an answer each tick. 0 never waits.
+     */
+    public void setDeadlineMillis(long deadlineMillis) {
+        this.deadlineMillis = Math.max(0, deadlineMillis);
+    }
+
+    public LatePolicy getLatePolicy() {
+        return latePolicy;
+    }
+
+    public void setLatePolicy(LatePolicy latePolicy) {
+        this.latePolicy = latePolicy;
+    }
+
+    public void setMaxRepeats(int maxRepeats) {
+        this.maxRepeats = maxRepeats;
+    }
+
+    public void setMaxStaleTicks(int maxStaleTicks) {
+        this.maxStaleTicks = maxStaleTicks;
+    }
+
+    public long getLate() {
+        return late;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public long getReused() {
+        return reused;
+    }
+
+    public String getStatsLine() {
+        long answered = applied + stale + failed;
+        return "sent " + submitted + ", applied " + applied + ", late " + late + ", dropped " + dropped
+                + ", stale " + stale + ", failed " + failed + ", reused " + reused + ", no-op " + noOps
+                + ", latency avg " + (answered == 0 ? 0 : totalLatencyNanos / answered / 1000000.0) + " ms max "
+                + (maxLatencyNanos / 1000000.0) + " ms";
+    }
+
+    public String getConfigLine() {
+        return "deadline " + deadlineMillis + " ms, late policy " + latePolicy
+                + (latePolicy == LatePolicy.REPEAT ? " (" + maxRepeats + ")" : "") + ", max stale " + maxStaleTicks + " ticks";
+    }
+}
@@ -0,0 +1,117 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-bucket latency histogram in microseconds that any thread can record to without locking.
+ *
+ * Values below 16 us get a bucket each, above that every power of two is split into 8 buckets, so a percentile is
+ * off by at most 12.5%. Values above ~30 minutes end up in the last bucket.
+ */
+public class LatencyHistogram {
+    private static final int LINEAR = 16;
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 31;
+    public static final int BUCKETS = LINEAR + (MAX_EXPONENT - 4 + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMicros(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        counts.incrementAndGet(bucketOf(micros));
+        totalMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            // Retry
+        }
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return The largest value (in us) that falls into the bucket.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR) / SUB_BUCKETS + 4;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Copies the bucket counts. Counts recorded while copying may or may not be included.
+     */
+    public long[] snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros.get();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    public static long count(long[] buckets) {
+        long count = 0;
+        for (long c : buckets) {
+            count += c;
+        }
+        return count;
+    }
+
+    /**
+     * @param fraction Between 0 and 1, e.g. 0.99
+     * @return The percentile in us from a {@link #snapshot()}, 0 if it is empty.
+     */
+    public static long percentile(long[] buckets, double fraction) {
+        long count = count(buckets);
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * fraction));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(buckets.length - 1);
+    }
+}
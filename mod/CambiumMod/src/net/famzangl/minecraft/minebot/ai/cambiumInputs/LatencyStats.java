@@ -0,0 +1,194 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Where the time of an RL controller tick goes, one {@link LatencyHistogram} per stage.
+ *
+ * Stages are recorded from the client thread and the inference worker. Every cambium.latency.dumpInterval seconds
+ * (60, 0 turns it off) the "Cambium latency" thread appends the counts and percentiles of the last interval to
+ * cambium.latency.file (cambium-latency.csv) as
+ * <pre>
+ * time_ms,stage,count,mean_us,p50_us,p90_us,p99_us,max_us
+ * </pre>
+ * The max column is the maximum since the last reset, the others only cover the interval.
+ */
+public class LatencyStats {
+    public enum Stage {
+        /** Time between two controller ticks. */
+        TICK_INTERVAL("tick interval"),
+        /** Collecting player, entity, block and inventory data. */
+        OBSERVE("observe"),
+        /** Encoding the request (binary frame or JSON). */
+        SERIALIZE("serialize"),
+        /** Waiting for the backend, from sending the request to having the response bytes. */
+        NETWORK("network"),
+        /** Decoding the action response. */
+        DESERIALIZE("deserialize"),
+        /** Running the local policy (LOCAL inference). */
+        POLICY("local policy"),
+        /** Applying the action to the controls. */
+        EXECUTE("execute"),
+        /** From the start of the tick whose observation the action answers to applying that action. */
+        TICK_TO_ACTION("tick to action");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final LatencyStats INSTANCE = new LatencyStats();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private final File file = new File(System.getProperty("cambium.latency.file", "cambium-latency.csv"));
+    private final long dumpIntervalMillis = Long.getLong("cambium.latency.dumpInterval", 60L) * 1000L;
+    // Counts and totals at the last dump, only touched while holding this
+    private final long[][] dumped = new long[histograms.length][];
+    private final long[] lastTotals = new long[histograms.length];
+    private volatile Thread dumper;
+
+    private LatencyStats() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+            dumped[i] = new long[LatencyHistogram.BUCKETS];
+        }
+    }
+
+    public static LatencyStats getInstance() {
+        return INSTANCE;
+    }
+
+    public void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].recordNanos(nanos);
+        if (dumper == null) {
+            startDumper();
+        }
+    }
+
+    public LatencyHistogram get(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    private synchronized void startDumper() {
+        if (dumper != null || dumpIntervalMillis <= 0) {
+            return;
+        }
+        dumper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        Thread.sleep(dumpIntervalMillis);
+                        dump();
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }, "Cambium latency");
+        dumper.setDaemon(true);
+        dumper.start();
+    }
+
+    /**
+     * Appends the stages that saw new values since the last dump to the file.
+     * @return The file written to.
+     */
+    public synchronized File dump() throws IOException {
+        boolean header = !file.exists() || file.length() == 0;
+        StringBuilder lines = new StringBuilder();
+        if (header) {
+            lines.append("time_ms,stage,count,mean_us,p50_us,p90_us,p99_us,max_us\n");
+        }
+        long now = System.currentTimeMillis();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            long totalMicros = histogram.getTotalMicros();
+            long[] counts = histogram.snapshot();
+            long[] last = dumped[stage.ordinal()];
+            long[] interval = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                interval[i] = Math.max(0, counts[i] - last[i]);
+            }
+            dumped[stage.ordinal()] = counts;
+            long count = LatencyHistogram.count(interval);
+            if (count == 0) {
+                continue;
+            }
+            long intervalMicros = totalMicros - lastTotals[stage.ordinal()];
+            lastTotals[stage.ordinal()] = totalMicros;
+            lines.append(now).append(',').append(stage.name().toLowerCase()).append(',').append(count).append(',')
+                    .append(intervalMicros / count).append(',')
+                    .append(percentile(interval, 0.5, histogram)).append(',')
+                    .append(percentile(interval, 0.9, histogram)).append(',')
+                    .append(percentile(interval, 0.99, histogram)).append(',')
+                    .append(histogram.getMaxMicros()).append('\n');
+        }
+        Writer writer = new FileWriter(file, true);
+        try {
+            writer.write(lines.toString());
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * @return One line per stage that has values, with count, mean and percentiles since the last reset.
+     */
+    public String[] getStatsLines() {
+        Stage[] stages = Stage.values();
+        int used = 0;
+        String[] lines = new String[stages.length];
+        for (Stage stage : stages) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            long[] counts = histogram.snapshot();
+            long count = LatencyHistogram.count(counts);
+            if (count == 0) {
+                continue;
+            }
+            lines[used++] = stage.getLabel() + ": " + count + "x, mean " + formatMicros(histogram.getTotalMicros() / count)
+                    + ", p50 " + formatMicros(percentile(counts, 0.5, histogram))
+                    + ", p90 " + formatMicros(percentile(counts, 0.9, histogram))
+                    + ", p99 " + formatMicros(percentile(counts, 0.99, histogram))
+                    + ", max " + formatMicros(histogram.getMaxMicros());
+        }
+        String[] result = new String[used];
+        System.arraycopy(lines, 0, result, 0, used);
+        return result;
+    }
+
+    /**
+     * Bucket upper bounds can be above the largest value seen, so they are capped at the max.
+     */
+    private static long percentile(long[] counts, double fraction, LatencyHistogram histogram) {
+        return Math.min(LatencyHistogram.percentile(counts, fraction), histogram.getMaxMicros());
+    }
+
+    private static String formatMicros(long micros) {
+        return micros < 10000 ? micros + "us" : String.format("%.1fms", micros / 1000.0);
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i].reset();
+            dumped[i] = new long[LatencyHistogram.BUCKETS];
+            lastTotals[i] = 0;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,245 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.ActionData;
+
+/**
+ * Runs the FastRLAgent policy (backend/fast_rl_model.py) inside the client.
+ *
+ * The network is two shared ReLU layers followed by one linear head per action component
+ * (movement, jump, attack, yaw, pitch). Weights come from GET /model-weights-v{version} in the flat
+ * format written by FastRLAgent.export_weights:
+ * <pre>
+ * int32   magic 'CBWT'
+ * uint16  format version
+ * uint16  layer count (2 shared + 5 heads)
+ * int32   revision
+ * per layer: int32 inputs, int32 outputs, float32[outputs * inputs] weights (one row per output), float32[outputs] bias
+ * </pre>
+ *
+ * {@link #load} builds a complete new weight set and swaps it in with one reference write, so the
+ * client thread always runs a consistent network, also while the backend publishes a new revision.
+ * The activation buffers are allocated once; {@link #act} must only be called from one thread.
+ */
+public class LocalPolicy {
+    public static final int WEIGHTS_MAGIC = 0x54574243; // "CBWT" read little-endian
+    public static final int WEIGHTS_FORMAT_VERSION = 1;
+
+    public static final int HEAD_MOVEMENT = 0;
+    public static final int HEAD_JUMP = 1;
+    public static final int HEAD_ATTACK = 2;
+    public static final int HEAD_YAW = 3;
+    public static final int HEAD_PITCH = 4;
+    public static final int HEADS = 5;
+    private static final int SHARED_LAYERS = 2;
+
+    /**
+     * One linear layer, weights stored row major (outputs x inputs) like torch.nn.Linear.
+     */
+    private static final class Layer {
+        final int inputs;
+        final int outputs;
+        final float[] weights;
+        final float[] bias;
+
+        Layer(int inputs, int outputs, float[] weights, float[] bias) {
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.weights = weights;
+            this.bias = bias;
+        }
+
+        void forward(float[] in, float[] out, int outOffset, boolean relu) {
+            for (int o = 0; o < outputs; o++) {
+                float sum = bias[o];
+                int row = o * inputs;
+                for (int i = 0; i < inputs; i++) {
+                    sum += weights[row + i] * in[i];
+                }
+                out[outOffset + o] = relu && sum < 0 ? 0 : sum;
+            }
+        }
+    }
+
+    /**
+     * An immutable weight set. Replaced as a whole on every load.
+     */
+    private static final class Weights {
+        final int revision;
+        final Layer[] layers;
+        final int[] headOffsets = new int[HEADS];
+        final int logitCount;
+
+        Weights(int revision, Layer[] layers) {
+            this.revision = revision;
+            this.layers = layers;
+            int offset = 0;
+            for (int h = 0; h < HEADS; h++) {
+                headOffsets[h] = offset;
+                offset += layers[SHARED_LAYERS + h].outputs;
+            }
+            logitCount = offset;
+        }
+    }
+
+    private final AtomicReference<Weights> weights = new AtomicReference<Weights>();
+    private final Random random = new Random();
+    private boolean deterministic = Boolean.getBoolean("cambium.local.deterministic");
+
+    // Activation buffers, grown when a weight set needs more room
+    private float[] hidden1 = new float[256];
+    private float[] hidden2 = new float[256];
+    private float[] logits = new float[64];
+    private final int[] bins = new int[HEADS];
+
+    /**
+     * Parses a weight file and makes it the active network.
+     * @throws IllegalArgumentException if the file is malformed or does not have the expected shape.
+     */
+    public void load(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int magic = in.getInt();
+        if (magic != WEIGHTS_MAGIC) {
+            throw new IllegalArgumentException("Bad weights magic 0x" + Integer.toHexString(magic));
+        }
+        int version = in.getShort() & 0xffff;
+        if (version != WEIGHTS_FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported weights format " + version);
+        }
+        int layerCount = in.getShort() & 0xffff;
+        if (layerCount != SHARED_LAYERS + HEADS) {
+            throw new IllegalArgumentException("Expected " + (SHARED_LAYERS + HEADS) + " layers, got " + layerCount);
+        }
+        int revision = in.getInt();
+
+        Layer[] layers = new Layer[layerCount];
+        for (int l = 0; l < layerCount; l++) {
+            int inputs = in.getInt();
+            int outputs = in.getInt();
+            if (inputs <= 0 || outputs <= 0 || (long) inputs * outputs * 4 > in.remaining()) {
+                throw new IllegalArgumentException("Bad shape " + outputs + "x" + inputs + " for layer " + l);
+            }
+            float[] w = new float[inputs * outputs];
+            in.asFloatBuffer().get(w);
+            in.position(in.position() + w.length * 4);
+            float[] b = new float[outputs];
+            in.asFloatBuffer().get(b);
+            in.position(in.position() + b.length * 4);
+            layers[l] = new Layer(inputs, outputs, w, b);
+        }
+
+        if (layers[0].inputs != ObservationVector.SIZE) {
+            throw new IllegalArgumentException("Policy expects " + layers[0].inputs + " inputs, observations have " + ObservationVector.SIZE);
+        }
+        for (int l = 1; l < layerCount; l++) {
+            int expected = layers[l < SHARED_LAYERS ? l - 1 : SHARED_LAYERS - 1].outputs;
+            if (layers[l].inputs != expected) {
+                throw new IllegalArgumentException("Layer " + l + " expects " + layers[l].inputs + " inputs, got " + expected);
+            }
+        }
+
+        Weights next = new Weights(revision, layers);
+        ensureBuffers(next);
+        weights.set(next);
+    }
+
+    private synchronized void ensureBuffers(Weights w) {
+        if (hidden1.length < w.layers[0].outputs) {
+            hidden1 = new float[w.layers[0].outputs];
+        }
+        if (hidden2.length < w.layers[1].outputs) {
+            hidden2 = new float[w.layers[1].outputs];
+        }
+        if (logits.length < w.logitCount) {
+            logits = new float[w.logitCount];
+        }
+    }
+
+    public boolean isLoaded() {
+        return weights.get() != null;
+    }
+
+    /**
+     * @return the revision of the active weights, -1 if none are loaded.
+     */
+    public int getRevision() {
+        Weights w = weights.get();
+        return w == null ? -1 : w.revision;
+    }
+
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * Runs the policy on an observation and writes the action in the format of
+     * FastRLAgent._actions_dict_to_minecraft to out.
+     * @return false if no weights are loaded.
+     */
+    public boolean act(float[] observation, ActionSpaceConfig actionConfig, ActionData out) {
+        Weights w = weights.get();
+        if (w == null) {
+            return false;
+        }
+        float[] h1;
+        float[] h2;
+        float[] l;
+        synchronized (this) {
+            h1 = hidden1;
+            h2 = hidden2;
+            l = logits;
+        }
+        w.layers[0].forward(observation, h1, 0, true);
+        w.layers[1].forward(h1, h2, 0, true);
+        for (int h = 0; h < HEADS; h++) {
+            Layer head = w.layers[SHARED_LAYERS + h];
+            head.forward(h2, l, w.headOffsets[h], false);
+            bins[h] = deterministic ? argmax(l, w.headOffsets[h], head.outputs) : sample(l, w.headOffsets[h], head.outputs);
+        }
+
+        float yaw = (bins[HEAD_YAW] / (float) actionConfig.yawBins) * 45f - 22.5f;
+        float pitch = (bins[HEAD_PITCH] / (float) (actionConfig.pitchBins - 1)) * 45f - 22.5f;
+        out.set(out.getSequence(), bins[HEAD_MOVEMENT], bins[HEAD_JUMP] == 1, false, false, bins[HEAD_ATTACK] == 1, false, -1, yaw, pitch, Double.NaN);
+        return true;
+    }
+
+    /**
+     * The bins chosen by the last {@link #act} call, indexed by HEAD_*. Reported back to the backend for training.
+     */
+    public int[] getLastBins() {
+        return bins;
+    }
+
+    private static int argmax(float[] values, int offset, int count) {
+        int best = 0;
+        for (int i = 1; i < count; i++) {
+            if (values[offset + i] > values[offset + best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Samples from softmax(values[offset .. offset + count]) without allocating.
+     */
+    private int sample(float[] values, int offset, int count) {
+        float max = values[offset + argmax(values, offset, count)];
+        float total = 0;
+        for (int i = 0; i < count; i++) {
+            total += (float) Math.exp(values[offset + i] - max);
+        }
+        float r = random.nextFloat() * total;
+        for (int i = 0; i < count; i++) {
+            r -= (float) Math.exp(values[offset + i] - max);
+            if (r <= 0) {
+                return i;
+            }
+        }
+        return count - 1;
+    }
+}
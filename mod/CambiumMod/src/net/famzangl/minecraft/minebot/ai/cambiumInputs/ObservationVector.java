@@ -0,0 +1,113 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.BlockData;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.EntityData;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.InventoryData;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.PlayerData;
+
+/**
+ * The normalized 194 feature observation described in MODEL_SPECIFICATION.md.
+ * Layout and scaling are the same as FastRLAgent._observation_to_vector_fast in the backend,
+ * so a vector built here can be fed to the model without going through JSON.
+ * The arrays are allocated once and overwritten by every {@link #update} call.
+ */
+public class ObservationVector {
+    public static final int PLAYER_FEATURES = 7;
+    public static final int ENTITY_SLOTS = 10;
+    public static final int ENTITY_FEATURES = 6;
+    public static final int BLOCK_SLOTS = 20;
+    public static final int BLOCK_FEATURES = 5;
+    public static final int INVENTORY_SLOTS = 9;
+    public static final int INVENTORY_FEATURES = 3;
+
+    public static final int PLAYER_OFFSET = 0;
+    public static final int ENTITY_OFFSET = PLAYER_OFFSET + PLAYER_FEATURES;
+    public static final int BLOCK_OFFSET = ENTITY_OFFSET + ENTITY_SLOTS * ENTITY_FEATURES;
+    public static final int INVENTORY_OFFSET = BLOCK_OFFSET + BLOCK_SLOTS * BLOCK_FEATURES;
+    public static final int SIZE = INVENTORY_OFFSET + INVENTORY_SLOTS * INVENTORY_FEATURES;
+
+    private final float[] features = new float[SIZE];
+    //Block ids for the BLOCK_SLOTS block features, 0 (air) for empty slots
+    private final short[] blockIds = new short[BLOCK_SLOTS];
+
+    public float[] getFeatures() {
+        return features;
+    }
+
+    public short[] getBlockIds() {
+        return blockIds;
+    }
+
+    public void clear() {
+        Arrays.fill(features, 0f);
+        Arrays.fill(blockIds, (short) 0);
+    }
+
+    /**
+     * Rebuilds the vector from the collected observation data. Any argument may be null, its section stays zero.
+     */
+    public void update(ObservationSpaceConfig config, PlayerData player, List<EntityData> entities, List<BlockData> blocks, List<InventoryData> inventory) {
+        clear();
+
+        if (config.includePlayerData && player != null) {
+            if (config.includeHealth) {
+                features[PLAYER_OFFSET] = (float) (player.getHealth() / 20.0);
+            }
+            if (config.includePosition) {
+                features[PLAYER_OFFSET + 1] = (float) (player.getPlayerX() / 100.0);
+                features[PLAYER_OFFSET + 2] = (float) (player.getPlayerY() / 100.0);
+                features[PLAYER_OFFSET + 3] = (float) (player.getPlayerZ() / 100.0);
+            }
+            if (config.includeRotation) {
+                features[PLAYER_OFFSET + 4] = (float) (player.getPlayerYaw() / 180.0);
+                features[PLAYER_OFFSET + 5] = (float) (player.getPlayerPitch() / 90.0);
+            }
+            if (config.includeArmor) {
+                features[PLAYER_OFFSET + 6] = (float) (player.getAmror() / 20.0);
+            }
+        }
+
+        if (config.includeEntityData && entities != null) {
+            int count = Math.min(entities.size(), ENTITY_SLOTS);
+            for (int i = 0; i < count; i++) {
+                EntityData entity = entities.get(i);
+                int base = ENTITY_OFFSET + i * ENTITY_FEATURES;
+                features[base] = entity.isPlayer() ? 1f : 0f;
+                features[base + 1] = entity.isProjectile() ? 1f : 0f;
+                features[base + 2] = (float) (entity.getHealth() / 20.0);
+                features[base + 3] = (float) (entity.getRelativeX() / 10.0);
+                features[base + 4] = (float) (entity.getRelativeY() / 10.0);
+                features[base + 5] = (float) (entity.getRelativeZ() / 10.0);
+            }
+        }
+
+        if (config.includeBlockData && blocks != null) {
+            int count = Math.min(blocks.size(), BLOCK_SLOTS);
+            for (int i = 0; i < count; i++) {
+                BlockData block = blocks.get(i);
+                int base = BLOCK_OFFSET + i * BLOCK_FEATURES;
+                features[base] = block.getX() / 20f;
+                features[base + 1] = block.getY() / 20f;
+                features[base + 2] = block.getZ() / 20f;
+                features[base + 3] = (float) (block.getDistance() / 20.0);
+                features[base + 4] = block.isSolid() ? 1f : 0f;
+                blockIds[i] = (short) block.getBlockId();
+            }
+        }
+
+        //The backend uses the first 9 listed stacks, not slots 0-8, so we do the same here
+        if (config.includeInventoryData && inventory != null) {
+            int count = Math.min(inventory.size(), INVENTORY_SLOTS);
+            for (int i = 0; i < count; i++) {
+                InventoryData inv = inventory.get(i);
+                int base = INVENTORY_OFFSET + i * INVENTORY_FEATURES;
+                features[base] = inv.getCount() / 64f;
+                features[base + 1] = inv.isWeapon() ? 1f : 0f;
+                features[base + 2] = (float) (inv.getWeaponDamage() / 10.0);
+            }
+        }
+    }
+}
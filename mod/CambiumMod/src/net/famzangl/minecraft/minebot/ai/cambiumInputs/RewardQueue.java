@@ -0,0 +1,248 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import net.famzangl.minecraft.minebot.ai.command.AIChatController;
+
+/**
+ * Collects reward events and sends them to /add-reward/ in batches, so the client thread never waits for the backend.
+ *
+ * {@link #append} only adds to a lock-free queue. Events of the same tick, type and opponent are merged when the
+ * queue is drained: damage amounts are summed, other events keep the largest amount. The queue is drained
+ *
+ * <ul>
+ * <li>by the prediction request of RLControllerStrategy, which sends the batch along with the observation
+ * ({@link #drainForRequest}), or</li>
+ * <li>by the "Cambium rewards" sender thread, once the oldest event waited longer than the piggyback window
+ * (cambium.reward.window, 100 ms). This covers the binary HTTP path and the time no strategy runs.</li>
+ * </ul>
+ *
+ * The buffer holds cambium.reward.capacity (1024) events. When it is full, cambium.reward.overflow decides whether
+ * the oldest (drop_oldest, default) or the new event (drop_newest) is thrown away.
+ */
+public class RewardQueue {
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST
+    }
+
+    private static final class Event {
+        final String botName;
+        final long tick;
+        final long created = System.nanoTime();
+        final JsonObject event;
+        final JsonObject currentState;
+
+        Event(String botName, long tick, JsonObject event, JsonObject currentState) {
+            this.botName = botName;
+            this.tick = tick;
+            this.event = event;
+            this.currentState = currentState;
+        }
+    }
+
+    private static final RewardQueue INSTANCE = new RewardQueue();
+
+    private final int capacity = Integer.getInteger("cambium.reward.capacity", 1024);
+    private final long windowNanos = Long.getLong("cambium.reward.window", 100L) * 1000000L;
+    private final OverflowPolicy overflowPolicy = ConfigValues.parseEnum("-Dcambium.reward.overflow",
+            System.getProperty("cambium.reward.overflow"), OverflowPolicy.DROP_OLDEST);
+
+    private final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<Event>();
+    private final AtomicInteger size = new AtomicInteger();
+    // Only one thread drains at a time, so merged batches keep their order
+    private final Object drainLock = new Object();
+    private Thread sender;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong piggybacked = new AtomicLong();
+    private final AtomicLong sentBatches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private volatile boolean failing;
+
+    private RewardQueue() {
+    }
+
+    public static RewardQueue getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues one event and adds it to the next trajectory record. Never blocks.
+     * @param tick The client tick (world time) the event belongs to
+     * @param currentState The current_state sent with the batch, the newest one of a batch wins
+     */
+    public void append(String botName, long tick, JsonObject event, JsonObject currentState) {
+        // Both callers run on the client thread, which is what the recorder needs
+        TrajectoryRecorder.getInstance().addRewardEvent(getString(event, "type"),
+                event.has("amount") ? event.get("amount").getAsDouble() : 0);
+        if (size.incrementAndGet() > capacity) {
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                size.decrementAndGet();
+                dropped.incrementAndGet();
+                return;
+            }
+            if (queue.poll() != null) {
+                size.decrementAndGet();
+                dropped.incrementAndGet();
+            }
+        }
+        queue.offer(new Event(botName, tick, event, currentState));
+        appended.incrementAndGet();
+        startSender();
+    }
+
+    private synchronized void startSender() {
+        if (sender != null) {
+            return;
+        }
+        sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    LockSupport.parkNanos(windowNanos / 2);
+                    try {
+                        Event oldest = queue.peek();
+                        if (oldest != null && System.nanoTime() - oldest.created >= windowNanos) {
+                            flush();
+                        }
+                    } catch (RuntimeException e) {
+                        // Keep the sender alive, startSender() would not start another one
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }, "Cambium rewards");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Takes all queued events for a prediction request.
+     * @return One /add-reward/ body per bot, empty if nothing is queued.
+     */
+    public ArrayList<JsonObject> drainForRequest() {
+        ArrayList<JsonObject> bodies = drain();
+        piggybacked.addAndGet(bodies.size());
+        return bodies;
+    }
+
+    /**
+     * Sends everything queued right now (over the stream if it is connected, otherwise one POST per bot).
+     * Batches that cannot be sent are dropped, not retried: the events are only counted as failed.
+     * Called from the sender thread as well.
+     */
+    public void flush() {
+        for (JsonObject body : drain()) {
+            if (APIClient.postReward(body.toString())) {
+                sentBatches.incrementAndGet();
+                failing = false;
+            } else {
+                failedBatches.incrementAndGet();
+                if (!failing) {
+                    failing = true;
+                    AIChatController.addChatLineLater("Reward API Error: could not send rewards for "
+                            + body.get("bot_name").getAsString() + ", failed batches are dropped");
+                }
+            }
+        }
+    }
+
+    private ArrayList<JsonObject> drain() {
+        ArrayList<JsonObject> bodies = new ArrayList<JsonObject>();
+        synchronized (drainLock) {
+            LinkedHashMap<String, JsonObject> events = new LinkedHashMap<String, JsonObject>();
+            LinkedHashMap<String, JsonObject> states = new LinkedHashMap<String, JsonObject>();
+            Event e;
+            while ((e = queue.poll()) != null) {
+                size.decrementAndGet();
+                states.put(e.botName, e.currentState);
+                String key = e.botName + "\u0000" + e.tick + "\u0000" + opponentKey(e.event);
+                JsonObject existing = events.get(key);
+                if (existing == null) {
+                    JsonObject event = e.event;
+                    event.addProperty("tick", e.tick);
+                    event.addProperty("count", 1);
+                    events.put(key, event);
+                } else {
+                    mergeInto(existing, e.event);
+                    merged.incrementAndGet();
+                }
+            }
+
+            for (String botName : states.keySet()) {
+                JsonArray botEvents = new JsonArray();
+                for (Map.Entry<String, JsonObject> entry : events.entrySet()) {
+                    if (entry.getKey().startsWith(botName + "\u0000")) {
+                        botEvents.add(entry.getValue());
+                    }
+                }
+                JsonObject body = new JsonObject();
+                body.addProperty("bot_name", botName);
+                body.add("events", botEvents);
+                JsonObject state = states.get(botName);
+                if (state != null) {
+                    body.add("current_state", state);
+                }
+                bodies.add(body);
+            }
+        }
+        return bodies;
+    }
+
+    private static String opponentKey(JsonObject event) {
+        String key = getString(event, "type");
+        key += "\u0000" + getString(event, "target");
+        key += "\u0000" + getString(event, "attacker");
+        return key;
+    }
+
+    private static String getString(JsonObject event, String name) {
+        JsonElement element = event.get(name);
+        return element == null || element.isJsonNull() ? "" : element.getAsString();
+    }
+
+    private static void mergeInto(JsonObject into, JsonObject event) {
+        String type = getString(event, "type");
+        double amount = event.has("amount") ? event.get("amount").getAsDouble() : 0;
+        double existing = into.has("amount") ? into.get("amount").getAsDouble() : 0;
+        if (type.startsWith("damage_")) {
+            into.addProperty("amount", existing + amount);
+            if (event.has("damage_percentage")) {
+                double percentage = event.get("damage_percentage").getAsDouble();
+                if (into.has("damage_percentage")) {
+                    percentage += into.get("damage_percentage").getAsDouble();
+                }
+                into.addProperty("damage_percentage", Math.min(1.0, percentage));
+            }
+        } else if (amount > existing) {
+            for (Map.Entry<String, JsonElement> entry : event.entrySet()) {
+                into.add(entry.getKey(), entry.getValue());
+            }
+        }
+        into.addProperty("count", into.get("count").getAsInt() + 1);
+    }
+
+    public int getQueued() {
+        return size.get();
+    }
+
+    public String getStatsLine() {
+        return "queued " + size.get() + "/" + capacity + ", appended " + appended.get() + ", merged " + merged.get()
+                + ", dropped " + dropped.get() + " (" + overflowPolicy + "), piggybacked " + piggybacked.get()
+                + ", sent " + sentBatches.get() + ", failed " + failedBatches.get() + " (dropped)";
+    }
+}
@@ -0,0 +1,304 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.ActionData;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.ClientTickEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.fml.common.network.FMLEventChannel;
+import net.minecraftforge.fml.common.network.FMLNetworkEvent;
+import net.minecraftforge.fml.common.network.NetworkRegistry;
+import net.minecraftforge.fml.common.network.internal.FMLProxyPacket;
+
+/**
+ * The "cambium" plugin channel to the server mod (serverMod, CambiumChannel.java - keep the packet ids in sync).
+ *
+ * Used for lockstep training: while the server runs in lockstep it sends TICK(n) after every tick and holds the
+ * next one until each registered bot sent ACK(n). The RL controller acts once per announced tick
+ * ({@link #takeTick()}), the ack goes out at the end of the client tick ({@link #actionApplied}), after the
+ * movement packet of that tick, so the server has the movement before it continues.
+ *
+ * Also used for server side inference (RLControllerStrategy mode SERVER): after {@link #subscribe} the server builds
+ * our observation and sends the backend's action as ACTION(n) for its tick n, picked up with {@link #takeAction}.
+ * In lockstep the tick is only taken once its action is there.
+ *
+ * The server also says whether it reports our combat rewards to the backend itself (REWARDS), RewardListener then
+ * leaves them out ({@link #hasServerRewards}).
+ *
+ * In lockstep a TICK or ACTION wakes up a headless client that waits for its next tick, see {@link HeadlessTicks}.
+ *
+ * Packets from the server arrive on the netty thread.
+ */
+public class ServerChannel {
+    public static final String NAME = "cambium";
+
+    public static final int REGISTER = 0;
+    public static final int UNREGISTER = 1;
+    public static final int ACK = 2;
+    public static final int SUBSCRIBE = 3;
+    public static final int UNSUBSCRIBE = 4;
+
+    public static final int TICK = 16;
+    public static final int MODE = 17;
+    public static final int ACTION = 18;
+    public static final int REWARDS = 19;
+
+    private static final ServerChannel INSTANCE = new ServerChannel();
+
+    private FMLEventChannel channel;
+    private volatile boolean lockstep;
+    private volatile long announcedTick = -1;
+    private volatile boolean serverRewards;
+    // Server inference: the last ACTION, the action is only touched while holding it
+    private final ActionData serverAction = new ActionData();
+    private volatile long actionTick = -1;
+    private boolean actionValid;
+    private long actionsReceived;
+    private long emptyActions;
+    // Client thread only
+    private boolean registered;
+    private long takenTick = -1;
+    private long pendingAck = -1;
+    // What we subscribed with, null if not subscribed
+    private String subscription;
+    private long takenActionTick = -1;
+
+    private ServerChannel() {
+    }
+
+    public static ServerChannel getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Call once during mod initialization.
+     */
+    public void initialize() {
+        channel = NetworkRegistry.INSTANCE.newEventDrivenChannel(NAME);
+        channel.register(this);
+        FMLCommonHandler.instance().bus().register(this);
+    }
+
+    @SubscribeEvent
+    public void onClientPacket(FMLNetworkEvent.ClientCustomPacketEvent event) {
+        ByteBuf payload = event.packet.payload();
+        int id = payload.readUnsignedByte();
+        switch (id) {
+            case TICK:
+                announcedTick = payload.readLong();
+                if (lockstep) {
+                    HeadlessTicks.getInstance().wakeUp();
+                }
+                break;
+            case MODE:
+                lockstep = payload.readBoolean();
+                announcedTick = -1;
+                break;
+            case ACTION:
+                long tick = payload.readLong();
+                synchronized (serverAction) {
+                    actionValid = payload.readBoolean();
+                    if (actionValid) {
+                        ByteBuffer frame = payload.nioBuffer(payload.readerIndex(), BinaryProtocol.ACTION_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                        BinaryProtocol.decodeAction(frame, serverAction);
+                        actionsReceived++;
+                    } else {
+                        emptyActions++;
+                    }
+                    actionTick = tick;
+                }
+                if (lockstep) {
+                    HeadlessTicks.getInstance().wakeUp();
+                }
+                break;
+            case REWARDS:
+                serverRewards = payload.readBoolean();
+                break;
+            default:
+                System.out.println("Unknown cambium packet " + id);
+        }
+    }
+
+    @SubscribeEvent
+    public void onDisconnect(FMLNetworkEvent.ClientDisconnectionFromServerEvent event) {
+        lockstep = false;
+        announcedTick = -1;
+        actionTick = -1;
+        serverRewards = false;
+    }
+
+    @SubscribeEvent
+    public void onClientTick(ClientTickEvent event) {
+        if (event.phase != Phase.END) {
+            return;
+        }
+        if (Minecraft.getMinecraft().getNetHandler() == null) {
+            registered = false;
+            takenTick = -1;
+            pendingAck = -1;
+            subscription = null;
+            takenActionTick = -1;
+            return;
+        }
+        if (pendingAck >= 0) {
+            ByteBuf buf = Unpooled.buffer(9);
+            buf.writeByte(ACK);
+            buf.writeLong(pendingAck);
+            send(buf);
+            pendingAck = -1;
+        }
+    }
+
+    /**
+     * Takes part in lockstep from now on. Cheap to call every tick, it only sends after (re)connecting.
+     */
+    public void register() {
+        if (registered || channel == null || Minecraft.getMinecraft().getNetHandler() == null) {
+            return;
+        }
+        registered = true;
+        sendId(REGISTER);
+    }
+
+    public void unregister() {
+        unsubscribe();
+        if (!registered) {
+            return;
+        }
+        registered = false;
+        lockstep = false;
+        if (Minecraft.getMinecraft().getNetHandler() != null) {
+            sendId(UNREGISTER);
+        }
+    }
+
+    /**
+     * Lets the server build our observations and ask the backend for our actions. Cheap to call every tick, it only
+     * sends after (re)connecting or when the action space or model changed.
+     */
+    public void subscribe(ActionSpaceConfig config, String modelVersion) {
+        if (channel == null || Minecraft.getMinecraft().getNetHandler() == null) {
+            return;
+        }
+        int flags = BinaryProtocol.actionFlags(config);
+        String key = flags + "/" + config.movementBins + "/" + config.yawBins + "/" + config.pitchBins + "/" + modelVersion;
+        if (key.equals(subscription)) {
+            return;
+        }
+        byte[] version = modelVersion.getBytes(StandardCharsets.UTF_8);
+        ByteBuf buf = Unpooled.buffer(7 + version.length);
+        buf.writeByte(SUBSCRIBE);
+        buf.writeShort(flags);
+        buf.writeByte(config.movementBins);
+        buf.writeByte(config.yawBins);
+        buf.writeByte(config.pitchBins);
+        buf.writeByte(version.length);
+        buf.writeBytes(version);
+        send(buf);
+        subscription = key;
+        takenActionTick = actionTick;
+    }
+
+    public void unsubscribe() {
+        if (subscription == null) {
+            return;
+        }
+        subscription = null;
+        if (Minecraft.getMinecraft().getNetHandler() != null) {
+            sendId(UNSUBSCRIBE);
+        }
+    }
+
+    public boolean isSubscribed() {
+        return subscription != null;
+    }
+
+    /**
+     * Copies the action the server sent since the last call into the given one.
+     * @return false if there is none, or the server had none for its tick (into is not touched then).
+     */
+    public boolean takeAction(ActionData into) {
+        long tick = actionTick;
+        if (tick < 0 || tick == takenActionTick) {
+            return false;
+        }
+        takenActionTick = tick;
+        synchronized (serverAction) {
+            if (!actionValid) {
+                return false;
+            }
+            into.copyFrom(serverAction);
+            return true;
+        }
+    }
+
+    public String getActionStatsLine() {
+        synchronized (serverAction) {
+            return "Server inference " + (subscription != null ? "subscribed" : "off") + ", " + actionsReceived
+                    + " actions, " + emptyActions + " empty (backend busy or failed)";
+        }
+    }
+
+    /**
+     * @return true if the server sends damage, kill and knockback events for us, see serverMod's RewardStream.
+     */
+    public boolean hasServerRewards() {
+        return serverRewards;
+    }
+
+    /**
+     * @return true if the server holds its ticks for our acks.
+     */
+    public boolean isLockstep() {
+        return lockstep && registered;
+    }
+
+    /**
+     * @return The server tick announced since the last call, or -1 if there is none (the controller should wait).
+     *         With server inference also -1 until the ACTION for that tick arrived.
+     */
+    public long takeTick() {
+        long tick = announcedTick;
+        if (!isPending(tick)) {
+            return -1;
+        }
+        takenTick = tick;
+        return tick;
+    }
+
+    /**
+     * @return true if {@link #takeTick()} would return a tick.
+     */
+    public boolean isTickPending() {
+        return isPending(announcedTick);
+    }
+
+    private boolean isPending(long tick) {
+        return tick >= 0 && tick != takenTick && (subscription == null || actionTick >= tick);
+    }
+
+    /**
+     * Acknowledges the tick at the end of this client tick.
+     */
+    public void actionApplied(long tick) {
+        pendingAck = tick;
+    }
+
+    private void sendId(int id) {
+        ByteBuf buf = Unpooled.buffer(1);
+        buf.writeByte(id);
+        send(buf);
+    }
+
+    private void send(ByteBuf buf) {
+        channel.sendToServer(new FMLProxyPacket(new PacketBuffer(buf), NAME));
+    }
+}
@@ -0,0 +1,436 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long lived framed TCP connection to the backend (backend/stream_protocol.py).
+ * Replaces one HTTP connection per request for predictions, reward events and config.
+ *
+ * Every frame is a 12 byte little-endian header followed by the payload:
+ * <pre>
+ * int32   payload length
+ * uint8   type (see TYPE_*)
+ * uint8   flags (0)
+ * uint16  reserved
+ * int32   request id, echoed in the answer. 0 for messages that expect no answer.
+ * </pre>
+ *
+ * A background thread keeps the connection up and reconnects with exponential backoff.
+ * Frames are written by a second thread from a bounded queue; when the queue or the
+ * number of requests in flight is exhausted, calls fail immediately instead of blocking
+ * the caller. Callers are expected to fall back to {@link APIClient} while {@link #isConnected()}
+ * is false.
+ */
+public class StreamClient {
+    public static final int TYPE_HELLO = 1;
+    public static final int TYPE_OBSERVATION = 2;
+    public static final int TYPE_ACTION = 3;
+    public static final int TYPE_REWARD = 4;
+    public static final int TYPE_CONFIG_GET = 5;
+    public static final int TYPE_CONFIG = 6;
+    public static final int TYPE_ERROR = 7;
+    public static final int TYPE_TRANSITION = 8;
+
+    public static final int HEADER_SIZE = 12;
+    private static final int MAX_PAYLOAD = 1 << 20;
+    private static final long MIN_BACKOFF = 100;
+    private static final long MAX_BACKOFF = 5000;
+
+    private static StreamClient instance;
+
+    private final String host;
+    private final int port;
+    private final ArrayBlockingQueue<byte[]> sendQueue;
+    private final Semaphore requestSlots;
+    private final ConcurrentHashMap<Integer, Pending> pending = new ConcurrentHashMap<Integer, Pending>();
+    private final ConcurrentLinkedQueue<String> configUpdates = new ConcurrentLinkedQueue<String>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    private volatile boolean connected;
+    private volatile boolean running;
+    private volatile String botName;
+    private Socket socket;
+    private Thread connectionThread;
+
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    private static class Pending {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile int type;
+        volatile byte[] payload;
+    }
+
+    public StreamClient(String host, int port, int queueSize, int maxInFlight) {
+        this.host = host;
+        this.port = port;
+        this.sendQueue = new ArrayBlockingQueue<byte[]>(queueSize);
+        this.requestSlots = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * The shared connection, started on first use. Configured with -Dcambium.stream.host/port.
+     */
+    public static synchronized StreamClient getInstance() {
+        if (instance == null) {
+            instance = new StreamClient(
+                    System.getProperty("cambium.stream.host", "backend"),
+                    Integer.getInteger("cambium.stream.port", 8001),
+                    Integer.getInteger("cambium.stream.queue", 64),
+                    Integer.getInteger("cambium.stream.maxInFlight", 4));
+            instance.start();
+        }
+        return instance;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        connectionThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                connectionLoop();
+            }
+        }, "Cambium stream");
+        connectionThread.setDaemon(true);
+        connectionThread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        closeSocket();
+        if (connectionThread != null) {
+            connectionThread.interrupt();
+            connectionThread = null;
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Sets the bot name announced in the HELLO frame. Sent right away if connected and again after every reconnect,
+     * the backend uses it to route config pushes.
+     */
+    public void setBotName(String botName) {
+        if (botName.equals(this.botName)) {
+            return;
+        }
+        this.botName = botName;
+        if (connected) {
+            sendHello();
+        }
+    }
+
+    /**
+     * Sends a binary observation ({@link BinaryProtocol}) and waits for the action frame.
+     * @param modelVersion the version part of /predict-action-v{version}
+     * @return The 28 byte action frame, or null if not connected, overloaded, timed out or the backend answered with an error.
+     */
+    public byte[] requestAction(String modelVersion, byte[] observation, int length, long timeoutMillis) {
+        byte[] version = modelVersion.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = newFrame(1 + version.length + length);
+        frame.put((byte) version.length);
+        frame.put(version);
+        frame.put(observation, 0, length);
+        return request(TYPE_OBSERVATION, frame, TYPE_ACTION, timeoutMillis);
+    }
+
+    /**
+     * Reports a step whose action was chosen by the {@link LocalPolicy}, so the backend can train on it.
+     * Does not wait for the backend.
+     * @param bins the chosen bin per LocalPolicy.HEAD_*
+     * @return false if not connected or the send queue is full.
+     */
+    public boolean sendTransition(String modelVersion, byte[] observation, int length, int[] bins) {
+        if (!connected) {
+            return false;
+        }
+        byte[] version = modelVersion.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = newFrame(1 + version.length + length + bins.length);
+        frame.put((byte) version.length);
+        frame.put(version);
+        frame.put(observation, 0, length);
+        for (int i = 0; i < bins.length; i++) {
+            frame.put((byte) bins[i]);
+        }
+        return enqueue(TYPE_TRANSITION, 0, frame);
+    }
+
+    /**
+     * Fetches a config document (action_space, observation_space or model).
+     * @return the JSON text or null.
+     */
+    public String requestConfig(String name, long timeoutMillis) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = newFrame(bytes.length);
+        frame.put(bytes);
+        byte[] response = request(TYPE_CONFIG_GET, frame, TYPE_CONFIG, timeoutMillis);
+        return response == null ? null : new String(response, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Queues a reward request (the /add-reward/ JSON body). Does not wait for the backend.
+     * @return false if not connected or the send queue is full.
+     */
+    public boolean sendReward(String json) {
+        if (!connected) {
+            return false;
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = newFrame(bytes.length);
+        frame.put(bytes);
+        return enqueue(TYPE_REWARD, 0, frame);
+    }
+
+    /**
+     * @return the next config document pushed by the backend (for example after POST /set-model), or null.
+     */
+    public String pollConfigUpdate() {
+        return configUpdates.poll();
+    }
+
+    private byte[] request(int type, ByteBuffer frame, int expectedType, long timeoutMillis) {
+        if (!connected) {
+            return null;
+        }
+        if (!requestSlots.tryAcquire()) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        int id = nextRequestId();
+        Pending request = new Pending();
+        pending.put(id, request);
+        try {
+            if (!enqueue(type, id, frame)) {
+                return null;
+            }
+            if (!request.done.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                return null;
+            }
+            if (request.type != expectedType) {
+                if (request.type == TYPE_ERROR && request.payload != null) {
+                    System.err.println("[StreamClient] Backend error: " + new String(request.payload, StandardCharsets.UTF_8));
+                }
+                return null;
+            }
+            return request.payload;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            pending.remove(id);
+            requestSlots.release();
+        }
+    }
+
+    private int nextRequestId() {
+        int id;
+        do {
+            id = nextId.incrementAndGet();
+        } while (id == 0);
+        return id;
+    }
+
+    private static ByteBuffer newFrame(int payloadLength) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payloadLength).order(ByteOrder.LITTLE_ENDIAN);
+        frame.position(HEADER_SIZE);
+        return frame;
+    }
+
+    private boolean enqueue(int type, int id, ByteBuffer frame) {
+        frame.putInt(0, frame.capacity() - HEADER_SIZE);
+        frame.put(4, (byte) type);
+        frame.put(5, (byte) 0);
+        frame.putShort(6, (short) 0);
+        frame.putInt(8, id);
+        if (!sendQueue.offer(frame.array())) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private void sendHello() {
+        String name = botName;
+        if (name == null) {
+            return;
+        }
+        byte[] bytes = ("{\"bot_name\":\"" + name.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = newFrame(bytes.length);
+        frame.put(bytes);
+        enqueue(TYPE_HELLO, 0, frame);
+    }
+
+    private void connectionLoop() {
+        long backoff = MIN_BACKOFF;
+        boolean reportFailure = true;
+        while (running) {
+            Thread writer = null;
+            try {
+                Socket s = new Socket();
+                s.setTcpNoDelay(true);
+                s.setKeepAlive(true);
+                s.connect(new InetSocketAddress(host, port), 5000);
+                synchronized (this) {
+                    socket = s;
+                }
+                final OutputStream out = new BufferedOutputStream(s.getOutputStream());
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+
+                connected = true;
+                reconnects.incrementAndGet();
+                backoff = MIN_BACKOFF;
+                reportFailure = true;
+                System.out.println("[StreamClient] Connected to " + host + ":" + port);
+                sendHello();
+
+                writer = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        writeLoop(out);
+                    }
+                }, "Cambium stream writer");
+                writer.setDaemon(true);
+                writer.start();
+
+                readLoop(in);
+            } catch (IOException e) {
+                // Only report the first failure until we are connected again
+                if (running && reportFailure) {
+                    System.err.println("[StreamClient] Connection to " + host + ":" + port + " failed: " + e);
+                    reportFailure = false;
+                }
+            } finally {
+                connected = false;
+                closeSocket();
+                if (writer != null) {
+                    writer.interrupt();
+                }
+                failPending();
+            }
+
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF);
+        }
+    }
+
+    private void writeLoop(OutputStream out) {
+        try {
+            while (connected) {
+                byte[] frame = sendQueue.take();
+                out.write(frame);
+                framesSent.incrementAndGet();
+                // Write everything that queued up meanwhile before paying for a flush
+                while ((frame = sendQueue.poll()) != null) {
+                    out.write(frame);
+                    framesSent.incrementAndGet();
+                }
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            // disconnected
+        } catch (IOException e) {
+            closeSocket();
+        }
+    }
+
+    private void readLoop(DataInputStream in) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        ByteBuffer headerBuffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        while (running) {
+            in.readFully(header);
+            int length = headerBuffer.getInt(0);
+            int type = header[4] & 0xff;
+            int id = headerBuffer.getInt(8);
+            if (length < 0 || length > MAX_PAYLOAD) {
+                throw new IOException("Bad frame length " + length);
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            framesReceived.incrementAndGet();
+
+            if (id != 0) {
+                Pending request = pending.get(id);
+                if (request != null) {
+                    request.type = type;
+                    request.payload = payload;
+                    request.done.countDown();
+                }
+                // else: the caller already gave up on it
+            } else if (type == TYPE_CONFIG) {
+                configUpdates.add(new String(payload, StandardCharsets.UTF_8));
+            } else if (type == TYPE_ERROR) {
+                System.err.println("[StreamClient] Backend error: " + new String(payload, StandardCharsets.UTF_8));
+            }
+        }
+        throw new EOFException("Stream client stopped");
+    }
+
+    private synchronized void closeSocket() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            socket = null;
+        }
+    }
+
+    /**
+     * Wakes up every caller waiting for an answer on the old connection and drops queued requests,
+     * their ids are unknown to the next connection. Reward and transition frames stay queued.
+     */
+    private void failPending() {
+        for (Iterator<byte[]> it = sendQueue.iterator(); it.hasNext();) {
+            byte[] frame = it.next();
+            int type = frame[4] & 0xff;
+            if (type != TYPE_REWARD && type != TYPE_TRANSITION) {
+                it.remove();
+            }
+        }
+        for (Pending request : pending.values()) {
+            request.type = TYPE_ERROR;
+            request.done.countDown();
+        }
+    }
+
+    public String getStatsLine() {
+        return (connected ? "connected to " : "disconnected from ") + host + ":" + port
+                + ", sent " + framesSent.get() + ", received " + framesReceived.get()
+                + ", queued " + sendQueue.size() + ", in flight " + pending.size()
+                + ", rejected " + rejected.get() + ", timeouts " + timeouts.get()
+                + ", connects " + reconnects.get();
+    }
+}
@@ -0,0 +1,379 @@
+package net.famzangl.minecraft.minebot.ai.cambiumInputs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.ActionData;
+import net.famzangl.minecraft.minebot.ai.command.AIChatController;
+
+/**
+ * Records what the bot observed and did, one fixed size record per tick, into memory mapped segment files
+ * (cambium.trajectory.dir/&lt;bot&gt;/&lt;start&gt;_&lt;n&gt;.cbtr). backend/trajectory_reader.py reads them - keep both in sync.
+ *
+ * All values little-endian.
+ * <pre>
+ * Segment header (64 bytes):
+ * int32   magic 'CBTR'
+ * uint16  format version
+ * uint16  header size
+ * int32   record size
+ * int32   observation features
+ * int32   block slots
+ * int32   records written (updated after every record)
+ * int64   creation time (ms since epoch)
+ * byte[32] bot name, UTF-8, zero padded
+ *
+ * Record (RECORD_SIZE bytes):
+ * int64   world tick
+ * int64   time (ms since epoch)
+ * int32   action sequence
+ * int8    movement bin, -1 for none
+ * uint8   buttons (BinaryProtocol.BUTTON_*)
+ * int8    hotbar slot, -1 for none
+ * uint8   flags (FLAG_*)
+ * float32 yaw, pitch, tick rate (NaN if none)
+ * float32 damage dealt, damage taken, best aim score (reward events since the last record)
+ * uint16  reward event count
+ * uint16  reserved
+ * int32   observation time (us), inference time (us)
+ * float32[features] observation vector
+ * int16[block slots] block ids
+ * </pre>
+ *
+ * Writing a record only copies into the mapped segment. Creating, mapping and pre-faulting the next segment happens
+ * on the "Cambium recorder" thread while the current one fills up. If the next segment is not ready in time, records
+ * are dropped instead of waiting for the disk. Only call {@link #record} and {@link #addRewardEvent} from the client
+ * thread.
+ */
+public class TrajectoryRecorder {
+    public static final int MAGIC = 0x52544243; // "CBTR" read little-endian
+    public static final int FORMAT_VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    private static final int BOT_NAME_BYTES = 32;
+    private static final int RECORD_COUNT_OFFSET = 20;
+    private static final int FIXED_FIELDS = 60;
+    public static final int RECORD_SIZE = align(FIXED_FIELDS + ObservationVector.SIZE * 4 + ObservationVector.BLOCK_SLOTS * 2, 16);
+
+    /** The action was answered for this tick's (or, pipelined, the previous) observation. */
+    public static final int FLAG_FRESH_ACTION = 1;
+    public static final int FLAG_LOCAL = 1 << 1;
+    public static final int FLAG_ASYNC = 1 << 2;
+
+    private static final int PAGE = 4096;
+
+    private static final TrajectoryRecorder INSTANCE = new TrajectoryRecorder();
+
+    private final File directory = new File(System.getProperty("cambium.trajectory.dir", "trajectories"));
+    private final int segmentRecords = Integer.getInteger("cambium.trajectory.segmentRecords", 65536);
+    private boolean enabled = Boolean.getBoolean("cambium.trajectory");
+
+    private ExecutorService worker;
+    private String botName;
+    private String runName;
+    private int segmentIndex;
+    private Segment current;
+    private Future<Segment> next;
+
+    // Rewards seen since the last record
+    private float damageDealt;
+    private float damageTaken;
+    private float aimScore;
+    private int rewardEvents;
+
+    private long recorded;
+    private long dropped;
+    private long segments;
+
+    private static final class Segment {
+        final File file;
+        final RandomAccessFile raf;
+        final MappedByteBuffer buffer;
+        int records;
+
+        Segment(File file, RandomAccessFile raf, MappedByteBuffer buffer) {
+            this.file = file;
+            this.raf = raf;
+            this.buffer = buffer;
+        }
+    }
+
+    private TrajectoryRecorder() {
+    }
+
+    public static TrajectoryRecorder getInstance() {
+        return INSTANCE;
+    }
+
+    private static int align(int size, int to) {
+        return (size + to - 1) / to * to;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (!enabled) {
+            close();
+        }
+        this.enabled = enabled;
+    }
+
+    /**
+     * Adds a reward event to the next record.
+     */
+    public void addRewardEvent(String type, double amount) {
+        if (!enabled) {
+            return;
+        }
+        rewardEvents++;
+        if ("damage_dealt".equals(type)) {
+            damageDealt += amount;
+        } else if ("damage_taken".equals(type)) {
+            damageTaken += amount;
+        } else if ("good_aim".equals(type)) {
+            aimScore = Math.max(aimScore, (float) amount);
+        }
+    }
+
+    /**
+     * Appends one record. Never waits for the disk.
+     */
+    public void record(String botName, long tick, ObservationVector observation, ActionData action, int flags,
+            long observeNanos, long inferenceNanos) {
+        if (!enabled) {
+            return;
+        }
+        if (!botName.equals(this.botName)) {
+            close();
+            this.botName = botName;
+            runName = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+            segmentIndex = 0;
+            next = prepare(segmentIndex++);
+        }
+        if (current == null || current.records >= segmentRecords) {
+            if (!next.isDone()) {
+                dropped++;
+                return;
+            }
+            Segment ready;
+            try {
+                ready = next.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+                enabled = false;
+                AIChatController.addChatLine("Trajectory recording stopped: " + e.getCause().getMessage());
+                close();
+                return;
+            }
+            finish(current);
+            current = ready;
+            segments++;
+            next = prepare(segmentIndex++);
+        }
+
+        MappedByteBuffer b = current.buffer;
+        b.position(HEADER_SIZE + current.records * RECORD_SIZE);
+        b.putLong(tick);
+        b.putLong(System.currentTimeMillis());
+        b.putInt(action.getSequence());
+        b.put((byte) action.getMovement());
+        b.put((byte) buttons(action));
+        b.put((byte) action.getHotbar());
+        b.put((byte) flags);
+        b.putFloat(action.getYaw());
+        b.putFloat(action.getPitch());
+        b.putFloat((float) action.getTickRate());
+        b.putFloat(damageDealt);
+        b.putFloat(damageTaken);
+        b.putFloat(aimScore);
+        b.putShort((short) Math.min(rewardEvents, 0xffff));
+        b.putShort((short) 0);
+        b.putInt((int) Math.min(Integer.MAX_VALUE, observeNanos / 1000));
+        b.putInt((int) Math.min(Integer.MAX_VALUE, inferenceNanos / 1000));
+        float[] features = observation.getFeatures();
+        for (int i = 0; i < ObservationVector.SIZE; i++) {
+            b.putFloat(features[i]);
+        }
+        short[] blockIds = observation.getBlockIds();
+        for (int i = 0; i < ObservationVector.BLOCK_SLOTS; i++) {
+            b.putShort(blockIds[i]);
+        }
+        current.records++;
+        b.putInt(RECORD_COUNT_OFFSET, current.records);
+
+        damageDealt = 0;
+        damageTaken = 0;
+        aimScore = 0;
+        rewardEvents = 0;
+        recorded++;
+    }
+
+    private static int buttons(ActionData action) {
+        int buttons = 0;
+        if (action.isJump()) {
+            buttons |= BinaryProtocol.BUTTON_JUMP;
+        }
+        if (action.isSneak()) {
+            buttons |= BinaryProtocol.BUTTON_SNEAK;
+        }
+        if (action.isSprint()) {
+            buttons |= BinaryProtocol.BUTTON_SPRINT;
+        }
+        if (action.isAttack()) {
+            buttons |= BinaryProtocol.BUTTON_ATTACK;
+        }
+        if (action.isUseItem()) {
+            buttons |= BinaryProtocol.BUTTON_USE_ITEM;
+        }
+        return buttons;
+    }
+
+    /**
+     * Creates and maps the next segment on the worker thread.
+     */
+    private Future<Segment> prepare(final int index) {
+        if (worker == null) {
+            worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Cambium recorder");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        final String bot = botName;
+        final String run = runName;
+        return worker.submit(new Callable<Segment>() {
+            @Override
+            public Segment call() throws IOException {
+                File dir = new File(directory, bot.replaceAll("[^A-Za-z0-9_.-]", "_"));
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Cannot create " + dir);
+                }
+                File file = new File(dir, run + "_" + String.format("%04d", index) + ".cbtr");
+                long size = HEADER_SIZE + (long) segmentRecords * RECORD_SIZE;
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    raf.setLength(size);
+                    MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                    buffer.order(ByteOrder.LITTLE_ENDIAN);
+                    buffer.putInt(MAGIC);
+                    buffer.putShort((short) FORMAT_VERSION);
+                    buffer.putShort((short) HEADER_SIZE);
+                    buffer.putInt(RECORD_SIZE);
+                    buffer.putInt(ObservationVector.SIZE);
+                    buffer.putInt(ObservationVector.BLOCK_SLOTS);
+                    buffer.putInt(0);
+                    buffer.putLong(System.currentTimeMillis());
+                    byte[] name = bot.getBytes(StandardCharsets.UTF_8);
+                    buffer.put(name, 0, Math.min(name.length, BOT_NAME_BYTES));
+                    // Fault the pages in now so the client thread does not have to
+                    for (long p = PAGE; p < size; p += PAGE) {
+                        buffer.put((int) p, (byte) 0);
+                    }
+                    return new Segment(file, raf, buffer);
+                } catch (IOException e) {
+                    raf.close();
+                    throw e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Releases the mapping now instead of when the buffer is collected. Windows cannot shorten or delete a mapped
+     * file. Uses the cleaner of the Java 8 direct buffers, the buffer must not be used afterwards.
+     *
+     * @return false if the mapping could not be released.
+     */
+    private static boolean unmap(MappedByteBuffer buffer) {
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner == null) {
+                return false;
+            }
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Flushes a full or abandoned segment on the worker thread and trims unused records. If the mapping cannot be
+     * released the file keeps its size, readers only read the records counted in the header.
+     */
+    private void finish(final Segment segment) {
+        if (segment == null) {
+            return;
+        }
+        worker.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    segment.buffer.force();
+                    if (unmap(segment.buffer) && segment.records < segmentRecords) {
+                        segment.raf.setLength(HEADER_SIZE + (long) segment.records * RECORD_SIZE);
+                    }
+                    segment.raf.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * Finishes the current segment and deletes the prepared one.
+     */
+    public void close() {
+        finish(current);
+        current = null;
+        if (next != null) {
+            final Future<Segment> unused = next;
+            next = null;
+            worker.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Segment segment = unused.get();
+                        unmap(segment.buffer);
+                        segment.raf.close();
+                        if (!segment.file.delete()) {
+                            segment.file.deleteOnExit();
+                        }
+                    } catch (Exception e) {
+                        // Nothing was created
+                    }
+                }
+            });
+        }
+        botName = null;
+    }
+
+    public String getStatsLine() {
+        return (enabled ? "recording to " + directory.getAbsolutePath() : "off") + ", " + recorded + " records, "
+                + segments + " segments, " + dropped + " dropped";
+    }
+}
@@ -57,11 +57,20 @@ import net.famzangl.minecraft.minebot.ai.commands.CommandWalk;
 import net.famzangl.minecraft.minebot.ai.commands.CommandXPFarm;
 import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandCrash;
 import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandHotbar;
+import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandInference;
+import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandLatency;
 import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandLeftClick;
 import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandMovement;
+import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandPathField;
+import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandProtocol;
+import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandRaycast;
+import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandRecord;
+import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandRewards;
 import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandRightClick;
 import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandSwapInventory;
 import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandScreenshot;
+import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandStrategies;
+import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandStream;
 import net.famzangl.minecraft.minebot.ai.commands.cambium.CommandTest;
 import net.famzangl.minecraft.minebot.ai.scripting.CommandJs;
 import net.famzangl.minecraft.minebot.build.commands.CommandBuild;
@@ -155,9 +164,18 @@ public class AIChatController {
 		registerCommand(CommandHotbar.class);
 		registerCommand(CommandLeftClick.class);
 		registerCommand(CommandMovement.class);
+		registerCommand(CommandProtocol.class);
+		registerCommand(CommandRaycast.class);
+		registerCommand(CommandPathField.class);
+		registerCommand(CommandRewards.class);
+		registerCommand(CommandRecord.class);
+		registerCommand(CommandInference.class);
+		registerCommand(CommandLatency.class);
 		registerCommand(CommandRightClick.class);
 		registerCommand(CommandSwapInventory.class);
 		registerCommand(CommandScreenshot.class);
+		registerCommand(CommandStream.class);
+		registerCommand(CommandStrategies.class);
 		registerCommand(CommandTest.class);
 		
 	}
@@ -173,6 +191,24 @@ public class AIChatController {
 		addToChat("[Minebot] " + message);
 	}
 
+	/**
+	 * {@link #addChatLine(String)} for any thread. The line is added on the
+	 * client thread (right away if this is it), or dropped if there is no
+	 * player then.
+	 * 
+	 * @param message
+	 */
+	public static void addChatLineLater(final String message) {
+		Minecraft.getMinecraft().addScheduledTask(new Runnable() {
+			@Override
+			public void run() {
+				if (Minecraft.getMinecraft().thePlayer != null) {
+					addChatLine(message);
+				}
+			}
+		});
+	}
+
 	public static CommandRegistry getRegistry() {
 		return registry;
 	}
@@ -6,7 +6,9 @@ import net.famzangl.minecraft.minebot.ai.command.AICommandInvocation;
 import net.famzangl.minecraft.minebot.ai.command.AICommandParameter;
 import net.famzangl.minecraft.minebot.ai.command.ParameterType;
 import net.famzangl.minecraft.minebot.ai.command.SafeStrategyRule;
+import net.famzangl.minecraft.minebot.ai.path.LongDistancePathfinder;
 import net.famzangl.minecraft.minebot.ai.strategy.AIStrategy;
+import net.famzangl.minecraft.minebot.ai.strategy.PathFinderStrategy;
 import net.famzangl.minecraft.minebot.ai.strategy.WalkTowardsStrategy;
 
 @AICommand(helpText = "Walk to a given x/z point", name = "minebot")
@@ -20,4 +22,17 @@ public class CommandWalk {
 		return new WalkTowardsStrategy(x, z);
 	}
 
+	@AICommandInvocation(safeRule = SafeStrategyRule.DEFEND)
+	public static AIStrategy run(
+			AIHelper helper,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "walk", description = "") String nameArg,
+			@AICommandParameter(type = ParameterType.DOUBLE, description = "x") Double x,
+			@AICommandParameter(type = ParameterType.DOUBLE, description = "z") Double z,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "path", description = "Find a way around obstacles") String pathArg) {
+		int goalX = (int) Math.floor(x);
+		int goalZ = (int) Math.floor(z);
+		return new PathFinderStrategy(new LongDistancePathfinder(goalX, -1,
+				goalZ), "Walk to " + goalX + ", " + goalZ);
+	}
+
 }
@@ -0,0 +1,104 @@
+/*******************************************************************************
+    _______      ____    ,---.    ,---. _______  .-./`)   ___    _ ,---.    ,---.        
+   /   __  \   .'  __ `. |    \  /    |\  ____  \\ .-.').'   |  | ||    \  /    |        
+  | ._/  \__) /   '  \  \|  ,  \/  ,  || |    \ |/ `-' \|   .|  | ||  ,  \/  ,  |        
+,-./  )       |___|  /  ||  |\_   /|  || |____/ / `-'`"`.'  'L  | ||  |\_   /|  |        
+\  '_ '`)        _.-`   ||  _( )_/ |  ||   _ _ '. .---. '   ( \.-.||  _( )_/ |  |        
+ > (_)  )  __ .'   _    || (_ o _) |  ||  ( ' )  \|   | ' (`. _` /|| (_ o _) |  |        
+(  .  .-'_/  )|  _( )_  ||  (_,_)  |  || (_{;}_) ||   | | (_ (_) _)|  (_,_)  |  |        
+ `-'`-'     / \ (_ o _) /|  |      |  ||  (_,_)  /|   |  \ /  . \ /|  |      |  |        
+   `\_____.'   '.(_,_).' '--'      '--'/_______.' '---'   ``-'`-'' '--'      '--'        
+                                                                                         
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai.commands.cambium;
+
+import net.famzangl.minecraft.minebot.ai.AIController;
+import net.famzangl.minecraft.minebot.ai.AIHelper;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.InferencePipeline;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.ServerChannel;
+import net.famzangl.minecraft.minebot.ai.command.AICommand;
+import net.famzangl.minecraft.minebot.ai.command.AICommandInvocation;
+import net.famzangl.minecraft.minebot.ai.command.AICommandParameter;
+import net.famzangl.minecraft.minebot.ai.command.AIChatController;
+import net.famzangl.minecraft.minebot.ai.command.ParameterType;
+import net.famzangl.minecraft.minebot.ai.strategy.AIStrategy;
+import net.famzangl.minecraft.minebot.ai.strategy.cambium.RLControllerStrategy;
+
+@AICommand(helpText = "Shows the late/dropped/reused action counters and configures pipelined inference", name = "cambium")
+public class CommandInference {
+	@AICommandInvocation()
+	public static AIStrategy run(
+			AIHelper helper,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "inference", description = "") String nameArg) {
+		RLControllerStrategy strategy = getStrategy();
+		if (strategy != null) {
+			printStatus(strategy);
+		}
+		return null;
+	}
+
+	@AICommandInvocation()
+	public static AIStrategy run(
+			AIHelper helper,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "inference", description = "") String nameArg,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "reset", description = "Reset the counters") String resetArg) {
+		RLControllerStrategy strategy = getStrategy();
+		if (strategy != null) {
+			strategy.getInferencePipeline().resetCounters();
+			AIChatController.addChatLine("Inference counters reset.");
+		}
+		return null;
+	}
+
+	@AICommandInvocation()
+	public static AIStrategy run(
+			AIHelper helper,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "inference", description = "") String nameArg,
+			@AICommandParameter(type = ParameterType.ENUM, description = "sync, async, local or server") RLControllerStrategy.InferenceMode mode,
+			@AICommandParameter(type = ParameterType.NUMBER, description = "deadline in ms", optional = true) Integer deadline) {
+		RLControllerStrategy strategy = getStrategy();
+		if (strategy != null) {
+			strategy.setInferenceMode(mode);
+			if (deadline != null) {
+				strategy.getInferencePipeline().setDeadlineMillis(deadline);
+			}
+			printStatus(strategy);
+		}
+		return null;
+	}
+
+	@AICommandInvocation()
+	public static AIStrategy run(
+			AIHelper helper,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "inference", description = "") String nameArg,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "late", description = "") String lateArg,
+			@AICommandParameter(type = ParameterType.ENUM, description = "What to do without a fresh action") InferencePipeline.LatePolicy policy,
+			@AICommandParameter(type = ParameterType.NUMBER, description = "max repeats", optional = true) Integer maxRepeats) {
+		RLControllerStrategy strategy = getStrategy();
+		if (strategy != null) {
+			strategy.getInferencePipeline().setLatePolicy(policy);
+			if (maxRepeats != null) {
+				strategy.getInferencePipeline().setMaxRepeats(maxRepeats);
+			}
+			printStatus(strategy);
+		}
+		return null;
+	}
+
+	private static RLControllerStrategy getStrategy() {
+		RLControllerStrategy strategy = AIController.getInstance().getStoredRLStrategy();
+		if (strategy == null) {
+			AIChatController.addChatLine("No RL controller set up, use &bot-setup first.");
+		}
+		return strategy;
+	}
+
+	private static void printStatus(RLControllerStrategy strategy) {
+		InferencePipeline pipeline = strategy.getInferencePipeline();
+		AIChatController.addChatLine("Inference: " + strategy.getInferenceMode() + ", " + pipeline.getConfigLine());
+		AIChatController.addChatLine(pipeline.getStatsLine());
+		if (strategy.getInferenceMode() == RLControllerStrategy.InferenceMode.SERVER) {
+			AIChatController.addChatLine(ServerChannel.getInstance().getActionStatsLine());
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+    _______      ____    ,---.    ,---. _______  .-./`)   ___    _ ,---.    ,---.        
+   /   __  \   .'  __ `. |    \  /    |\  ____  \\ .-.').'   |  | ||    \  /    |        
+  | ._/  \__) /   '  \  \|  ,  \/  ,  || |    \ |/ `-' \|   .|  | ||  ,  \/  ,  |        
+,-./  )       |___|  /  ||  |\_   /|  || |____/ / `-'`"`.'  'L  | ||  |\_   /|  |        
+\  '_ '`)        _.-`   ||  _( )_/ |  ||   _ _ '. .---. '   ( \.-.||  _( )_/ |  |        
+ > (_)  )  __ .'   _    || (_ o _) |  ||  ( ' )  \|   | ' (`. _` /|| (_ o _) |  |        
+(  .  .-'_/  )|  _( )_  ||  (_,_)  |  || (_{;}_) ||   | | (_ (_) _)|  (_,_)  |  |        
+ `-'`-'     / \ (_ o _) /|  |      |  ||  (_,_)  /|   |  \ /  . \ /|  |      |  |        
+   `\_____.'   '.(_,_).' '--'      '--'/_______.' '---'   ``-'`-'' '--'      '--'        
+                                                                                         
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai.commands.cambium;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.famzangl.minecraft.minebot.ai.AIHelper;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.LatencyStats;
+import net.famzangl.minecraft.minebot.ai.command.AICommand;
+import net.famzangl.minecraft.minebot.ai.command.AICommandInvocation;
+import net.famzangl.minecraft.minebot.ai.command.AICommandParameter;
+import net.famzangl.minecraft.minebot.ai.command.AIChatController;
+import net.famzangl.minecraft.minebot.ai.command.ParameterType;
+import net.famzangl.minecraft.minebot.ai.strategy.AIStrategy;
+
+@AICommand(helpText = "Shows where the RL controller's tick time goes (observe, serialize, network, deserialize, execute)\n"
+		+ "as latency percentiles per stage, or writes them to the latency file", name = "cambium")
+public class CommandLatency {
+	@AICommandInvocation()
+	public static AIStrategy run(
+			AIHelper helper,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "latency", description = "") String nameArg) {
+		String[] lines = LatencyStats.getInstance().getStatsLines();
+		if (lines.length == 0) {
+			AIChatController.addChatLine("No latencies recorded yet, start the RL controller first.");
+		}
+		for (String line : lines) {
+			AIChatController.addChatLine(line);
+		}
+		return null;
+	}
+
+	@AICommandInvocation()
+	public static AIStrategy run(
+			AIHelper helper,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "latency", description = "") String nameArg,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "reset", description = "Reset the histograms") String resetArg) {
+		LatencyStats.getInstance().reset();
+		AIChatController.addChatLine("Latency histograms reset.");
+		return null;
+	}
+
+	@AICommandInvocation()
+	public static AIStrategy run(
+			AIHelper helper,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "latency", description = "") String nameArg,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "dump", description = "Append the last interval to the latency file") String dumpArg) {
+		try {
+			File file = LatencyStats.getInstance().dump();
+			AIChatController.addChatLine("Latencies written to " + file.getAbsolutePath());
+		} catch (IOException e) {
+			AIChatController.addChatLine("Could not write latencies: " + e.getMessage());
+			e.printStackTrace();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+    _______      ____    ,---.    ,---. _______  .-./`)   ___    _ ,---.    ,---.        
+   /   __  \   .'  __ `. |    \  /    |\  ____  \\ .-.').'   |  | ||    \  /    |        
+  | ._/  \__) /   '  \  \|  ,  \/  ,  || |    \ |/ `-' \|   .|  | ||  ,  \/  ,  |        
+,-./  )       |___|  /  ||  |\_   /|  || |____/ / `-'`"`.'  'L  | ||  |\_   /|  |        
+\  '_ '`)        _.-`   ||  _( )_/ |  ||   _ _ '. .---. '   ( \.-.||  _( )_/ |  |        
+ > (_)  )  __ .'   _    || (_ o _) |  ||  ( ' )  \|   | ' (`. _` /|| (_ o _) |  |        
+(  .  .-'_/  )|  _( )_  ||  (_,_)  |  || (_{;}_) ||   | | (_ (_) _)|  (_,_)  |  |        
+ `-'`-'     / \ (_ o _) /|  |      |  ||  (_,_)  /|   |  \ /  . \ /|  |      |  |        
+   `\_____.'   '.(_,_).' '--'      '--'/_______.' '---'   ``-'`-'' '--'      '--'        
+                                                                                         
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai.commands.cambium;
+
+import net.famzangl.minecraft.minebot.ai.AIHelper;
+import net.famzangl.minecraft.minebot.ai.PathFinderFieldBenchmark;
+import net.famzangl.minecraft.minebot.ai.command.AICommand;
+import net.famzangl.minecraft.minebot.ai.command.AICommandInvocation;
+import net.famzangl.minecraft.minebot.ai.command.AICommandParameter;
+import net.famzangl.minecraft.minebot.ai.command.AIChatController;
+import net.famzangl.minecraft.minebot.ai.command.ParameterType;
+import net.famzangl.minecraft.minebot.ai.strategy.AIStrategy;
+
+@AICommand(helpText = "Times pathfinder searches in an open field, with new and with reused search fields", name = "cambium")
+public class CommandPathField {
+	@AICommandInvocation()
+	public static AIStrategy run(
+			AIHelper helper,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "pathfield", description = "") String nameArg,
+			@AICommandParameter(type = ParameterType.NUMBER, description = "searches", optional = true) Integer searches) {
+		try {
+			for (String line : PathFinderFieldBenchmark.run(searches == null ? 20 : searches)) {
+				AIChatController.addChatLine(line);
+			}
+		} catch (Exception e) {
+			AIChatController.addChatLine("Error: " + e.toString());
+			e.printStackTrace();
+		}
+		return null;
+	}
+}
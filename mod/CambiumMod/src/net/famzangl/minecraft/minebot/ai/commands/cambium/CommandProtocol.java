@@ -0,0 +1,39 @@
+/*******************************************************************************
+    _______      ____    ,---.    ,---. _______  .-./`)   ___    _ ,---.    ,---.        
+   /   __  \   .'  __ `. |    \  /    |\  ____  \\ .-.').'   |  | ||    \  /    |        
+  | ._/  \__) /   '  \  \|  ,  \/  ,  || |    \ |/ `-' \|   .|  | ||  ,  \/  ,  |        
+,-./  )       |___|  /  ||  |\_   /|  || |____/ / `-'`"`.'  'L  | ||  |\_   /|  |        
+\  '_ '`)        _.-`   ||  _( )_/ |  ||   _ _ '. .---. '   ( \.-.||  _( )_/ |  |        
+ > (_)  )  __ .'   _    || (_ o _) |  ||  ( ' )  \|   | ' (`. _` /|| (_ o _) |  |        
+(  .  .-'_/  )|  _( )_  ||  (_,_)  |  || (_{;}_) ||   | | (_ (_) _)|  (_,_)  |  |        
+ `-'`-'     / \ (_ o _) /|  |      |  ||  (_,_)  /|   |  \ /  . \ /|  |      |  |        
+   `\_____.'   '.(_,_).' '--'      '--'/_______.' '---'   ``-'`-'' '--'      '--'        
+                                                                                         
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai.commands.cambium;
+
+import net.famzangl.minecraft.minebot.ai.AIHelper;
+import net.famzangl.minecraft.minebot.ai.command.AICommand;
+import net.famzangl.minecraft.minebot.ai.command.AICommandInvocation;
+import net.famzangl.minecraft.minebot.ai.command.AICommandParameter;
+import net.famzangl.minecraft.minebot.ai.command.AIChatController;
+import net.famzangl.minecraft.minebot.ai.command.ParameterType;
+import net.famzangl.minecraft.minebot.ai.strategy.AIStrategy;
+import net.famzangl.minecraft.minebot.ai.strategy.cambium.RLControllerStrategy;
+
+@AICommand(helpText = "Compares the JSON and binary observation protocol (size, encode time, round trip)", name = "cambium")
+public class CommandProtocol {
+	@AICommandInvocation()
+	public static AIStrategy run(
+			AIHelper helper,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "protocol", description = "") String nameArg,
+			@AICommandParameter(type = ParameterType.NUMBER, description = "iterations", optional = true) Integer iterations) {
+		try {
+			new RLControllerStrategy().reportWireFormats(helper, iterations == null ? 1000 : iterations);
+		} catch (Exception e) {
+			AIChatController.addChatLine("Error: " + e.toString());
+			e.printStackTrace();
+		}
+		return null;
+	}
+}
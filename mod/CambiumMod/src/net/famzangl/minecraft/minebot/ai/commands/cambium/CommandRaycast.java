@@ -0,0 +1,130 @@
+/*******************************************************************************
+    _______      ____    ,---.    ,---. _______  .-./`)   ___    _ ,---.    ,---.        
+   /   __  \   .'  __ `. |    \  /    |\  ____  \\ .-.').'   |  | ||    \  /    |        
+  | ._/  \__) /   '  \  \|  ,  \/  ,  || |    \ |/ `-' \|   .|  | ||  ,  \/  ,  |        
+,-./  )       |___|  /  ||  |\_   /|  || |____/ / `-'`"`.'  'L  | ||  |\_   /|  |        
+\  '_ '`)        _.-`   ||  _( )_/ |  ||   _ _ '. .---. '   ( \.-.||  _( )_/ |  |        
+ > (_)  )  __ .'   _    || (_ o _) |  ||  ( ' )  \|   | ' (`. _` /|| (_ o _) |  |        
+(  .  .-'_/  )|  _( )_  ||  (_,_)  |  || (_{;}_) ||   | | (_ (_) _)|  (_,_)  |  |        
+ `-'`-'     / \ (_ o _) /|  |      |  ||  (_,_)  /|   |  \ /  . \ /|  |      |  |        
+   `\_____.'   '.(_,_).' '--'      '--'/_______.' '---'   ``-'`-'' '--'      '--'        
+                                                                                         
+ *******************************************************************************/
+package net.famzangl.minecraft.minebot.ai.commands.cambium;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import net.famzangl.minecraft.minebot.ai.AIHelper;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.BlockData;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.GetInformation.BlockRaycaster;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.GetInformation.GetBlocks;
+import net.famzangl.minecraft.minebot.ai.command.AICommand;
+import net.famzangl.minecraft.minebot.ai.command.AICommandInvocation;
+import net.famzangl.minecraft.minebot.ai.command.AICommandParameter;
+import net.famzangl.minecraft.minebot.ai.command.AIChatController;
+import net.famzangl.minecraft.minebot.ai.command.ParameterType;
+import net.famzangl.minecraft.minebot.ai.strategy.AIStrategy;
+import net.minecraft.entity.player.EntityPlayer;
+
+@AICommand(helpText = "Checks the block raycaster against World.rayTraceBlocks around the player and times both,\n"
+		+ "or shows how many casts the block observation cache saved", name = "cambium")
+public class CommandRaycast {
+	/**
+	 * Eye offsets to compare from, so block edges and partial blocks get hit at different angles.
+	 */
+	private static final double[][] OFFSETS = {
+			{ 0, 0, 0 }, { .3, 0, -.2 }, { -.45, .5, .1 }, { 1.5, 1, -1.5 },
+			{ -2.25, -.5, 2.75 }, { .5, -1.2, .5 } };
+
+	@AICommandInvocation()
+	public static AIStrategy run(
+			AIHelper helper,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "raycast", description = "") String nameArg,
+			@AICommandParameter(type = ParameterType.NUMBER, description = "iterations", optional = true) Integer iterations) {
+		EntityPlayer player = helper.getMinecraft().thePlayer;
+		if (player == null || helper.getWorld() == null) {
+			AIChatController.addChatLine("No world loaded.");
+			return null;
+		}
+		try {
+			GetBlocks getBlocks = new GetBlocks(helper);
+			BlockRaycaster raycaster = new BlockRaycaster();
+			int px = (int) player.posX;
+			int py = (int) player.posY;
+			int pz = (int) player.posZ;
+			double eyeX = player.posX;
+			double eyeY = player.posY + player.getEyeHeight();
+			double eyeZ = player.posZ;
+
+			int mismatches = 0;
+			int compared = 0;
+			double maxDistanceError = 0;
+			for (double[] offset : OFFSETS) {
+				double x = eyeX + offset[0];
+				double y = eyeY + offset[1];
+				double z = eyeZ + offset[2];
+				HashMap<String, Double> vanilla = new HashMap<String, Double>();
+				for (BlockData block : getBlocks.doRaytraceVanilla(x, y, z)) {
+					vanilla.put(key(block.getX() + px, block.getY() + py, block.getZ() + pz, block.getBlockId()), block.getDistance());
+				}
+				int count = raycaster.cast(helper.getWorld(), x, y, z, GetBlocks.MAX_DISTANCE);
+				for (int i = 0; i < count; i++) {
+					Double distance = vanilla.remove(key(raycaster.getX(i), raycaster.getY(i), raycaster.getZ(i),
+							raycaster.getBlockWithMeta(i) >> 4));
+					if (distance == null) {
+						mismatches++;
+					} else {
+						maxDistanceError = Math.max(maxDistanceError, Math.abs(distance - raycaster.getDistance(i)));
+						compared++;
+					}
+				}
+				mismatches += vanilla.size();
+			}
+			AIChatController.addChatLine("Raycaster: " + compared + " blocks equal from " + OFFSETS.length
+					+ " positions, " + mismatches + " mismatches, max distance error " + maxDistanceError);
+
+			int n = iterations == null ? 200 : iterations;
+			long start = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				getBlocks.doRaytraceVanilla(eyeX, eyeY, eyeZ);
+			}
+			long vanillaNanos = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				raycaster.cast(helper.getWorld(), eyeX, eyeY, eyeZ, GetBlocks.MAX_DISTANCE);
+			}
+			long ddaNanos = System.nanoTime() - start;
+			AIChatController.addChatLine("rayTraceBlocks: " + (vanillaNanos / n / 1000.0) + " us/cast, raycaster: "
+					+ (ddaNanos / n / 1000.0) + " us/cast (" + BlockRaycaster.RAY_COUNT + " rays)");
+		} catch (Exception e) {
+			AIChatController.addChatLine("Error: " + e.toString());
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@AICommandInvocation()
+	public static AIStrategy run(
+			AIHelper helper,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "raycast", description = "") String nameArg,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "cache", description = "") String cacheArg) {
+		AIChatController.addChatLine("Block cache: " + GetBlocks.getCache().getStatsLine());
+		return null;
+	}
+
+	@AICommandInvocation()
+	public static AIStrategy run(
+			AIHelper helper,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "raycast", description = "") String nameArg,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "cache", description = "") String cacheArg,
+			@AICommandParameter(type = ParameterType.FIXED, fixedName = "reset", description = "Reset the counters") String resetArg) {
+		GetBlocks.getCache().resetCounters();
+		AIChatController.addChatLine("Block cache counters reset.");
+		return null;
+	}
+
+	private static String key(int x, int y, int z, int blockId) {
+		return x + "," + y + "," + z + ":" + blockId;
+	}
+}
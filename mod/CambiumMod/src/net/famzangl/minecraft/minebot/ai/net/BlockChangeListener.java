@@ -0,0 +1,11 @@
+package net.famzangl.minecraft.minebot.ai.net;
+
+/**
+ * A {@link ChunkListener} that wants to know which block changed. For single
+ * block changes, {@link #blockChanged(int, int, int)} is called instead of
+ * {@link #chunkChanged(int, int)}. chunkChanged then means that the whole
+ * chunk was sent.
+ */
+public interface BlockChangeListener extends ChunkListener {
+	void blockChanged(int x, int y, int z);
+}
@@ -249,8 +249,8 @@ public class MinebotNetHandler extends NetHandlerPlayClient implements
 	public void handleMapChunkBulk(S26PacketMapChunkBulk packetIn) {
 		for (int i = 0; i < packetIn.getChunkCount(); ++i) {
 			int x = packetIn.getChunkX(i);
-			int y = packetIn.getChunkX(i);
-			fireChunkChange(x, y);
+			int z = packetIn.getChunkZ(i);
+			fireChunkChange(x, z);
 		}
 		super.handleMapChunkBulk(packetIn);
 	}
@@ -278,7 +278,14 @@ public class MinebotNetHandler extends NetHandlerPlayClient implements
 	private void blockChange(BlockPos pos) {
 		int chunkPosX = pos.getX() >> 4;
 		int chunkPosZ = pos.getZ() >> 4;
-		fireChunkChange(chunkPosX, chunkPosZ);
+		for (ChunkListener l : listeners) {
+			if (l instanceof BlockChangeListener) {
+				((BlockChangeListener) l).blockChanged(pos.getX(),
+						pos.getY(), pos.getZ());
+			} else {
+				l.chunkChanged(chunkPosX, chunkPosZ);
+			}
+		}
 	}
 
 	private void fireChunkChange(int chunkPosX, int chunkPosZ) {
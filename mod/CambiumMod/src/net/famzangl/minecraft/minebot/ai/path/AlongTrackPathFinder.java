@@ -38,6 +38,33 @@ public class AlongTrackPathFinder extends MovePathFinder {
 				&& dx * (x - cx) >= 0) && (length < 0 || getStepNumber(x, z) <= length);
 	}
 
+	/**
+	 * The destinations are all on the track, so this is the number of steps
+	 * sideways to the nearest track block.
+	 */
+	@Override
+	protected int estimateDistance(int x, int y, int z) {
+		int estimate = Integer.MAX_VALUE;
+		if (dz != 0) {
+			estimate = Math.abs(x - cx) + stepsToTrack(dz * (z - cz));
+		}
+		if (dx != 0) {
+			estimate = Math.min(estimate,
+					Math.abs(z - cz) + stepsToTrack(dx * (x - cx)));
+		}
+		return estimate == Integer.MAX_VALUE ? 0 : estimate;
+	}
+
+	private int stepsToTrack(int along) {
+		if (along < 0) {
+			return -along;
+		} else if (length >= 0 && along > length) {
+			return along - length;
+		} else {
+			return 0;
+		}
+	}
+
 	/**
 	 * Only works if (x, y, z) is on track.
 	 * 
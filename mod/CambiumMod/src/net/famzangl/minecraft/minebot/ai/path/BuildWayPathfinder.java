@@ -354,6 +354,14 @@ public class BuildWayPathfinder extends AlongTrackPathFinder {
 		return wayTypes.get(progress);
 	}
 
+	/**
+	 * Does not compute the way type, it reads the world. A way piece is only
+	 * done once it was computed and built.
+	 */
+	private boolean isWayPieceDone(int progress) {
+		return progress < wayTypes.size() && wayTypes.get(progress).isDone();
+	}
+
 	public EnumFacing getForwardDirection() {
 		return AIHelper.getDirectionForXZ(dx, dz);
 	}
@@ -419,7 +427,7 @@ public class BuildWayPathfinder extends AlongTrackPathFinder {
 			return -1;
 		}
 		final int currentStep = getStepNumber(x, z);
-		if (y == cy - 1 && !getSuggestedWayType(currentStep).isDone()) {
+		if (y == cy - 1 && !isWayPieceDone(currentStep)) {
 			return distance;
 		} else {
 			return -1;
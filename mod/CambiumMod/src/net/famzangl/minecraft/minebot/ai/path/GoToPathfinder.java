@@ -33,8 +33,18 @@ public class GoToPathfinder extends WalkingPathfinder {
 		return super.runSearch(playerPosition);
 	}
 
+	@Override
+	protected boolean canRepairSearch() {
+		return true;
+	}
+
 	@Override
 	protected float rateDestination(int distance, int x, int y, int z) {
-		return position.getX() == x && position.getY() == y && position.getZ() == z ? 1 : -1;
+		return position.getX() == x && position.getY() == y && position.getZ() == z ? distance : -1;
+	}
+
+	@Override
+	protected int estimateDistance(int x, int y, int z) {
+		return minimalDistance(x, y, z, position.getX(), position.getY(), position.getZ());
 	}
 }
@@ -0,0 +1,142 @@
+package net.famzangl.minecraft.minebot.ai.path;
+
+import net.famzangl.minecraft.minebot.ai.path.world.BlockSets;
+import net.minecraft.util.BlockPos;
+
+/**
+ * Walks to a position that may be far outside of the search field. The route
+ * is planned on the {@link PortalGraph}, each search walks the part of it that
+ * fits into the field (a leg). When the leg is done, the strategy searches
+ * again and the route is planned again from there, with the chunks that
+ * arrived meanwhile. Planning may take a few ticks, like a search that needs
+ * more time.
+ * <p>
+ * Without a route (e.g. the player does not stand on solid ground), this
+ * searches for the goal itself, like the {@link GoToPathfinder}.
+ *
+ * @author michael
+ *
+ */
+public class LongDistancePathfinder extends WalkingPathfinder {
+	/**
+	 * How far a leg may go. The search field is 256 blocks wide and 32 high,
+	 * this leaves some space to walk around obstacles.
+	 */
+	private static final int LEG_RANGE_XZ = 96;
+	private static final int LEG_RANGE_Y = 12;
+
+	private final int goalX;
+	private final int goalZ;
+	/**
+	 * The goal height, -1 if any height is fine (the surface).
+	 */
+	private final int goalY;
+
+	private BlockPos leg;
+	private BlockPos legFrom;
+	private PortalGraph.RoutePlan plan;
+	private BlockPos planGoal;
+
+	public LongDistancePathfinder(BlockPos goal) {
+		this(goal.getX(), goal.getY(), goal.getZ());
+	}
+
+	/**
+	 * @param goalX
+	 * @param goalY
+	 *            -1 to go to the surface.
+	 * @param goalZ
+	 */
+	public LongDistancePathfinder(int goalX, int goalY, int goalZ) {
+		this.goalX = goalX;
+		this.goalY = goalY;
+		this.goalZ = goalZ;
+	}
+
+	/**
+	 * @return <code>true</code> if one search cannot reach the target, so a
+	 *         route is worth planning.
+	 */
+	public static boolean isFarAway(BlockPos from, BlockPos to) {
+		return Math.abs(to.getX() - from.getX()) > LEG_RANGE_XZ
+				|| Math.abs(to.getZ() - from.getZ()) > LEG_RANGE_XZ
+				|| Math.abs(to.getY() - from.getY()) > LEG_RANGE_Y;
+	}
+
+	@Override
+	protected boolean runSearch(BlockPos playerPosition) {
+		if (isGoal(playerPosition.getX(), playerPosition.getY(),
+				playerPosition.getZ())) {
+			return true;
+		}
+		if (!playerPosition.equals(legFrom)) {
+			// Not while a search for this leg still needs more time.
+			planGoal = findGoal(playerPosition);
+			plan = PortalGraph.getInstance().planLeg(
+					helper.getNetworkHelper(), playerPosition, planGoal,
+					LEG_RANGE_XZ, LEG_RANGE_Y);
+			legFrom = playerPosition;
+		}
+		if (plan != null) {
+			if (!plan.run(world)) {
+				return false;
+			}
+			leg = plan.getLeg();
+			if (leg == null) {
+				leg = planGoal;
+			}
+			plan = null;
+		}
+		return super.runSearch(playerPosition);
+	}
+
+	/**
+	 * The goal, for a goal without height the surface there or (if the chunk
+	 * is not loaded yet) a guess.
+	 */
+	private BlockPos findGoal(BlockPos playerPosition) {
+		if (goalY >= 0) {
+			return new BlockPos(goalX, goalY, goalZ);
+		}
+		for (int y = 255; y > 0; y--) {
+			if (BlockSets.SAFE_GROUND.isAt(world, goalX, y - 1, goalZ)
+					&& BlockSets.FEET_CAN_WALK_THROUGH.isAt(world, goalX, y,
+							goalZ)
+					&& BlockSets.HEAD_CAN_WALK_TRHOUGH.isAt(world, goalX,
+							y + 1, goalZ)) {
+				return new BlockPos(goalX, y, goalZ);
+			}
+		}
+		return new BlockPos(goalX, playerPosition.getY(), goalZ);
+	}
+
+	private boolean isGoal(int x, int y, int z) {
+		return x == goalX && z == goalZ && (goalY < 0 || y == goalY);
+	}
+
+	@Override
+	protected boolean canRepairSearch() {
+		return true;
+	}
+
+	@Override
+	protected float rateDestination(int distance, int x, int y, int z) {
+		if (isGoal(x, y, z)) {
+			return distance;
+		}
+		return leg.getX() == x && leg.getY() == y && leg.getZ() == z ? distance + 1
+				: -1;
+	}
+
+	@Override
+	protected int estimateDistance(int x, int y, int z) {
+		return minimalDistance(x, y, z, leg.getX(), leg.getY(), leg.getZ());
+	}
+
+	@Override
+	public String toString() {
+		return "LongDistancePathfinder [goal=" + goalX + ","
+				+ (goalY < 0 ? "surface" : goalY) + "," + goalZ + ", leg="
+				+ leg + "]";
+	}
+}
@@ -53,6 +53,18 @@ public class MineBySettingsPathFinder extends MinePathfinder {
 		maxDistanceFactor = Math.max(MIN_FACTOR, settings.getMining().getFactorMap().getMax());
 	}
 
+	/**
+	 * Mines with a smaller search field.
+	 * 
+	 * @see MovePathFinder#MovePathFinder(int, int)
+	 */
+	protected MineBySettingsPathFinder(EnumFacing preferedDirection,
+			int preferedLayer, int sizeXZ, int sizeY) {
+		super(preferedDirection, preferedLayer, sizeXZ, sizeY);
+		maxDistancePoints = settings.getMining().getPointsMap().getMax();
+		maxDistanceFactor = Math.max(MIN_FACTOR, settings.getMining().getFactorMap().getMax());
+	}
+
 	@Override
 	protected BlockFloatMap getFactorProvider() {
 		return settings.getMining().getFactorMap(); //new FileSettingsProvider("mine_factor_", 0, 0, MAX_FACTOR);
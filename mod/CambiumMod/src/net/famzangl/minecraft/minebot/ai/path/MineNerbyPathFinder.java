@@ -19,6 +19,11 @@ public class MineNerbyPathFinder extends MineBySettingsPathFinder {
 	private static final int ACTIVATE_RADIUS_HORIZONTAL = 30;
 	private static final int ACTIVATE_RADIUS_VERTICAL = 15;
 	private static final int WIDTH = RADIUS_HORIZONTAL * 2 + 1;
+	/**
+	 * The search does not leave the nearby area, so a 32x16 field is enough.
+	 */
+	private static final int FIELD_SIZE_XZ = WIDTH + 2;
+	private static final int FIELD_SIZE_Y = RADIUS_VERTICAL * 2 + 3;
 
 	private int playerX, playerY, playerZ;
 
@@ -27,7 +32,7 @@ public class MineNerbyPathFinder extends MineBySettingsPathFinder {
 	private BlockPos activationPosition;
 
 	public MineNerbyPathFinder(EnumFacing preferedDirection) {
-		super(preferedDirection, 0);
+		super(preferedDirection, 0, FIELD_SIZE_XZ, FIELD_SIZE_Y);
 	}
 
 	@Override
@@ -88,6 +88,18 @@ public abstract class MinePathfinder extends MovePathFinder {
 		this.preferedLayer = preferedLayer;
 	}
 
+	/**
+	 * Mines with a smaller search field.
+	 * 
+	 * @see MovePathFinder#MovePathFinder(int, int)
+	 */
+	protected MinePathfinder(EnumFacing preferedDirection, int preferedLayer,
+			int sizeXZ, int sizeY) {
+		super(sizeXZ, sizeY);
+		this.preferedDirection = preferedDirection;
+		this.preferedLayer = preferedLayer;
+	}
+
 	@Override
 	protected final boolean runSearch(BlockPos playerPosition) {
 		// lazy init
@@ -17,14 +17,19 @@
 package net.famzangl.minecraft.minebot.ai.path;
 
 import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.famzangl.minecraft.minebot.ai.AIHelper;
 import net.famzangl.minecraft.minebot.ai.BlockItemFilter;
 import net.famzangl.minecraft.minebot.ai.PathFinderField;
+import net.famzangl.minecraft.minebot.ai.net.BlockChangeListener;
+import net.famzangl.minecraft.minebot.ai.net.NetworkHelper;
 import net.famzangl.minecraft.minebot.ai.path.world.BlockSet;
 import net.famzangl.minecraft.minebot.ai.path.world.BlockSets;
 import net.famzangl.minecraft.minebot.ai.path.world.Pos;
 import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldSnapshot;
 import net.famzangl.minecraft.minebot.ai.task.AITask;
 import net.famzangl.minecraft.minebot.ai.task.move.AlignToGridTask;
 import net.famzangl.minecraft.minebot.ai.task.move.DownwardsMoveTask;
@@ -44,6 +49,19 @@ import net.minecraft.util.EnumFacing;
  * <p>
  * This pathfinder uses several fields to check if a block may be walked
  * through.
+ * <p>
+ * The search itself runs on the {@link PathFinderExecutor} against a
+ * {@link WorldSnapshot}, unless cambium.path.background is false or the
+ * pathfinder needs the live world to rate blocks
+ * ({@link #canSearchInBackground()}). While it runs,
+ * {@link #searchSomethingAround(BlockPos, AIHelper, WorldData, TaskReceiver)}
+ * only polls it and the pathfinder belongs to the worker. The tasks are added
+ * on the client thread once the result is there.
+ * <p>
+ * Pathfinders that keep their search ({@link #canRepairSearch()}) listen to
+ * the block changes the server sends. Before the next search they mark the
+ * nodes whose ways out look at a changed block, so that the search is only
+ * repaired there.
  * 
  * @author Michael Zangl
  * 
@@ -63,6 +81,20 @@ public class MovePathFinder extends PathFinderField {
 			Blocks.bedrock, Blocks.cactus, Blocks.obsidian,
 			Blocks.piston_extension, Blocks.piston_head);
 
+	private static final boolean BACKGROUND = !"false".equalsIgnoreCase(System
+			.getProperty("cambium.path.background", "true"));
+	/**
+	 * How much further than the search field the snapshot for a background
+	 * search reaches. Pathfinders look a few blocks beyond the field.
+	 */
+	private static final int SNAPSHOT_MARGIN_XZ = 4;
+	private static final int SNAPSHOT_MARGIN_Y = 8;
+	/**
+	 * With more block changes than this between two searches, starting over is
+	 * faster than repairing.
+	 */
+	private static final int MAX_REPAIRED_CHANGES = 256;
+
 	/**
 	 * The AI helper
 	 */
@@ -117,8 +149,59 @@ public class MovePathFinder extends PathFinderField {
 
 	private volatile BlockPos currentTarget;
 
+	/**
+	 * The background search, <code>null</code> if none is running.
+	 */
+	private volatile PathFinderExecutor.Job job;
+	/**
+	 * The player position the current search was asked for.
+	 */
+	private BlockPos request;
+	private WorldSnapshot spareSnapshot;
+
+	// Written by the network and client thread.
+	private final ConcurrentLinkedQueue<BlockPos> changedBlocks = new ConcurrentLinkedQueue<BlockPos>();
+	private final ConcurrentLinkedQueue<Long> changedChunks = new ConcurrentLinkedQueue<Long>();
+	private final AtomicInteger changeCount = new AtomicInteger();
+	private final BlockChangeListener changeListener = new BlockChangeListener() {
+		@Override
+		public void chunkChanged(int chunkX, int chunkZ) {
+			changedChunks.add((long) chunkX << 32 | chunkZ & 0xffffffffL);
+		}
+
+		@Override
+		public void blockChanged(int x, int y, int z) {
+			if (changeCount.incrementAndGet() <= MAX_REPAIRED_CHANGES) {
+				changedBlocks.add(new BlockPos(x, y, z));
+			}
+		}
+	};
+	private NetworkHelper listeningTo;
+	/**
+	 * The world the kept search was done in.
+	 */
+	private WorldData searchedWorld;
+
 	public MovePathFinder() {
 		super();
+		initSettings();
+	}
+
+	/**
+	 * Creates a pathfinder with a smaller field, for pathfinders that never
+	 * look far.
+	 * 
+	 * @param sizeXZ
+	 *            How wide the field should be, at most 256.
+	 * @param sizeY
+	 *            How high the field should be, at most 32.
+	 */
+	protected MovePathFinder(int sizeXZ, int sizeY) {
+		super(sizeXZ, sizeY);
+		initSettings();
+	}
+
+	private void initSettings() {
 		settings = MinebotSettings.getSettings();
 		pathSettings = loadSettings(settings);
 
@@ -156,21 +239,150 @@ public class MovePathFinder extends PathFinderField {
 
 	public final boolean searchSomethingAround(BlockPos playerPosition,
 			AIHelper helper, WorldData world, TaskReceiver receiver) {
+		if (job != null) {
+			if (world != job.getSource()
+					|| !playerPosition.equals(job.getRequest())) {
+				// Someone wants a different search now.
+				job.cancel();
+			}
+			if (!job.isDone() || !job.isCancelled() && !job.isSettled()) {
+				return false;
+			}
+			final PathFinderExecutor.Job done = takeJob();
+			final LinkedList<BlockPos> path = done.getPath();
+			if (path != null && done.isUpToDate()) {
+				this.helper = helper;
+				this.receiver = receiver;
+				if (path.isEmpty()) {
+					noPathFound();
+				} else {
+					foundPath(path);
+				}
+				return true;
+			}
+		}
 		currentTarget = null;
 		this.helper = helper;
 		this.world = world;
 		this.receiver = receiver;
+		request = playerPosition;
+		if (canRepairSearch()) {
+			listenTo(helper.getNetworkHelper());
+			markChanges(world);
+		}
 		return runSearch(playerPosition);
 	}
 
+	private void listenTo(NetworkHelper networkHelper) {
+		if (networkHelper == listeningTo) {
+			return;
+		}
+		if (listeningTo != null) {
+			listeningTo.removeChunkChangeListener(changeListener);
+		}
+		listeningTo = networkHelper;
+		if (networkHelper != null) {
+			networkHelper.addChunkChangeListener(changeListener);
+			// We missed the changes in between.
+			forgetSearch();
+		}
+	}
+
+	/**
+	 * Hands the changes since the last search to the kept search. The ways out
+	 * of a node look at blocks up to 2 blocks sideways, 2 below and 4 above
+	 * it.
+	 */
+	private void markChanges(WorldData world) {
+		if (world != searchedWorld
+				|| changeCount.get() > MAX_REPAIRED_CHANGES) {
+			forgetSearch();
+		}
+		searchedWorld = world;
+		changeCount.set(0);
+		Long chunk;
+		while ((chunk = changedChunks.poll()) != null) {
+			markChunkChanged((int) (chunk >> 32), (int) (long) chunk);
+		}
+		BlockPos pos;
+		while ((pos = changedBlocks.poll()) != null) {
+			for (int x = pos.getX() - 2; x <= pos.getX() + 2; x++) {
+				for (int z = pos.getZ() - 2; z <= pos.getZ() + 2; z++) {
+					for (int y = pos.getY() - 4; y <= pos.getY() + 2; y++) {
+						markNodeChanged(x, y, z);
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * 
 	 * @param playerPosition
 	 * @return <code>false</code> When pathfinding should be given more time.
 	 */
 	protected boolean runSearch(BlockPos playerPosition) {
-		return super.searchSomethingAround(playerPosition.getX(),
-				playerPosition.getY(), playerPosition.getZ());
+		if (!BACKGROUND || !canSearchInBackground()) {
+			return super.searchSomethingAround(playerPosition.getX(),
+					playerPosition.getY(), playerPosition.getZ());
+		}
+		final WorldSnapshot snapshot = WorldSnapshot.take(world,
+				playerPosition, getFieldSizeXZ() / 2 + SNAPSHOT_MARGIN_XZ,
+				getFieldSizeY() / 2 + SNAPSHOT_MARGIN_Y, spareSnapshot);
+		spareSnapshot = null;
+		final WorldData source = world;
+		world = snapshot;
+		job = PathFinderExecutor.getInstance().submit(this, snapshot, source,
+				playerPosition, request, helper.getNetworkHelper());
+		return false;
+	}
+
+	/**
+	 * Whether the search may run on the worker thread. It then only sees a
+	 * {@link WorldSnapshot} as {@link #world} and must not use
+	 * {@link #helper}, the player or any other live game state while
+	 * searching. {@link #runSearch(BlockPos)} and {@link #foundPath(LinkedList)}
+	 * still run on the client thread.
+	 * 
+	 * @return <code>true</code> if the search can run in the background.
+	 */
+	protected boolean canSearchInBackground() {
+		return true;
+	}
+
+	/**
+	 * Called by the {@link PathFinderExecutor} on its worker thread.
+	 */
+	LinkedList<BlockPos> searchInBackground(BlockPos center) {
+		return searchPath(center.getX(), center.getY(), center.getZ(), 0);
+	}
+
+	private PathFinderExecutor.Job takeJob() {
+		final PathFinderExecutor.Job done = job;
+		job = null;
+		PathFinderExecutor.getInstance().release(done);
+		world = done.getSource();
+		spareSnapshot = done.getSnapshot();
+		return done;
+	}
+
+	@Override
+	protected boolean isCancelled() {
+		final PathFinderExecutor.Job current = job;
+		return current != null && current.isCancelled();
+	}
+
+	@Override
+	public void abort() {
+		listenTo(null);
+		if (job == null) {
+			super.abort();
+		} else {
+			job.cancel();
+			if (job.isDone()) {
+				takeJob();
+			}
+		}
 	}
 
 	@Override
@@ -359,6 +571,27 @@ public class MovePathFinder extends PathFinderField {
 		return distance;
 	}
 
+	/**
+	 * The smallest distance {@link #distanceFor(int, int)} can add up to
+	 * between two blocks, for {@link #estimateDistance(int, int, int)}. A step
+	 * sideways costs at least 1, a step down (straight or sideways) at least 2
+	 * and a step up (straight or sideways, like the {@link WalkingPathfinder}
+	 * does) at least 3.
+	 * 
+	 * @return The lower bound.
+	 */
+	protected static int minimalDistance(int fromX, int fromY, int fromZ,
+			int toX, int toY, int toZ) {
+		final int horizontal = Math.abs(toX - fromX) + Math.abs(toZ - fromZ);
+		if (toY < fromY) {
+			final int down = fromY - toY;
+			return Math.max(horizontal, down) + down;
+		} else {
+			final int up = toY - fromY;
+			return Math.max(horizontal, up) + 2 * up;
+		}
+	}
+
 	protected int materialDistance(int x, int y, int z, boolean asFloor) {
 		if (asFloor && shortFootBlocks.isAt(world, x, y, z) || !asFloor
 				&& shortHeadBlocks.isAt(world, x, y, z)) {
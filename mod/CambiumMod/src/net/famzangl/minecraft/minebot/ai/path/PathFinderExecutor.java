@@ -0,0 +1,253 @@
+package net.famzangl.minecraft.minebot.ai.path;
+
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.famzangl.minecraft.minebot.ai.net.ChunkListener;
+import net.famzangl.minecraft.minebot.ai.net.NetworkHelper;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldSnapshot;
+import net.minecraft.client.Minecraft;
+import net.minecraft.util.BlockPos;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs the searches of {@link MovePathFinder}s on a worker thread, so that a
+ * large search does not stall the client tick.
+ * <p>
+ * A {@link Job} searches a {@link WorldSnapshot}. The client thread only polls
+ * it ({@link Job#isDone()}) or cancels it. Chunk changes in the snapshot's
+ * area are collected until the pathfinder took the result. Before using it the
+ * pathfinder compares those chunks with the world again
+ * ({@link Job#isUpToDate()}) and searches again if they differ. A change the
+ * world delta already expected does not count.
+ * <p>
+ * chunkChanged is called from the network thread as well, everything else
+ * from the client thread. The network thread reports a packet before the
+ * client thread applied it, so such a chunk cannot be compared until the
+ * client thread reported it, too ({@link Job#isSettled()}). One worker serves
+ * all bots of this client.
+ */
+public class PathFinderExecutor implements ChunkListener {
+	private static final Logger LOGGER = LogManager
+			.getLogger(PathFinderExecutor.class);
+	private static final PathFinderExecutor INSTANCE = new PathFinderExecutor();
+
+	public static final class Job implements Runnable {
+		private final MovePathFinder pathFinder;
+		private final WorldSnapshot snapshot;
+		private final WorldData source;
+		private final BlockPos center;
+		private final BlockPos request;
+		private final Set<Long> changedChunks = ConcurrentHashMap.newKeySet();
+		// Changes reported by the network thread, not yet by the client thread
+		private final AtomicInteger unappliedChanges = new AtomicInteger();
+		private volatile boolean cancelled;
+		private volatile boolean done;
+		// Written by the worker before done is set
+		private LinkedList<BlockPos> path;
+		private RuntimeException error;
+
+		private Job(MovePathFinder pathFinder, WorldSnapshot snapshot,
+				WorldData source, BlockPos center, BlockPos request) {
+			this.pathFinder = pathFinder;
+			this.snapshot = snapshot;
+			this.source = source;
+			this.center = center;
+			this.request = request;
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			try {
+				if (!cancelled) {
+					path = pathFinder.searchInBackground(center);
+				}
+			} catch (RuntimeException e) {
+				error = e;
+			} finally {
+				done = true;
+				if (cancelled) {
+					INSTANCE.jobs.remove(this);
+				}
+			}
+			LOGGER.debug("Background search around " + center + " took "
+					+ (System.nanoTime() - start) / 1000000 + " ms"
+					+ (cancelled ? " and was cancelled" : ""));
+		}
+
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		public boolean isDone() {
+			return done;
+		}
+
+		public WorldSnapshot getSnapshot() {
+			return snapshot;
+		}
+
+		/**
+		 * @return The world the snapshot was taken of.
+		 */
+		public WorldData getSource() {
+			return source;
+		}
+
+		/**
+		 * @return The player position the search was started for.
+		 */
+		public BlockPos getRequest() {
+			return request;
+		}
+
+		/**
+		 * @return The path, empty if there is none, <code>null</code> if the
+		 *         search was cancelled.
+		 * @throws RuntimeException
+		 *             What the search threw.
+		 */
+		public LinkedList<BlockPos> getPath() {
+			if (error != null) {
+				throw error;
+			}
+			return cancelled ? null : path;
+		}
+
+		/**
+		 * @return <code>false</code> while a chunk change in the snapshot is
+		 *         still waiting for the client thread. Then
+		 *         {@link #isUpToDate()} would compare the old blocks.
+		 */
+		public boolean isSettled() {
+			return unappliedChanges.get() == 0;
+		}
+
+		/**
+		 * Client thread only, once the job is done and settled.
+		 *
+		 * @return <code>false</code> if a block in the snapshot changed since
+		 *         it was taken.
+		 */
+		public boolean isUpToDate() {
+			if (changedChunks.isEmpty()) {
+				return true;
+			}
+			source.invalidateChunkCache();
+			for (long chunk : changedChunks) {
+				if (!snapshot.matches(source, (int) (chunk >> 32), (int) chunk)) {
+					LOGGER.debug("The world changed during the search around "
+							+ center + ", searching again.");
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private final ExecutorService worker = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Cambium pathfinder");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+	private final CopyOnWriteArrayList<Job> jobs = new CopyOnWriteArrayList<Job>();
+	private NetworkHelper registeredWith;
+
+	private PathFinderExecutor() {
+	}
+
+	public static PathFinderExecutor getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Starts a search. The pathfinder belongs to the worker until the job is
+	 * done.
+	 *
+	 * @param pathFinder
+	 * @param snapshot
+	 *            The world to search, the pathfinder already uses it.
+	 * @param source
+	 *            The world the snapshot was taken of.
+	 * @param center
+	 *            Where the search starts.
+	 * @param request
+	 *            The player position the search was asked for.
+	 * @param networkHelper
+	 *            Reports the chunk changes, may be <code>null</code>.
+	 * @return The job.
+	 */
+	Job submit(MovePathFinder pathFinder, WorldSnapshot snapshot,
+			WorldData source, BlockPos center, BlockPos request,
+			NetworkHelper networkHelper) {
+		listenTo(networkHelper);
+		Job job = new Job(pathFinder, snapshot, source, center, request);
+		jobs.add(job);
+		worker.execute(job);
+		return job;
+	}
+
+	/**
+	 * Stops collecting chunk changes for a job the pathfinder is done with.
+	 *
+	 * @param job
+	 */
+	void release(Job job) {
+		jobs.remove(job);
+	}
+
+	private void listenTo(NetworkHelper networkHelper) {
+		if (networkHelper == registeredWith) {
+			return;
+		}
+		if (registeredWith != null) {
+			registeredWith.removeChunkChangeListener(this);
+		}
+		registeredWith = networkHelper;
+		if (networkHelper != null) {
+			networkHelper.addChunkChangeListener(this);
+		}
+	}
+
+	@Override
+	public void chunkChanged(int chunkX, int chunkZ) {
+		final boolean applied = Minecraft.getMinecraft()
+				.isCallingFromMinecraftThread();
+		final long chunk = (long) chunkX << 32 | chunkZ & 0xffffffffL;
+		for (Job job : jobs) {
+			if (job.snapshot.containsChunk(chunkX, chunkZ)) {
+				if (!applied) {
+					job.unappliedChanges.incrementAndGet();
+				}
+				job.changedChunks.add(chunk);
+				if (applied) {
+					// The client thread applies the packet right after this.
+					int unapplied;
+					do {
+						unapplied = job.unappliedChanges.get();
+					} while (unapplied > 0
+							&& !job.unappliedChanges.compareAndSet(unapplied,
+									unapplied - 1));
+				}
+			}
+		}
+	}
+}
@@ -123,6 +123,8 @@ public class PlantPathFinder extends MovePathFinder {
 	}
 
 	private final PlantType type;
+	private boolean hasSeeds;
+	private boolean hasHoe;
 
 	public PlantPathFinder(PlantType type) {
 		this.type = type;
@@ -133,19 +135,25 @@ public class PlantPathFinder extends MovePathFinder {
 		return settingsRoot.getPathfinding().getPlanting();
 	}
 
+	@Override
+	protected boolean runSearch(BlockPos playerPosition) {
+		// rateDestination may run on the worker, it must not use the inventory.
+		hasSeeds = helper.canSelectItem(new SeedFilter(type));
+		hasHoe = helper.canSelectItem(new ClassItemFilter(ItemHoe.class));
+		return super.runSearch(playerPosition);
+	}
+
 	@Override
 	protected float rateDestination(int distance, int x, int y, int z) {
 		if (isGrown(world, x, y, z)) {
 			return distance + 1;
 		} else if (BlockSets.AIR.isAt(world, x, y, z)
-				&& type.farmland.isAt(world, x, y - 1, z)
-				&& helper.canSelectItem(new SeedFilter(type))) {
+				&& type.farmland.isAt(world, x, y - 1, z) && hasSeeds) {
 			return distance + 1;
 		} else if (type.farmland == FARMLAND
 				&& BlockSets.AIR.isAt(world, x, y, z)
-				&& FARMLANDABLE.contains(helper.getBlock(x, y - 1, z))
-				&& helper.canSelectItem(new SeedFilter(type))
-				&& helper.canSelectItem(new ClassItemFilter(ItemHoe.class))) {
+				&& FARMLANDABLE.isAt(world, x, y - 1, z) && hasSeeds
+				&& hasHoe) {
 			return distance + 10;
 		} else {
 			return -1;
@@ -0,0 +1,774 @@
+package net.famzangl.minecraft.minebot.ai.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import net.famzangl.minecraft.minebot.ai.net.ChunkListener;
+import net.famzangl.minecraft.minebot.ai.net.NetworkHelper;
+import net.famzangl.minecraft.minebot.ai.path.world.BlockSets;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
+import net.minecraft.client.multiplayer.WorldClient;
+import net.minecraft.util.BlockPos;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A coarse map of the world to plan routes further than the search field of a
+ * {@link MovePathFinder} reaches.
+ * <p>
+ * The world is split into sections of 16x16x16 feet positions. The positions
+ * of a section a player can stand on are grouped into areas connected by
+ * walking. Every area gets one door per neighbouring section it can step into.
+ * Doors of the same area are connected by their walking distance inside the
+ * section, a door with the door of the neighbour it leads to by one step.
+ * Routes are planned on the doors with A*, the {@link LongDistancePathfinder}
+ * then walks them leg by leg with the normal pathfinder. A plan may take
+ * several ticks ({@link RoutePlan}).
+ * <p>
+ * Walking means stepping sideways, one block up or down. This is less than the
+ * pathfinders can do, so the route may take a detour the legs then cut short.
+ * <p>
+ * Sections are computed when a route needs them and cached for the world. A
+ * chunk change drops the sections of that chunk and of its neighbours, since
+ * their doors lead into it. Chunks that are not loaded have no doors: a route
+ * to a goal out of sight ends at the door closest to it and is planned again
+ * when the bot got there and more chunks arrived.
+ * <p>
+ * chunkChanged is called from the network thread as well, everything else
+ * from the client thread.
+ */
+public class PortalGraph implements ChunkListener {
+	private static final Logger LOGGER = LogManager
+			.getLogger(PortalGraph.class);
+	private static final PortalGraph INSTANCE = new PortalGraph();
+
+	/**
+	 * How many doors one route search may expand.
+	 */
+	private static final int MAX_EXPANDED = 50000;
+	/**
+	 * How long one call of {@link RoutePlan#run(WorldData)} may plan, in ms.
+	 */
+	private static final long MAX_PLAN_TIME = 15;
+	/**
+	 * How often a plan starts over before it ignores the time limit.
+	 */
+	private static final int MAX_RESTARTS = 3;
+	/**
+	 * Sections with areas use 4 KB each.
+	 */
+	private static final int MAX_CACHED_SECTIONS = 4096;
+	private static final int CELLS = 16 * 16 * 16;
+	private static final int NO_AREA = 0;
+	private static final long START = -1;
+	private static final long GOAL = -2;
+	private static final int[][] STEPS = { { 1, 0 }, { -1, 0 }, { 0, 1 },
+			{ 0, -1 } };
+
+	private static final class Door {
+		/**
+		 * The cell in this section.
+		 */
+		private final int cell;
+		private final int area;
+		/**
+		 * The section and cell the door leads to.
+		 */
+		private final long toSection;
+		private final int toCell;
+		/**
+		 * The walking distance to the other doors of the section, -1 if they
+		 * are in another area.
+		 */
+		private int[] distances;
+
+		public Door(int cell, int area, long toSection, int toCell) {
+			this.cell = cell;
+			this.area = area;
+			this.toSection = toSection;
+			this.toCell = toCell;
+		}
+	}
+
+	private static final class Section {
+		private final int x;
+		private final int y;
+		private final int z;
+		/**
+		 * The area of each cell, {@link #NO_AREA} if nobody can stand there.
+		 * <code>null</code> if the section has no such cell.
+		 */
+		private final byte[] areas;
+		private final Door[] doors;
+
+		public Section(int x, int y, int z, byte[] areas, Door[] doors) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.areas = areas;
+			this.doors = doors;
+		}
+
+		public int getArea(int cell) {
+			return areas == null ? NO_AREA : areas[cell] & 0xff;
+		}
+
+		public int findDoor(long toSection, int area) {
+			for (int i = 0; i < doors.length; i++) {
+				if (doors[i].toSection == toSection && doors[i].area == area) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		public BlockPos getPos(int cell) {
+			return new BlockPos(x << 4 | cell & 15, y << 4 | cell >> 8,
+					z << 4 | cell >> 4 & 15);
+		}
+	}
+
+	private static final class Open implements Comparable<Open> {
+		private final long node;
+		private final int distance;
+		private final int priority;
+
+		public Open(long node, int distance, int priority) {
+			this.node = node;
+			this.distance = distance;
+			this.priority = priority;
+		}
+
+		@Override
+		public int compareTo(Open o) {
+			// On ties, the one that got further first.
+			return priority != o.priority ? Integer.compare(priority,
+					o.priority) : Integer.compare(o.distance, distance);
+		}
+	}
+
+	private final LinkedHashMap<Long, Section> sections = new LinkedHashMap<Long, Section>(
+			256, .75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Entry<Long, Section> eldest) {
+			return size() > MAX_CACHED_SECTIONS;
+		}
+	};
+	private final ConcurrentLinkedQueue<Long> changedChunks = new ConcurrentLinkedQueue<Long>();
+	/**
+	 * The chunks dropped last time. The change is reported before the world
+	 * has it, so they are dropped once more.
+	 */
+	private final ArrayList<Long> changedBefore = new ArrayList<Long>();
+	private WorldClient cachedWorld;
+	private NetworkHelper registeredWith;
+	/**
+	 * The plan whose search state matches the cached sections.
+	 */
+	private RoutePlan running;
+
+	// BFS buffers
+	private final int[] walkDistances = new int[CELLS];
+	private final int[] walkQueue = new int[CELLS];
+
+	private PortalGraph() {
+	}
+
+	public static PortalGraph getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Starts to plan a route. Call {@link RoutePlan#run(WorldData)} until it
+	 * is done, then {@link RoutePlan#getLeg()} is the furthest position on it
+	 * that can be reached without leaving a box around the player.
+	 *
+	 * @param networkHelper
+	 *            Reports the chunk changes, may be <code>null</code>.
+	 * @param from
+	 *            The player position.
+	 * @param to
+	 *            The goal.
+	 * @param rangeXZ
+	 *            How far the leg may go sideways.
+	 * @param rangeY
+	 *            How far the leg may go up or down.
+	 * @return The plan.
+	 */
+	public RoutePlan planLeg(NetworkHelper networkHelper, BlockPos from,
+			BlockPos to, int rangeXZ, int rangeY) {
+		return new RoutePlan(networkHelper, from, to, rangeXZ, rangeY);
+	}
+
+	/**
+	 * A route being planned. The search runs for at most
+	 * {@link PortalGraph#MAX_PLAN_TIME} per call, so that computing the
+	 * sections of a long route does not stall the client tick. It starts over
+	 * when a section it looked at was dropped meanwhile, or when another plan
+	 * ran in between.
+	 */
+	public final class RoutePlan {
+		private final NetworkHelper networkHelper;
+		private final BlockPos from;
+		private final BlockPos to;
+		private final int rangeXZ;
+		private final int rangeY;
+		/**
+		 * The sections the search looked at.
+		 */
+		private final HashSet<Long> touched = new HashSet<Long>();
+		private final HashMap<Long, Integer> distances = new HashMap<Long, Integer>();
+		private final HashMap<Long, Long> parents = new HashMap<Long, Long>();
+		private final PriorityQueue<Open> open = new PriorityQueue<Open>();
+		private boolean started;
+		private boolean stale;
+		private int restarts;
+		private long goalSection;
+		private int[] goalDistances;
+		private long closest;
+		private int closestEstimate;
+		private int closestDistance;
+		private int expanded;
+		private boolean done;
+		private LinkedList<BlockPos> route;
+		private long planTime;
+		private int calls;
+
+		private RoutePlan(NetworkHelper networkHelper, BlockPos from,
+				BlockPos to, int rangeXZ, int rangeY) {
+			this.networkHelper = networkHelper;
+			this.from = from;
+			this.to = to;
+			this.rangeXZ = rangeXZ;
+			this.rangeY = rangeY;
+		}
+
+		/**
+		 * Plans further.
+		 *
+		 * @param world
+		 * @return <code>false</code> if planning needs more time.
+		 */
+		public boolean run(WorldData world) {
+			if (done) {
+				return true;
+			}
+			final long startTime = System.nanoTime();
+			calls++;
+			if (running != this) {
+				// Changes that came in meanwhile were not checked.
+				stale = true;
+				running = this;
+			}
+			prepare(world, networkHelper);
+			if (stale && started) {
+				restarts++;
+				started = false;
+			}
+			stale = false;
+			if (!started && !start(world)) {
+				finish(startTime);
+				return true;
+			}
+			// Something keeps changing the sections, finish in one go.
+			final long deadline = restarts > MAX_RESTARTS ? Long.MAX_VALUE
+					: startTime + MAX_PLAN_TIME * 1000000;
+			while (!open.isEmpty() && expanded < MAX_EXPANDED) {
+				// Each door may compute two sections, check every time.
+				if (System.nanoTime() > deadline) {
+					planTime += System.nanoTime() - startTime;
+					return false;
+				}
+				if (expand(world)) {
+					finish(startTime);
+					return true;
+				}
+			}
+			LOGGER.debug("No route from " + from + " to " + to + " after "
+					+ expanded + " doors, going as close as possible.");
+			route = closest == START ? null : routeTo(world, parents,
+					closest, null);
+			finish(startTime);
+			return true;
+		}
+
+		/**
+		 * @return <code>false</code> if there is nothing to search.
+		 */
+		private boolean start(WorldData world) {
+			started = true;
+			touched.clear();
+			distances.clear();
+			parents.clear();
+			open.clear();
+			expanded = 0;
+			route = null;
+			final Section startSection = section(world,
+					sectionKey(from.getX() >> 4, from.getY() >> 4,
+							from.getZ() >> 4));
+			final int startCell = cellOf(from);
+			final int startArea = startSection.getArea(startCell);
+			if (startArea == NO_AREA) {
+				LOGGER.debug("Cannot plan a route, " + from
+						+ " is no walkable position.");
+				return false;
+			}
+			goalSection = sectionKey(to.getX() >> 4, to.getY() >> 4,
+					to.getZ() >> 4);
+			final Section goal = section(world, goalSection);
+			final int goalCell = cellOf(to);
+			final int goalArea = goal.getArea(goalCell);
+			if (goalSection == sectionKey(startSection) && goalArea == startArea) {
+				route = new LinkedList<BlockPos>();
+				route.add(to);
+				return false;
+			}
+			goalDistances = null;
+			if (goalArea != NO_AREA) {
+				walk(world, goal, goalCell);
+				goalDistances = new int[goal.doors.length];
+				for (int i = 0; i < goalDistances.length; i++) {
+					goalDistances[i] = walkDistances[goal.doors[i].cell];
+				}
+			}
+
+			walk(world, startSection, startCell);
+			for (int i = 0; i < startSection.doors.length; i++) {
+				final int distance = walkDistances[startSection.doors[i].cell];
+				if (startSection.doors[i].area == startArea && distance >= 0) {
+					reach(open, distances, parents, START,
+							nodeFor(startSection, i), distance,
+							estimate(startSection, startSection.doors[i].cell,
+									to));
+				}
+			}
+			closest = START;
+			closestEstimate = estimate(startSection, startCell, to);
+			closestDistance = 0;
+			return true;
+		}
+
+		/**
+		 * Expands the next door.
+		 *
+		 * @return <code>true</code> if the route to the goal was found.
+		 */
+		private boolean expand(WorldData world) {
+			final Open current = open.poll();
+			if (current.distance != distances.get(current.node)) {
+				return false;
+			}
+			if (current.node == GOAL) {
+				LOGGER.debug("Route from " + from + " to " + to
+						+ " found after " + expanded + " doors.");
+				route = routeTo(world, parents, GOAL, to);
+				return true;
+			}
+			expanded++;
+			final Section section = section(world, current.node >> 8);
+			final int index = (int) (current.node & 0xff);
+			final Door door = section.doors[index];
+			final int estimate = estimate(section, door.cell, to);
+			if (estimate < closestEstimate || estimate == closestEstimate
+					&& current.distance < closestDistance) {
+				closest = current.node;
+				closestEstimate = estimate;
+				closestDistance = current.distance;
+			}
+
+			// By key, the cache may have dropped and computed it again.
+			if (goalDistances != null
+					&& sectionKey(section) == goalSection
+					&& goalDistances[index] >= 0) {
+				reach(open, distances, parents, current.node, GOAL,
+						current.distance + goalDistances[index], 0);
+			}
+			for (int i = 0; i < section.doors.length; i++) {
+				if (i != index && door.distances[i] >= 0) {
+					reach(open, distances, parents, current.node,
+							nodeFor(section, i), current.distance
+									+ door.distances[i],
+							estimate(section, section.doors[i].cell, to));
+				}
+			}
+			final Section next = section(world, door.toSection);
+			final int nextDoor = next.findDoor(sectionKey(section),
+					next.getArea(door.toCell));
+			if (nextDoor >= 0) {
+				final int step = 1 + cellDistance(door.toCell,
+						next.doors[nextDoor].cell);
+				reach(open, distances, parents, current.node,
+						nodeFor(next, nextDoor), current.distance + step,
+						estimate(next, next.doors[nextDoor].cell, to));
+			}
+			return false;
+		}
+
+		private Section section(WorldData world, long key) {
+			touched.add(key);
+			return getSection(world, key);
+		}
+
+		private void finish(long startTime) {
+			done = true;
+			running = null;
+			planTime += System.nanoTime() - startTime;
+			LOGGER.debug("Planning from " + from + " to " + to + " took "
+					+ planTime / 1000000 + " ms in " + calls + " calls, "
+					+ restarts + " restarts.");
+			// The search state is not needed any more.
+			touched.clear();
+			distances.clear();
+			parents.clear();
+			open.clear();
+		}
+
+		/**
+		 * @return The doors to go through and the goal, or the doors to the
+		 *         position closest to the goal if it cannot be reached.
+		 *         <code>null</code> if there is no way to get closer or the
+		 *         plan is not done.
+		 */
+		public LinkedList<BlockPos> getRoute() {
+			return route;
+		}
+
+		/**
+		 * @return The end of the leg, <code>null</code> if no route was found.
+		 */
+		public BlockPos getLeg() {
+			if (route == null) {
+				return null;
+			}
+			BlockPos leg = null;
+			for (final BlockPos pos : route) {
+				if (Math.abs(pos.getX() - from.getX()) > rangeXZ
+						|| Math.abs(pos.getZ() - from.getZ()) > rangeXZ
+						|| Math.abs(pos.getY() - from.getY()) > rangeY) {
+					break;
+				}
+				leg = pos;
+			}
+			return leg == null || leg.equals(from) ? null : leg;
+		}
+	}
+
+	private void reach(PriorityQueue<Open> open,
+			HashMap<Long, Integer> distances, HashMap<Long, Long> parents,
+			long from, long node, int distance, int estimate) {
+		final Integer known = distances.get(node);
+		if (known == null || distance < known) {
+			distances.put(node, distance);
+			parents.put(node, from);
+			open.add(new Open(node, distance, distance + estimate));
+		}
+	}
+
+	private LinkedList<BlockPos> routeTo(WorldData world,
+			HashMap<Long, Long> parents, long node, BlockPos goal) {
+		final LinkedList<BlockPos> route = new LinkedList<BlockPos>();
+		if (goal != null) {
+			route.add(goal);
+			node = parents.get(node);
+		}
+		while (node != START) {
+			final Section section = getSection(world, node >> 8);
+			route.addFirst(section.getPos(section.doors[(int) (node & 0xff)].cell));
+			node = parents.get(node);
+		}
+		return route;
+	}
+
+	/**
+	 * A lower bound for the walking distance: every step goes one block
+	 * sideways and at most one up or down.
+	 */
+	private static int estimate(Section section, int cell, BlockPos to) {
+		final int x = section.x << 4 | cell & 15;
+		final int y = section.y << 4 | cell >> 8;
+		final int z = section.z << 4 | cell >> 4 & 15;
+		return Math.max(
+				Math.abs(to.getX() - x) + Math.abs(to.getZ() - z),
+				Math.abs(to.getY() - y));
+	}
+
+	private static int cellDistance(int cell1, int cell2) {
+		return Math.max(Math.abs((cell1 & 15) - (cell2 & 15))
+				+ Math.abs((cell1 >> 4 & 15) - (cell2 >> 4 & 15)),
+				Math.abs((cell1 >> 8) - (cell2 >> 8)));
+	}
+
+	private static int cellOf(BlockPos pos) {
+		return (pos.getY() & 15) << 8 | (pos.getZ() & 15) << 4 | pos.getX()
+				& 15;
+	}
+
+	private static long sectionKey(int x, int y, int z) {
+		return (x & 0x3fffffL) << 26 | (z & 0x3fffffL) << 4 | y & 15;
+	}
+
+	private static long sectionKey(Section section) {
+		return sectionKey(section.x, section.y, section.z);
+	}
+
+	private static long nodeFor(Section section, int door) {
+		return sectionKey(section) << 8 | door;
+	}
+
+	private void prepare(WorldData world, NetworkHelper networkHelper) {
+		if (networkHelper != registeredWith) {
+			if (registeredWith != null) {
+				registeredWith.removeChunkChangeListener(this);
+			}
+			registeredWith = networkHelper;
+			if (networkHelper != null) {
+				networkHelper.addChunkChangeListener(this);
+			}
+		}
+		if (world.getBackingWorld() != cachedWorld) {
+			cachedWorld = world.getBackingWorld();
+			sections.clear();
+			if (running != null) {
+				running.stale = true;
+			}
+			changedChunks.clear();
+			changedBefore.clear();
+		}
+		world.invalidateChunkCache();
+
+		final ArrayList<Long> changed = new ArrayList<Long>();
+		Long chunk;
+		while ((chunk = changedChunks.poll()) != null) {
+			changed.add(chunk);
+		}
+		changedBefore.addAll(changed);
+		for (final long c : changedBefore) {
+			final int chunkX = (int) (c >> 32);
+			final int chunkZ = (int) c;
+			for (int x = chunkX - 1; x <= chunkX + 1; x++) {
+				for (int z = chunkZ - 1; z <= chunkZ + 1; z++) {
+					if (x == chunkX || z == chunkZ) {
+						for (int y = 0; y < 16; y++) {
+							final long key = sectionKey(x, y, z);
+							sections.remove(key);
+							if (running != null
+									&& running.touched.contains(key)) {
+								running.stale = true;
+							}
+						}
+					}
+				}
+			}
+		}
+		changedBefore.clear();
+		changedBefore.addAll(changed);
+	}
+
+	@Override
+	public void chunkChanged(int chunkX, int chunkZ) {
+		changedChunks.add((long) chunkX << 32 | chunkZ & 0xffffffffL);
+	}
+
+	private Section getSection(WorldData world, long key) {
+		final int x = (int) (key >> 26) << 10 >> 10;
+		final int z = (int) (key >> 4) << 10 >> 10;
+		return getSection(world, x, (int) (key & 15), z);
+	}
+
+	private Section getSection(WorldData world, int x, int y, int z) {
+		final long key = sectionKey(x, y, z);
+		Section section = sections.get(key);
+		if (section == null) {
+			section = computeSection(world, x, y, z);
+			sections.put(key, section);
+		}
+		return section;
+	}
+
+	private Section computeSection(WorldData world, int sx, int sy, int sz) {
+		final int baseX = sx << 4;
+		final int baseY = sy << 4;
+		final int baseZ = sz << 4;
+		byte[] areas = null;
+		for (int cell = 0; cell < CELLS; cell++) {
+			if (canStand(world, baseX | cell & 15, baseY | cell >> 8, baseZ
+					| cell >> 4 & 15)) {
+				if (areas == null) {
+					areas = new byte[CELLS];
+				}
+				areas[cell] = -1;
+			}
+		}
+		if (areas == null) {
+			return new Section(sx, sy, sz, null, new Door[0]);
+		}
+
+		// Group the cells into areas
+		int area = NO_AREA;
+		for (int cell = 0; cell < CELLS; cell++) {
+			if (areas[cell] == -1) {
+				area = Math.min(area + 1, 254);
+				final int count = walkInside(world, baseX, baseY, baseZ, areas,
+						cell);
+				for (int i = 0; i < count; i++) {
+					areas[walkQueue[i]] = (byte) area;
+				}
+			}
+		}
+		final Section unfinished = new Section(sx, sy, sz, areas, null);
+
+		// One door per area and neighbour, the one closest to the middle
+		final ArrayList<Door> doors = new ArrayList<Door>();
+		final ArrayList<Integer> doorScores = new ArrayList<Integer>();
+		for (int cell = 0; cell < CELLS; cell++) {
+			final int lx = cell & 15;
+			final int ly = cell >> 8;
+			final int lz = cell >> 4 & 15;
+			if (areas[cell] == NO_AREA || lx != 0 && lx != 15 && lz != 0
+					&& lz != 15 && ly != 0 && ly != 15) {
+				continue;
+			}
+			final int x = baseX | lx;
+			final int y = baseY | ly;
+			final int z = baseZ | lz;
+			for (final int[] step : STEPS) {
+				for (int dy = -1; dy <= 1; dy++) {
+					final int tx = x + step[0];
+					final int ty = y + dy;
+					final int tz = z + step[1];
+					if (tx >> 4 == sx && ty >> 4 == sy && tz >> 4 == sz
+							|| ty < 1 || ty > 255
+							|| !canStep(world, x, y, z, tx, ty, tz)) {
+						continue;
+					}
+					final long toSection = sectionKey(tx >> 4, ty >> 4,
+							tz >> 4);
+					final int toCell = (ty & 15) << 8 | (tz & 15) << 4 | tx
+							& 15;
+					final int score = Math.abs(lx * 2 - 15)
+							+ Math.abs(lz * 2 - 15) + Math.abs(ly * 2 - 15);
+					final int existing = findDoor(doors, toSection,
+							unfinished.getArea(cell));
+					if (existing < 0) {
+						doors.add(new Door(cell, unfinished.getArea(cell),
+								toSection, toCell));
+						doorScores.add(score);
+					} else if (score < doorScores.get(existing)) {
+						doors.set(existing, new Door(cell, unfinished
+								.getArea(cell), toSection, toCell));
+						doorScores.set(existing, score);
+					}
+				}
+			}
+		}
+		if (doors.size() > 255) {
+			// Does not happen in a normal world, but the index has 8 bits.
+			doors.subList(255, doors.size()).clear();
+		}
+
+		final Section section = new Section(sx, sy, sz, areas,
+				doors.toArray(new Door[doors.size()]));
+		for (final Door door : section.doors) {
+			walk(world, section, door.cell);
+			door.distances = new int[section.doors.length];
+			for (int i = 0; i < section.doors.length; i++) {
+				door.distances[i] = walkDistances[section.doors[i].cell];
+			}
+		}
+		return section;
+	}
+
+	private static int findDoor(ArrayList<Door> doors, long toSection,
+			int area) {
+		for (int i = 0; i < doors.size(); i++) {
+			if (doors.get(i).toSection == toSection
+					&& doors.get(i).area == area) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds all cells of the section that can be reached from one by walking
+	 * inside it. They are in {@link #walkQueue}, the walking distances in
+	 * {@link #walkDistances} (-1 for the others).
+	 *
+	 * @return The number of cells.
+	 */
+	private int walkInside(WorldData world, int baseX, int baseY, int baseZ,
+			byte[] areas, int startCell) {
+		Arrays.fill(walkDistances, -1);
+		walkDistances[startCell] = 0;
+		walkQueue[0] = startCell;
+		int count = 1;
+		for (int head = 0; head < count; head++) {
+			final int cell = walkQueue[head];
+			final int x = baseX | cell & 15;
+			final int y = baseY | cell >> 8;
+			final int z = baseZ | cell >> 4 & 15;
+			for (final int[] step : STEPS) {
+				for (int dy = -1; dy <= 1; dy++) {
+					final int lx = (cell & 15) + step[0];
+					final int ly = (cell >> 8) + dy;
+					final int lz = (cell >> 4 & 15) + step[1];
+					if ((lx | ly | lz) >> 4 != 0) {
+						continue;
+					}
+					final int next = ly << 8 | lz << 4 | lx;
+					if (areas[next] == NO_AREA || walkDistances[next] >= 0
+							|| dy != 0
+							&& !hasHeadroom(world, x, y, z, x + step[0], y
+									+ dy, z + step[1])) {
+						continue;
+					}
+					walkDistances[next] = walkDistances[cell] + 1;
+					walkQueue[count++] = next;
+				}
+			}
+		}
+		return count;
+	}
+
+	private void walk(WorldData world, Section section, int startCell) {
+		walkInside(world, section.x << 4, section.y << 4, section.z << 4,
+				section.areas, startCell);
+	}
+
+	/**
+	 * @return <code>true</code> if a player can stand at that position.
+	 */
+	private static boolean canStand(WorldData world, int x, int y, int z) {
+		return y >= 1
+				&& BlockSets.SAFE_GROUND.isAt(world, x, y - 1, z)
+				&& BlockSets.FEET_CAN_WALK_THROUGH.isAt(world, x, y, z)
+				&& BlockSets.HEAD_CAN_WALK_TRHOUGH.isAt(world, x, y + 1, z);
+	}
+
+	private static boolean canStep(WorldData world, int x, int y, int z,
+			int tx, int ty, int tz) {
+		return canStand(world, tx, ty, tz)
+				&& (ty == y || hasHeadroom(world, x, y, z, tx, ty, tz));
+	}
+
+	/**
+	 * For a step up or down, the lower position needs to be free up to 3
+	 * blocks.
+	 */
+	private static boolean hasHeadroom(WorldData world, int x, int y, int z,
+			int tx, int ty, int tz) {
+		return ty > y ? BlockSets.HEAD_CAN_WALK_TRHOUGH.isAt(world, x, y + 2,
+				z) : BlockSets.HEAD_CAN_WALK_TRHOUGH.isAt(world, tx, ty + 2,
+				tz);
+	}
+}
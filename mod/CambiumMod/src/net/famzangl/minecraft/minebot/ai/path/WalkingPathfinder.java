@@ -32,7 +32,7 @@ public class WalkingPathfinder extends MovePathFinder {
 	protected PathfindingSetting loadSettings(MinebotSettingsRoot settingsRoot) {
 		return settingsRoot.getPathfinding().getWalking();
 	}
-	
+
 	private final int[] res = new int[14];
 	
 	@Override
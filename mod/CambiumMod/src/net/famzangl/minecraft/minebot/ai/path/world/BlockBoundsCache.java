@@ -24,6 +24,10 @@ public class BlockBoundsCache {
 			.getLogger(BlockBounds.class);
 
 	private static BlockBounds[] bounds;
+	/**
+	 * Blocks that World.rayTraceBlocks can hit when not stopping on liquids.
+	 */
+	private static boolean[] rayTraceable;
 
 	private BlockBoundsCache() {
 	}
@@ -36,8 +40,18 @@ public class BlockBoundsCache {
 		return bounds[blockWithMeta];
 	}
 
+	/**
+	 * @return <code>true</code> if a vanilla ray trace (stopOnLiquid = false)
+	 *         tests this block against its bounds. Air, liquids and fire are
+	 *         passed through.
+	 */
+	public static boolean isRayTraceable(int blockWithMeta) {
+		return rayTraceable[blockWithMeta];
+	}
+
 	public static void initialize() {
 		bounds = new BlockBounds[16 * 4096];
+		rayTraceable = new boolean[16 * 4096];
 		HashMap<BlockBounds, BlockBounds> usedBounds = new HashMap<BlockBounds, BlockBounds>();
 		usedBounds.put(BlockBounds.FULL_BLOCK, BlockBounds.FULL_BLOCK);
 		usedBounds.put(BlockBounds.LOWER_HALF_BLOCK, BlockBounds.LOWER_HALF_BLOCK);
@@ -47,11 +61,21 @@ public class BlockBoundsCache {
 				BlockBounds bound = attemptLoad(i);
 				usedBounds.put(bound, bound);
 				bounds[i] = usedBounds.get(bound);
+			} catch (UnsupportedOperationException e) {
+				// The shape depends on the neighbours, WorldData asks the
+				// world for it.
+				bounds[i] = BlockBounds.UNKNOWN_BLOCK;
 			} catch (Throwable e) {
 				LOGGER.warn(MARKER_BOUNDS_PROBLEM,
 						"Could not create bounds for " + new BlockWithData(i));
 				bounds[i] = BlockBounds.FULL_BLOCK;
 			}
+			try {
+				BlockWithData d = new BlockWithData(i);
+				rayTraceable[i] = d.getBlock().canCollideCheck(d.getBlockState(), false);
+			} catch (Throwable e) {
+				rayTraceable[i] = i >> 4 != 0;
+			}
 		}
 	}
 
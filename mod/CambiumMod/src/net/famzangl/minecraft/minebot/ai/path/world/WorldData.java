@@ -21,8 +21,8 @@ import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
  * @author Michael Zangl
  */
 public class WorldData {
-	private static final int BARRIER_ID = Block.getIdFromBlock(Blocks.barrier) << 4;
-	private static final int AIR_ID = 0;
+	protected static final int BARRIER_ID = Block.getIdFromBlock(Blocks.barrier) << 4;
+	protected static final int AIR_ID = 0;
 	private static final int CACHE_ENTRIES = 10;
 	/**
 	 * A cache pos that may never occur naturally.
@@ -0,0 +1,236 @@
+package net.famzangl.minecraft.minebot.ai.path.world;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.Vec3;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * A copy of the blocks around a position, so that path finding can run on
+ * another thread while the client keeps changing the world. The block storage
+ * of the chunks in range is copied when the snapshot is taken (on the client
+ * thread), the deltas of a {@link WorldWithDelta} are applied on top. Outside
+ * of that range everything is barrier.
+ * <p>
+ * Block shapes that depend on the neighbours ({@link BlockBounds#UNKNOWN_BLOCK}
+ * in the cache) are looked up in the source world when the snapshot is taken.
+ */
+public class WorldSnapshot extends WorldData {
+	private static final int SECTION_SIZE = 16 * 16 * 16;
+
+	private final int minChunkX;
+	private final int minChunkZ;
+	private final int sizeX;
+	private final int sizeZ;
+	private final int minSection;
+	private final int sections;
+	/**
+	 * The copied sections, (chunkZ * sizeX + chunkX) * sections + section.
+	 * <code>null</code> if the section is empty.
+	 */
+	private final char[][] blocks;
+	/**
+	 * The bounds of the blocks whose shape depends on the neighbours.
+	 */
+	private final HashMap<BlockPos, BlockBounds> resolvedBounds = new HashMap<BlockPos, BlockBounds>();
+	private final BlockPos playerPosition;
+	private final Vec3 exactPlayerPosition;
+	private final long worldTime;
+
+	private WorldSnapshot(WorldData source, int minChunkX, int minChunkZ,
+			int sizeX, int sizeZ, int minSection, int sections) {
+		super(source.theWorld, null);
+		this.minChunkX = minChunkX;
+		this.minChunkZ = minChunkZ;
+		this.sizeX = sizeX;
+		this.sizeZ = sizeZ;
+		this.minSection = minSection;
+		this.sections = sections;
+		blocks = new char[sizeX * sizeZ * sections][];
+		playerPosition = source.getPlayerPosition();
+		exactPlayerPosition = source.getExactPlayerPosition();
+		worldTime = source.getWorldTime();
+	}
+
+	/**
+	 * Copies the blocks around a center. Client thread only.
+	 *
+	 * @param source
+	 *            The world, may have deltas.
+	 * @param center
+	 * @param radiusXZ
+	 *            How many blocks to copy to each side.
+	 * @param radiusY
+	 *            How many blocks to copy above and below.
+	 * @param recycle
+	 *            A snapshot that is not used any more, its arrays are reused.
+	 *            May be <code>null</code>.
+	 * @return The snapshot.
+	 */
+	public static WorldSnapshot take(WorldData source, BlockPos center,
+			int radiusXZ, int radiusY, WorldSnapshot recycle) {
+		int minChunkX = center.getX() - radiusXZ >> 4;
+		int minChunkZ = center.getZ() - radiusXZ >> 4;
+		int minSection = Math.max(0, center.getY() - radiusY >> 4);
+		int maxSection = Math.min(15, center.getY() + radiusY >> 4);
+		WorldSnapshot snapshot = new WorldSnapshot(source, minChunkX,
+				minChunkZ, (center.getX() + radiusXZ >> 4) - minChunkX + 1,
+				(center.getZ() + radiusXZ >> 4) - minChunkZ + 1, minSection,
+				Math.max(0, maxSection - minSection + 1));
+
+		ArrayDeque<char[]> spare = new ArrayDeque<char[]>();
+		if (recycle != null) {
+			for (char[] section : recycle.blocks) {
+				if (section != null) {
+					spare.add(section);
+				}
+			}
+		}
+		for (int z = 0; z < snapshot.sizeZ; z++) {
+			for (int x = 0; x < snapshot.sizeX; x++) {
+				ExtendedBlockStorage[] storage = source.theWorld
+						.getChunkFromChunkCoords(minChunkX + x, minChunkZ + z)
+						.getBlockStorageArray();
+				for (int s = 0; s < snapshot.sections; s++) {
+					ExtendedBlockStorage section = storage[minSection + s];
+					if (section != null) {
+						char[] copy = spare.isEmpty() ? new char[SECTION_SIZE]
+								: spare.poll();
+						System.arraycopy(section.getData(), 0, copy, 0,
+								SECTION_SIZE);
+						snapshot.blocks[(z * snapshot.sizeX + x)
+								* snapshot.sections + s] = copy;
+					}
+				}
+			}
+		}
+		if (source instanceof WorldWithDelta) {
+			((WorldWithDelta) source).copyDeltasTo(snapshot);
+		}
+		snapshot.resolveBounds(source);
+		return snapshot;
+	}
+
+	private void resolveBounds(WorldData source) {
+		for (int index = 0; index < blocks.length; index++) {
+			char[] section = blocks[index];
+			if (section == null) {
+				continue;
+			}
+			int x0 = minChunkX + index / sections % sizeX << 4;
+			int y0 = minSection + index % sections << 4;
+			int z0 = minChunkZ + index / sections / sizeX << 4;
+			for (int i = 0; i < SECTION_SIZE; i++) {
+				if (BlockBounds.forBlockWithMeta(section[i]) == BlockBounds.UNKNOWN_BLOCK) {
+					BlockPos pos = new BlockPos(x0 | i & 15, y0 | i >> 8,
+							z0 | i >> 4 & 15);
+					resolvedBounds.put(pos, source.getBlockBounds(pos));
+				}
+			}
+		}
+	}
+
+	private int sectionIndex(int x, int y, int z) {
+		int chunkX = (x >> 4) - minChunkX;
+		int chunkZ = (z >> 4) - minChunkZ;
+		int section = (y >> 4) - minSection;
+		if (chunkX < 0 || chunkX >= sizeX || chunkZ < 0 || chunkZ >= sizeZ
+				|| section < 0 || section >= sections) {
+			return -1;
+		}
+		return (chunkZ * sizeX + chunkX) * sections + section;
+	}
+
+	@Override
+	public int getBlockIdWithMeta(int x, int y, int z) {
+		if (y < 0 || y >= 258) {
+			return BARRIER_ID;
+		} else if (y >= 256) {
+			return AIR_ID;
+		}
+		int index = sectionIndex(x, y, z);
+		if (index < 0) {
+			return BARRIER_ID;
+		}
+		char[] section = blocks[index];
+		return section == null ? AIR_ID : section[(y & 15) << 8
+				| (z & 15) << 4 | x & 15];
+	}
+
+	void replaceBlock(int x, int y, int z, int blockWithMeta) {
+		int index = sectionIndex(x, y, z);
+		if (index < 0) {
+			return;
+		}
+		if (blocks[index] == null) {
+			blocks[index] = new char[SECTION_SIZE];
+		}
+		blocks[index][(y & 15) << 8 | (z & 15) << 4 | x & 15] = (char) blockWithMeta;
+	}
+
+	/**
+	 * @return <code>true</code> if the chunk is (partly) in this snapshot.
+	 */
+	public boolean containsChunk(int chunkX, int chunkZ) {
+		return chunkX >= minChunkX && chunkX < minChunkX + sizeX
+				&& chunkZ >= minChunkZ && chunkZ < minChunkZ + sizeZ;
+	}
+
+	/**
+	 * Checks if a chunk still looks like in this snapshot. Client thread only.
+	 *
+	 * @param world
+	 *            The world the snapshot was taken of.
+	 * @param chunkX
+	 * @param chunkZ
+	 * @return <code>false</code> if a block in that chunk is different now.
+	 */
+	public boolean matches(WorldData world, int chunkX, int chunkZ) {
+		if (!containsChunk(chunkX, chunkZ)) {
+			return true;
+		}
+		for (int s = 0; s < sections; s++) {
+			int y0 = (minSection + s) << 4;
+			for (int i = 0; i < SECTION_SIZE; i++) {
+				int x = chunkX << 4 | i & 15;
+				int y = y0 | i >> 8;
+				int z = chunkZ << 4 | i >> 4 & 15;
+				if (getBlockIdWithMeta(x, y, z) != world.getBlockIdWithMeta(x,
+						y, z)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public BlockBounds getBlockBounds(int x, int y, int z) {
+		BlockBounds bounds = BlockBounds.forBlockWithMeta(getBlockIdWithMeta(x,
+				y, z));
+		if (bounds == BlockBounds.UNKNOWN_BLOCK) {
+			BlockBounds resolved = resolvedBounds.get(new BlockPos(x, y, z));
+			if (resolved != null) {
+				return resolved;
+			}
+		}
+		return bounds;
+	}
+
+	@Override
+	public BlockPos getPlayerPosition() {
+		return playerPosition;
+	}
+
+	@Override
+	public Vec3 getExactPlayerPosition() {
+		return exactPlayerPosition;
+	}
+
+	@Override
+	public long getWorldTime() {
+		return worldTime;
+	}
+}
@@ -87,6 +87,22 @@ public class WorldWithDelta extends WorldData {
 		public void invalidateCache() {
 			blockStorage = null;
 		}
+
+		void copyTo(WorldSnapshot snapshot) {
+			for (int chunkY = 0; chunkY < replacedBlockIds.length; chunkY++) {
+				char[] replacements = replacedBlockIds[chunkY];
+				if (replacements == null) {
+					continue;
+				}
+				for (int i = 0; i < replacements.length; i++) {
+					if (replacements[i] != NOT_REPLACED) {
+						snapshot.replaceBlock(chunkX << 4 | i & 15,
+								chunkY << 4 | i >> 8, chunkZ << 4 | i >> 4 & 15,
+								replacements[i]);
+					}
+				}
+			}
+		}
 	}
 
 	public WorldWithDelta(WorldData currentWorld) {
@@ -150,6 +166,17 @@ public class WorldWithDelta extends WorldData {
 		invalidateChunkCache();
 	}
 
+	/**
+	 * Writes the replaced blocks into the snapshot.
+	 * 
+	 * @param snapshot
+	 */
+	void copyDeltasTo(WorldSnapshot snapshot) {
+		for (ChunkWithDelta delta : chunkDeltas.values()) {
+			delta.copyTo(snapshot);
+		}
+	}
+
 	@Override
 	public BlockPos getPlayerPosition() {
 		return playerPosition;
@@ -226,6 +226,12 @@ public class FurnaceStrategy extends PathFinderStrategy {
 			return scanner;
 		}
 
+		@Override
+		protected boolean canSearchInBackground() {
+			// rateDestination looks at the inventory.
+			return false;
+		}
+
 		@Override
 		protected float rateDestination(int distance, int x, int y, int z) {
 			ArrayList<FurnaceData> furnaces = blockHandler
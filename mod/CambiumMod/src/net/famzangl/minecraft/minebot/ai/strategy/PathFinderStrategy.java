@@ -75,6 +75,14 @@ public class PathFinderStrategy extends TaskStrategy {
 		pathFindingWorld = null;
 	}
 
+	@Override
+	protected void onDeactivate(AIHelper helper) {
+		// Do not leave a background search running.
+		pathFinder.abort();
+		pathFindingWorld = null;
+		super.onDeactivate(helper);
+	}
+
 	private boolean isInAir(AIHelper helper) {
 		return !helper.getMinecraft().thePlayer.onGround;
 	}
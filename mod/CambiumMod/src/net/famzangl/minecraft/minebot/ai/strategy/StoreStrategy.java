@@ -67,6 +67,12 @@ public class StoreStrategy extends PathFinderStrategy {
 			return scanner;
 		}
 		
+		@Override
+		protected boolean canSearchInBackground() {
+			// rateDestination looks at the inventory.
+			return false;
+		}
+
 		@Override
 		protected float rateDestination(int distance, int x, int y, int z) {
 			ArrayList<ChestData> chests = chestBlockHandler.getReachableForPos(new BlockPos(
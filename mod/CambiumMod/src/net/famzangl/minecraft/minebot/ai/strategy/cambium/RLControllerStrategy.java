@@ -1,7 +1,10 @@
 package net.famzangl.minecraft.minebot.ai.strategy.cambium;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
@@ -11,7 +14,19 @@ import com.google.gson.JsonParser;
 import net.famzangl.minecraft.minebot.ai.AIHelper;
 import net.famzangl.minecraft.minebot.ai.cambiumInputs.APIClient;
 import net.famzangl.minecraft.minebot.ai.cambiumInputs.ActionSpaceConfig;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.BinaryProtocol;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.ConfigValues;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.InferencePipeline;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.LatencyStats;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.LatencyStats.Stage;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.LocalPolicy;
 import net.famzangl.minecraft.minebot.ai.cambiumInputs.ObservationSpaceConfig;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.ObservationVector;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.RewardQueue;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.ServerChannel;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.StreamClient;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.TrajectoryRecorder;
+import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.ActionData;
 import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.BlockData;
 import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.EntityData;
 import net.famzangl.minecraft.minebot.ai.cambiumInputs.DataClasses.InventoryData;
@@ -30,16 +45,44 @@ import net.famzangl.minecraft.minebot.PhysicsController;
  */
 public class RLControllerStrategy extends AIStrategy {
     
+    /**
+     * How observations and actions are encoded on the wire.
+     * BINARY is the fixed layout from {@link BinaryProtocol}, JSON is kept for debugging.
+     */
+    public enum WireFormat {
+        BINARY,
+        JSON
+    }
+    
+    /**
+     * SYNC blocks the client thread until the backend answered, ASYNC runs requests through an
+     * {@link InferencePipeline} and applies the answer one tick later. LOCAL runs the policy in the
+     * client with {@link LocalPolicy} and only reports the chosen actions to the backend for training.
+     * SERVER leaves observing and asking to the server mod, which batches all its bots into one request
+     * and sends the actions back over the {@link ServerChannel}.
+     */
+    public enum InferenceMode {
+        SYNC,
+        ASYNC,
+        LOCAL,
+        SERVER
+    }
+    
     private PhysicsController physicsController;
     private ActionSpaceConfig actionConfig;
     private ObservationSpaceConfig observationConfig;
     private String modelVersion = "0.1";
     private String modelEndpoint = null;
+    private WireFormat wireFormat = ConfigValues.parseEnum("-Dcambium.protocol", System.getProperty("cambium.protocol"), WireFormat.BINARY);
+    private InferenceMode inferenceMode = ConfigValues.parseEnum("-Dcambium.inference", System.getProperty("cambium.inference"), InferenceMode.SYNC);
     
-    // Tick rate management
-    private LinkedList<Long> tickTimes = new LinkedList<Long>();
-    private static final int TICK_HISTORY_SIZE = 20;
-    private static final double TICK_RATE_TARGET_PERCENTILE = 0.9;
+    // Latency measurement, see LatencyStats
+    private final LatencyStats latency = LatencyStats.getInstance();
+    private long tickStart = 0;
+    private long lastTickStart = 0;
+    // Start of the tick whose observation the applied action answers
+    private long actionObservedAt = 0;
+    private long inFlightObservedAt = 0;
     
     // Observation data
     private PlayerData playerData;
@@ -47,6 +90,27 @@ public class RLControllerStrategy extends AIStrategy {
     private ArrayList<BlockData> blocks;
     private ArrayList<InventoryData> inventory;
     
+    // Binary protocol state, reused every tick
+    private final ObservationVector observationVector = new ObservationVector();
+    private final ByteBuffer requestBuffer = BinaryProtocol.allocate(BinaryProtocol.maxObservationSize());
+    private final ActionData action = new ActionData();
+    private int sequence = 0;
+    // The applied action was answered this tick (and not repeated by the late policy)
+    private boolean actionFresh = false;
+    private static final long STREAM_TIMEOUT_MS = 10000;
+    
+    // Async inference state
+    private final InferencePipeline inferencePipeline = new InferencePipeline();
+    private int tick = 0;
+    
+    // Local inference state
+    private final LocalPolicy localPolicy = new LocalPolicy();
+    private volatile boolean weightsLoading = false;
+    private int publishedWeightsRevision = -1;
+    private long nextWeightsAttempt = 0;
+    private long unsentTransitions = 0;
+    private static final long WEIGHTS_RETRY_MS = 5000;
+    
     // Gson for JSON parsing
     private Gson gson = new Gson();
     private JsonParser jsonParser = new JsonParser();
@@ -59,24 +123,82 @@ public class RLControllerStrategy extends AIStrategy {
     
     @Override
     public String getDescription(AIHelper helper) {
-        return "RL Controller - Model: " + (modelEndpoint != null ? modelEndpoint : modelVersion);
+        String description = "RL Controller - Model: " + (modelEndpoint != null ? modelEndpoint : modelVersion) + " (" + wireFormat + ", " + inferenceMode + ")";
+        if (inferenceMode == InferenceMode.LOCAL) {
+            description += "\nWeights: " + (localPolicy.isLoaded() ? "revision " + localPolicy.getRevision() : "loading") + " Unsent: " + unsentTransitions;
+        }
+        if (inferenceMode == InferenceMode.SERVER) {
+            description += "\n" + ServerChannel.getInstance().getActionStatsLine();
+        }
+        if (inferenceMode == InferenceMode.ASYNC) {
+            description += "\nLate: " + inferencePipeline.getLate() + " Dropped: " + inferencePipeline.getDropped() + " Reused: " + inferencePipeline.getReused();
+        }
+        return description;
+    }
+    
+    @Override
+    protected void onDeactivate(AIHelper helper) {
+        inferencePipeline.shutdown();
+        TrajectoryRecorder.getInstance().close();
+        ServerChannel.getInstance().unregister();
+        lastTickStart = 0;
+        super.onDeactivate(helper);
     }
     
     @Override
     protected TickResult onGameTick(AIHelper helper) {
+        // Lockstep: act once per server tick, the server waits for our ack (see ServerChannel)
+        ServerChannel serverChannel = ServerChannel.getInstance();
+        serverChannel.register();
+        if (inferenceMode == InferenceMode.SERVER) {
+            serverChannel.subscribe(actionConfig, modelVersion != null ? modelVersion : "0.0");
+        } else {
+            serverChannel.unsubscribe();
+        }
+        long serverTick = -1;
+        if (serverChannel.isLockstep()) {
+            serverTick = serverChannel.takeTick();
+            if (serverTick < 0) {
+                return TickResult.TICK_HANDLED;
+            }
+        }
         try {
             // Update tick timing
-            //updateTickTiming();
+            tickStart = System.nanoTime();
+            if (lastTickStart != 0) {
+                latency.record(Stage.TICK_INTERVAL, tickStart - lastTickStart);
+            }
+            lastTickStart = tickStart;
+            
+            // Config pushed by the backend over the stream connection
+            if (APIClient.isStreamAvailable()) {
+                String update = StreamClient.getInstance().pollConfigUpdate();
+                if (update != null) {
+                    applyModelConfig(jsonParser.parse(update).getAsJsonObject());
+                }
+            }
             
-            // Collect observations
-            collectObservations(helper);
+            // Collect observations, the server does it in SERVER mode (we only need them for the recorder then)
+            long start = System.nanoTime();
+            if (inferenceMode != InferenceMode.SERVER || TrajectoryRecorder.getInstance().isEnabled()) {
+                collectObservations(helper);
+            }
+            long observed = System.nanoTime();
+            latency.record(Stage.OBSERVE, observed - start);
             
             // Get action from model
-            JsonObject action = predictAction(helper);
-            
-            if (action != null) {
+            actionFresh = false;
+            if (predictAction(helper)) {
+                long predicted = System.nanoTime();
                 // Execute action
                 executeAction(action);
+                long executed = System.nanoTime();
+                latency.record(Stage.EXECUTE, executed - predicted);
+                // In SERVER mode the observation was taken on the server, we do not know when
+                if (actionFresh && inferenceMode != InferenceMode.SERVER) {
+                    latency.record(Stage.TICK_TO_ACTION, executed - actionObservedAt);
+                }
+                recordTrajectory(helper, observed - start, predicted - observed);
             }
             
             return TickResult.TICK_HANDLED;
@@ -84,9 +206,36 @@ public class RLControllerStrategy extends AIStrategy {
             AIChatController.addChatLine("RL Controller Error: " + e.getMessage());
             e.printStackTrace();
             return TickResult.TICK_HANDLED;
+        } finally {
+            if (serverTick >= 0) {
+                serverChannel.actionApplied(serverTick);
+            }
         }
     }
     
+    /**
+     * Appends the observation and the applied action to the {@link TrajectoryRecorder} if it is recording
+     */
+    private void recordTrajectory(AIHelper helper, long observeNanos, long inferenceNanos) {
+        TrajectoryRecorder recorder = TrajectoryRecorder.getInstance();
+        if (!recorder.isEnabled() || helper.getMinecraft().thePlayer == null) {
+            return;
+        }
+        // The binary encoding may have skipped this tick (JSON, busy pipeline), the recorder needs the current one
+        observationVector.update(observationConfig, playerData, entities, blocks, inventory);
+        int flags = 0;
+        if (actionFresh) {
+            flags |= TrajectoryRecorder.FLAG_FRESH_ACTION;
+        }
+        if (inferenceMode == InferenceMode.LOCAL && localPolicy.isLoaded()) {
+            flags |= TrajectoryRecorder.FLAG_LOCAL;
+        } else if (inferenceMode == InferenceMode.ASYNC || inferenceMode == InferenceMode.SERVER) {
+            flags |= TrajectoryRecorder.FLAG_ASYNC;
+        }
+        recorder.record(helper.getMinecraft().thePlayer.getName(), helper.getMinecraft().theWorld.getTotalWorldTime(),
+                observationVector, action, flags, observeNanos, inferenceNanos);
+    }
+    
     /**
      * Collects all observations based on the observation space configuration
      */
@@ -98,11 +247,8 @@ public class RLControllerStrategy extends AIStrategy {
         
         if (observationConfig.includeEntityData) {
             GetEntities getEntities = new GetEntities(helper);
-            entities = getEntities.getEntities();
-            // Limit to maxEntities
-            if (entities.size() > observationConfig.maxEntities) {
-                entities = new ArrayList<EntityData>(entities.subList(0, observationConfig.maxEntities));
-            }
+            // The maxEntities nearest ones
+            entities = getEntities.getEntities(observationConfig.maxEntities);
         }
         
         if (observationConfig.includeBlockData) {
@@ -203,71 +349,372 @@ public class RLControllerStrategy extends AIStrategy {
     }
     
     /**
-     * Predicts action from the model
+     * Predicts action from the model and stores it in {@link #action}
+     * @return true if {@link #action} should be applied this tick
      */
-    private JsonObject predictAction(AIHelper helper) {
+    private boolean predictAction(AIHelper helper) {
         try {
-            // Build observation JSON
-            JsonObject observation = buildObservationJson();
-            
-            // Build action space config JSON
-            JsonObject actionSpaceJson = new JsonObject();
-            actionSpaceJson.addProperty("enableMovement", actionConfig.enableMovement);
-            actionSpaceJson.addProperty("enableJump", actionConfig.enableJump);
-            actionSpaceJson.addProperty("enableSneak", actionConfig.enableSneak);
-            actionSpaceJson.addProperty("enableSprint", actionConfig.enableSprint);
-            actionSpaceJson.addProperty("enableAttack", actionConfig.enableAttack);
-            actionSpaceJson.addProperty("enableUseItem", actionConfig.enableUseItem);
-            actionSpaceJson.addProperty("enableHotbar", actionConfig.enableHotbar);
-            actionSpaceJson.addProperty("enableLook", actionConfig.enableLook);
-            actionSpaceJson.addProperty("movementBins", actionConfig.movementBins);
-            actionSpaceJson.addProperty("yawBins", actionConfig.yawBins);
-            actionSpaceJson.addProperty("pitchBins", actionConfig.pitchBins);
-            
             // Get bot name
             String botName = helper.getMinecraft().thePlayer != null 
                     ? helper.getMinecraft().thePlayer.getName() 
                     : "unknown";
             
-            // Build request JSON
-            JsonObject request = new JsonObject();
-            request.add("observation", observation);
-            request.add("action_space", actionSpaceJson);
-            request.addProperty("bot_name", botName);
-            
             // Determine endpoint - use format /predict-action-v{version}
             String version = modelVersion != null ? modelVersion : "0.0";
             String endpoint = "/predict-action-v" + version;
             
-            // Make API call
-            String response = APIClient.postRequest(endpoint, request.toString());
+            if (APIClient.isStreamAvailable()) {
+                StreamClient.getInstance().setBotName(botName);
+            }
             
-            if (response != null) {
-                JsonObject responseJson = jsonParser.parse(response).getAsJsonObject();
-                
-                // Update tick rate if provided
-                if (responseJson.has("tick_rate")) {
-                    double tickRate = responseJson.get("tick_rate").getAsDouble();
-                    updateTickRate(tickRate);
-                }
-                
-                // Return action
-                if (responseJson.has("action")) {
-                    return responseJson.getAsJsonObject("action");
-                }
+            if (inferenceMode == InferenceMode.SERVER) {
+                return predictActionServer();
             }
+            if (inferenceMode == InferenceMode.LOCAL && predictActionLocal(version, botName)) {
+                return true;
+            }
+            if (inferenceMode == InferenceMode.ASYNC) {
+                return predictActionAsync(version, endpoint, botName);
+            }
+            
+            sequence++;
+            boolean received;
+            if (wireFormat == WireFormat.BINARY) {
+                received = requestActionBinary(version, encodeBinaryRequest(botName), action);
+            } else {
+                received = requestActionJson(endpoint, buildRequestJson(botName), sequence, action);
+            }
+            actionFresh = received;
+            actionObservedAt = tickStart;
+            return received;
         } catch (Exception e) {
             AIChatController.addChatLine("Predict Action Error: " + e.getMessage());
             e.printStackTrace();
         }
         
-        return null;
+        return false;
+    }
+    
+    /**
+     * Pipelined prediction: picks up the answer to an earlier observation (waiting at most the
+     * pipeline deadline) and hands the current observation to the worker if it is free.
+     * Without a fresh answer the late policy decides what happens to the last action.
+     */
+    private boolean predictActionAsync(final String version, final String endpoint, String botName) {
+        tick++;
+        boolean received = inferencePipeline.poll(tick, action);
+        // Has to be read before the next submit overwrites it
+        actionObservedAt = inFlightObservedAt;
+        
+        if (inferencePipeline.isBusy()) {
+            inferencePipeline.dropObservation();
+        } else {
+            sequence++;
+            inFlightObservedAt = tickStart;
+            final ActionData into = inferencePipeline.getReceivedAction();
+            // Encoding reads the observation fields, so it has to happen here on the client thread
+            if (wireFormat == WireFormat.BINARY) {
+                final int length = encodeBinaryRequest(botName);
+                inferencePipeline.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return requestActionBinary(version, length, into);
+                    }
+                }, tick);
+            } else {
+                final String request = buildRequestJson(botName);
+                final int requestSequence = sequence;
+                inferencePipeline.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return requestActionJson(endpoint, request, requestSequence, into);
+                    }
+                }, tick);
+            }
+        }
+        
+        actionFresh = received;
+        if (!received) {
+            inferencePipeline.applyLatePolicy(action);
+        }
+        return true;
+    }
+    
+    /**
+     * Server inference: picks up the action the server mod got for us. Without a new one the late policy
+     * of the {@link InferencePipeline} decides what happens to the last action, like in ASYNC. The tick
+     * rate the backend suggests is ignored, the server sets the pace.
+     */
+    private boolean predictActionServer() {
+        ServerChannel serverChannel = ServerChannel.getInstance();
+        if (!serverChannel.isSubscribed()) {
+            return false;
+        }
+        actionFresh = serverChannel.takeAction(action);
+        if (actionFresh) {
+            inferencePipeline.actionArrived();
+        } else {
+            inferencePipeline.applyLatePolicy(action);
+        }
+        return true;
+    }
+    
+    /**
+     * Local inference: runs {@link LocalPolicy} on the observation and reports the step to the backend.
+     * @return false if the backend publishes no weights for this model or they are not loaded yet,
+     *         the caller then asks the backend instead.
+     */
+    private boolean predictActionLocal(String version, String botName) {
+        if (publishedWeightsRevision < 0) {
+            return false;
+        }
+        if (publishedWeightsRevision > localPolicy.getRevision()) {
+            requestWeights(version);
+        }
+        if (!localPolicy.isLoaded()) {
+            return false;
+        }
+        
+        sequence++;
+        int length = encodeBinaryRequest(botName);
+        action.setSequence(sequence);
+        long policyStart = System.nanoTime();
+        localPolicy.act(observationVector.getFeatures(), actionConfig, action);
+        latency.record(Stage.POLICY, System.nanoTime() - policyStart);
+        actionFresh = true;
+        actionObservedAt = tickStart;
+        
+        // Training data only goes over the stream, HTTP would put a request back on every tick
+        if (APIClient.isStreamAvailable()) {
+            sendPendingRewardsOnStream();
+        }
+        if (!APIClient.isStreamAvailable()
+                || !StreamClient.getInstance().sendTransition(version, requestBuffer.array(), length, localPolicy.getLastBins())) {
+            unsentTransitions++;
+        }
+        return true;
+    }
+    
+    /**
+     * Fetches /model-weights-v{version} in the background and swaps it into {@link #localPolicy}.
+     * The loader thread posts its chat lines to the client thread.
+     */
+    private void requestWeights(final String version) {
+        long now = System.currentTimeMillis();
+        if (weightsLoading || now < nextWeightsAttempt) {
+            return;
+        }
+        weightsLoading = true;
+        nextWeightsAttempt = now + WEIGHTS_RETRY_MS;
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    byte[] data = APIClient.getBinaryRequest("/model-weights-v" + version);
+                    if (data != null) {
+                        localPolicy.load(data);
+                        AIChatController.addChatLineLater("Local policy weights loaded (revision " + localPolicy.getRevision() + ")");
+                    }
+                } catch (Exception e) {
+                    AIChatController.addChatLineLater("Error loading local policy: " + e.getMessage());
+                    e.printStackTrace();
+                } finally {
+                    weightsLoading = false;
+                }
+            }
+        }, "Cambium weights");
+        loader.setDaemon(true);
+        loader.start();
+    }
+    
+    /**
+     * Encodes the current observation into {@link #requestBuffer}
+     * @return the frame length
+     */
+    private int encodeBinaryRequest(String botName) {
+        long start = System.nanoTime();
+        observationVector.update(observationConfig, playerData, entities, blocks, inventory);
+        requestBuffer.clear();
+        BinaryProtocol.encodeObservation(requestBuffer, sequence, botName, actionConfig, observationVector);
+        latency.record(Stage.SERIALIZE, System.nanoTime() - start);
+        return requestBuffer.position();
+    }
+    
+    /**
+     * Sends the encoded {@link BinaryProtocol} frame (over the stream connection if it is up)
+     * and decodes the binary action response into into
+     */
+    private boolean requestActionBinary(String version, int length, ActionData into) {
+        byte[] response;
+        long start;
+        if (APIClient.isStreamAvailable()) {
+            sendPendingRewardsOnStream();
+            start = System.nanoTime();
+            response = StreamClient.getInstance().requestAction(version, requestBuffer.array(), length, STREAM_TIMEOUT_MS);
+        } else {
+            start = System.nanoTime();
+            response = APIClient.postBinaryRequest("/predict-action-v" + version, requestBuffer.array(), length);
+        }
+        long received = System.nanoTime();
+        latency.record(Stage.NETWORK, received - start);
+        if (response == null) {
+            return false;
+        }
+        
+        BinaryProtocol.decodeAction(ByteBuffer.wrap(response), into);
+        latency.record(Stage.DESERIALIZE, System.nanoTime() - received);
+        return true;
+    }
+    
+    /**
+     * Queues the pending reward events on the stream right in front of the observation,
+     * so the writer sends both in one flush. Without the stream {@link RewardQueue} posts them itself.
+     */
+    private void sendPendingRewardsOnStream() {
+        for (JsonObject body : RewardQueue.getInstance().drainForRequest()) {
+            StreamClient.getInstance().sendReward(body.toString());
+        }
+    }
+    
+    /**
+     * Debug fallback: builds the JSON prediction request
+     */
+    private String buildRequestJson(String botName) {
+        long start = System.nanoTime();
+        // Build observation JSON
+        JsonObject observation = buildObservationJson();
+        
+        // Build action space config JSON
+        JsonObject actionSpaceJson = new JsonObject();
+        actionSpaceJson.addProperty("enableMovement", actionConfig.enableMovement);
+        actionSpaceJson.addProperty("enableJump", actionConfig.enableJump);
+        actionSpaceJson.addProperty("enableSneak", actionConfig.enableSneak);
+        actionSpaceJson.addProperty("enableSprint", actionConfig.enableSprint);
+        actionSpaceJson.addProperty("enableAttack", actionConfig.enableAttack);
+        actionSpaceJson.addProperty("enableUseItem", actionConfig.enableUseItem);
+        actionSpaceJson.addProperty("enableHotbar", actionConfig.enableHotbar);
+        actionSpaceJson.addProperty("enableLook", actionConfig.enableLook);
+        actionSpaceJson.addProperty("movementBins", actionConfig.movementBins);
+        actionSpaceJson.addProperty("yawBins", actionConfig.yawBins);
+        actionSpaceJson.addProperty("pitchBins", actionConfig.pitchBins);
+        
+        // Build request JSON
+        JsonObject request = new JsonObject();
+        request.add("observation", observation);
+        request.add("action_space", actionSpaceJson);
+        request.addProperty("bot_name", botName);
+        // Pending /add-reward/ bodies ride along with the observation
+        ArrayList<JsonObject> rewards = RewardQueue.getInstance().drainForRequest();
+        if (!rewards.isEmpty()) {
+            JsonArray rewardsJson = new JsonArray();
+            for (JsonObject body : rewards) {
+                rewardsJson.add(body);
+            }
+            request.add("rewards", rewardsJson);
+        }
+        String json = request.toString();
+        latency.record(Stage.SERIALIZE, System.nanoTime() - start);
+        return json;
+    }
+    
+    /**
+     * Debug fallback: sends the JSON request and parses the JSON action response into into
+     */
+    private boolean requestActionJson(String endpoint, String request, int requestSequence, ActionData into) {
+        // Make API call
+        long start = System.nanoTime();
+        String response = APIClient.postRequest(endpoint, request);
+        long received = System.nanoTime();
+        latency.record(Stage.NETWORK, received - start);
+        
+        if (response != null) {
+            JsonObject responseJson = jsonParser.parse(response).getAsJsonObject();
+            
+            // Tick rate if provided
+            double tickRate = Double.NaN;
+            if (responseJson.has("tick_rate")) {
+                tickRate = responseJson.get("tick_rate").getAsDouble();
+            }
+            
+            // Return action
+            if (responseJson.has("action")) {
+                into.setSequence(requestSequence);
+                into.readJson(responseJson.getAsJsonObject("action"), tickRate);
+                latency.record(Stage.DESERIALIZE, System.nanoTime() - received);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Encodes the current observation in both wire formats, checks that the binary frames decode
+     * to the same values and reports the payload size and encode/decode time of each format.
+     */
+    public void reportWireFormats(AIHelper helper, int iterations) {
+        collectObservations(helper);
+        String botName = helper.getMinecraft().thePlayer.getName();
+        
+        // Round trip check
+        observationVector.update(observationConfig, playerData, entities, blocks, inventory);
+        requestBuffer.clear();
+        BinaryProtocol.encodeObservation(requestBuffer, sequence, botName, actionConfig, observationVector);
+        int binarySize = requestBuffer.position();
+        requestBuffer.flip();
+        ObservationVector decoded = new ObservationVector();
+        BinaryProtocol.ObservationHeader header = new BinaryProtocol.ObservationHeader();
+        BinaryProtocol.decodeObservation(requestBuffer, header, decoded);
+        boolean observationOk = botName.equals(header.botName) && header.sequence == sequence
+                && Arrays.equals(observationVector.getFeatures(), decoded.getFeatures())
+                && Arrays.equals(observationVector.getBlockIds(), decoded.getBlockIds());
+        
+        ActionData sample = new ActionData();
+        sample.set(sequence, 5, true, false, true, true, false, 3, -22.5f, 12.5f, 20.0);
+        ByteBuffer actionBuffer = BinaryProtocol.allocate(BinaryProtocol.ACTION_SIZE);
+        BinaryProtocol.encodeAction(actionBuffer, sample);
+        actionBuffer.flip();
+        ActionData decodedAction = new ActionData();
+        BinaryProtocol.decodeAction(actionBuffer, decodedAction);
+        boolean actionOk = sample.toString().equals(decodedAction.toString());
+        
+        // Size and timing
+        JsonObject sampleJson = new JsonObject();
+        sampleJson.add("observation", buildObservationJson());
+        sampleJson.addProperty("bot_name", botName);
+        String jsonRequest = sampleJson.toString();
+        int jsonSize = jsonRequest.getBytes(StandardCharsets.UTF_8).length;
+        String jsonAction = "{\"action\":{\"movement\":5,\"jump\":true,\"sneak\":false,\"sprint\":true,\"attack\":true,\"useItem\":false,\"hotbar\":3,\"yaw\":-22.5,\"pitch\":12.5},\"tick_rate\":20.0}";
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            JsonObject request = new JsonObject();
+            request.add("observation", buildObservationJson());
+            request.addProperty("bot_name", botName);
+            request.toString().getBytes(StandardCharsets.UTF_8);
+            JsonObject responseJson = jsonParser.parse(jsonAction).getAsJsonObject();
+            decodedAction.readJson(responseJson.getAsJsonObject("action"), responseJson.get("tick_rate").getAsDouble());
+        }
+        long jsonNanos = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            observationVector.update(observationConfig, playerData, entities, blocks, inventory);
+            requestBuffer.clear();
+            BinaryProtocol.encodeObservation(requestBuffer, sequence, botName, actionConfig, observationVector);
+            actionBuffer.rewind();
+            BinaryProtocol.decodeAction(actionBuffer, decodedAction);
+        }
+        long binaryNanos = System.nanoTime() - start;
+        
+        AIChatController.addChatLine("Round trip: observation " + (observationOk ? "OK" : "MISMATCH") + ", action " + (actionOk ? "OK" : "MISMATCH"));
+        AIChatController.addChatLine("JSON: " + jsonSize + " + " + jsonAction.length() + " bytes, " + (jsonNanos / iterations / 1000.0) + " us/tick");
+        AIChatController.addChatLine("Binary: " + binarySize + " + " + BinaryProtocol.ACTION_SIZE + " bytes, " + (binaryNanos / iterations / 1000.0) + " us/tick");
     }
     
     /**
      * Executes the predicted action
      */
-    private void executeAction(JsonObject action) {
+    private void executeAction(ActionData action) {
         // Reset all controls
         physicsController.forward = false;
         physicsController.back = false;
@@ -282,49 +729,21 @@ public class RLControllerStrategy extends AIStrategy {
         physicsController.deltaPitch = 0f;
         
         // Apply movement
-        if (action.has("movement")) {
-            int movement = action.get("movement").getAsInt();
-            applyMovement(movement);
-        }
+        applyMovement(action.getMovement());
         
-        // Apply jump
-        if (action.has("jump")) {
-            physicsController.jump = action.get("jump").getAsBoolean();
-        }
-        
-        // Apply sneak
-        if (action.has("sneak")) {
-            physicsController.sneak = action.get("sneak").getAsBoolean();
-        }
-        
-        // Apply sprint
-        if (action.has("sprint")) {
-            physicsController.sprint = action.get("sprint").getAsBoolean();
-        }
-        
-        // Apply attack
-        if (action.has("attack")) {
-            physicsController.attack = action.get("attack").getAsBoolean();
-        }
-        
-        // Apply use item
-        if (action.has("useItem")) {
-            physicsController.useItem = action.get("useItem").getAsBoolean();
-        }
+        // Apply buttons
+        physicsController.jump = action.isJump();
+        physicsController.sneak = action.isSneak();
+        physicsController.sprint = action.isSprint();
+        physicsController.attack = action.isAttack();
+        physicsController.useItem = action.isUseItem();
         
         // Apply hotbar selection
-        if (action.has("hotbar")) {
-            int hotbarSlot = action.get("hotbar").getAsInt();
-            applyHotbar(hotbarSlot);
-        }
+        applyHotbar(action.getHotbar());
         
         // Apply look
-        if (action.has("yaw")) {
-            physicsController.deltaYaw = action.get("yaw").getAsFloat();
-        }
-        if (action.has("pitch")) {
-            physicsController.deltaPitch = action.get("pitch").getAsFloat();
-        }
+        physicsController.deltaYaw = action.getYaw();
+        physicsController.deltaPitch = action.getPitch();
         
         // Apply physics
         physicsController.tick();
@@ -388,60 +807,46 @@ public class RLControllerStrategy extends AIStrategy {
     }
     
     /**
-     * Updates tick timing and calculates tick rate
+     * Sets the action space configuration
      */
-    private void updateTickTiming() {
-        long currentTime = System.currentTimeMillis();
-        tickTimes.add(currentTime);
-        
-        if (tickTimes.size() > TICK_HISTORY_SIZE) {
-            tickTimes.removeFirst();
-        }
+    public void setActionSpaceConfig(ActionSpaceConfig config) {
+        this.actionConfig = config;
     }
     
     /**
-     * Updates tick rate based on 90th percentile of past 20 ticks
+     * Sets the observation space configuration
      */
-    private void updateTickRate(double targetTickRate) {
-        if (tickTimes.size() < 2) return;
-        
-        // Calculate tick intervals
-        ArrayList<Long> intervals = new ArrayList<Long>();
-        for (int i = 1; i < tickTimes.size(); i++) {
-            intervals.add(tickTimes.get(i) - tickTimes.get(i - 1));
-        }
-        
-        // Sort intervals
-        intervals.sort(null);
-        
-        // Get 90th percentile
-        int percentileIndex = (int) (intervals.size() * TICK_RATE_TARGET_PERCENTILE);
-        if (percentileIndex >= intervals.size()) {
-            percentileIndex = intervals.size() - 1;
-        }
-        
-        long percentileInterval = intervals.get(percentileIndex);
-        double currentTickRate = 1000.0 / percentileInterval;
-        
-        // Calculate desired tick rate (90% of target)
-        double desiredTickRate = targetTickRate * 0.9;
-        
-        // Adjust tick rate if needed (this would require server-side command)
-        // For now, we just track it
+    public void setObservationSpaceConfig(ObservationSpaceConfig config) {
+        this.observationConfig = config;
     }
     
     /**
-     * Sets the action space configuration
+     * Sets the wire format used for prediction requests
      */
-    public void setActionSpaceConfig(ActionSpaceConfig config) {
-        this.actionConfig = config;
+    public void setWireFormat(WireFormat wireFormat) {
+        this.wireFormat = wireFormat;
+    }
+    
+    public WireFormat getWireFormat() {
+        return wireFormat;
     }
     
     /**
-     * Sets the observation space configuration
+     * Switches between blocking and pipelined inference. Leaving ASYNC discards the request in flight.
      */
-    public void setObservationSpaceConfig(ObservationSpaceConfig config) {
-        this.observationConfig = config;
+    public void setInferenceMode(InferenceMode inferenceMode) {
+        if (inferenceMode != InferenceMode.ASYNC) {
+            inferencePipeline.shutdown();
+        }
+        this.inferenceMode = inferenceMode;
+    }
+    
+    public InferenceMode getInferenceMode() {
+        return inferenceMode;
+    }
+    
+    public InferencePipeline getInferencePipeline() {
+        return inferencePipeline;
     }
     
     /**
@@ -455,7 +860,7 @@ public class RLControllerStrategy extends AIStrategy {
      * Loads action space configuration from API
      */
     public void loadActionSpaceConfig() {
-        String response = APIClient.getRequest("/set-action-space");
+        String response = APIClient.getConfig("action_space", "/set-action-space");
         if (response != null) {
             try {
                 JsonObject configJson = jsonParser.parse(response).getAsJsonObject();
@@ -486,7 +891,7 @@ public class RLControllerStrategy extends AIStrategy {
      * Loads observation space configuration from API
      */
     public void loadObservationSpaceConfig() {
-        String response = APIClient.getRequest("/set-observation-space");
+        String response = APIClient.getConfig("observation_space", "/set-observation-space");
         if (response != null) {
             try {
                 JsonObject configJson = jsonParser.parse(response).getAsJsonObject();
@@ -522,16 +927,7 @@ public class RLControllerStrategy extends AIStrategy {
             // GET from /set-model with bot_name query parameter
             String response = APIClient.getRequest("/set-model?bot_name=" + botName);
             if (response != null) {
-                JsonObject modelJson = jsonParser.parse(response).getAsJsonObject();
-                if (modelJson.has("version")) {
-                    modelVersion = modelJson.get("version").getAsString();
-                    modelEndpoint = null; // Clear endpoint, use version
-                    AIChatController.addChatLine("Model version loaded: " + modelVersion);
-                } else if (modelJson.has("endpoint")) {
-                    modelEndpoint = modelJson.get("endpoint").getAsString();
-                    modelVersion = null;
-                    AIChatController.addChatLine("Model endpoint loaded: " + modelEndpoint);
-                }
+                applyModelConfig(jsonParser.parse(response).getAsJsonObject());
             }
         } catch (Exception e) {
             AIChatController.addChatLine("Error loading model endpoint: " + e.getMessage());
@@ -539,30 +935,73 @@ public class RLControllerStrategy extends AIStrategy {
     }
     
     /**
-     * Sends reward/event information to the API
+     * Applies a /set-model document, either fetched by {@link #loadModelEndpoint} or pushed over the stream
+     */
+    private void applyModelConfig(JsonObject modelJson) {
+        if (modelJson.has("version")) {
+            modelVersion = modelJson.get("version").getAsString();
+            modelEndpoint = null; // Clear endpoint, use version
+            AIChatController.addChatLine("Model version loaded: " + modelVersion);
+        } else if (modelJson.has("endpoint")) {
+            modelEndpoint = modelJson.get("endpoint").getAsString();
+            modelVersion = null;
+            AIChatController.addChatLine("Model endpoint loaded: " + modelEndpoint);
+        }
+        if (modelJson.has("weights_revision")) {
+            publishedWeightsRevision = modelJson.get("weights_revision").getAsInt();
+        }
+        if (modelJson.has("protocol")) {
+            wireFormat = ConfigValues.parseEnum("model protocol", modelJson.get("protocol").getAsString(), wireFormat);
+            AIChatController.addChatLine("Wire format: " + wireFormat);
+        }
+        if (modelJson.has("inference")) {
+            JsonObject inference = modelJson.getAsJsonObject("inference");
+            if (inference.has("mode")) {
+                setInferenceMode(ConfigValues.parseEnum("inference mode", inference.get("mode").getAsString(), inferenceMode));
+            }
+            if (inference.has("deadline_ms")) {
+                inferencePipeline.setDeadlineMillis(inference.get("deadline_ms").getAsLong());
+            }
+            if (inference.has("late_policy")) {
+                inferencePipeline.setLatePolicy(ConfigValues.parseEnum("inference late_policy",
+                        inference.get("late_policy").getAsString(), inferencePipeline.getLatePolicy()));
+            }
+            if (inference.has("max_repeats")) {
+                inferencePipeline.setMaxRepeats(inference.get("max_repeats").getAsInt());
+            }
+            if (inference.has("max_stale_ticks")) {
+                inferencePipeline.setMaxStaleTicks(inference.get("max_stale_ticks").getAsInt());
+            }
+            AIChatController.addChatLine("Inference: " + inferenceMode + ", " + inferencePipeline.getConfigLine());
+        }
+    }
+    
+    /**
+     * Queues reward/event information for the API, see {@link RewardQueue}
      * @param helper AIHelper to get player name
      * @param events List of events (damage_dealt, damage_taken, good_aim, etc.)
      */
     public void sendRewardEvents(AIHelper helper, JsonArray events) {
-        try {
-            String botName = helper.getMinecraft().thePlayer != null 
-                    ? helper.getMinecraft().thePlayer.getName() 
-                    : "unknown";
-            
-            // Build current state from observations
-            JsonObject currentState = buildObservationJson();
-            
-            // Build request JSON
-            JsonObject request = new JsonObject();
-            request.addProperty("bot_name", botName);
-            request.add("events", events);
-            request.add("current_state", currentState);
-            
-            // Send to API
-            APIClient.postRequest("/add-reward/", request.toString());
-        } catch (Exception e) {
-            // Silently fail - reward tracking is not critical
-            e.printStackTrace();
+        if (helper.getMinecraft().thePlayer == null || helper.getMinecraft().theWorld == null) {
+            return;
+        }
+        String botName = helper.getMinecraft().thePlayer.getName();
+        long tick = helper.getMinecraft().theWorld.getTotalWorldTime();
+        // The player part of the last observation is enough for the backend's state
+        JsonObject currentState = new JsonObject();
+        if (playerData != null) {
+            JsonObject player = new JsonObject();
+            player.addProperty("health", playerData.getHealth());
+            player.addProperty("x", playerData.getPlayerX());
+            player.addProperty("y", playerData.getPlayerY());
+            player.addProperty("z", playerData.getPlayerZ());
+            player.addProperty("yaw", playerData.getPlayerYaw());
+            player.addProperty("pitch", playerData.getPlayerPitch());
+            player.addProperty("armor", playerData.getAmror());
+            currentState.add("player", player);
+        }
+        for (int i = 0; i < events.size(); i++) {
+            RewardQueue.getInstance().append(botName, tick, events.get(i).getAsJsonObject(), currentState);
         }
     }
 }
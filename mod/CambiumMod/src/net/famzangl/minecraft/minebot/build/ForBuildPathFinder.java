@@ -127,7 +127,7 @@ public class ForBuildPathFinder extends MovePathFinder {
 
 	@Override
 	protected float rateDestination(int distance, int x, int y, int z) {
-		if (task.couldBuildFrom(helper, x, y, z)) {
+		if (task.couldBuildFrom(world, x, y, z)) {
 			return distance;
 		}
 		return -1;
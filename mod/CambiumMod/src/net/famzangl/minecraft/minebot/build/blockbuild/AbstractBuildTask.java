@@ -16,11 +16,11 @@
  *******************************************************************************/
 package net.famzangl.minecraft.minebot.build.blockbuild;
 
-import net.famzangl.minecraft.minebot.ai.AIHelper;
 import net.famzangl.minecraft.minebot.ai.BlockItemFilter;
 import net.famzangl.minecraft.minebot.ai.ItemFilter;
 import net.famzangl.minecraft.minebot.ai.path.world.BlockSets;
 import net.famzangl.minecraft.minebot.ai.path.world.Pos;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
 import net.famzangl.minecraft.minebot.ai.task.AITask;
 import net.famzangl.minecraft.minebot.ai.task.move.UpwardsMoveTask;
 import net.famzangl.minecraft.minebot.ai.task.place.SneakAndPlaceTask;
@@ -65,11 +65,11 @@ public abstract class AbstractBuildTask extends BuildTask {
 	}
 
 	@Override
-	public boolean couldBuildFrom(AIHelper helper, int x, int y, int z) {
-		if (!super.couldBuildFrom(helper, x, y, z)) {
+	public boolean couldBuildFrom(WorldData world, int x, int y, int z) {
+		if (!super.couldBuildFrom(world, x, y, z)) {
 			return false;
 		} else {
-			return !BlockSets.AIR.isAt(helper.getWorld(), x, y - 1, z);
+			return !BlockSets.AIR.isAt(world, x, y - 1, z);
 		}
 	}
 
@@ -19,6 +19,7 @@ package net.famzangl.minecraft.minebot.build.blockbuild;
 import net.famzangl.minecraft.minebot.ai.AIHelper;
 import net.famzangl.minecraft.minebot.ai.ItemFilter;
 import net.famzangl.minecraft.minebot.ai.path.world.BlockSets;
+import net.famzangl.minecraft.minebot.ai.path.world.WorldData;
 import net.famzangl.minecraft.minebot.ai.task.AITask;
 import net.minecraft.util.BlockPos;
 
@@ -153,13 +154,13 @@ public abstract class BuildTask {
 	/**
 	 * Check if we can currently build from that pos.
 	 * 
-	 * @param helper
+	 * @param world
 	 * @param x
 	 * @param y
 	 * @param z
 	 * @return
 	 */
-	public boolean couldBuildFrom(AIHelper helper, int x, int y, int z) {
+	public boolean couldBuildFrom(WorldData world, int x, int y, int z) {
 		final BlockPos pos = getForPosition();
 		for (final BlockPos p : getStandablePlaces()) {
 			if (p.getX() + pos.getX() == x && p.getY() + pos.getY() == y && p.getZ() + pos.getZ() == z) {
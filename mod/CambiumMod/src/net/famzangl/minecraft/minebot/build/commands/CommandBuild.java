@@ -147,9 +147,9 @@ public class CommandBuild {
 			final int z = p.getZ() + forPosition.getZ();
 			System.out.println("Check " + forPosition + " + " + p + " -> "
 					+ helper.isStandingOn(x, y, z) + ", "
-					+ task.couldBuildFrom(helper, x, y, z));
+					+ task.couldBuildFrom(helper.getWorld(), x, y, z));
 			if (helper.isStandingOn(x, y, z)
-					&& task.couldBuildFrom(helper, x, y, z)) {
+					&& task.couldBuildFrom(helper.getWorld(), x, y, z)) {
 				return p;
 			}
 		}
@@ -0,0 +1,98 @@
+package com.example.tickfreeze;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * /arena snapshot &lt;name&gt; &lt;x1&gt; &lt;y1&gt; &lt;z1&gt; &lt;x2&gt; &lt;y2&gt; &lt;z2&gt; [dimension],
+ * /arena restore &lt;name&gt;..., /arena remove &lt;name&gt;, /arena [status], see {@link ArenaSnapshot}.
+ *
+ * Restore takes several names so the backend can reset all finished arenas with one command. Runs on the server
+ * thread, also when sent over RCON, and waits at most cambium.arena.timeout (10000) ms for it.
+ */
+public class ArenaCommand extends CommandBase {
+    private static final long TIMEOUT_MILLIS = Long.getLong("cambium.arena.timeout", 10000L);
+
+    private final ArenaSnapshots snapshots;
+    private final TickLoop tickLoop;
+
+    public ArenaCommand(ArenaSnapshots snapshots, TickLoop tickLoop) {
+        this.snapshots = snapshots;
+        this.tickLoop = tickLoop;
+    }
+
+    @Override
+    public String getCommandName() {
+        return "arena";
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender sender) {
+        return "/arena [status|snapshot <name> <x1> <y1> <z1> <x2> <y2> <z2> [dimension]|restore <name>...|remove <name>]";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void processCommand(final ICommandSender sender, final String[] args) throws CommandException {
+        final int[] coordinates = new int[7];
+        if (args.length == 0 || args[0].equals("status")) {
+            // Status only
+        } else if (args[0].equals("snapshot") && (args.length == 8 || args.length == 9)) {
+            for (int i = 0; i < 6; i++) {
+                coordinates[i] = parseInt(args[2 + i], -30000000, 30000000);
+            }
+            coordinates[6] = args.length == 9 ? parseInt(args[8]) : 0;
+        } else if (!(args[0].equals("restore") && args.length >= 2) && !(args[0].equals("remove") && args.length == 2)) {
+            throw new WrongUsageException(getCommandUsage(sender));
+        }
+
+        String result;
+        try {
+            result = tickLoop.callOnServerThread(new Callable<String>() {
+                @Override
+                public String call() {
+                    return run(args, coordinates);
+                }
+            }, TIMEOUT_MILLIS);
+        } catch (TimeoutException e) {
+            throw new CommandException("The server did not get to /arena within " + TIMEOUT_MILLIS + " ms",
+                    new Object[0]);
+        } catch (Exception e) {
+            throw new CommandException("/arena failed: " + e, new Object[0]);
+        }
+        sender.addChatMessage(new ChatComponentText(result));
+    }
+
+    private String run(String[] args, int[] coordinates) {
+        if (args.length == 0 || args[0].equals("status")) {
+            return snapshots.getStatusLine();
+        }
+        if (args[0].equals("snapshot")) {
+            return "Took arena snapshot " + snapshots.snapshot(args[1], coordinates[6], coordinates[0], coordinates[1],
+                    coordinates[2], coordinates[3], coordinates[4], coordinates[5]).getStatusLine();
+        }
+        if (args[0].equals("remove")) {
+            return snapshots.remove(args[1]) ? "Removed arena snapshot " + args[1] : "No arena snapshot " + args[1];
+        }
+        StringBuilder restored = new StringBuilder();
+        StringBuilder missing = new StringBuilder();
+        long start = System.nanoTime();
+        for (int i = 1; i < args.length; i++) {
+            StringBuilder list = snapshots.restore(args[i]) != null ? restored : missing;
+            list.append(list.length() == 0 ? "" : ", ").append(args[i]);
+        }
+        return "Restored " + (restored.length() == 0 ? "nothing" : restored) + " in "
+                + String.format("%.2f", (System.nanoTime() - start) / 1e6) + " ms"
+                + (missing.length() == 0 ? "" : ", no snapshot of " + missing);
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.tickfreeze;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityList;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.Packet;
+import net.minecraft.network.play.server.S26PacketMapChunkBulk;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The blocks, tile entities and entities of an arena, kept in memory so the arena can be put back in one go after an
+ * episode instead of block by block through commands.
+ *
+ * The region is rounded out to whole chunk sections (16x16x16) and reaches up to the top of the chunks, their block,
+ * block light and sky light arrays are copied as they are. Restoring copies them back into the loaded chunks,
+ * recounts the sections, replaces the tile entities and the non-player entities of the region and resends the chunks
+ * to the players watching them as bulk chunk packets. The height maps of the chunks are restored too, so nothing has
+ * to be relit. That is why the region goes up to the top: a height map only matches the blocks if the whole column
+ * above the bottom of the region is put back. Scheduled block updates (flowing water, fire) are not part of the
+ * snapshot.
+ *
+ * Server thread only.
+ */
+public class ArenaSnapshot {
+    // Vanilla sends at most this many chunks per bulk packet
+    private static final int CHUNKS_PER_PACKET = 10;
+
+    private final String name;
+    private final int dimension;
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int maxChunkX;
+    private final int maxChunkZ;
+    private final int minSection;
+    private final int maxSection;
+    private final AxisAlignedBB bounds;
+
+    // Per chunk (x major) and section, null for empty sections
+    private final char[][] blocks;
+    private final byte[][] blockLight;
+    private final byte[][] skyLight;
+    private final int[][] heightMaps;
+    private final List<NBTTagCompound> tileEntities = new ArrayList<NBTTagCompound>();
+    private final List<NBTTagCompound> entities = new ArrayList<NBTTagCompound>();
+
+    private long restores;
+    private long lastRestoreNanos;
+
+    /**
+     * Takes the snapshot of the sections containing the given block coordinates and of all sections above them.
+     */
+    public ArenaSnapshot(String name, WorldServer world, int x1, int y1, int z1, int x2, int y2, int z2) {
+        this.name = name;
+        this.dimension = world.provider.getDimensionId();
+        minChunkX = Math.min(x1, x2) >> 4;
+        minChunkZ = Math.min(z1, z2) >> 4;
+        maxChunkX = Math.max(x1, x2) >> 4;
+        maxChunkZ = Math.max(z1, z2) >> 4;
+        minSection = Math.min(255, Math.max(0, Math.min(y1, y2))) >> 4;
+        // The height maps are restored with the blocks, see above
+        maxSection = 15;
+        bounds = new AxisAlignedBB(minChunkX << 4, minSection << 4, minChunkZ << 4,
+                (maxChunkX + 1) << 4, (maxSection + 1) << 4, (maxChunkZ + 1) << 4);
+
+        int sections = getChunkCount() * (maxSection - minSection + 1);
+        blocks = new char[sections][];
+        blockLight = new byte[sections][];
+        skyLight = new byte[sections][];
+        heightMaps = new int[getChunkCount()][];
+
+        int chunkIndex = 0;
+        for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+            for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
+                Chunk chunk = world.getChunkFromChunkCoords(cx, cz);
+                heightMaps[chunkIndex] = chunk.getHeightMap().clone();
+                ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+                for (int sy = minSection; sy <= maxSection; sy++) {
+                    int i = sectionIndex(chunkIndex, sy);
+                    ExtendedBlockStorage section = storage[sy];
+                    if (section == null || section.isEmpty()) {
+                        continue;
+                    }
+                    blocks[i] = section.getData().clone();
+                    blockLight[i] = section.getBlocklightArray().getData().clone();
+                    if (section.getSkylightArray() != null) {
+                        skyLight[i] = section.getSkylightArray().getData().clone();
+                    }
+                }
+                for (TileEntity tileEntity : chunk.getTileEntityMap().values()) {
+                    if (contains(tileEntity.getPos())) {
+                        NBTTagCompound tag = new NBTTagCompound();
+                        tileEntity.writeToNBT(tag);
+                        tileEntities.add(tag);
+                    }
+                }
+                chunkIndex++;
+            }
+        }
+
+        for (Object o : world.getEntitiesWithinAABB(Entity.class, bounds)) {
+            Entity entity = (Entity) o;
+            NBTTagCompound tag = new NBTTagCompound();
+            // False for players, riders and dead entities
+            if (!(entity instanceof EntityPlayer) && entity.writeToNBTOptional(tag)) {
+                // Restored entities get a fresh UUID, the old one may still be around until the end of the tick
+                tag.removeTag("UUIDMost");
+                tag.removeTag("UUIDLeast");
+                entities.add(tag);
+            }
+        }
+    }
+
+    /**
+     * Puts the region back the way it was when the snapshot was taken.
+     */
+    public void restore(WorldServer world) {
+        long start = System.nanoTime();
+        boolean hasSky = !world.provider.getHasNoSky();
+
+        // Entities first, so nothing dropped by a removed tile entity stays behind
+        for (Object o : world.getEntitiesWithinAABB(Entity.class, bounds)) {
+            Entity entity = (Entity) o;
+            if (!(entity instanceof EntityPlayer)) {
+                entity.setDead();
+            }
+        }
+
+        List<Chunk> chunks = new ArrayList<Chunk>(getChunkCount());
+        int chunkIndex = 0;
+        for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+            for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
+                Chunk chunk = world.getChunkFromChunkCoords(cx, cz);
+                List<BlockPos> removed = new ArrayList<BlockPos>();
+                for (BlockPos pos : chunk.getTileEntityMap().keySet()) {
+                    if (contains(pos)) {
+                        removed.add(pos);
+                    }
+                }
+                for (BlockPos pos : removed) {
+                    world.removeTileEntity(pos);
+                }
+
+                ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+                for (int sy = minSection; sy <= maxSection; sy++) {
+                    int i = sectionIndex(chunkIndex, sy);
+                    if (blocks[i] == null) {
+                        storage[sy] = null;
+                        continue;
+                    }
+                    ExtendedBlockStorage section = storage[sy];
+                    if (section == null) {
+                        section = new ExtendedBlockStorage(sy << 4, hasSky);
+                        storage[sy] = section;
+                    }
+                    System.arraycopy(blocks[i], 0, section.getData(), 0, blocks[i].length);
+                    section.setBlocklightArray(new NibbleArray(blockLight[i].clone()));
+                    if (skyLight[i] != null) {
+                        section.setSkylightArray(new NibbleArray(skyLight[i].clone()));
+                    }
+                    // Recounts the non-air and random ticking blocks
+                    section.removeInvalidBlocks();
+                }
+                System.arraycopy(heightMaps[chunkIndex], 0, chunk.getHeightMap(), 0, heightMaps[chunkIndex].length);
+                chunk.setChunkModified();
+                chunks.add(chunk);
+                chunkIndex++;
+            }
+        }
+
+        for (NBTTagCompound tag : tileEntities) {
+            TileEntity tileEntity = TileEntity.createAndLoadEntity(tag);
+            if (tileEntity != null) {
+                world.setTileEntity(tileEntity.getPos(), tileEntity);
+            }
+        }
+        for (NBTTagCompound tag : entities) {
+            Entity entity = EntityList.createEntityFromNBT((NBTTagCompound) tag.copy(), world);
+            if (entity != null) {
+                world.spawnEntityInWorld(entity);
+            }
+        }
+
+        resend(world, chunks);
+        restores++;
+        lastRestoreNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Sends the restored chunks and their tile entities to every player that has them loaded.
+     */
+    private void resend(WorldServer world, List<Chunk> chunks) {
+        for (Object o : world.playerEntities) {
+            EntityPlayerMP player = (EntityPlayerMP) o;
+            List<Chunk> watched = new ArrayList<Chunk>();
+            for (Chunk chunk : chunks) {
+                // Chunks still waiting in loadedChunks are sent with their new content anyway
+                if (world.getPlayerManager().isPlayerWatchingChunk(player, chunk.xPosition, chunk.zPosition)
+                        && !player.loadedChunks.contains(new ChunkCoordIntPair(chunk.xPosition, chunk.zPosition))) {
+                    watched.add(chunk);
+                }
+            }
+            for (int from = 0; from < watched.size(); from += CHUNKS_PER_PACKET) {
+                List<Chunk> part = watched.subList(from, Math.min(watched.size(), from + CHUNKS_PER_PACKET));
+                player.playerNetServerHandler.sendPacket(new S26PacketMapChunkBulk(new ArrayList<Chunk>(part)));
+            }
+            for (Chunk chunk : watched) {
+                for (TileEntity tileEntity : chunk.getTileEntityMap().values()) {
+                    Packet packet = tileEntity.getDescriptionPacket();
+                    if (packet != null) {
+                        player.playerNetServerHandler.sendPacket(packet);
+                    }
+                }
+            }
+        }
+    }
+
+    private int sectionIndex(int chunkIndex, int section) {
+        return chunkIndex * (maxSection - minSection + 1) + section - minSection;
+    }
+
+    private boolean contains(BlockPos pos) {
+        int cx = pos.getX() >> 4;
+        int cz = pos.getZ() >> 4;
+        int sy = pos.getY() >> 4;
+        return cx >= minChunkX && cx <= maxChunkX && cz >= minChunkZ && cz <= maxChunkZ
+                && sy >= minSection && sy <= maxSection;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return minX, minY, minZ, maxX, maxY, maxZ of the blocks in the snapshot, whole sections.
+     */
+    public int[] getBounds() {
+        return new int[] {minChunkX << 4, minSection << 4, minChunkZ << 4,
+                ((maxChunkX + 1) << 4) - 1, ((maxSection + 1) << 4) - 1, ((maxChunkZ + 1) << 4) - 1};
+    }
+
+    public int getChunkCount() {
+        return (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+    }
+
+    public String getStatusLine() {
+        int sections = 0;
+        for (char[] section : blocks) {
+            if (section != null) {
+                sections++;
+            }
+        }
+        return name + ": dimension " + dimension + ", blocks " + (minChunkX << 4) + " " + (minSection << 4) + " "
+                + (minChunkZ << 4) + " to " + (((maxChunkX + 1) << 4) - 1) + " " + (((maxSection + 1) << 4) - 1) + " "
+                + (((maxChunkZ + 1) << 4) - 1) + ", " + getChunkCount() + " chunks, " + sections + " sections, "
+                + tileEntities.size() + " tile entities, " + entities.size() + " entities, " + restores
+                + " restores (last " + String.format("%.2f", lastRestoreNanos / 1e6) + " ms)";
+    }
+}
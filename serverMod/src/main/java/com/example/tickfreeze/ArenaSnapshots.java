@@ -0,0 +1,74 @@
+package com.example.tickfreeze;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.WorldServer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The arena snapshots by name, see {@link ArenaSnapshot}. They only live in memory, the backend takes them again after
+ * a server restart.
+ *
+ * Restores are passed on to the {@link EpisodeRecorder}, a recording of the arena starts over from the snapshot.
+ *
+ * Server thread only, {@link ArenaCommand} hands RCON calls over through {@link TickLoop#callOnServerThread}.
+ */
+public class ArenaSnapshots {
+    private final Map<String, ArenaSnapshot> snapshots = new LinkedHashMap<String, ArenaSnapshot>();
+    private final EpisodeRecorder recorder;
+
+    public ArenaSnapshots(EpisodeRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public ArenaSnapshot snapshot(String name, int dimension, int x1, int y1, int z1, int x2, int y2, int z2) {
+        WorldServer world = getWorld(dimension);
+        ArenaSnapshot snapshot = new ArenaSnapshot(name, world, x1, y1, z1, x2, y2, z2);
+        snapshots.put(name, snapshot);
+        System.out.println("[Cambium] Arena snapshot " + snapshot.getStatusLine());
+        return snapshot;
+    }
+
+    /**
+     * @return The restored snapshot, null if there is none with that name.
+     */
+    public ArenaSnapshot restore(String name) {
+        ArenaSnapshot snapshot = snapshots.get(name);
+        if (snapshot != null) {
+            snapshot.restore(getWorld(snapshot.getDimension()));
+            recorder.arenaRestored(name);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return The snapshot, null if there is none with that name.
+     */
+    public ArenaSnapshot get(String name) {
+        return snapshots.get(name);
+    }
+
+    public boolean remove(String name) {
+        return snapshots.remove(name) != null;
+    }
+
+    private static WorldServer getWorld(int dimension) {
+        WorldServer world = MinecraftServer.getServer().worldServerForDimension(dimension);
+        if (world == null) {
+            throw new IllegalArgumentException("No world for dimension " + dimension);
+        }
+        return world;
+    }
+
+    public String getStatusLine() {
+        if (snapshots.isEmpty()) {
+            return "No arena snapshots";
+        }
+        StringBuilder line = new StringBuilder();
+        for (ArenaSnapshot snapshot : snapshots.values()) {
+            line.append(line.length() == 0 ? "Arena snapshots: " : "; ").append(snapshot.getStatusLine());
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.tickfreeze;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Batched prediction requests to the backend (POST /predict-batch-v{version}), the backend counterpart is
+ * backend/binary_protocol.py. Everything is little-endian.
+ *
+ * Request, one observation per bot:
+ * <pre>
+ * int32   magic 'CBBQ'
+ * uint16  version
+ * uint16  observation count
+ * int64   server tick
+ * count x (uint16 length, observation as written by CambiumMod's BinaryProtocol.encodeObservation)
+ * </pre>
+ *
+ * Response, one action per observation in request order:
+ * <pre>
+ * int32   magic 'CBBR'
+ * uint16  version
+ * uint16  action count
+ * count x 28 byte action (BinaryProtocol action frame, forwarded to the bot as is)
+ * </pre>
+ */
+public final class BatchProtocol {
+    public static final String CONTENT_TYPE = "application/octet-stream";
+    public static final int VERSION = 1;
+    public static final int REQUEST_MAGIC = 0x51424243; // "CBBQ" read little-endian
+    public static final int RESPONSE_MAGIC = 0x52424243; // "CBBR" read little-endian
+    public static final int HEADER_SIZE = 16;
+
+    // The single observation frame, see BinaryProtocol in the mod
+    public static final int OBSERVATION_MAGIC = 0x424F4243; // "CBOB" read little-endian
+    public static final int ACTION_SIZE = 28;
+    private static final int MAX_NAME_BYTES = 255;
+    public static final int MAX_OBSERVATION_SIZE = 2 + 4 + 2 + 2 + 4 + 3 + 1 + MAX_NAME_BYTES
+            + 2 + ObservationBuilder.SIZE * 4 + 2 + ObservationBuilder.BLOCK_SLOTS * 2;
+
+    private BatchProtocol() {
+    }
+
+    public static ByteBuffer allocateRequest(int observations) {
+        return ByteBuffer.allocate(HEADER_SIZE + observations * MAX_OBSERVATION_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes the header, the count is filled in by {@link #finishRequest}.
+     */
+    public static void beginRequest(ByteBuffer out, long tick) {
+        out.putInt(REQUEST_MAGIC);
+        out.putShort((short) VERSION);
+        out.putShort((short) 0);
+        out.putLong(tick);
+    }
+
+    /**
+     * Appends one length prefixed observation frame.
+     */
+    public static void putObservation(ByteBuffer out, int sequence, String botName, int actionFlags,
+            int movementBins, int yawBins, int pitchBins, float[] features, short[] blockIds) {
+        byte[] name;
+        try {
+            name = botName.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        int nameLength = Math.min(name.length, MAX_NAME_BYTES);
+        int lengthPosition = out.position();
+        out.putShort((short) 0);
+        int start = out.position();
+
+        out.putInt(OBSERVATION_MAGIC);
+        out.putShort((short) VERSION);
+        out.putShort((short) actionFlags);
+        out.putInt(sequence);
+        out.put((byte) movementBins);
+        out.put((byte) yawBins);
+        out.put((byte) pitchBins);
+        out.put((byte) nameLength);
+        out.put(name, 0, nameLength);
+        out.putShort((short) features.length);
+        for (int i = 0; i < features.length; i++) {
+            out.putFloat(features[i]);
+        }
+        out.putShort((short) blockIds.length);
+        for (int i = 0; i < blockIds.length; i++) {
+            out.putShort(blockIds[i]);
+        }
+
+        out.putShort(lengthPosition, (short) (out.position() - start));
+    }
+
+    public static void finishRequest(ByteBuffer out, int count) {
+        out.putShort(6, (short) count);
+    }
+
+    /**
+     * Checks the response header.
+     * @return The number of actions that follow.
+     * @throws IllegalArgumentException if the magic, version or size do not match.
+     */
+    public static int readResponseHeader(ByteBuffer in) {
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        int magic = in.getInt();
+        if (magic != RESPONSE_MAGIC) {
+            throw new IllegalArgumentException("Bad magic 0x" + Integer.toHexString(magic));
+        }
+        int version = in.getShort() & 0xffff;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported protocol version " + version);
+        }
+        int count = in.getShort() & 0xffff;
+        if (in.remaining() < count * ACTION_SIZE) {
+            throw new IllegalArgumentException("Expected " + count + " actions, got " + in.remaining() + " bytes");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.tickfreeze;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Pattern;
+
+/**
+ * Server side inference for bots that subscribed over the cambium channel (client inference mode SERVER).
+ *
+ * At the end of every tick the observations of all subscribed bots are built here ({@link ObservationBuilder}) and
+ * sent to the backend as one request per model version (POST /predict-batch-v{version}, see {@link BatchProtocol}),
+ * so the backend runs one batched inference instead of one request per bot. The answers go back to the bots as
+ * ACTION(tick) packets. While a batch is still in flight the tick is skipped and the bots get an empty ACTION, they
+ * keep their last action then. In lockstep the bots wait for the ACTION of the announced tick before they ack it.
+ *
+ * The backend is cambium.backend.url (http://backend:8000), requests time out after cambium.serverInference.timeout
+ * (1000) ms. cambium.serverInference=false turns it off.
+ *
+ * Subscriptions arrive on the netty thread, observations are built on the server thread and requests run on the
+ * "Cambium inference" thread. Bots that subscribed with a version that is not [0-9.]+ (it ends up in the URL) only
+ * get empty ACTIONs.
+ */
+public class BatchedInference {
+    private static final Pattern VERSION = Pattern.compile("[0-9.]+");
+
+    private static final class Subscriber {
+        final UUID id;
+        final String name;
+        final int actionFlags;
+        final int movementBins;
+        final int yawBins;
+        final int pitchBins;
+        final String version;
+        final boolean validVersion;
+
+        Subscriber(UUID id, String name, int actionFlags, int movementBins, int yawBins, int pitchBins, String version) {
+            this.id = id;
+            this.name = name;
+            this.actionFlags = actionFlags;
+            this.movementBins = movementBins;
+            this.yawBins = yawBins;
+            this.pitchBins = pitchBins;
+            this.version = version;
+            this.validVersion = VERSION.matcher(version).matches();
+        }
+    }
+
+    /**
+     * The observations of one model version in one tick.
+     */
+    private static final class Batch {
+        final String version;
+        final List<EntityPlayerMP> players = new ArrayList<EntityPlayerMP>();
+        final ByteBuffer request;
+
+        Batch(String version, int capacity) {
+            this.version = version;
+            this.request = BatchProtocol.allocateRequest(capacity);
+        }
+    }
+
+    private final Map<UUID, Subscriber> subscribers = new ConcurrentHashMap<UUID, Subscriber>();
+    private final ObservationBuilder builder = new ObservationBuilder();
+    private final float[] features = new float[ObservationBuilder.SIZE];
+    private final short[] blockIds = new short[ObservationBuilder.BLOCK_SLOTS];
+    private CambiumChannel channel;
+
+    private final String baseUrl = System.getProperty("cambium.backend.url", "http://backend:8000");
+    private final int timeoutMillis = Integer.getInteger("cambium.serverInference.timeout", 1000);
+    private volatile boolean enabled = !"false".equalsIgnoreCase(System.getProperty("cambium.serverInference", "true"));
+    private volatile boolean inFlight;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Cambium inference");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // Server thread only
+    private long ticks;
+    private long skipped;
+    private long observations;
+    private long totalBuildNanos;
+    private long maxBuildNanos;
+    // Inference thread only
+    private long batches;
+    private long failed;
+    private long totalRequestNanos;
+    private long maxRequestNanos;
+    private String lastError;
+    private long statsStart = System.nanoTime();
+
+    public void setChannel(CambiumChannel channel) {
+        this.channel = channel;
+    }
+
+    public void subscribe(EntityPlayerMP player, int actionFlags, int movementBins, int yawBins, int pitchBins, String version) {
+        Subscriber subscriber = new Subscriber(player.getUniqueID(), player.getName(), actionFlags,
+                movementBins, yawBins, pitchBins, version);
+        subscribers.put(player.getUniqueID(), subscriber);
+        if (subscriber.validVersion) {
+            System.out.println("[Cambium] Server inference: subscribed " + player.getName() + " (model " + version + ")");
+        } else {
+            System.out.println("[Cambium] Server inference: subscribed " + player.getName() + " with invalid model version '"
+                    + version + "', it only gets empty actions");
+        }
+    }
+
+    public void unsubscribe(UUID id) {
+        Subscriber subscriber = subscribers.remove(id);
+        if (subscriber != null) {
+            System.out.println("[Cambium] Server inference: unsubscribed " + subscriber.name);
+        }
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        unsubscribe(event.player.getUniqueID());
+    }
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || subscribers.isEmpty()) {
+            return;
+        }
+        MinecraftServer server = MinecraftServer.getServer();
+        long tick = server.getTickCounter();
+        ticks++;
+        if (!enabled || inFlight) {
+            skipped++;
+            for (WorldServer world : server.worldServers) {
+                for (Object o : world.playerEntities) {
+                    EntityPlayerMP player = (EntityPlayerMP) o;
+                    if (subscribers.containsKey(player.getUniqueID())) {
+                        channel.sendNoAction(player, tick);
+                    }
+                }
+            }
+            return;
+        }
+
+        long start = System.nanoTime();
+        final Map<String, Batch> pending = buildBatches(server, tick);
+        long built = System.nanoTime() - start;
+        totalBuildNanos += built;
+        maxBuildNanos = Math.max(maxBuildNanos, built);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        final long batchTick = tick;
+        inFlight = true;
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (Batch batch : pending.values()) {
+                        request(batch, batchTick);
+                    }
+                } finally {
+                    inFlight = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the observations world by world, so each world's entities are only collected once.
+     */
+    private Map<String, Batch> buildBatches(MinecraftServer server, long tick) {
+        Map<String, Batch> result = new LinkedHashMap<String, Batch>();
+        // Bots subscribing meanwhile wait for the next tick, the buffers are sized for the ones there now
+        int capacity = Math.max(1, subscribers.size());
+        builder.beginTick();
+        for (WorldServer world : server.worldServers) {
+            for (Object o : world.playerEntities) {
+                EntityPlayerMP player = (EntityPlayerMP) o;
+                Subscriber subscriber = subscribers.get(player.getUniqueID());
+                if (subscriber == null) {
+                    continue;
+                }
+                if (!subscriber.validVersion) {
+                    channel.sendNoAction(player, tick);
+                    continue;
+                }
+                Batch batch = result.get(subscriber.version);
+                if (batch == null) {
+                    batch = new Batch(subscriber.version, capacity);
+                    BatchProtocol.beginRequest(batch.request, tick);
+                    result.put(subscriber.version, batch);
+                } else if (batch.players.size() == capacity) {
+                    // Subscribed during the tick, gets into the next one
+                    channel.sendNoAction(player, tick);
+                    continue;
+                }
+                builder.build(player, features, blockIds);
+                BatchProtocol.putObservation(batch.request, (int) tick, subscriber.name, subscriber.actionFlags,
+                        subscriber.movementBins, subscriber.yawBins, subscriber.pitchBins, features, blockIds);
+                batch.players.add(player);
+                observations++;
+            }
+        }
+        for (Batch batch : result.values()) {
+            BatchProtocol.finishRequest(batch.request, batch.players.size());
+        }
+        return result;
+    }
+
+    /**
+     * Sends one batch and routes the actions to the bots. On errors the bots get an empty ACTION.
+     */
+    private void request(Batch batch, long tick) {
+        long start = System.nanoTime();
+        try {
+            ByteBuffer response = post("/predict-batch-v" + batch.version, batch.request);
+            int count = BatchProtocol.readResponseHeader(response);
+            if (count != batch.players.size()) {
+                throw new IOException("Expected " + batch.players.size() + " actions, got " + count);
+            }
+            for (int i = 0; i < count; i++) {
+                channel.sendAction(batch.players.get(i), tick, response.array(), response.position() + i * BatchProtocol.ACTION_SIZE);
+            }
+            batches++;
+        } catch (Exception e) {
+            failed++;
+            lastError = e.toString();
+            if (failed == 1 || failed % 100 == 0) {
+                System.out.println("[Cambium] Server inference: batch failed (" + failed + " so far): " + e);
+            }
+            for (EntityPlayerMP player : batch.players) {
+                channel.sendNoAction(player, tick);
+            }
+        }
+        long took = System.nanoTime() - start;
+        totalRequestNanos += took;
+        maxRequestNanos = Math.max(maxRequestNanos, took);
+    }
+
+    private ByteBuffer post(String path, ByteBuffer body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setRequestProperty("Content-Type", BatchProtocol.CONTENT_TYPE);
+        connection.setFixedLengthStreamingMode(body.position());
+        OutputStream out = connection.getOutputStream();
+        try {
+            out.write(body.array(), 0, body.position());
+        } finally {
+            out.close();
+        }
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw new IOException("HTTP " + status + " from " + path);
+        }
+        // Reading to the end lets HttpURLConnection keep the connection for the next batch
+        InputStream in = connection.getInputStream();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try {
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                bytes.write(chunk, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return ByteBuffer.wrap(bytes.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void resetStats() {
+        ticks = 0;
+        skipped = 0;
+        observations = 0;
+        totalBuildNanos = 0;
+        maxBuildNanos = 0;
+        batches = 0;
+        failed = 0;
+        totalRequestNanos = 0;
+        maxRequestNanos = 0;
+        lastError = null;
+        statsStart = System.nanoTime();
+    }
+
+    public String getStatusLine() {
+        double seconds = Math.max(1e-3, (System.nanoTime() - statsStart) / 1e9);
+        StringBuilder names = new StringBuilder();
+        for (Subscriber subscriber : subscribers.values()) {
+            names.append(names.length() == 0 ? "" : ", ").append(subscriber.name).append(" (").append(subscriber.version).append(')');
+        }
+        long built = ticks - skipped;
+        long requests = batches + failed;
+        return "Server inference " + (enabled ? "on" : "off") + ", backend " + baseUrl + ", bots: "
+                + (names.length() == 0 ? "none" : names) + ". " + ticks + " ticks, " + skipped + " skipped, "
+                + observations + " observations (" + String.format("%.1f", observations / seconds) + "/s), build mean "
+                + String.format("%.2f", built == 0 ? 0 : totalBuildNanos / 1e6 / built) + " ms, max "
+                + String.format("%.2f", maxBuildNanos / 1e6) + " ms, " + batches + " batches, request mean "
+                + String.format("%.2f", requests == 0 ? 0 : totalRequestNanos / 1e6 / requests) + " ms, max "
+                + String.format("%.1f", maxRequestNanos / 1e6) + " ms, " + failed + " failed"
+                + (lastError != null ? " (last: " + lastError + ")" : "");
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.tickfreeze;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.MovingObjectPosition;
+import net.minecraft.util.Vec3;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+
+import java.util.Arrays;
+
+/**
+ * The block observation rays of CambiumMod (ai/cambiumInputs/GetInformation/BlockRaycaster.java) cast on the server
+ * world. Same rings, same ray order and the same dedup of blocks hit by several rays, keep the RINGS in sync.
+ *
+ * Cells are walked with a voxel walk (Amanatides and Woo). Air is skipped by looking at the chunk directly, any
+ * other block is tested the way World.rayTraceBlocks does it (canCollideCheck, then collisionRayTrace). So unlike the
+ * client, fences, panes and stairs use their connected shape. Unloaded chunks count as air.
+ *
+ * Results go to reusable arrays, one entry per distinct block in the order the rays hit them. Not thread safe.
+ */
+public class BlockRaycaster {
+    /**
+     * The rings as (thetaStep, phi) in degrees.
+     */
+    private static final int[][] RINGS = {
+            {360, -90}, {45, -60}, {20, -40}, {15, -30}, {15, -20}, {15, -10}, {15, 0},
+            {360, 90}, {45, 60}, {20, 40}, {15, 30}, {15, 20}, {15, 10}
+    };
+
+    public static final int RAY_COUNT;
+    private static final double[] DIR_X;
+    private static final double[] DIR_Y;
+    private static final double[] DIR_Z;
+
+    static {
+        int count = 0;
+        for (int[] ring : RINGS) {
+            count += 360 / ring[0];
+        }
+        RAY_COUNT = count;
+        DIR_X = new double[count];
+        DIR_Y = new double[count];
+        DIR_Z = new double[count];
+        int i = 0;
+        for (int[] ring : RINGS) {
+            double phi = Math.toRadians(ring[1]);
+            for (int theta = 0; theta < 360; theta += ring[0]) {
+                double t = Math.toRadians(theta);
+                DIR_X[i] = Math.cos(phi) * Math.cos(t);
+                DIR_Y[i] = Math.sin(phi);
+                DIR_Z[i] = Math.cos(phi) * Math.sin(t);
+                i++;
+            }
+        }
+    }
+
+    // Dedup table: cells within +-31 blocks of the eye, stamped with the cast they were last seen in
+    private static final int SEEN_BITS = 6;
+    private static final int SEEN_MASK = (1 << SEEN_BITS) - 1;
+    private static final double MAX_SUPPORTED_DISTANCE = (1 << (SEEN_BITS - 1)) - 2;
+    private final int[] seen = new int[1 << (3 * SEEN_BITS)];
+    private int generation;
+
+    private final int[] hitX = new int[RAY_COUNT];
+    private final int[] hitY = new int[RAY_COUNT];
+    private final int[] hitZ = new int[RAY_COUNT];
+    private final int[] hitBlock = new int[RAY_COUNT];
+    private final double[] hitDistance = new double[RAY_COUNT];
+    private int count;
+
+    // Chunk of the last cell looked at, most steps stay in it
+    private World world;
+    private Chunk chunk;
+    private int chunkX;
+    private int chunkZ;
+
+    /**
+     * Casts all rays from the eye position.
+     * @param maxDistance Ray length, at most 30 blocks.
+     * @return The number of distinct blocks hit.
+     */
+    public int cast(World world, double eyeX, double eyeY, double eyeZ, double maxDistance) {
+        if (maxDistance > MAX_SUPPORTED_DISTANCE) {
+            throw new IllegalArgumentException("maxDistance must not exceed " + MAX_SUPPORTED_DISTANCE);
+        }
+        if (++generation == 0) {
+            Arrays.fill(seen, 0);
+            generation = 1;
+        }
+        this.world = world;
+        this.chunk = null;
+        count = 0;
+        Vec3 eye = new Vec3(eyeX, eyeY, eyeZ);
+        int originX = floor(eyeX);
+        int originY = floor(eyeY);
+        int originZ = floor(eyeZ);
+        for (int ray = 0; ray < RAY_COUNT; ray++) {
+            castRay(eye, DIR_X[ray], DIR_Y[ray], DIR_Z[ray], maxDistance, originX, originY, originZ);
+        }
+        this.world = null;
+        this.chunk = null;
+        return count;
+    }
+
+    private void castRay(Vec3 eye, double dx, double dy, double dz, double maxDistance,
+            int originX, int originY, int originZ) {
+        double ox = eye.xCoord;
+        double oy = eye.yCoord;
+        double oz = eye.zCoord;
+        Vec3 end = null;
+        int x = floor(ox);
+        int y = floor(oy);
+        int z = floor(oz);
+        int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+        double deltaX = stepX == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dx);
+        double deltaY = stepY == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dy);
+        double deltaZ = stepZ == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dz);
+        double nextX = stepX > 0 ? (x + 1 - ox) * deltaX : stepX < 0 ? (ox - x) * deltaX : Double.POSITIVE_INFINITY;
+        double nextY = stepY > 0 ? (y + 1 - oy) * deltaY : stepY < 0 ? (oy - y) * deltaY : Double.POSITIVE_INFINITY;
+        double nextZ = stepZ > 0 ? (z + 1 - oz) * deltaZ : stepZ < 0 ? (oz - z) * deltaZ : Double.POSITIVE_INFINITY;
+
+        while (true) {
+            // Outside the build height vanilla sees air
+            if (y >= 0 && y < 256) {
+                Block block = getBlock(x, y, z);
+                if (block != Blocks.air) {
+                    BlockPos pos = new BlockPos(x, y, z);
+                    IBlockState state = world.getBlockState(pos);
+                    if (block.canCollideCheck(state, false)) {
+                        if (end == null) {
+                            end = new Vec3(ox + dx * maxDistance, oy + dy * maxDistance, oz + dz * maxDistance);
+                        }
+                        MovingObjectPosition hit = block.collisionRayTrace(world, pos, eye, end);
+                        if (hit != null) {
+                            record(x, y, z, Block.getIdFromBlock(block), hit.hitVec.distanceTo(eye), originX, originY, originZ);
+                            return;
+                        }
+                    }
+                }
+            }
+
+            if (nextX < nextY && nextX < nextZ) {
+                if (nextX > maxDistance) {
+                    return;
+                }
+                x += stepX;
+                nextX += deltaX;
+            } else if (nextY < nextZ) {
+                if (nextY > maxDistance) {
+                    return;
+                }
+                y += stepY;
+                nextY += deltaY;
+            } else {
+                if (nextZ > maxDistance) {
+                    return;
+                }
+                z += stepZ;
+                nextZ += deltaZ;
+            }
+        }
+    }
+
+    private Block getBlock(int x, int y, int z) {
+        int cx = x >> 4;
+        int cz = z >> 4;
+        if (chunk == null || cx != chunkX || cz != chunkZ) {
+            // Looking up an unloaded chunk would load or generate it
+            if (!world.getChunkProvider().chunkExists(cx, cz)) {
+                return Blocks.air;
+            }
+            chunk = world.getChunkFromChunkCoords(cx, cz);
+            chunkX = cx;
+            chunkZ = cz;
+        }
+        return chunk.getBlock(x, y, z);
+    }
+
+    private void record(int x, int y, int z, int blockId, double distance, int originX, int originY, int originZ) {
+        int key = ((x - originX) & SEEN_MASK) << (2 * SEEN_BITS) | ((y - originY) & SEEN_MASK) << SEEN_BITS
+                | ((z - originZ) & SEEN_MASK);
+        if (seen[key] == generation) {
+            return;
+        }
+        seen[key] = generation;
+        hitX[count] = x;
+        hitY[count] = y;
+        hitZ[count] = z;
+        hitBlock[count] = blockId;
+        hitDistance[count] = distance;
+        count++;
+    }
+
+    private static int floor(double value) {
+        int i = (int) value;
+        return value < i ? i - 1 : i;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getX(int i) {
+        return hitX[i];
+    }
+
+    public int getY(int i) {
+        return hitY[i];
+    }
+
+    public int getZ(int i) {
+        return hitZ[i];
+    }
+
+    /**
+     * @return The block id (without meta) of hit i.
+     */
+    public int getBlockId(int i) {
+        return hitBlock[i];
+    }
+
+    public double getDistance(int i) {
+        return hitDistance[i];
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.tickfreeze;
+
+import com.google.common.base.Charsets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.NetHandlerPlayServer;
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.network.FMLEventChannel;
+import net.minecraftforge.fml.common.network.FMLNetworkEvent;
+import net.minecraftforge.fml.common.network.NetworkRegistry;
+import net.minecraftforge.fml.common.network.internal.FMLProxyPacket;
+
+/**
+ * The "cambium" plugin channel between this mod and the bot clients (CambiumMod, ai/cambiumInputs/ServerChannel.java).
+ * Every packet starts with a one byte id, keep the ids in sync with the client.
+ *
+ * Client to server:
+ * REGISTER, UNREGISTER - the bot starts or stops taking part in lockstep
+ * ACK (int64 tick) - the bot applied its action for this server tick
+ * SUBSCRIBE (uint16 action flags, uint8 movementBins, yawBins, pitchBins, uint8 length + UTF-8 model version) - the
+ *   server should build the bot's observations and ask the backend for its actions, see {@link BatchedInference}
+ * UNSUBSCRIBE - the bot asks the backend itself again
+ *
+ * Server to client:
+ * TICK (int64 tick) - the server finished this tick, sent to registered bots while lockstep is on
+ * MODE (uint8 lockstep) - lockstep was switched on or off
+ * ACTION (int64 tick, uint8 valid, 28 byte action if valid) - the action for the observation of this tick, sent to
+ *   subscribed bots. Not valid if there is none for this tick (backend busy or failed).
+ * REWARDS (uint8 on) - the server reports combat events to the backend itself ({@link RewardStream}), the bot should
+ *   not. Sent on login and when it changes.
+ *
+ * Packets from clients arrive on the netty thread.
+ */
+public class CambiumChannel {
+    public static final String NAME = "cambium";
+
+    public static final int REGISTER = 0;
+    public static final int UNREGISTER = 1;
+    public static final int ACK = 2;
+    public static final int SUBSCRIBE = 3;
+    public static final int UNSUBSCRIBE = 4;
+
+    public static final int TICK = 16;
+    public static final int MODE = 17;
+    public static final int ACTION = 18;
+    public static final int REWARDS = 19;
+
+    private final FMLEventChannel channel;
+    private final LockstepBarrier barrier;
+    private final BatchedInference inference;
+
+    public CambiumChannel(LockstepBarrier barrier, BatchedInference inference) {
+        this.barrier = barrier;
+        this.inference = inference;
+        this.channel = NetworkRegistry.INSTANCE.newEventDrivenChannel(NAME);
+        channel.register(this);
+    }
+
+    @SubscribeEvent
+    public void onServerPacket(FMLNetworkEvent.ServerCustomPacketEvent event) {
+        EntityPlayerMP player = ((NetHandlerPlayServer) event.handler).playerEntity;
+        ByteBuf payload = event.packet.payload();
+        int id = payload.readUnsignedByte();
+        switch (id) {
+            case REGISTER:
+                barrier.register(player);
+                break;
+            case UNREGISTER:
+                barrier.unregister(player.getUniqueID());
+                break;
+            case ACK:
+                barrier.acknowledge(player.getUniqueID(), payload.readLong());
+                break;
+            case SUBSCRIBE:
+                int actionFlags = payload.readUnsignedShort();
+                int movementBins = payload.readUnsignedByte();
+                int yawBins = payload.readUnsignedByte();
+                int pitchBins = payload.readUnsignedByte();
+                byte[] version = new byte[payload.readUnsignedByte()];
+                payload.readBytes(version);
+                inference.subscribe(player, actionFlags, movementBins, yawBins, pitchBins, new String(version, Charsets.UTF_8));
+                break;
+            case UNSUBSCRIBE:
+                inference.unsubscribe(player.getUniqueID());
+                break;
+            default:
+                System.out.println("[Cambium] Unknown packet " + id + " from " + player.getName());
+        }
+    }
+
+    public void sendTick(EntityPlayerMP player, long tick) {
+        ByteBuf buf = Unpooled.buffer(9);
+        buf.writeByte(TICK);
+        buf.writeLong(tick);
+        send(player, buf);
+    }
+
+    public void sendMode(EntityPlayerMP player, boolean lockstep) {
+        ByteBuf buf = Unpooled.buffer(2);
+        buf.writeByte(MODE);
+        buf.writeBoolean(lockstep);
+        send(player, buf);
+    }
+
+    public void sendRewards(EntityPlayerMP player, boolean serverRewards) {
+        ByteBuf buf = Unpooled.buffer(2);
+        buf.writeByte(REWARDS);
+        buf.writeBoolean(serverRewards);
+        send(player, buf);
+    }
+
+    /**
+     * Sends the action at offset in actions. Called from the inference thread.
+     */
+    public void sendAction(EntityPlayerMP player, long tick, byte[] actions, int offset) {
+        ByteBuf buf = Unpooled.buffer(10 + BatchProtocol.ACTION_SIZE);
+        buf.writeByte(ACTION);
+        buf.writeLong(tick);
+        buf.writeBoolean(true);
+        buf.writeBytes(actions, offset, BatchProtocol.ACTION_SIZE);
+        send(player, buf);
+    }
+
+    public void sendNoAction(EntityPlayerMP player, long tick) {
+        ByteBuf buf = Unpooled.buffer(10);
+        buf.writeByte(ACTION);
+        buf.writeLong(tick);
+        buf.writeBoolean(false);
+        send(player, buf);
+    }
+
+    private void send(EntityPlayerMP player, ByteBuf buf) {
+        channel.sendTo(new FMLProxyPacket(new PacketBuffer(buf), NAME), player);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.tickfreeze;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A minimal blocking client for the control socket ({@link ControlServer}), for tools and the load test
+ * ({@link ControlLoadTest}). Only uses the JDK, so it runs outside the server too.
+ *
+ * Commands can be pipelined: {@link #submit} any number of them, {@link #flush}, then {@link #receive} one result per
+ * command, they come back in the order they were submitted. {@link #execute} does all three for one command.
+ * Not thread safe.
+ */
+public class ControlClient implements Closeable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private int nextId;
+
+    public static final class Result {
+        public final int requestId;
+        /** What the command returned, 0 if it failed. */
+        public final int result;
+        public final String output;
+        /** Set instead of result and output if the server did not run the command. */
+        public final String error;
+
+        Result(int requestId, int result, String output, String error) {
+            this.requestId = requestId;
+            this.result = result;
+            this.output = output;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Connects and logs in.
+     * @param password The server's control password, empty if it has none.
+     * @throws IOException if the connection or the login fails.
+     */
+    public ControlClient(String host, int port, String password, int timeoutMillis) throws IOException {
+        socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+        socket.setSoTimeout(timeoutMillis);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 65536));
+        out = new BufferedOutputStream(socket.getOutputStream(), 65536);
+
+        out.write(ControlProtocol.encode(ControlProtocol.TYPE_HELLO, 0, utf8(password)));
+        out.flush();
+        ControlProtocol.Frame hello = ControlProtocol.read(in);
+        if (hello.type != ControlProtocol.TYPE_HELLO) {
+            socket.close();
+            throw new IOException("Login failed: " + new String(hello.payload, "UTF-8"));
+        }
+    }
+
+    /**
+     * Writes a command without waiting for its result.
+     * @return The request id of the command.
+     */
+    public int submit(String command) throws IOException {
+        int id = ++nextId;
+        out.write(ControlProtocol.encode(ControlProtocol.TYPE_COMMAND, id, utf8(command)));
+        return id;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Blocks for the next result.
+     */
+    public Result receive() throws IOException {
+        ControlProtocol.Frame frame = ControlProtocol.read(in);
+        if (frame.type == ControlProtocol.TYPE_RESULT) {
+            ByteBuffer payload = ByteBuffer.wrap(frame.payload).order(ByteOrder.LITTLE_ENDIAN);
+            int result = payload.getInt();
+            return new Result(frame.requestId, result, new String(frame.payload, 4, frame.payload.length - 4, "UTF-8"), null);
+        }
+        return new Result(frame.requestId, 0, "", new String(frame.payload, "UTF-8"));
+    }
+
+    public Result execute(String command) throws IOException {
+        submit(command);
+        flush();
+        return receive();
+    }
+
+    /**
+     * Runs all commands pipelined, they all run in the same tick unless there are too many.
+     */
+    public List<Result> executeAll(List<String> commands) throws IOException {
+        for (String command : commands) {
+            submit(command);
+        }
+        flush();
+        List<Result> results = new ArrayList<Result>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            results.add(receive());
+        }
+        return results;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private static byte[] utf8(String text) {
+        try {
+            return text.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
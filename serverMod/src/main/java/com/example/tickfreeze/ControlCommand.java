@@ -0,0 +1,45 @@
+package com.example.tickfreeze;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+
+/**
+ * /control [status|reset], see {@link ControlServer}.
+ */
+public class ControlCommand extends CommandBase {
+    private final ControlServer control;
+
+    public ControlCommand(ControlServer control) {
+        this.control = control;
+    }
+
+    @Override
+    public String getCommandName() {
+        return "control";
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender sender) {
+        return "/control [status|reset]";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void processCommand(ICommandSender sender, String[] args) throws CommandException {
+        if (args.length == 0 || args[0].equals("status")) {
+            // Status only
+        } else if (args[0].equals("reset")) {
+            control.resetStats();
+        } else {
+            throw new WrongUsageException(getCommandUsage(sender));
+        }
+        sender.addChatMessage(new ChatComponentText(control.getStatusLine()));
+    }
+}
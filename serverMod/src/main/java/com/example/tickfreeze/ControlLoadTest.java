@@ -0,0 +1,63 @@
+package com.example.tickfreeze;
+
+import java.util.Arrays;
+
+/**
+ * Load test for the control socket: keeps up to [window] commands in flight over one connection and reports
+ * commands per second and round trip times.
+ *
+ * java -cp serverMod.jar com.example.tickfreeze.ControlLoadTest [host] [port] [password] [commands] [window] [command]
+ *
+ * Defaults: localhost 25580, no password, 20000 "lockstep status" commands, window 1000. Any cheap command works, the
+ * test only counts results and errors.
+ */
+public class ControlLoadTest {
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : ControlProtocol.DEFAULT_PORT;
+        String password = args.length > 2 ? args[2] : "";
+        int total = args.length > 3 ? Integer.parseInt(args[3]) : 20000;
+        int window = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+        String command = args.length > 5 ? args[5] : "lockstep status";
+
+        ControlClient client = new ControlClient(host, port, password, 30000);
+        try {
+            // Warm up the command and the connection
+            client.execute(command);
+
+            long[] sent = new long[total];
+            long[] roundTrips = new long[total];
+            int submitted = 0;
+            int received = 0;
+            int errors = 0;
+            long start = System.nanoTime();
+            while (received < total) {
+                while (submitted < total && submitted - received < window) {
+                    sent[submitted++] = System.nanoTime();
+                    client.submit(command);
+                }
+                client.flush();
+                // Take back what is outstanding beyond half the window, so the server always has commands queued
+                int until = Math.min(submitted, Math.max(received + 1, submitted - window / 2));
+                while (received < until) {
+                    ControlClient.Result result = client.receive();
+                    roundTrips[received] = System.nanoTime() - sent[received];
+                    if (result.error != null) {
+                        errors++;
+                    }
+                    received++;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(roundTrips);
+            System.out.println(String.format("%d commands in %.2f s: %.0f commands/s, %d errors, round trip p50 %.2f ms,"
+                    + " p99 %.2f ms, max %.2f ms", total, seconds, total / seconds, errors,
+                    roundTrips[total / 2] / 1e6, roundTrips[Math.min(total - 1, (int) (total * 0.99))] / 1e6,
+                    roundTrips[total - 1] / 1e6));
+            System.out.println(client.execute("control status").output);
+        } finally {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.tickfreeze;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Frames of the control socket ({@link ControlServer}), same layout as the mod's stream to the backend
+ * (StreamClient, backend/stream_protocol.py). The backend counterpart is backend/control_client.py.
+ *
+ * Every frame is a 12 byte little-endian header followed by the payload:
+ * <pre>
+ * int32   payload length
+ * uint8   type (see TYPE_*)
+ * uint8   flags (0)
+ * uint16  reserved
+ * int32   request id, echoed in the answer
+ * </pre>
+ *
+ * HELLO (UTF-8 password) - answered with an empty HELLO, or ERROR and the connection is closed
+ * COMMAND (UTF-8 command line, the leading / is optional) - answered with RESULT
+ * RESULT (int32 result of the command, 0 if it failed, then its UTF-8 output)
+ * ERROR (UTF-8 message) - the request was not run
+ */
+public final class ControlProtocol {
+    public static final int TYPE_HELLO = 1;
+    public static final int TYPE_COMMAND = 2;
+    public static final int TYPE_RESULT = 3;
+    public static final int TYPE_ERROR = 7;
+
+    public static final int HEADER_SIZE = 12;
+    public static final int MAX_PAYLOAD = 1 << 20;
+    public static final int DEFAULT_PORT = 25580;
+
+    private ControlProtocol() {
+    }
+
+    public static final class Frame {
+        public final int type;
+        public final int requestId;
+        public final byte[] payload;
+
+        public Frame(int type, int requestId, byte[] payload) {
+            this.type = type;
+            this.requestId = requestId;
+            this.payload = payload;
+        }
+    }
+
+    public static byte[] encode(int type, int requestId, byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length).order(ByteOrder.LITTLE_ENDIAN);
+        frame.putInt(payload.length);
+        frame.put((byte) type);
+        frame.put((byte) 0);
+        frame.putShort((short) 0);
+        frame.putInt(requestId);
+        frame.put(payload);
+        return frame.array();
+    }
+
+    public static byte[] encodeResult(int requestId, int result, byte[] output) {
+        ByteBuffer payload = ByteBuffer.allocate(4 + output.length).order(ByteOrder.LITTLE_ENDIAN);
+        payload.putInt(result);
+        payload.put(output);
+        return encode(TYPE_RESULT, requestId, payload.array());
+    }
+
+    /**
+     * Blocks until a whole frame arrived.
+     * @throws java.io.EOFException if the connection was closed.
+     * @throws IOException if the frame is larger than MAX_PAYLOAD.
+     */
+    public static Frame read(DataInputStream in) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        in.readFully(header);
+        ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        int length = buffer.getInt();
+        int type = buffer.get() & 0xff;
+        buffer.get();
+        buffer.getShort();
+        int requestId = buffer.getInt();
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IOException("Bad frame length " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(type, requestId, payload);
+    }
+}
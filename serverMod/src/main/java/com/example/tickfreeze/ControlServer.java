@@ -0,0 +1,415 @@
+package com.example.tickfreeze;
+
+import com.google.common.base.Charsets;
+import net.minecraft.command.CommandResultStats;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.entity.Entity;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.dedicated.DedicatedServer;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.ChatComponentText;
+import net.minecraft.util.IChatComponent;
+import net.minecraft.util.Vec3;
+import net.minecraft.world.World;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A persistent control socket for the backend, replacing one RCON connection and login per command.
+ *
+ * Clients keep the connection open and pipeline COMMAND frames with their own request ids ({@link ControlProtocol}).
+ * Everything that arrived until the next tick runs on the server thread in one go before that tick (also while the
+ * tick loop is paused), in arrival order, and every command's RESULT is streamed back as soon as it ran. The
+ * connections are read and written on their own threads, so the server thread never waits on the network.
+ *
+ * Listens on cambium.control.host (0.0.0.0) port cambium.control.port (25580, 0 turns it off). The first frame has
+ * to be a HELLO with cambium.control.password, which defaults to the server's rcon.password. Without a password it
+ * only listens on localhost.
+ */
+public class ControlServer {
+    private static final String SENDER_NAME = "Cambium";
+
+    private final TickLoop tickLoop;
+    private final String host = System.getProperty("cambium.control.host", "0.0.0.0");
+    private final int port = Integer.getInteger("cambium.control.port", ControlProtocol.DEFAULT_PORT);
+    private final int maxPending = Integer.getInteger("cambium.control.maxPending", 100000);
+    private String password;
+
+    private ServerSocket serverSocket;
+    private final Set<Connection> connections = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+    private final Queue<Request> pending = new ConcurrentLinkedQueue<Request>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    // Server thread only
+    private final OutputSender sender = new OutputSender();
+    private long commands;
+    private long batches;
+    private int maxBatch;
+    private long totalRunNanos;
+    private long maxRunNanos;
+    // Reader threads
+    private final AtomicLong rejected = new AtomicLong();
+
+    private static final class Request {
+        final Connection connection;
+        final int id;
+        final String command;
+
+        Request(Connection connection, int id, String command) {
+            this.connection = connection;
+            this.id = id;
+            this.command = command;
+        }
+    }
+
+    public ControlServer(TickLoop tickLoop) {
+        this.tickLoop = tickLoop;
+    }
+
+    public void start(MinecraftServer server) {
+        if (port <= 0) {
+            return;
+        }
+        password = System.getProperty("cambium.control.password");
+        if (password == null && server instanceof DedicatedServer) {
+            password = ((DedicatedServer) server).getStringProperty("rcon.password", "");
+        }
+        String bindHost = host;
+        if (password == null || password.isEmpty()) {
+            password = "";
+            bindHost = "127.0.0.1";
+        }
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(InetAddress.getByName(bindHost), port));
+        } catch (IOException e) {
+            System.out.println("[Cambium] Control socket: cannot listen on " + bindHost + ":" + port + ": " + e);
+            serverSocket = null;
+            return;
+        }
+        final ServerSocket socket = serverSocket;
+        Thread accept = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop(socket);
+            }
+        }, "Cambium control");
+        accept.setDaemon(true);
+        accept.start();
+        System.out.println("[Cambium] Control socket listening on " + bindHost + ":" + port
+                + (password.isEmpty() ? " (no password, localhost only)" : ""));
+    }
+
+    public void stop() {
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+            serverSocket = null;
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void acceptLoop(ServerSocket socket) {
+        while (!socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                client.setTcpNoDelay(true);
+                Connection connection = new Connection(client);
+                connections.add(connection);
+                connection.start();
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    System.out.println("[Cambium] Control socket: accept failed: " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reader thread: queues the command for the next tick.
+     */
+    private void submit(Connection connection, int id, String command) {
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            rejected.incrementAndGet();
+            connection.sendError(id, "Too many pending commands (" + maxPending + ")");
+            return;
+        }
+        pending.add(new Request(connection, id, command));
+        if (drainScheduled.compareAndSet(false, true)) {
+            tickLoop.execute(drain);
+        }
+    }
+
+    /**
+     * Server thread: runs everything queued so far.
+     */
+    private void drain() {
+        // Commands arriving from here on schedule the next drain
+        drainScheduled.set(false);
+        MinecraftServer server = MinecraftServer.getServer();
+        long start = System.nanoTime();
+        // Only what is there now, commands arriving meanwhile wait for the next tick
+        int limit = pendingCount.get();
+        int count = 0;
+        Request request;
+        while (count < limit && (request = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            count++;
+            if (request.connection.isClosed()) {
+                continue;
+            }
+            sender.output.setLength(0);
+            int result;
+            try {
+                result = server.getCommandManager().executeCommand(sender, request.command);
+            } catch (Exception e) {
+                result = 0;
+                sender.output.append(e.toString());
+            }
+            request.connection.send(ControlProtocol.encodeResult(request.id, result,
+                    sender.output.toString().getBytes(Charsets.UTF_8)));
+        }
+        if (count == 0) {
+            return;
+        }
+        long took = System.nanoTime() - start;
+        commands += count;
+        batches++;
+        maxBatch = Math.max(maxBatch, count);
+        totalRunNanos += took;
+        maxRunNanos = Math.max(maxRunNanos, took);
+    }
+
+    public void resetStats() {
+        commands = 0;
+        batches = 0;
+        maxBatch = 0;
+        totalRunNanos = 0;
+        maxRunNanos = 0;
+        rejected.set(0);
+    }
+
+    public String getStatusLine() {
+        if (serverSocket == null) {
+            return "Control socket off";
+        }
+        return "Control socket on port " + port + ", " + connections.size() + " connections, " + commands
+                + " commands in " + batches + " ticks (max " + maxBatch + " per tick), run mean "
+                + String.format("%.3f", batches == 0 ? 0 : totalRunNanos / 1e6 / batches) + " ms, max "
+                + String.format("%.2f", maxRunNanos / 1e6) + " ms per tick, " + pendingCount.get() + " pending, "
+                + rejected.get() + " rejected";
+    }
+
+    /**
+     * Collects the chat output of the commands, like RCON's console source. Server thread only.
+     */
+    private static final class OutputSender implements ICommandSender {
+        final StringBuilder output = new StringBuilder();
+
+        @Override
+        public String getName() {
+            return SENDER_NAME;
+        }
+
+        @Override
+        public IChatComponent getDisplayName() {
+            return new ChatComponentText(SENDER_NAME);
+        }
+
+        @Override
+        public void addChatMessage(IChatComponent component) {
+            if (output.length() > 0) {
+                output.append('\n');
+            }
+            output.append(component.getUnformattedText());
+        }
+
+        @Override
+        public boolean canCommandSenderUseCommand(int permLevel, String commandName) {
+            return true;
+        }
+
+        @Override
+        public BlockPos getPosition() {
+            return BlockPos.ORIGIN;
+        }
+
+        @Override
+        public Vec3 getPositionVector() {
+            return new Vec3(0, 0, 0);
+        }
+
+        @Override
+        public World getEntityWorld() {
+            return MinecraftServer.getServer().getEntityWorld();
+        }
+
+        @Override
+        public Entity getCommandSenderEntity() {
+            return null;
+        }
+
+        @Override
+        public boolean sendCommandFeedback() {
+            return true;
+        }
+
+        @Override
+        public void setCommandStat(CommandResultStats.Type type, int amount) {
+        }
+    }
+
+    /**
+     * One client: a reader thread that queues its commands and a writer thread that sends the results, flushing once
+     * nothing more is waiting.
+     */
+    private final class Connection {
+        private final Socket socket;
+        private final LinkedBlockingQueue<byte[]> outgoing = new LinkedBlockingQueue<byte[]>();
+        private volatile boolean closed;
+        private Thread writer;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        void start() {
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    readLoop();
+                }
+            }, "Cambium control reader " + socket.getRemoteSocketAddress());
+            reader.setDaemon(true);
+            writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    writeLoop();
+                }
+            }, "Cambium control writer " + socket.getRemoteSocketAddress());
+            writer.setDaemon(true);
+            reader.start();
+            writer.start();
+        }
+
+        private void readLoop() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 65536));
+                boolean authenticated = password.isEmpty();
+                while (!closed) {
+                    ControlProtocol.Frame frame = ControlProtocol.read(in);
+                    if (frame.type == ControlProtocol.TYPE_HELLO) {
+                        authenticated = password.equals(new String(frame.payload, Charsets.UTF_8));
+                        if (!authenticated) {
+                            sendError(frame.requestId, "Wrong password");
+                            break;
+                        }
+                        send(ControlProtocol.encode(ControlProtocol.TYPE_HELLO, frame.requestId, new byte[0]));
+                    } else if (!authenticated) {
+                        sendError(frame.requestId, "HELLO with the password first");
+                        break;
+                    } else if (frame.type == ControlProtocol.TYPE_COMMAND) {
+                        submit(this, frame.requestId, new String(frame.payload, Charsets.UTF_8));
+                    } else {
+                        sendError(frame.requestId, "Unknown frame type " + frame.type);
+                    }
+                }
+            } catch (EOFException e) {
+                // Client closed the connection
+            } catch (IOException e) {
+                if (!closed) {
+                    System.out.println("[Cambium] Control socket: " + socket.getRemoteSocketAddress() + ": " + e);
+                }
+            }
+            send(null);
+        }
+
+        private void writeLoop() {
+            try {
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 65536);
+                while (true) {
+                    byte[] frame = outgoing.take();
+                    while (frame != null && frame.length > 0) {
+                        out.write(frame);
+                        frame = outgoing.poll();
+                    }
+                    out.flush();
+                    if (frame != null) {
+                        // The end marker
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // Closed below
+            }
+            close();
+        }
+
+        void sendError(int requestId, String message) {
+            send(ControlProtocol.encode(ControlProtocol.TYPE_ERROR, requestId, message.getBytes(Charsets.UTF_8)));
+        }
+
+        /**
+         * Queues a frame for the writer, null ends the connection once everything before it is sent.
+         */
+        void send(byte[] frame) {
+            if (!closed) {
+                outgoing.add(frame == null ? new byte[0] : frame);
+            }
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+            if (writer != null) {
+                writer.interrupt();
+            }
+        }
+    }
+}
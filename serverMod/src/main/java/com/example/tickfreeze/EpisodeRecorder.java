@@ -0,0 +1,502 @@
+package com.example.tickfreeze;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityList;
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.IWorldAccess;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Records what happens in arenas, tick by tick, so a training run can be looked at afterwards instead of rerun
+ * ({@link ReplayReader}, /record).
+ *
+ * At the end of every tick the entities in a recorded arena (position, motion, rotation, health, state flags and
+ * equipment) and the blocks that changed in it are copied into a sample. The "Cambium recorder" thread turns the
+ * samples into a file per arena in cambium.recorder.dir (recordings): the differences to the tick before, and the
+ * whole state every cambium.recorder.keyframe (200) ticks, see {@link ReplayWriter}. Files are split after
+ * cambium.recorder.fileMegabytes (256).
+ *
+ * The copying on the server thread is limited to cambium.recorder.budgetMicros (1000) per tick for all arenas
+ * together. What does not fit in is recorded in one of the next ticks: the remaining changed blocks with their state
+ * by then, and the remaining entities first (they are taken round robin), until then the recording shows them as they
+ * were. If the writer falls behind by cambium.recorder.queue (256) samples, ticks are left out the same way.
+ *
+ * Block changes are seen through a world listener (setBlockState with a client update), they are relative to the
+ * arena snapshot of the same name: restoring it ({@link ArenaSnapshots#restore}) marks the tick as a reset and starts
+ * over from the snapshot's blocks. Start a recording right after a snapshot or restore so the two agree, the backend
+ * does (RECORD_ARENAS).
+ *
+ * Recordings are started and stopped on the server thread, /record hands RCON calls over like /arena.
+ */
+public class EpisodeRecorder {
+
+    private static final class Recording {
+        final String name;
+        final int dimension;
+        final int[] bounds;
+        final AxisAlignedBB box;
+        // Writer thread only
+        final ReplayWriter writer;
+        volatile String error;
+        // Server thread only
+        final Set<Long> changedBlocks = new LinkedHashSet<Long>();
+        boolean reset;
+        int cursor;
+        long samples;
+        long deferredEntities;
+        long deferredBlocks;
+        long droppedTicks;
+
+        Recording(String name, int dimension, int[] bounds, ReplayWriter writer) {
+            this.name = name;
+            this.dimension = dimension;
+            this.bounds = bounds;
+            this.box = new AxisAlignedBB(bounds[0], bounds[1], bounds[2], bounds[3] + 1, bounds[4] + 1, bounds[5] + 1);
+            this.writer = writer;
+        }
+
+        boolean contains(BlockPos pos) {
+            return pos.getX() >= bounds[0] && pos.getY() >= bounds[1] && pos.getZ() >= bounds[2]
+                    && pos.getX() <= bounds[3] && pos.getY() <= bounds[4] && pos.getZ() <= bounds[5];
+        }
+    }
+
+    /**
+     * A sample to write, or without a sample the end of the recording.
+     */
+    private static final class Pending {
+        final Recording recording;
+        final ReplayWriter.Sample sample;
+
+        Pending(Recording recording, ReplayWriter.Sample sample) {
+            this.recording = recording;
+            this.sample = sample;
+        }
+    }
+
+    private static final Pending SHUTDOWN = new Pending(null, null);
+
+    private final File directory = new File(System.getProperty("cambium.recorder.dir", "recordings"));
+    private final int keyframeInterval = Integer.getInteger("cambium.recorder.keyframe", 200);
+    private final long maxFileBytes = Long.getLong("cambium.recorder.fileMegabytes", 256L) << 20;
+    private final long budgetNanos = Long.getLong("cambium.recorder.budgetMicros", 1000L) * 1000;
+    private final int queueSize = Integer.getInteger("cambium.recorder.queue", 256);
+
+    private final Map<String, Recording> recordings = new LinkedHashMap<String, Recording>();
+    private final LinkedBlockingQueue<Pending> pending = new LinkedBlockingQueue<Pending>();
+    private final ArrayBlockingQueue<ReplayWriter.Sample> free = new ArrayBlockingQueue<ReplayWriter.Sample>(queueSize);
+    private Thread writerThread;
+
+    // Server thread only
+    private int samplesCreated;
+    private long ticks;
+    private long totalCaptureNanos;
+    private long maxCaptureNanos;
+
+    public void start() {
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "Cambium recorder");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Starts recording the region, ending an earlier recording of the same name.
+     * @param bounds minX, minY, minZ, maxX, maxY, maxZ in blocks.
+     */
+    public String startRecording(String name, int dimension, int[] bounds) {
+        if (MinecraftServer.getServer().worldServerForDimension(dimension) == null) {
+            throw new IllegalArgumentException("No world for dimension " + dimension);
+        }
+        stopRecording(name);
+        int[] sorted = new int[] {
+                Math.min(bounds[0], bounds[3]), Math.min(bounds[1], bounds[4]), Math.min(bounds[2], bounds[5]),
+                Math.max(bounds[0], bounds[3]), Math.max(bounds[1], bounds[4]), Math.max(bounds[2], bounds[5])
+        };
+        Recording recording = new Recording(name, dimension, sorted,
+                new ReplayWriter(directory, name, dimension, sorted, keyframeInterval, maxFileBytes));
+        recordings.put(name, recording);
+        System.out.println("[Cambium] Recording arena " + name + " to " + directory.getAbsolutePath());
+        return "Recording " + name + " (dimension " + dimension + ", " + sorted[0] + " " + sorted[1] + " " + sorted[2]
+                + " to " + sorted[3] + " " + sorted[4] + " " + sorted[5] + ")";
+    }
+
+    /**
+     * @return false if the arena was not recorded.
+     */
+    public boolean stopRecording(String name) {
+        Recording recording = recordings.remove(name);
+        if (recording == null) {
+            return false;
+        }
+        pending.add(new Pending(recording, null));
+        return true;
+    }
+
+    /**
+     * Ends all recordings and waits a few seconds for their files to be written.
+     */
+    public void stop() {
+        for (String name : recordings.keySet().toArray(new String[0])) {
+            stopRecording(name);
+        }
+        pending.add(SHUTDOWN);
+        if (writerThread != null) {
+            try {
+                writerThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Called by {@link ArenaSnapshots} after the arena was restored: its blocks are the snapshot's again.
+     */
+    public void arenaRestored(String name) {
+        Recording recording = recordings.get(name);
+        if (recording != null) {
+            recording.reset = true;
+            recording.changedBlocks.clear();
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldLoad(WorldEvent.Load event) {
+        if (event.world instanceof WorldServer) {
+            event.world.addWorldAccess(new BlockListener(event.world.provider.getDimensionId()));
+        }
+    }
+
+    /**
+     * After the tick's movement and damage, before TickLoop runs the next ticks (LOW).
+     */
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || recordings.isEmpty()) {
+            return;
+        }
+        MinecraftServer server = MinecraftServer.getServer();
+        long tick = server.getTickCounter();
+        long start = System.nanoTime();
+        int left = recordings.size();
+        for (Recording recording : recordings.values()) {
+            // Time one arena does not use goes to the others
+            long deadline = System.nanoTime() + (start + budgetNanos - System.nanoTime()) / left--;
+            ReplayWriter.Sample sample = takeSample();
+            if (sample == null) {
+                // Changed blocks and the reset wait for the next sample
+                recording.droppedTicks++;
+                continue;
+            }
+            sample.begin(tick);
+            sample.reset = recording.reset;
+            recording.reset = false;
+            WorldServer world = server.worldServerForDimension(recording.dimension);
+            captureBlocks(recording, world, sample, deadline);
+            captureEntities(recording, world, sample, deadline);
+            recording.samples++;
+            pending.add(new Pending(recording, sample));
+        }
+        long took = System.nanoTime() - start;
+        ticks++;
+        totalCaptureNanos += took;
+        maxCaptureNanos = Math.max(maxCaptureNanos, took);
+    }
+
+    private ReplayWriter.Sample takeSample() {
+        ReplayWriter.Sample sample = free.poll();
+        if (sample == null && samplesCreated < queueSize) {
+            samplesCreated++;
+            sample = new ReplayWriter.Sample();
+        }
+        return sample;
+    }
+
+    private void captureBlocks(Recording recording, WorldServer world, ReplayWriter.Sample sample, long deadline) {
+        int count = 0;
+        for (Iterator<Long> it = recording.changedBlocks.iterator(); it.hasNext(); count++) {
+            if ((count & 7) == 0 && System.nanoTime() > deadline) {
+                recording.deferredBlocks += recording.changedBlocks.size();
+                return;
+            }
+            BlockPos pos = BlockPos.fromLong(it.next());
+            it.remove();
+            sample.addBlock(pos.getX() - recording.bounds[0], pos.getY() - recording.bounds[1],
+                    pos.getZ() - recording.bounds[2], Block.getStateId(world.getBlockState(pos)));
+        }
+    }
+
+    private void captureEntities(Recording recording, WorldServer world, ReplayWriter.Sample sample, long deadline) {
+        if (System.nanoTime() > deadline) {
+            sample.entitiesSkipped = true;
+            return;
+        }
+        List<?> entities = world.getEntitiesWithinAABB(Entity.class, recording.box);
+        int size = entities.size();
+        for (int i = 0; i < size; i++) {
+            sample.addPresent(((Entity) entities.get(i)).getEntityId());
+        }
+        int captured = 0;
+        while (captured < size) {
+            if ((captured & 7) == 0 && System.nanoTime() > deadline) {
+                recording.deferredEntities += size - captured;
+                break;
+            }
+            capture((Entity) entities.get((recording.cursor + captured) % size), sample);
+            captured++;
+        }
+        // The ones left out go first next time
+        if (captured < size) {
+            recording.cursor = (recording.cursor + captured) % size;
+        }
+    }
+
+    private static void capture(Entity entity, ReplayWriter.Sample sample) {
+        String type = entity instanceof EntityPlayer ? "Player" : EntityList.getEntityString(entity);
+        if (type == null) {
+            type = entity.getClass().getSimpleName();
+        }
+        // getName() translates the type of unnamed entities every time, the type is enough for those
+        String name = entity instanceof EntityPlayer ? entity.getName()
+                : entity.hasCustomName() ? entity.getCustomNameTag() : type;
+        int base = sample.addEntity(entity.getEntityId(), type, name);
+        int[] values = sample.values;
+        values[base + ReplayFormat.F_X] = (int) Math.round(entity.posX * ReplayFormat.POSITION_SCALE);
+        values[base + ReplayFormat.F_Y] = (int) Math.round(entity.posY * ReplayFormat.POSITION_SCALE);
+        values[base + ReplayFormat.F_Z] = (int) Math.round(entity.posZ * ReplayFormat.POSITION_SCALE);
+        values[base + ReplayFormat.F_MOTION_X] = (int) Math.round(entity.motionX * ReplayFormat.MOTION_SCALE);
+        values[base + ReplayFormat.F_MOTION_Y] = (int) Math.round(entity.motionY * ReplayFormat.MOTION_SCALE);
+        values[base + ReplayFormat.F_MOTION_Z] = (int) Math.round(entity.motionZ * ReplayFormat.MOTION_SCALE);
+        values[base + ReplayFormat.F_YAW] = Math.round(entity.rotationYaw * (float) ReplayFormat.ANGLE_SCALE);
+        values[base + ReplayFormat.F_PITCH] = Math.round(entity.rotationPitch * (float) ReplayFormat.ANGLE_SCALE);
+
+        int state = 0;
+        if (entity.onGround) {
+            state |= ReplayFormat.STATE_ON_GROUND;
+        }
+        if (entity.isSneaking()) {
+            state |= ReplayFormat.STATE_SNEAKING;
+        }
+        if (entity.isSprinting()) {
+            state |= ReplayFormat.STATE_SPRINTING;
+        }
+        if (entity.isBurning()) {
+            state |= ReplayFormat.STATE_BURNING;
+        }
+        if (entity.isDead) {
+            state |= ReplayFormat.STATE_DEAD;
+        }
+        if (entity instanceof EntityPlayer && ((EntityPlayer) entity).isUsingItem()) {
+            state |= ReplayFormat.STATE_USING_ITEM;
+        }
+        if (entity instanceof EntityLivingBase) {
+            EntityLivingBase living = (EntityLivingBase) entity;
+            values[base + ReplayFormat.F_HEALTH] = Math.round(living.getHealth() * (float) ReplayFormat.HEALTH_SCALE);
+            if (living.isSwingInProgress) {
+                state |= ReplayFormat.STATE_SWINGING;
+            }
+            if (living.hurtTime > 0) {
+                state |= ReplayFormat.STATE_HURT;
+            }
+            if (living.getHealth() <= 0) {
+                state |= ReplayFormat.STATE_DEAD;
+            }
+        } else {
+            values[base + ReplayFormat.F_HEALTH] = 0;
+        }
+        values[base + ReplayFormat.F_STATE] = state;
+
+        for (int slot = 0; slot < ReplayFormat.EQUIPMENT_SLOTS; slot++) {
+            ItemStack stack = entity instanceof EntityLivingBase ? ((EntityLivingBase) entity).getEquipmentInSlot(slot) : null;
+            int field = base + ReplayFormat.F_EQUIPMENT + 2 * slot;
+            values[field] = stack == null ? 0 : Item.getIdFromItem(stack.getItem()) + 1;
+            values[field + 1] = stack == null ? 0 : stack.getItemDamage();
+        }
+    }
+
+    private void writeLoop() {
+        Set<Recording> unflushed = new LinkedHashSet<Recording>();
+        while (true) {
+            Pending next = pending.poll();
+            if (next == null) {
+                // Nothing waiting, a good time to hand the buffered frames to the OS
+                for (Recording recording : unflushed) {
+                    try {
+                        recording.writer.flush();
+                    } catch (IOException e) {
+                        fail(recording, e);
+                    }
+                }
+                unflushed.clear();
+                try {
+                    next = pending.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            if (next == SHUTDOWN) {
+                return;
+            }
+            Recording recording = next.recording;
+            if (next.sample == null) {
+                unflushed.remove(recording);
+                try {
+                    recording.writer.close();
+                    System.out.println("[Cambium] Recorded arena " + recording.name + ": " + recording.writer.getStatusLine());
+                } catch (IOException e) {
+                    fail(recording, e);
+                }
+                continue;
+            }
+            if (recording.error == null) {
+                try {
+                    recording.writer.write(next.sample);
+                    unflushed.add(recording);
+                } catch (IOException e) {
+                    fail(recording, e);
+                }
+            }
+            free.offer(next.sample);
+        }
+    }
+
+    /**
+     * Writer thread: the recording stops writing, /record status shows why.
+     */
+    private void fail(Recording recording, IOException e) {
+        if (recording.error == null) {
+            System.out.println("[Cambium] Recording " + recording.name + " failed: " + e);
+        }
+        recording.error = e.toString();
+        try {
+            recording.writer.close();
+        } catch (IOException closing) {
+            // Closing anyway
+        }
+    }
+
+    public void resetStats() {
+        ticks = 0;
+        totalCaptureNanos = 0;
+        maxCaptureNanos = 0;
+        for (Recording recording : recordings.values()) {
+            recording.samples = 0;
+            recording.deferredEntities = 0;
+            recording.deferredBlocks = 0;
+            recording.droppedTicks = 0;
+        }
+    }
+
+    public String getStatusLine() {
+        if (recordings.isEmpty()) {
+            return "Not recording";
+        }
+        StringBuilder line = new StringBuilder("Recording " + recordings.size() + " arenas to "
+                + directory.getAbsolutePath() + ", capture mean "
+                + String.format("%.1f", ticks == 0 ? 0 : totalCaptureNanos / 1e3 / ticks) + " us, max "
+                + String.format("%.1f", maxCaptureNanos / 1e3) + " us per tick (budget " + budgetNanos / 1000
+                + " us), " + pending.size() + " samples waiting");
+        for (Recording recording : recordings.values()) {
+            line.append("; ").append(recording.name).append(": ").append(recording.samples).append(" samples, ")
+                    .append(recording.deferredEntities).append(" entities and ").append(recording.deferredBlocks)
+                    .append(" blocks deferred, ").append(recording.droppedTicks).append(" ticks dropped, ")
+                    .append(recording.error != null ? "failed: " + recording.error : recording.writer.getStatusLine());
+        }
+        return line.toString();
+    }
+
+    /**
+     * Notes the changed blocks of one world for the recordings of that dimension. Called on the server thread.
+     */
+    private final class BlockListener implements IWorldAccess {
+        private final int dimension;
+
+        BlockListener(int dimension) {
+            this.dimension = dimension;
+        }
+
+        @Override
+        public void markBlockForUpdate(BlockPos pos) {
+            if (recordings.isEmpty()) {
+                return;
+            }
+            for (Recording recording : recordings.values()) {
+                if (recording.dimension == dimension && recording.contains(pos)) {
+                    recording.changedBlocks.add(pos.toLong());
+                }
+            }
+        }
+
+        @Override
+        public void notifyLightSet(BlockPos pos) {
+        }
+
+        @Override
+        public void markBlockRangeForRenderUpdate(int x1, int y1, int z1, int x2, int y2, int z2) {
+        }
+
+        @Override
+        public void playSound(String soundName, double x, double y, double z, float volume, float pitch) {
+        }
+
+        @Override
+        public void playSoundToNearExcept(EntityPlayer except, String soundName, double x, double y, double z,
+                float volume, float pitch) {
+        }
+
+        @Override
+        public void spawnParticle(int particleID, boolean ignoreRange, double xCoord, double yCoord, double zCoord,
+                double xOffset, double yOffset, double zOffset, int... parameters) {
+        }
+
+        @Override
+        public void onEntityAdded(Entity entity) {
+        }
+
+        @Override
+        public void onEntityRemoved(Entity entity) {
+        }
+
+        @Override
+        public void playRecord(String recordName, BlockPos pos) {
+        }
+
+        @Override
+        public void broadcastSound(int soundID, BlockPos pos, int data) {
+        }
+
+        @Override
+        public void playAuxSFX(EntityPlayer player, int sfxType, BlockPos pos, int data) {
+        }
+
+        @Override
+        public void sendBlockBreakProgress(int breakerId, BlockPos pos, int progress) {
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.tickfreeze;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+
+/**
+ * /inference [on|off|status|reset], see {@link BatchedInference}.
+ */
+public class InferenceCommand extends CommandBase {
+    private final BatchedInference inference;
+
+    public InferenceCommand(BatchedInference inference) {
+        this.inference = inference;
+    }
+
+    @Override
+    public String getCommandName() {
+        return "inference";
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender sender) {
+        return "/inference [on|off|status|reset]";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void processCommand(ICommandSender sender, String[] args) throws CommandException {
+        if (args.length == 0 || args[0].equals("status")) {
+            // Status only
+        } else if (args[0].equals("on") || args[0].equals("off")) {
+            inference.setEnabled(args[0].equals("on"));
+        } else if (args[0].equals("reset")) {
+            inference.resetStats();
+        } else {
+            throw new WrongUsageException(getCommandUsage(sender));
+        }
+        sender.addChatMessage(new ChatComponentText(inference.getStatusLine()));
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.tickfreeze;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lockstep mode for training: the server holds every tick until each registered bot acknowledged the previous one.
+ *
+ * At the end of tick N the server sends TICK(N) to the registered bots (see {@link CambiumChannel}). A bot observes
+ * the world, applies its action and answers with ACK(N) once its movement for that tick went out. At the start of
+ * tick N+1 the server thread waits until every bot acknowledged N, or until the timeout (cambium.lockstep.timeout,
+ * 1000 ms) forces the tick. A bot that misses cambium.lockstep.maxMisses (20) ticks in a row is dropped.
+ *
+ * With fast mode on (cambium.lockstep.fast, default true) the server does not wait for the rest of the 50 ms either,
+ * it runs the next tick as soon as all bots answered ({@link TickLoop.Mode#MAX} unless /tickrate set another mode).
+ *
+ * Registration and acks arrive on the netty thread, everything else runs on the server thread.
+ */
+public class LockstepBarrier {
+
+    private static final class Bot {
+        final UUID id;
+        final String name;
+        volatile long acked;
+        int misses;
+
+        Bot(UUID id, String name, long acked) {
+            this.id = id;
+            this.name = name;
+            this.acked = acked;
+        }
+    }
+
+    private final Map<UUID, Bot> bots = new ConcurrentHashMap<UUID, Bot>();
+    private final Object lock = new Object();
+    private final TickLoop tickLoop;
+    private CambiumChannel channel;
+
+    private volatile boolean enabled = Boolean.getBoolean("cambium.lockstep");
+    private volatile boolean fast = !"false".equalsIgnoreCase(System.getProperty("cambium.lockstep.fast", "true"));
+    private volatile long timeoutMillis = Long.getLong("cambium.lockstep.timeout", 1000L);
+    private final int maxMisses = Integer.getInteger("cambium.lockstep.maxMisses", 20);
+
+    // Last tick announced to the bots, -1 while lockstep is off
+    private volatile long announced = -1;
+
+    private long ticks;
+    private long forced;
+    private long dropped;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long statsStart = System.nanoTime();
+
+    public LockstepBarrier(TickLoop tickLoop) {
+        this.tickLoop = tickLoop;
+    }
+
+    public void setChannel(CambiumChannel channel) {
+        this.channel = channel;
+    }
+
+    public void register(EntityPlayerMP player) {
+        // The bot did not see the last announced tick, it only has to answer the next one
+        bots.put(player.getUniqueID(), new Bot(player.getUniqueID(), player.getName(), announced));
+        System.out.println("[Cambium] Lockstep: registered " + player.getName());
+        if (enabled) {
+            channel.sendMode(player, true);
+        }
+    }
+
+    public void unregister(UUID id) {
+        Bot bot = bots.remove(id);
+        if (bot != null) {
+            System.out.println("[Cambium] Lockstep: unregistered " + bot.name);
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    public void acknowledge(UUID id, long ackedTick) {
+        Bot bot = bots.get(id);
+        if (bot == null || ackedTick <= bot.acked) {
+            return;
+        }
+        bot.acked = ackedTick;
+        if (ackedTick >= announced) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        unregister(event.player.getUniqueID());
+    }
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.START) {
+            if (enabled && announced >= 0) {
+                await(announced);
+            }
+            return;
+        }
+
+        if (!enabled) {
+            return;
+        }
+        // The server's tick counter, so ACTION packets of BatchedInference carry the same number
+        MinecraftServer server = MinecraftServer.getServer();
+        long tick = server.getTickCounter();
+        ticks++;
+        announced = tick;
+        for (Bot bot : bots.values()) {
+            EntityPlayerMP player = server.getConfigurationManager().getPlayerByUUID(bot.id);
+            if (player != null) {
+                channel.sendTick(player, tick);
+            }
+        }
+        // Without bots nothing would hold the extra ticks
+        tickLoop.setLockstepFast(fast && !bots.isEmpty());
+    }
+
+    /**
+     * Blocks the server thread until all bots acknowledged target or the timeout passed.
+     */
+    private void await(long target) {
+        long start = System.nanoTime();
+        long deadline = start + timeoutMillis * 1000000L;
+        synchronized (lock) {
+            while (true) {
+                if (allAcknowledged(target)) {
+                    break;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    forceAdvance(target);
+                    break;
+                }
+                try {
+                    lock.wait(remaining / 1000000L, (int) (remaining % 1000000L));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        long waited = System.nanoTime() - start;
+        totalWaitNanos += waited;
+        maxWaitNanos = Math.max(maxWaitNanos, waited);
+    }
+
+    private boolean allAcknowledged(long target) {
+        for (Bot bot : bots.values()) {
+            if (bot.acked < target) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void forceAdvance(long target) {
+        forced++;
+        for (Bot bot : bots.values()) {
+            if (bot.acked >= target) {
+                bot.misses = 0;
+            } else if (++bot.misses >= maxMisses) {
+                bots.remove(bot.id);
+                dropped++;
+                System.out.println("[Cambium] Lockstep: dropped " + bot.name + " after " + bot.misses + " missed ticks");
+            }
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) {
+            return;
+        }
+        this.enabled = enabled;
+        announced = -1;
+        if (!enabled) {
+            tickLoop.setLockstepFast(false);
+        }
+        MinecraftServer server = MinecraftServer.getServer();
+        for (Bot bot : bots.values()) {
+            bot.acked = -1;
+            bot.misses = 0;
+            EntityPlayerMP player = server.getConfigurationManager().getPlayerByUUID(bot.id);
+            if (player != null) {
+                channel.sendMode(player, enabled);
+            }
+        }
+        resetStats();
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setFast(boolean fast) {
+        this.fast = fast;
+        if (!fast) {
+            tickLoop.setLockstepFast(false);
+        }
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public void resetStats() {
+        ticks = 0;
+        forced = 0;
+        dropped = 0;
+        totalWaitNanos = 0;
+        maxWaitNanos = 0;
+        statsStart = System.nanoTime();
+    }
+
+    public String getStatusLine() {
+        double seconds = Math.max(1e-3, (System.nanoTime() - statsStart) / 1e9);
+        StringBuilder names = new StringBuilder();
+        for (Bot bot : bots.values()) {
+            names.append(names.length() == 0 ? "" : ", ").append(bot.name);
+        }
+        return "Lockstep " + (enabled ? "on" : "off") + (fast ? " (fast)" : "") + ", timeout " + timeoutMillis
+                + " ms, bots: " + (names.length() == 0 ? "none" : names) + ". " + ticks + " ticks, "
+                + String.format("%.1f", ticks / seconds) + " TPS, mean wait "
+                + String.format("%.2f", ticks == 0 ? 0 : totalWaitNanos / 1e6 / ticks) + " ms, max wait "
+                + String.format("%.1f", maxWaitNanos / 1e6) + " ms, " + forced + " forced, " + dropped + " dropped";
+    }
+}
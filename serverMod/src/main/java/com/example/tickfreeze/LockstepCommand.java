@@ -0,0 +1,49 @@
+package com.example.tickfreeze;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+
+/**
+ * /lockstep [on|off|status|fast on|fast off|timeout &lt;ms&gt;], see {@link LockstepBarrier}.
+ */
+public class LockstepCommand extends CommandBase {
+    private final LockstepBarrier barrier;
+
+    public LockstepCommand(LockstepBarrier barrier) {
+        this.barrier = barrier;
+    }
+
+    @Override
+    public String getCommandName() {
+        return "lockstep";
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender sender) {
+        return "/lockstep [on|off|status|fast <on|off>|timeout <ms>]";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void processCommand(ICommandSender sender, String[] args) throws CommandException {
+        if (args.length == 0 || args[0].equals("status")) {
+            // Status only
+        } else if (args[0].equals("on") || args[0].equals("off")) {
+            barrier.setEnabled(args[0].equals("on"));
+        } else if (args[0].equals("fast") && args.length == 2 && (args[1].equals("on") || args[1].equals("off"))) {
+            barrier.setFast(args[1].equals("on"));
+        } else if (args[0].equals("timeout") && args.length == 2) {
+            barrier.setTimeoutMillis(parseInt(args[1], 1));
+        } else {
+            throw new WrongUsageException(getCommandUsage(sender));
+        }
+        sender.addChatMessage(new ChatComponentText(barrier.getStatusLine()));
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.tickfreeze;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.entity.projectile.EntityFishHook;
+import net.minecraft.entity.projectile.EntityThrowable;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.ItemSword;
+import net.minecraft.world.World;
+
+import java.util.Arrays;
+
+/**
+ * Builds the 194 feature observation of CambiumMod (ai/cambiumInputs/ObservationVector.java) from the server's own
+ * state, so the bots do not have to collect and send it themselves. Layout, scaling and selection follow the client,
+ * keep them in sync:
+ * <ul>
+ * <li>player: health, position, rotation and armor,</li>
+ * <li>entities: the 10 nearest living entities, players and projectiles (throwables, fishing hooks), dead ones
+ * included, relative to the player,</li>
+ * <li>blocks: the first 20 blocks hit by the observation rays from the eye ({@link BlockRaycaster}), relative to the
+ * truncated player position,</li>
+ * <li>inventory: the first 9 non-empty stacks of the main inventory.</li>
+ * </ul>
+ *
+ * The relevant entities of a world are collected once per tick ({@link #beginTick}) and shared by all bots in it,
+ * each bot then only keeps its nearest ones.
+ *
+ * Server thread only, the arrays are reused.
+ */
+public class ObservationBuilder {
+    public static final int PLAYER_FEATURES = 7;
+    public static final int ENTITY_SLOTS = 10;
+    public static final int ENTITY_FEATURES = 6;
+    public static final int BLOCK_SLOTS = 20;
+    public static final int BLOCK_FEATURES = 5;
+    public static final int INVENTORY_SLOTS = 9;
+    public static final int INVENTORY_FEATURES = 3;
+
+    public static final int PLAYER_OFFSET = 0;
+    public static final int ENTITY_OFFSET = PLAYER_OFFSET + PLAYER_FEATURES;
+    public static final int BLOCK_OFFSET = ENTITY_OFFSET + ENTITY_SLOTS * ENTITY_FEATURES;
+    public static final int INVENTORY_OFFSET = BLOCK_OFFSET + BLOCK_SLOTS * BLOCK_FEATURES;
+    public static final int SIZE = INVENTORY_OFFSET + INVENTORY_SLOTS * INVENTORY_FEATURES;
+
+    // Same as GetBlocks.MAX_DISTANCE in the mod
+    private static final double BLOCK_DISTANCE = 20;
+
+    private final BlockRaycaster raycaster = new BlockRaycaster();
+
+    // Relevant entities of the world collected last
+    private World world;
+    private Entity[] entities = new Entity[64];
+    private double[] posX = new double[64];
+    private double[] posY = new double[64];
+    private double[] posZ = new double[64];
+    private int count;
+    private long collections;
+
+    // The nearest entities of the current bot, sorted by distance
+    private final int[] nearest = new int[ENTITY_SLOTS];
+    private final double[] nearestDistSq = new double[ENTITY_SLOTS];
+
+    /**
+     * Call before building the observations of a tick, so the entities are collected again.
+     */
+    public void beginTick() {
+        world = null;
+    }
+
+    /**
+     * Overwrites features (SIZE floats) and blockIds (BLOCK_SLOTS shorts) with the observation of player.
+     */
+    public void build(EntityPlayerMP player, float[] features, short[] blockIds) {
+        Arrays.fill(features, 0f);
+        Arrays.fill(blockIds, (short) 0);
+        if (player.worldObj != world) {
+            collect(player.worldObj);
+        }
+
+        features[PLAYER_OFFSET] = player.getHealth() / 20f;
+        features[PLAYER_OFFSET + 1] = (float) (player.posX / 100.0);
+        features[PLAYER_OFFSET + 2] = (float) (player.posY / 100.0);
+        features[PLAYER_OFFSET + 3] = (float) (player.posZ / 100.0);
+        features[PLAYER_OFFSET + 4] = player.rotationYaw / 180f;
+        features[PLAYER_OFFSET + 5] = player.rotationPitch / 90f;
+        features[PLAYER_OFFSET + 6] = player.getTotalArmorValue() / 20f;
+
+        int found = findNearest(player);
+        for (int i = 0; i < found; i++) {
+            Entity entity = entities[nearest[i]];
+            int base = ENTITY_OFFSET + i * ENTITY_FEATURES;
+            features[base] = entity instanceof EntityPlayer ? 1f : 0f;
+            features[base + 1] = isProjectile(entity) ? 1f : 0f;
+            features[base + 2] = entity instanceof EntityLivingBase ? ((EntityLivingBase) entity).getHealth() / 20f : 0f;
+            features[base + 3] = (float) ((posX[nearest[i]] - player.posX) / 10.0);
+            features[base + 4] = (float) ((posY[nearest[i]] - player.posY) / 10.0);
+            features[base + 5] = (float) ((posZ[nearest[i]] - player.posZ) / 10.0);
+        }
+
+        int hits = Math.min(BLOCK_SLOTS, raycaster.cast(player.worldObj, player.posX,
+                player.posY + player.getEyeHeight(), player.posZ, BLOCK_DISTANCE));
+        // The client makes the blocks relative to the truncated, not the floored, position
+        int playerX = (int) player.posX;
+        int playerY = (int) player.posY;
+        int playerZ = (int) player.posZ;
+        for (int i = 0; i < hits; i++) {
+            int base = BLOCK_OFFSET + i * BLOCK_FEATURES;
+            features[base] = (raycaster.getX(i) - playerX) / 20f;
+            features[base + 1] = (raycaster.getY(i) - playerY) / 20f;
+            features[base + 2] = (raycaster.getZ(i) - playerZ) / 20f;
+            features[base + 3] = (float) (raycaster.getDistance(i) / 20.0);
+            features[base + 4] = 1f;
+            blockIds[i] = (short) raycaster.getBlockId(i);
+        }
+
+        ItemStack[] inventory = player.inventory.mainInventory;
+        int slot = 0;
+        for (int i = 0; i < inventory.length && slot < INVENTORY_SLOTS; i++) {
+            ItemStack stack = inventory[i];
+            if (stack == null) {
+                continue;
+            }
+            boolean weapon = stack.getItem() instanceof ItemSword;
+            int base = INVENTORY_OFFSET + slot * INVENTORY_FEATURES;
+            features[base] = stack.stackSize / 64f;
+            features[base + 1] = weapon ? 1f : 0f;
+            features[base + 2] = (weapon ? ((ItemSword) stack.getItem()).getDamageVsEntity() : 1f) / 10f;
+            slot++;
+        }
+    }
+
+    private void collect(World world) {
+        this.world = world;
+        collections++;
+        for (int i = 0; i < count; i++) {
+            entities[i] = null;
+        }
+        count = 0;
+        for (int i = 0; i < world.loadedEntityList.size(); i++) {
+            Entity entity = (Entity) world.loadedEntityList.get(i);
+            if (!(entity instanceof EntityLivingBase) && !isProjectile(entity)) {
+                continue;
+            }
+            if (count == entities.length) {
+                grow();
+            }
+            entities[count] = entity;
+            posX[count] = entity.posX;
+            posY[count] = entity.posY;
+            posZ[count] = entity.posZ;
+            count++;
+        }
+    }
+
+    private static boolean isProjectile(Entity entity) {
+        return entity instanceof EntityThrowable || entity instanceof EntityFishHook;
+    }
+
+    private void grow() {
+        int size = entities.length * 2;
+        entities = Arrays.copyOf(entities, size);
+        posX = Arrays.copyOf(posX, size);
+        posY = Arrays.copyOf(posY, size);
+        posZ = Arrays.copyOf(posZ, size);
+    }
+
+    /**
+     * Insertion into a sorted array of ENTITY_SLOTS, entities are few enough that a heap does not pay off.
+     * @return The number of entities found.
+     */
+    private int findNearest(EntityPlayerMP player) {
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            if (entities[i] == player) {
+                continue;
+            }
+            double x = posX[i] - player.posX;
+            double y = posY[i] - player.posY;
+            double z = posZ[i] - player.posZ;
+            double distSq = x * x + y * y + z * z;
+            if (found == ENTITY_SLOTS && distSq >= nearestDistSq[found - 1]) {
+                continue;
+            }
+            int j = found == ENTITY_SLOTS ? found - 1 : found++;
+            while (j > 0 && nearestDistSq[j - 1] > distSq) {
+                nearest[j] = nearest[j - 1];
+                nearestDistSq[j] = nearestDistSq[j - 1];
+                j--;
+            }
+            nearest[j] = i;
+            nearestDistSq[j] = distSq;
+        }
+        return found;
+    }
+
+    /**
+     * @return How often entities were collected, once per tick and world with bots in it.
+     */
+    public long getCollections() {
+        return collections;
+    }
+}
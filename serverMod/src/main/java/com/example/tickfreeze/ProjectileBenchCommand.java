@@ -0,0 +1,195 @@
+package com.example.tickfreeze;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * /projectilebench [players] [projectiles] [ticks], times the projectile collision of
+ * {@link ProjectileKnockbackHandler} on a synthetic arena, without touching the world.
+ *
+ * Players stand still in a 64x64 arena, projectiles fly straight at 1.5 blocks per tick and wrap around at the edges.
+ * Three ways are timed over the same ticks:
+ * <ul>
+ * <li>legacy: every player scans every entity, checks its class name and the distance to its feet (the handler
+ * before it was rewritten),</li>
+ * <li>brute force: every projectile path against every player box ({@link ProjectileCollider#collideBruteForce}),</li>
+ * <li>hash: the spatial hash the handler uses for more than a few players ({@link ProjectileCollider#collideHashed}),
+ * also with fewer players here.</li>
+ * </ul>
+ * Brute force and hash have to find the same (projectile, player) pairs, the command fails otherwise. The legacy check misses fast
+ * projectiles that pass through a player between two ticks, so its hit count is lower.
+ */
+public class ProjectileBenchCommand extends CommandBase {
+    private static final double ARENA = 64;
+    private static final double SPEED = 1.5;
+    private static final double PLAYER_WIDTH = 0.6;
+    private static final double PLAYER_HEIGHT = 1.8;
+    private static final double PROJECTILE_WIDTH = 0.25;
+
+    /**
+     * Stand-in for the entity class the legacy check looked at.
+     */
+    private static final class EntitySnowball {
+    }
+
+    @Override
+    public String getCommandName() {
+        return "projectilebench";
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender sender) {
+        return "/projectilebench [players] [projectiles] [ticks]";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void processCommand(ICommandSender sender, String[] args) throws CommandException {
+        if (args.length > 3) {
+            throw new WrongUsageException(getCommandUsage(sender));
+        }
+        int players = args.length > 0 ? parseInt(args[0], 1, 10000) : 100;
+        int projectiles = args.length > 1 ? parseInt(args[1], 0, 100000) : 1000;
+        int ticks = args.length > 2 ? parseInt(args[2], 1, 100000) : 200;
+
+        Random random = new Random(42);
+        double[] playerX = new double[players];
+        double[] playerY = new double[players];
+        double[] playerZ = new double[players];
+        for (int i = 0; i < players; i++) {
+            playerX[i] = random.nextDouble() * ARENA;
+            playerY[i] = 64 + random.nextInt(3);
+            playerZ[i] = random.nextDouble() * ARENA;
+        }
+        double[] x = new double[projectiles];
+        double[] y = new double[projectiles];
+        double[] z = new double[projectiles];
+        double[] motionX = new double[projectiles];
+        double[] motionY = new double[projectiles];
+        double[] motionZ = new double[projectiles];
+        for (int i = 0; i < projectiles; i++) {
+            x[i] = random.nextDouble() * ARENA;
+            y[i] = 64 + random.nextDouble() * 4;
+            z[i] = random.nextDouble() * ARENA;
+            double yaw = random.nextDouble() * 2 * Math.PI;
+            double pitch = (random.nextDouble() - 0.5) * 0.2;
+            motionX[i] = Math.cos(yaw) * Math.cos(pitch) * SPEED;
+            motionY[i] = Math.sin(pitch) * SPEED;
+            motionZ[i] = Math.sin(yaw) * Math.cos(pitch) * SPEED;
+        }
+        Object[] entities = new Object[projectiles];
+        for (int i = 0; i < projectiles; i++) {
+            entities[i] = new EntitySnowball();
+        }
+
+        ProjectileCollider bruteForce = new ProjectileCollider();
+        ProjectileCollider hash = new ProjectileCollider();
+        long legacyNanos = 0;
+        long bruteForceNanos = 0;
+        long hashNanos = 0;
+        long legacyHits = 0;
+        long bruteForceHits = 0;
+        long hashHits = 0;
+        double radius = PROJECTILE_WIDTH / 2 + 0.1;
+        double legacyDistance = PLAYER_WIDTH / 2 + PROJECTILE_WIDTH / 2 + 0.1;
+        for (int tick = 0; tick < ticks; tick++) {
+            long start = System.nanoTime();
+            for (int p = 0; p < players; p++) {
+                for (int i = 0; i < projectiles; i++) {
+                    if (!entities[i].getClass().getSimpleName().equals("EntitySnowball")) {
+                        continue;
+                    }
+                    double dx = x[i] - playerX[p];
+                    double dy = y[i] - playerY[p];
+                    double dz = z[i] - playerZ[p];
+                    if (Math.sqrt(dx * dx + dy * dy + dz * dz) < legacyDistance) {
+                        legacyHits++;
+                    }
+                }
+            }
+            legacyNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            fill(bruteForce, playerX, playerY, playerZ, x, y, z, motionX, motionY, motionZ, radius);
+            int bruteForceTick = bruteForce.collideBruteForce();
+            bruteForceNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            fill(hash, playerX, playerY, playerZ, x, y, z, motionX, motionY, motionZ, radius);
+            int hashTick = hash.collideHashed();
+            hashNanos += System.nanoTime() - start;
+
+            if (!Arrays.equals(hitPairs(bruteForce), hitPairs(hash))) {
+                throw new CommandException("Hash found other hits than brute force in tick " + tick + " ("
+                        + hashTick + " and " + bruteForceTick + " hits)", new Object[0]);
+            }
+            bruteForceHits += bruteForceTick;
+            hashHits += hashTick;
+            move(x, y, z, motionX, motionY, motionZ);
+        }
+
+        double legacyMs = legacyNanos / 1e6 / ticks;
+        double bruteForceMs = bruteForceNanos / 1e6 / ticks;
+        double hashMs = hashNanos / 1e6 / ticks;
+        String result = "Projectile collision, " + players + " players, " + projectiles + " projectiles, " + ticks
+                + " ticks: legacy " + String.format("%.3f", legacyMs) + " ms/tick (" + legacyHits + " hits), brute force "
+                + String.format("%.3f", bruteForceMs) + " ms/tick (" + bruteForceHits + " hits), hash "
+                + String.format("%.3f", hashMs) + " ms/tick (" + hashHits + " hits), "
+                + String.format("%.1f", legacyMs / Math.max(1e-6, hashMs)) + "x faster than legacy";
+        System.out.println("[Cambium] " + result);
+        sender.addChatMessage(new ChatComponentText(result));
+    }
+
+    /**
+     * Adds the players and the paths the projectiles move along in the coming tick.
+     */
+    private static void fill(ProjectileCollider collider, double[] playerX, double[] playerY, double[] playerZ,
+            double[] x, double[] y, double[] z, double[] motionX, double[] motionY, double[] motionZ, double radius) {
+        collider.clear();
+        for (int i = 0; i < x.length; i++) {
+            collider.addProjectile(x[i], y[i], z[i], x[i] + motionX[i], y[i] + motionY[i], z[i] + motionZ[i], radius);
+        }
+        double half = PLAYER_WIDTH / 2;
+        for (int p = 0; p < playerX.length; p++) {
+            collider.addTarget(playerX[p] - half, playerY[p], playerZ[p] - half,
+                    playerX[p] + half, playerY[p] + PLAYER_HEIGHT, playerZ[p] + half);
+        }
+    }
+
+    /**
+     * @return The hits as sorted target << 32 | projectile pairs, the collider returns them in any order.
+     */
+    private static long[] hitPairs(ProjectileCollider collider) {
+        long[] pairs = new long[collider.getHitCount()];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = (long) collider.getHitTarget(i) << 32 | collider.getHitProjectile(i);
+        }
+        Arrays.sort(pairs);
+        return pairs;
+    }
+
+    private static void move(double[] x, double[] y, double[] z, double[] motionX, double[] motionY, double[] motionZ) {
+        for (int i = 0; i < x.length; i++) {
+            x[i] = wrap(x[i] + motionX[i]);
+            y[i] += motionY[i];
+            z[i] = wrap(z[i] + motionZ[i]);
+            if (y[i] < 64 || y[i] > 68) {
+                motionY[i] = -motionY[i];
+            }
+        }
+    }
+
+    private static double wrap(double v) {
+        return v < 0 ? v + ARENA : v >= ARENA ? v - ARENA : v;
+    }
+}
@@ -0,0 +1,341 @@
+package com.example.tickfreeze;
+
+import java.util.Arrays;
+
+/**
+ * Finds which projectiles hit which targets in one tick, without looking at every pair.
+ *
+ * A projectile is the segment it moved along this tick, widened by its radius. It is put into every cell of a spatial
+ * hash (CELL_SIZE blocks) its swept bounds touch. Segments longer than MAX_SWEEP on an axis (teleported or just
+ * spawned entities) are cut down to their end point. Each target box then only tests the projectiles in the cells it
+ * touches, with a segment/box slab test. With only a few targets every pair is tested instead.
+ * {@link #collideBruteForce} always tests every pair and gives the same hits as {@link #collideHashed}, the
+ * benchmark (/projectilebench) compares the two.
+ *
+ * Fill it with {@link #addProjectile} and {@link #addTarget}, call {@link #collide}, read the hits and {@link #clear}
+ * it for the next world or tick. Nothing is allocated once the arrays are large enough. Not thread safe.
+ */
+public class ProjectileCollider {
+    public static final double CELL_SIZE = 4;
+    public static final double MAX_SWEEP = 2 * CELL_SIZE;
+    private static final double INV_CELL_SIZE = 1 / CELL_SIZE;
+    private static final int BRUTE_FORCE_TARGETS = 8;
+
+    // Projectiles: segment start, end and radius
+    private double[] fromX = new double[64];
+    private double[] fromY = new double[64];
+    private double[] fromZ = new double[64];
+    private double[] toX = new double[64];
+    private double[] toY = new double[64];
+    private double[] toZ = new double[64];
+    private double[] radius = new double[64];
+    private int[] testedBy = new int[64];
+    private int projectiles;
+
+    // Targets: boxes
+    private double[] boxes = new double[16 * 6];
+    private int targets;
+
+    // Spatial hash, open addressing over cell keys, each slot heads a list of entries through entryNext
+    private long[] slotKey = new long[256];
+    private int[] slotHead = new int[256];
+    private int[] slotStamp = new int[256];
+    private int stamp;
+    private int usedSlots;
+    private int[] entryProjectile = new int[128];
+    private int[] entryNext = new int[128];
+    private int entries;
+    private int query;
+
+    // Hits as (projectile, target) pairs
+    private int[] hitProjectile = new int[16];
+    private int[] hitTarget = new int[16];
+    private int hits;
+
+    public void clear() {
+        projectiles = 0;
+        targets = 0;
+        hits = 0;
+    }
+
+    /**
+     * @return The index of the projectile, in the order they were added.
+     */
+    public int addProjectile(double fromX, double fromY, double fromZ, double toX, double toY, double toZ, double radius) {
+        if (projectiles == this.fromX.length) {
+            int size = projectiles * 2;
+            this.fromX = Arrays.copyOf(this.fromX, size);
+            this.fromY = Arrays.copyOf(this.fromY, size);
+            this.fromZ = Arrays.copyOf(this.fromZ, size);
+            this.toX = Arrays.copyOf(this.toX, size);
+            this.toY = Arrays.copyOf(this.toY, size);
+            this.toZ = Arrays.copyOf(this.toZ, size);
+            this.radius = Arrays.copyOf(this.radius, size);
+            testedBy = Arrays.copyOf(testedBy, size);
+        }
+        if (Math.abs(toX - fromX) > MAX_SWEEP || Math.abs(toY - fromY) > MAX_SWEEP || Math.abs(toZ - fromZ) > MAX_SWEEP) {
+            fromX = toX;
+            fromY = toY;
+            fromZ = toZ;
+        }
+        int i = projectiles++;
+        this.fromX[i] = fromX;
+        this.fromY[i] = fromY;
+        this.fromZ[i] = fromZ;
+        this.toX[i] = toX;
+        this.toY[i] = toY;
+        this.toZ[i] = toZ;
+        this.radius[i] = radius;
+        return i;
+    }
+
+    /**
+     * @return The index of the target, in the order they were added.
+     */
+    public int addTarget(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        if ((targets + 1) * 6 > boxes.length) {
+            boxes = Arrays.copyOf(boxes, boxes.length * 2);
+        }
+        int base = targets * 6;
+        boxes[base] = minX;
+        boxes[base + 1] = minY;
+        boxes[base + 2] = minZ;
+        boxes[base + 3] = maxX;
+        boxes[base + 4] = maxY;
+        boxes[base + 5] = maxZ;
+        return targets++;
+    }
+
+    /**
+     * Finds all hits, through the spatial hash unless there are only a few targets. Hits are ordered by target.
+     * @return The number of hits.
+     */
+    public int collide() {
+        hits = 0;
+        if (projectiles == 0 || targets == 0) {
+            return 0;
+        }
+        // Hashing costs a few inserts per projectile, with few targets testing every pair is cheaper
+        if (targets <= BRUTE_FORCE_TARGETS) {
+            return collideBruteForce();
+        }
+        return collideHashed();
+    }
+
+    /**
+     * Finds all hits through the spatial hash, however few targets there are. {@link #collide} only uses it for
+     * more than a few targets, the benchmark calls it directly.
+     * @return The number of hits.
+     */
+    public int collideHashed() {
+        hits = 0;
+        if (projectiles == 0 || targets == 0) {
+            return 0;
+        }
+        buildHash();
+        for (int t = 0; t < targets; t++) {
+            int base = t * 6;
+            // Projectiles are in every cell their widened bounds touch, so the box itself is enough here
+            int minCX = cell(boxes[base]);
+            int minCY = cell(boxes[base + 1]);
+            int minCZ = cell(boxes[base + 2]);
+            int maxCX = cell(boxes[base + 3]);
+            int maxCY = cell(boxes[base + 4]);
+            int maxCZ = cell(boxes[base + 5]);
+            if (++query == 0) {
+                Arrays.fill(testedBy, 0);
+                query = 1;
+            }
+            for (int cx = minCX; cx <= maxCX; cx++) {
+                for (int cy = minCY; cy <= maxCY; cy++) {
+                    for (int cz = minCZ; cz <= maxCZ; cz++) {
+                        int slot = findSlot(key(cx, cy, cz));
+                        if (slotStamp[slot] != stamp) {
+                            continue;
+                        }
+                        for (int e = slotHead[slot]; e >= 0; e = entryNext[e]) {
+                            int p = entryProjectile[e];
+                            if (testedBy[p] == query) {
+                                continue;
+                            }
+                            testedBy[p] = query;
+                            if (hits(p, base)) {
+                                addHit(p, t);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Tests every projectile against every target. Same hits as {@link #collide}, for checking and benchmarking.
+     */
+    public int collideBruteForce() {
+        hits = 0;
+        for (int t = 0; t < targets; t++) {
+            for (int p = 0; p < projectiles; p++) {
+                if (hits(p, t * 6)) {
+                    addHit(p, t);
+                }
+            }
+        }
+        return hits;
+    }
+
+    private void buildHash() {
+        // Usually 1 to 8 cells per projectile
+        int capacity = slotKey.length;
+        while (capacity < projectiles * 8) {
+            capacity *= 2;
+        }
+        while (!fillHash(capacity)) {
+            capacity *= 2;
+        }
+    }
+
+    /**
+     * @return false if the table got more than half full, it has to be filled again with a larger capacity then.
+     */
+    private boolean fillHash(int capacity) {
+        if (capacity != slotKey.length) {
+            slotKey = new long[capacity];
+            slotHead = new int[capacity];
+            slotStamp = new int[capacity];
+            stamp = 0;
+        }
+        if (++stamp == 0) {
+            Arrays.fill(slotStamp, 0);
+            stamp = 1;
+        }
+        entries = 0;
+        usedSlots = 0;
+        for (int p = 0; p < projectiles; p++) {
+            double r = radius[p];
+            int minCX = cell(Math.min(fromX[p], toX[p]) - r);
+            int minCY = cell(Math.min(fromY[p], toY[p]) - r);
+            int minCZ = cell(Math.min(fromZ[p], toZ[p]) - r);
+            int maxCX = cell(Math.max(fromX[p], toX[p]) + r);
+            int maxCY = cell(Math.max(fromY[p], toY[p]) + r);
+            int maxCZ = cell(Math.max(fromZ[p], toZ[p]) + r);
+            for (int cx = minCX; cx <= maxCX; cx++) {
+                for (int cy = minCY; cy <= maxCY; cy++) {
+                    for (int cz = minCZ; cz <= maxCZ; cz++) {
+                        insert(key(cx, cy, cz), p);
+                        if (usedSlots * 2 > capacity) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void insert(long key, int projectile) {
+        if (entries == entryProjectile.length) {
+            entryProjectile = Arrays.copyOf(entryProjectile, entries * 2);
+            entryNext = Arrays.copyOf(entryNext, entries * 2);
+        }
+        int slot = findSlot(key);
+        if (slotStamp[slot] != stamp) {
+            slotStamp[slot] = stamp;
+            slotKey[slot] = key;
+            slotHead[slot] = -1;
+            usedSlots++;
+        }
+        entryProjectile[entries] = projectile;
+        entryNext[entries] = slotHead[slot];
+        slotHead[slot] = entries;
+        entries++;
+    }
+
+    /**
+     * @return The slot holding key, or the free slot where it would go.
+     */
+    private int findSlot(long key) {
+        int mask = slotKey.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (slotStamp[slot] == stamp && slotKey[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static long key(int cx, int cy, int cz) {
+        return ((long) cx & 0x1FFFFF) << 42 | ((long) cy & 0x1FFFFF) << 21 | ((long) cz & 0x1FFFFF);
+    }
+
+    private static int cell(double v) {
+        double c = v * INV_CELL_SIZE;
+        int i = (int) c;
+        return c < i ? i - 1 : i;
+    }
+
+    /**
+     * Slab test of the segment of projectile p against the target box at base, widened by the projectile radius.
+     */
+    private boolean hits(int p, int base) {
+        double r = radius[p];
+        double t0 = 0;
+        double t1 = 1;
+        for (int axis = 0; axis < 3; axis++) {
+            double a = axis == 0 ? fromX[p] : axis == 1 ? fromY[p] : fromZ[p];
+            double d = (axis == 0 ? toX[p] : axis == 1 ? toY[p] : toZ[p]) - a;
+            double min = boxes[base + axis] - r;
+            double max = boxes[base + 3 + axis] + r;
+            if (Math.abs(d) < 1e-9) {
+                if (a < min || a > max) {
+                    return false;
+                }
+                continue;
+            }
+            double near = (min - a) / d;
+            double far = (max - a) / d;
+            if (near > far) {
+                double swap = near;
+                near = far;
+                far = swap;
+            }
+            t0 = Math.max(t0, near);
+            t1 = Math.min(t1, far);
+            if (t0 > t1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addHit(int projectile, int target) {
+        if (hits == hitProjectile.length) {
+            hitProjectile = Arrays.copyOf(hitProjectile, hits * 2);
+            hitTarget = Arrays.copyOf(hitTarget, hits * 2);
+        }
+        hitProjectile[hits] = projectile;
+        hitTarget[hits] = target;
+        hits++;
+    }
+
+    public int getHitCount() {
+        return hits;
+    }
+
+    public int getHitProjectile(int i) {
+        return hitProjectile[i];
+    }
+
+    public int getHitTarget(int i) {
+        return hitTarget[i];
+    }
+
+    public int getProjectileCount() {
+        return projectiles;
+    }
+
+    public int getTargetCount() {
+        return targets;
+    }
+}
@@ -1,27 +1,49 @@
 package com.example.tickfreeze;
 
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.item.EntityEnderPearl;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.projectile.EntityEgg;
 import net.minecraft.entity.projectile.EntityFishHook;
 import net.minecraft.entity.projectile.EntitySnowball;
 import net.minecraft.entity.projectile.EntityThrowable;
-import net.minecraftforge.event.entity.EntityJoinWorldEvent;
-import net.minecraftforge.event.entity.living.LivingEvent;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.fml.common.eventhandler.EventPriority;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.UUID;
 
 /**
  * Server-side handler that adds knockback when projectiles (egg, enderpearl, fishing rod, snowball) hit players.
+ *
+ * Runs once per tick at the end of the server tick: the projectiles of each world are collected in one pass over its
+ * entities and handed to a {@link ProjectileCollider} together with the players, which tests the path every
+ * projectile moved along this tick against the nearby player boxes only. Projectiles never hit whoever threw them.
+ * Hits are reported to the {@link RewardStream}.
  */
 public class ProjectileKnockbackHandler {
     
-    // Track projectiles and their last hit times to prevent spam
-    private static final Map<UUID, Long> projectileLastHit = new HashMap<UUID, Long>();
-    private static final long HIT_COOLDOWN = 100; // 100ms cooldown between hits from same projectile
+    // Projectile kinds, cached per class
+    private static final int NOT_A_PROJECTILE = 0;
+    private static final int EGG = 1;
+    private static final int SNOWBALL = 2;
+    private static final int ENDER_PEARL = 3;
+    private static final int FISHING_HOOK = 4;
+    private static final String[] KIND_NAMES = {"none", "egg", "snowball", "ender_pearl", "fishing_hook"};
+    private final Map<Class<?>, Integer> kinds = new HashMap<Class<?>, Integer>();
+    
+    // Same projectile hits again at most every HIT_COOLDOWN_TICKS (was 100 ms at 20 TPS), entries go when it dies
+    private static final int HIT_COOLDOWN_TICKS = 2;
+    private final Map<Integer, long[]> lastHit = new HashMap<Integer, long[]>();
+    
+    // Collision margin around the projectile on top of its half width
+    private static final double COLLISION_MARGIN = 0.1;
     
     // Knockback strength for different projectiles
     private static final double EGG_KNOCKBACK = 0.4;
@@ -29,101 +51,150 @@ public class ProjectileKnockbackHandler {
     private static final double ENDERPEARL_KNOCKBACK = 0.3;
     private static final double FISHING_ROD_KNOCKBACK = 0.5;
     
-    /**
-     * Checks if a throwable entity is an ender pearl by checking its item
-     */
-    private boolean isEnderPearl(Entity entity) {
-        if (entity instanceof EntityThrowable) {
-            EntityThrowable throwable = (EntityThrowable) entity;
-            // In 1.8.9, we can check the thrower's item or use reflection
-            // For now, we'll use a simpler approach - check class name or skip
-            return entity.getClass().getSimpleName().equals("EntityEnderPearl");
-        }
-        return false;
+    // Reused every tick
+    private final ProjectileCollider collider = new ProjectileCollider();
+    private Entity[] projectiles = new Entity[64];
+    private int[] projectileKinds = new int[64];
+    private EntityPlayer[] players = new EntityPlayer[16];
+    private long tick;
+    private final RewardStream rewards;
+    
+    public ProjectileKnockbackHandler(RewardStream rewards) {
+        this.rewards = rewards;
     }
     
-    @SubscribeEvent
-    public void onEntityJoinWorld(EntityJoinWorldEvent event) {
-        // Track projectiles when they spawn
-        Entity entity = event.entity;
-        if (isProjectile(entity)) {
-            // Initialize tracking for this projectile
-            projectileLastHit.put(entity.getUniqueID(), 0L);
+    // Before the RewardStream sends this tick's events
+    @SubscribeEvent(priority = EventPriority.HIGH)
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
         }
+        tick++;
+        for (WorldServer world : MinecraftServer.getServer().worldServers) {
+            handleWorld(world);
+        }
+        expireCooldowns();
     }
     
-    @SubscribeEvent
-    public void onLivingUpdate(LivingEvent.LivingUpdateEvent event) {
-        // Only run on server side
-        if (event.entity.worldObj.isRemote) {
+    private void handleWorld(WorldServer world) {
+        if (world.playerEntities.isEmpty()) {
             return;
         }
-        
-        // Check if this is a player
-        if (!(event.entity instanceof EntityPlayer)) {
+        collider.clear();
+        int projectileCount = 0;
+        for (int i = 0; i < world.loadedEntityList.size(); i++) {
+            Entity entity = (Entity) world.loadedEntityList.get(i);
+            int kind = kindOf(entity.getClass());
+            // Skip if not a projectile we care about, dead or removed
+            if (kind == NOT_A_PROJECTILE || entity.isDead || entity.isInvisible()) {
+                continue;
+            }
+            if (!lastHit.isEmpty()) {
+                long[] cooldown = lastHit.get(entity.getEntityId());
+                if (cooldown != null) {
+                    cooldown[1] = tick;
+                }
+            }
+            if (projectileCount == projectiles.length) {
+                projectiles = Arrays.copyOf(projectiles, projectileCount * 2);
+                projectileKinds = Arrays.copyOf(projectileKinds, projectileCount * 2);
+            }
+            projectiles[projectileCount] = entity;
+            projectileKinds[projectileCount] = kind;
+            projectileCount++;
+            collider.addProjectile(entity.lastTickPosX, entity.lastTickPosY + entity.height / 2, entity.lastTickPosZ,
+                    entity.posX, entity.posY + entity.height / 2, entity.posZ, entity.width / 2.0 + COLLISION_MARGIN);
+        }
+        if (projectileCount == 0) {
             return;
         }
         
-        EntityPlayer player = (EntityPlayer) event.entity;
+        int playerCount = 0;
+        for (int i = 0; i < world.playerEntities.size(); i++) {
+            EntityPlayer player = (EntityPlayer) world.playerEntities.get(i);
+            if (playerCount == players.length) {
+                players = Arrays.copyOf(players, playerCount * 2);
+            }
+            players[playerCount++] = player;
+            AxisAlignedBB box = player.getEntityBoundingBox();
+            collider.addTarget(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+        }
         
-        // Check for nearby projectiles
-        for (Object obj : player.worldObj.loadedEntityList) {
-            if (!(obj instanceof Entity)) {
+        int hits = collider.collide();
+        for (int i = 0; i < hits; i++) {
+            Entity projectile = projectiles[collider.getHitProjectile(i)];
+            EntityPlayer player = players[collider.getHitTarget(i)];
+            // A projectile removed by an earlier hit this tick, or one hitting its thrower
+            Entity thrower = getThrower(projectile);
+            if (projectile.isDead || thrower == player) {
                 continue;
             }
-            
-            Entity entity = (Entity) obj;
-            
-            // Skip if not a projectile we care about
-            if (!isProjectile(entity)) {
+            long[] cooldown = lastHit.get(projectile.getEntityId());
+            if (cooldown != null && tick - cooldown[0] < HIT_COOLDOWN_TICKS) {
                 continue;
             }
-            
-            // Skip if projectile is dead or removed
-            if (entity.isDead || entity.isInvisible()) {
-                continue;
+            // Apply knockback
+            int kind = projectileKinds[collider.getHitProjectile(i)];
+            applyKnockback(player, projectile, kind);
+            rewards.projectileHit(thrower, player, KIND_NAMES[kind], getKnockbackStrength(kind));
+            if (cooldown == null) {
+                cooldown = new long[2];
+                lastHit.put(projectile.getEntityId(), cooldown);
             }
+            cooldown[0] = tick;
+            cooldown[1] = tick;
             
-            // Check if projectile is close enough to player (collision detection)
-            double distance = player.getDistanceToEntity(entity);
-            
-            // Collision radius: player bounding box + projectile bounding box
-            double collisionRadius = player.width / 2.0 + entity.width / 2.0 + 0.1;
-            
-            if (distance < collisionRadius) {
-                // Check cooldown
-                UUID projectileId = entity.getUniqueID();
-                long currentTime = System.currentTimeMillis();
-                Long lastHitTime = projectileLastHit.get(projectileId);
-                
-                if (lastHitTime == null || (currentTime - lastHitTime) > HIT_COOLDOWN) {
-                    // Apply knockback
-                    applyKnockback(player, entity);
-                    projectileLastHit.put(projectileId, currentTime);
-                    
-                    // Remove projectile after hit (except enderpearl which teleports)
-                    if (!isEnderPearl(entity)) {
-                        entity.setDead();
-                    }
-                }
+            // Remove projectile after hit (except enderpearl which teleports)
+            if (kind != ENDER_PEARL) {
+                projectile.setDead();
             }
         }
+        Arrays.fill(projectiles, 0, projectileCount, null);
+        Arrays.fill(players, 0, playerCount, null);
     }
     
     /**
-     * Checks if an entity is a projectile we want to add knockback for
+     * Drops the cooldowns of projectiles that were not seen alive this tick.
      */
-    private boolean isProjectile(Entity entity) {
-        return entity instanceof EntityEgg ||
-               entity instanceof EntitySnowball ||
-               isEnderPearl(entity) ||
-               entity instanceof EntityFishHook;
+    private void expireCooldowns() {
+        Iterator<long[]> it = lastHit.values().iterator();
+        while (it.hasNext()) {
+            if (it.next()[1] != tick) {
+                it.remove();
+            }
+        }
+    }
+    
+    private int kindOf(Class<?> entityClass) {
+        Integer kind = kinds.get(entityClass);
+        if (kind == null) {
+            if (EntityEgg.class.isAssignableFrom(entityClass)) {
+                kind = EGG;
+            } else if (EntitySnowball.class.isAssignableFrom(entityClass)) {
+                kind = SNOWBALL;
+            } else if (EntityEnderPearl.class.isAssignableFrom(entityClass)) {
+                kind = ENDER_PEARL;
+            } else if (EntityFishHook.class.isAssignableFrom(entityClass)) {
+                kind = FISHING_HOOK;
+            } else {
+                kind = NOT_A_PROJECTILE;
+            }
+            kinds.put(entityClass, kind);
+        }
+        return kind;
+    }
+    
+    private static Entity getThrower(Entity projectile) {
+        if (projectile instanceof EntityThrowable) {
+            return ((EntityThrowable) projectile).getThrower();
+        }
+        return projectile instanceof EntityFishHook ? ((EntityFishHook) projectile).angler : null;
     }
     
     /**
      * Applies knockback to a player when hit by a projectile
      */
-    private void applyKnockback(EntityPlayer player, Entity projectile) {
+    private void applyKnockback(EntityPlayer player, Entity projectile, int kind) {
         // Calculate knockback direction (from projectile to player)
         double dx = player.posX - projectile.posX;
         double dy = player.posY - projectile.posY;
@@ -153,7 +224,7 @@ public class ProjectileKnockbackHandler {
         dz /= distance;
         
         // Get knockback strength based on projectile type
-        double knockbackStrength = getKnockbackStrength(projectile);
+        double knockbackStrength = getKnockbackStrength(kind);
         
         // Apply knockback velocity
         player.motionX += dx * knockbackStrength;
@@ -173,19 +244,20 @@ public class ProjectileKnockbackHandler {
     }
     
     /**
-     * Gets the knockback strength for a specific projectile type
+     * Gets the knockback strength for a specific projectile kind
      */
-    private double getKnockbackStrength(Entity projectile) {
-        if (projectile instanceof EntityEgg) {
-            return EGG_KNOCKBACK;
-        } else if (projectile instanceof EntitySnowball) {
-            return SNOWBALL_KNOCKBACK;
-        } else if (isEnderPearl(projectile)) {
-            return ENDERPEARL_KNOCKBACK;
-        } else if (projectile instanceof EntityFishHook) {
-            return FISHING_ROD_KNOCKBACK;
+    private static double getKnockbackStrength(int kind) {
+        switch (kind) {
+            case EGG:
+                return EGG_KNOCKBACK;
+            case SNOWBALL:
+                return SNOWBALL_KNOCKBACK;
+            case ENDER_PEARL:
+                return ENDERPEARL_KNOCKBACK;
+            case FISHING_HOOK:
+                return FISHING_ROD_KNOCKBACK;
+            default:
+                return 0.3; // Default
         }
-        return 0.3; // Default
     }
 }
-
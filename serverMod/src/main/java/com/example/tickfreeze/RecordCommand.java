@@ -0,0 +1,107 @@
+package com.example.tickfreeze;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * /record start &lt;name&gt; [&lt;x1&gt; &lt;y1&gt; &lt;z1&gt; &lt;x2&gt; &lt;y2&gt; &lt;z2&gt; [dimension]],
+ * /record stop &lt;name&gt;..., /record [status|reset], see {@link EpisodeRecorder}.
+ *
+ * Without coordinates the region of the arena snapshot of that name is recorded. Runs on the server thread, also when
+ * sent over RCON, and waits at most cambium.arena.timeout (10000) ms for it.
+ */
+public class RecordCommand extends CommandBase {
+    private static final long TIMEOUT_MILLIS = Long.getLong("cambium.arena.timeout", 10000L);
+
+    private final EpisodeRecorder recorder;
+    private final ArenaSnapshots snapshots;
+    private final TickLoop tickLoop;
+
+    public RecordCommand(EpisodeRecorder recorder, ArenaSnapshots snapshots, TickLoop tickLoop) {
+        this.recorder = recorder;
+        this.snapshots = snapshots;
+        this.tickLoop = tickLoop;
+    }
+
+    @Override
+    public String getCommandName() {
+        return "record";
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender sender) {
+        return "/record [status|reset|start <name> [<x1> <y1> <z1> <x2> <y2> <z2> [dimension]]|stop <name>...]";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void processCommand(final ICommandSender sender, final String[] args) throws CommandException {
+        final int[] coordinates = new int[7];
+        if (args.length == 0 || args[0].equals("status") || args[0].equals("reset")) {
+            // Status only
+        } else if (args[0].equals("start") && (args.length == 8 || args.length == 9)) {
+            for (int i = 0; i < 6; i++) {
+                coordinates[i] = parseInt(args[2 + i], -30000000, 30000000);
+            }
+            coordinates[6] = args.length == 9 ? parseInt(args[8]) : 0;
+        } else if (!(args[0].equals("start") && args.length == 2) && !(args[0].equals("stop") && args.length >= 2)) {
+            throw new WrongUsageException(getCommandUsage(sender));
+        }
+
+        String result;
+        try {
+            result = tickLoop.callOnServerThread(new Callable<String>() {
+                @Override
+                public String call() {
+                    return run(args, coordinates);
+                }
+            }, TIMEOUT_MILLIS);
+        } catch (TimeoutException e) {
+            throw new CommandException("The server did not get to /record within " + TIMEOUT_MILLIS + " ms",
+                    new Object[0]);
+        } catch (Exception e) {
+            throw new CommandException("/record failed: " + e, new Object[0]);
+        }
+        sender.addChatMessage(new ChatComponentText(result));
+    }
+
+    private String run(String[] args, int[] coordinates) {
+        if (args.length == 0 || args[0].equals("status")) {
+            return recorder.getStatusLine();
+        }
+        if (args[0].equals("reset")) {
+            recorder.resetStats();
+            return recorder.getStatusLine();
+        }
+        if (args[0].equals("start")) {
+            if (args.length > 2) {
+                int[] bounds = new int[6];
+                System.arraycopy(coordinates, 0, bounds, 0, 6);
+                return recorder.startRecording(args[1], coordinates[6], bounds);
+            }
+            ArenaSnapshot snapshot = snapshots.get(args[1]);
+            if (snapshot == null) {
+                return "No arena snapshot " + args[1] + ", give the coordinates to record";
+            }
+            return recorder.startRecording(args[1], snapshot.getDimension(), snapshot.getBounds());
+        }
+        StringBuilder stopped = new StringBuilder();
+        StringBuilder missing = new StringBuilder();
+        for (int i = 1; i < args.length; i++) {
+            StringBuilder list = recorder.stopRecording(args[i]) ? stopped : missing;
+            list.append(list.length() == 0 ? "" : ", ").append(args[i]);
+        }
+        return "Stopped recording " + (stopped.length() == 0 ? "nothing" : stopped)
+                + (missing.length() == 0 ? "" : ", not recording " + missing);
+    }
+}
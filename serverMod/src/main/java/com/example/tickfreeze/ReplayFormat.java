@@ -0,0 +1,158 @@
+package com.example.tickfreeze;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The episode recording format, written by {@link ReplayWriter} and read by {@link ReplayReader}. Big-endian where
+ * not a varint, only uses the JDK.
+ *
+ * <pre>
+ * int32   MAGIC ("CBRP")
+ * uint8   VERSION
+ * uint8   FIELDS, the number of fields per entity
+ * utf     arena name
+ * int32   dimension
+ * int32   minX, minY, minZ, maxX, maxY, maxZ of the arena in blocks
+ * int32   keyframe interval in ticks
+ * int64   start time (ms since the epoch)
+ * then frames until the end of the file:
+ * uint8   type (FRAME_KEYFRAME, FRAME_DELTA)
+ * varlong server tick
+ * varint  payload length
+ * payload
+ * </pre>
+ *
+ * Both payloads start with a flags byte (FLAG_RESET: the arena was restored from its snapshot before this tick, the
+ * blocks are the snapshot's again). A keyframe then holds the whole state:
+ * <pre>
+ * varint  entity count, per entity: varint id, utf type, utf name, FIELDS zigzag varints
+ * varint  block count, per block: varint x, y, z relative to minX/minY/minZ, varint block state id
+ * </pre>
+ * A delta holds the changes since the previous frame:
+ * <pre>
+ * varint  removed count, varint id each
+ * varint  spawned count, each like an entity of a keyframe
+ * varint  updated count, per entity: varint id, varint mask of the changed fields, zigzag varint difference of each
+ * varint  block count, like the blocks of a keyframe
+ * </pre>
+ * Blocks are only the ones that changed since the last restore (or the start of the recording), everything else is as
+ * in the arena snapshot.
+ *
+ * Entity fields are ints in fixed units, see the F_* constants.
+ */
+public final class ReplayFormat {
+    public static final int MAGIC = 0x43425250;
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".cbrp";
+
+    public static final int FRAME_KEYFRAME = 1;
+    public static final int FRAME_DELTA = 2;
+
+    public static final int FLAG_RESET = 1;
+
+    /** Position in 1/1024 blocks. */
+    public static final int F_X = 0;
+    public static final int F_Y = 1;
+    public static final int F_Z = 2;
+    /** Motion in 1/8000 blocks per tick, like the vanilla velocity packet. */
+    public static final int F_MOTION_X = 3;
+    public static final int F_MOTION_Y = 4;
+    public static final int F_MOTION_Z = 5;
+    /** Rotation in 1/100 degrees. */
+    public static final int F_YAW = 6;
+    public static final int F_PITCH = 7;
+    /** Health in 1/100 points, 0 for entities without health. */
+    public static final int F_HEALTH = 8;
+    /** STATE_* bits. */
+    public static final int F_STATE = 9;
+    /** Item id + 1 (0 for nothing) and damage of the held item, then boots, leggings, chestplate and helmet. */
+    public static final int F_EQUIPMENT = 10;
+    public static final int EQUIPMENT_SLOTS = 5;
+    public static final int FIELDS = F_EQUIPMENT + 2 * EQUIPMENT_SLOTS;
+
+    public static final double POSITION_SCALE = 1024;
+    public static final double MOTION_SCALE = 8000;
+    public static final double ANGLE_SCALE = 100;
+    public static final double HEALTH_SCALE = 100;
+
+    public static final int STATE_ON_GROUND = 1;
+    public static final int STATE_SNEAKING = 2;
+    public static final int STATE_SPRINTING = 4;
+    public static final int STATE_SWINGING = 8;
+    public static final int STATE_USING_ITEM = 16;
+    public static final int STATE_BURNING = 32;
+    public static final int STATE_HURT = 64;
+    public static final int STATE_DEAD = 128;
+
+    private ReplayFormat() {
+    }
+
+    public static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varlong too long");
+    }
+
+    /**
+     * Key of a block relative to the arena's minimum corner, as used in the block maps of the writer and the reader.
+     */
+    public static long blockKey(int x, int y, int z) {
+        return (long) x << 42 | (long) y << 21 | z;
+    }
+
+    public static int blockKeyX(long key) {
+        return (int) (key >>> 42);
+    }
+
+    public static int blockKeyY(long key) {
+        return (int) (key >>> 21) & 0x1FFFFF;
+    }
+
+    public static int blockKeyZ(long key) {
+        return (int) key & 0x1FFFFF;
+    }
+}
@@ -0,0 +1,516 @@
+package com.example.tickfreeze;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a recording of {@link EpisodeRecorder} ({@link ReplayFormat}) and jumps to any tick in it.
+ *
+ * Opening reads the frame headers once to index the keyframes, {@link #seek} then starts at the last keyframe before
+ * the tick and applies the deltas up to it, {@link #next} steps on frame by frame. A file the server did not get to
+ * close ends at its last whole frame. Ticks without a frame had no changes.
+ *
+ * Only uses the JDK, so recordings can be read outside the server: java com.example.tickfreeze.ReplayReader file [tick]
+ * prints the recording and the state at the tick. Not thread safe.
+ */
+public class ReplayReader implements Closeable {
+
+    /**
+     * One entity at the current tick. The fields are in the units of {@link ReplayFormat}, the getters convert them.
+     */
+    public static final class Entity {
+        public final int id;
+        public final String type;
+        public final String name;
+        final int[] fields = new int[ReplayFormat.FIELDS];
+
+        Entity(int id, String type, String name) {
+            this.id = id;
+            this.type = type;
+            this.name = name;
+        }
+
+        public int getField(int field) {
+            return fields[field];
+        }
+
+        public double getX() {
+            return fields[ReplayFormat.F_X] / ReplayFormat.POSITION_SCALE;
+        }
+
+        public double getY() {
+            return fields[ReplayFormat.F_Y] / ReplayFormat.POSITION_SCALE;
+        }
+
+        public double getZ() {
+            return fields[ReplayFormat.F_Z] / ReplayFormat.POSITION_SCALE;
+        }
+
+        public double getMotionX() {
+            return fields[ReplayFormat.F_MOTION_X] / ReplayFormat.MOTION_SCALE;
+        }
+
+        public double getMotionY() {
+            return fields[ReplayFormat.F_MOTION_Y] / ReplayFormat.MOTION_SCALE;
+        }
+
+        public double getMotionZ() {
+            return fields[ReplayFormat.F_MOTION_Z] / ReplayFormat.MOTION_SCALE;
+        }
+
+        public double getYaw() {
+            return fields[ReplayFormat.F_YAW] / ReplayFormat.ANGLE_SCALE;
+        }
+
+        public double getPitch() {
+            return fields[ReplayFormat.F_PITCH] / ReplayFormat.ANGLE_SCALE;
+        }
+
+        public double getHealth() {
+            return fields[ReplayFormat.F_HEALTH] / ReplayFormat.HEALTH_SCALE;
+        }
+
+        public boolean is(int state) {
+            return (fields[ReplayFormat.F_STATE] & state) != 0;
+        }
+
+        /**
+         * @param slot 0 for the held item, 1 to 4 for boots to helmet.
+         * @return The item id, -1 for nothing.
+         */
+        public int getItem(int slot) {
+            return fields[ReplayFormat.F_EQUIPMENT + 2 * slot] - 1;
+        }
+
+        public int getItemDamage(int slot) {
+            return fields[ReplayFormat.F_EQUIPMENT + 2 * slot + 1];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d %s %s at %.2f %.2f %.2f, motion %.3f %.3f %.3f, yaw %.1f pitch %.1f, health %.2f,"
+                    + " state %d, held %d:%d", id, type, name, getX(), getY(), getZ(), getMotionX(), getMotionY(),
+                    getMotionZ(), getYaw(), getPitch(), getHealth(), fields[ReplayFormat.F_STATE], getItem(0),
+                    getItemDamage(0));
+        }
+    }
+
+    private final File file;
+    private final String arena;
+    private final int dimension;
+    private final int[] bounds = new int[6];
+    private final int keyframeInterval;
+    private final long startMillis;
+    private final long dataOffset;
+
+    // Index, in file order
+    private long[] keyframeTicks = new long[16];
+    private long[] keyframeOffsets = new long[16];
+    private int keyframeCount;
+    private final List<Long> resetTicks = new ArrayList<Long>();
+    private long firstTick = -1;
+    private long lastTick = -1;
+    private long frameCount;
+
+    // Current state
+    private CountingInputStream counter;
+    private DataInputStream in;
+    private long tick = -1;
+    private boolean reset;
+    private final Map<Integer, Entity> entities = new LinkedHashMap<Integer, Entity>();
+    private final Map<Long, Integer> blocks = new HashMap<Long, Integer>();
+
+    public ReplayReader(File file) throws IOException {
+        this.file = file;
+        DataInputStream header = open(0);
+        try {
+            if (header.readInt() != ReplayFormat.MAGIC) {
+                throw new IOException(file + " is not a recording");
+            }
+            int version = header.readUnsignedByte();
+            int fields = header.readUnsignedByte();
+            if (version != ReplayFormat.VERSION || fields != ReplayFormat.FIELDS) {
+                throw new IOException(file + " has version " + version + " with " + fields + " fields, expected "
+                        + ReplayFormat.VERSION + " with " + ReplayFormat.FIELDS);
+            }
+            arena = header.readUTF();
+            dimension = header.readInt();
+            for (int i = 0; i < 6; i++) {
+                bounds[i] = header.readInt();
+            }
+            keyframeInterval = header.readInt();
+            startMillis = header.readLong();
+            dataOffset = counter.count;
+            index();
+        } finally {
+            header.close();
+        }
+        in = null;
+    }
+
+    /**
+     * Reads all frame headers, skipping the payloads. Stops at the first frame that is cut off.
+     */
+    private void index() throws IOException {
+        DataInputStream data = in;
+        while (true) {
+            long offset = counter.count;
+            int type;
+            long frameTick;
+            int length;
+            boolean frameReset;
+            try {
+                type = data.read();
+                if (type < 0) {
+                    return;
+                }
+                frameTick = ReplayFormat.readVarLong(data);
+                length = ReplayFormat.readVarInt(data);
+                if (length < 1) {
+                    return;
+                }
+                frameReset = (data.readUnsignedByte() & ReplayFormat.FLAG_RESET) != 0;
+                // Skipping may go past the end of the file
+                if (data.skipBytes(length - 1) != length - 1 || counter.count > file.length()) {
+                    return;
+                }
+            } catch (EOFException e) {
+                return;
+            }
+            if (type == ReplayFormat.FRAME_KEYFRAME) {
+                if (keyframeCount == keyframeTicks.length) {
+                    keyframeTicks = Arrays.copyOf(keyframeTicks, keyframeCount * 2);
+                    keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframeCount * 2);
+                }
+                keyframeTicks[keyframeCount] = frameTick;
+                keyframeOffsets[keyframeCount++] = offset;
+            }
+            if (frameReset) {
+                resetTicks.add(frameTick);
+            }
+            if (firstTick < 0) {
+                firstTick = frameTick;
+            }
+            lastTick = frameTick;
+            frameCount++;
+        }
+    }
+
+    /**
+     * Moves to the state at the given tick: the last frame at or before it.
+     * @return false if the recording starts after the tick, the state is empty then.
+     */
+    public boolean seek(long target) throws IOException {
+        int k = keyframeCount - 1;
+        while (k >= 0 && keyframeTicks[k] > target) {
+            k--;
+        }
+        closeStream();
+        entities.clear();
+        blocks.clear();
+        tick = -1;
+        reset = false;
+        if (k < 0) {
+            return false;
+        }
+        in = open(keyframeOffsets[k]);
+        next();
+        while (hasNext() && peekTick() <= target) {
+            next();
+        }
+        return true;
+    }
+
+    /**
+     * Applies the next frame.
+     * @return false at the end of the recording.
+     */
+    public boolean next() throws IOException {
+        if (in == null) {
+            in = open(dataOffset);
+        }
+        if (!hasNext()) {
+            return false;
+        }
+        int type = in.readUnsignedByte();
+        tick = ReplayFormat.readVarLong(in);
+        ReplayFormat.readVarInt(in);
+        reset = (in.readUnsignedByte() & ReplayFormat.FLAG_RESET) != 0;
+        if (type == ReplayFormat.FRAME_KEYFRAME) {
+            entities.clear();
+            blocks.clear();
+            int count = ReplayFormat.readVarInt(in);
+            for (int i = 0; i < count; i++) {
+                readEntity();
+            }
+        } else {
+            if (reset) {
+                blocks.clear();
+            }
+            int removed = ReplayFormat.readVarInt(in);
+            for (int i = 0; i < removed; i++) {
+                entities.remove(ReplayFormat.readVarInt(in));
+            }
+            int spawned = ReplayFormat.readVarInt(in);
+            for (int i = 0; i < spawned; i++) {
+                readEntity();
+            }
+            int updated = ReplayFormat.readVarInt(in);
+            for (int i = 0; i < updated; i++) {
+                Entity entity = entities.get(ReplayFormat.readVarInt(in));
+                if (entity == null) {
+                    throw new IOException("Update of an unknown entity at tick " + tick);
+                }
+                int mask = ReplayFormat.readVarInt(in);
+                for (int f = 0; f < ReplayFormat.FIELDS; f++) {
+                    if ((mask & 1 << f) != 0) {
+                        entity.fields[f] += ReplayFormat.unzigzag(ReplayFormat.readVarInt(in));
+                    }
+                }
+            }
+        }
+        int count = ReplayFormat.readVarInt(in);
+        for (int i = 0; i < count; i++) {
+            int x = ReplayFormat.readVarInt(in);
+            int y = ReplayFormat.readVarInt(in);
+            int z = ReplayFormat.readVarInt(in);
+            blocks.put(ReplayFormat.blockKey(x, y, z), ReplayFormat.readVarInt(in));
+        }
+        return true;
+    }
+
+    /**
+     * @return true if there is another whole frame, as far as the index goes.
+     */
+    public boolean hasNext() throws IOException {
+        return in != null ? frameCount > 0 && peekTick() >= 0 : frameCount > 0;
+    }
+
+    /**
+     * @return The tick of the next frame, -1 at the end.
+     */
+    private long peekTick() throws IOException {
+        if (tick >= lastTick && tick >= 0) {
+            return -1;
+        }
+        in.mark(16);
+        try {
+            if (in.read() < 0) {
+                return -1;
+            }
+            return ReplayFormat.readVarLong(in);
+        } catch (EOFException e) {
+            return -1;
+        } finally {
+            in.reset();
+        }
+    }
+
+    private void readEntity() throws IOException {
+        Entity entity = new Entity(ReplayFormat.readVarInt(in), in.readUTF(), in.readUTF());
+        for (int f = 0; f < ReplayFormat.FIELDS; f++) {
+            entity.fields[f] = ReplayFormat.unzigzag(ReplayFormat.readVarInt(in));
+        }
+        entities.put(entity.id, entity);
+    }
+
+    private DataInputStream open(long offset) throws IOException {
+        FileInputStream stream = new FileInputStream(file);
+        stream.getChannel().position(offset);
+        counter = new CountingInputStream(new BufferedInputStream(stream, 65536), offset);
+        in = new DataInputStream(counter);
+        return in;
+    }
+
+    private void closeStream() throws IOException {
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeStream();
+    }
+
+    public String getArena() {
+        return arena;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return minX, minY, minZ, maxX, maxY, maxZ of the arena.
+     */
+    public int[] getBounds() {
+        return bounds.clone();
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getFirstTick() {
+        return firstTick;
+    }
+
+    public long getLastTick() {
+        return lastTick;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public int getKeyframeCount() {
+        return keyframeCount;
+    }
+
+    /**
+     * @return The ticks at which the arena was restored, where episodes begin.
+     */
+    public List<Long> getResetTicks() {
+        return Collections.unmodifiableList(resetTicks);
+    }
+
+    /**
+     * @return The tick of the frame applied last, -1 before the first one.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * @return true if the arena was restored at the current tick.
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    public Map<Integer, Entity> getEntities() {
+        return Collections.unmodifiableMap(entities);
+    }
+
+    /**
+     * @return The blocks that changed since the arena was restored, by {@link ReplayFormat#blockKey} relative to the
+     *         arena's minimum corner, to block state ids.
+     */
+    public Map<Long, Integer> getChangedBlocks() {
+        return Collections.unmodifiableMap(blocks);
+    }
+
+    /**
+     * @return The block state id at the world position, -1 if it is still the one of the arena snapshot.
+     */
+    public int getBlockState(int x, int y, int z) {
+        if (x < bounds[0] || y < bounds[1] || z < bounds[2] || x > bounds[3] || y > bounds[4] || z > bounds[5]) {
+            return -1;
+        }
+        Integer state = blocks.get(ReplayFormat.blockKey(x - bounds[0], y - bounds[1], z - bounds[2]));
+        return state != null ? state : -1;
+    }
+
+    public String getStatusLine() {
+        return "Recording of " + arena + " (dimension " + dimension + ", " + bounds[0] + " " + bounds[1] + " "
+                + bounds[2] + " to " + bounds[3] + " " + bounds[4] + " " + bounds[5] + "): ticks " + firstTick + " to "
+                + lastTick + ", " + frameCount + " frames, " + keyframeCount + " keyframes, " + resetTicks.size()
+                + " resets, " + file.length() + " bytes";
+    }
+
+    /**
+     * Keeps the file offset for the index.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+        private long mark;
+
+        CountingInputStream(InputStream in, long offset) {
+            super(in);
+            this.count = offset;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public synchronized void mark(int limit) {
+            super.mark(limit);
+            mark = count;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            super.reset();
+            count = mark;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: ReplayReader <file" + ReplayFormat.EXTENSION + "> [tick]");
+            return;
+        }
+        ReplayReader reader = new ReplayReader(new File(args[0]));
+        try {
+            System.out.println(reader.getStatusLine());
+            if (!reader.getResetTicks().isEmpty()) {
+                System.out.println("Resets at " + reader.getResetTicks());
+            }
+            long target = args.length > 1 ? Long.parseLong(args[1]) : reader.getLastTick();
+            if (!reader.seek(target)) {
+                System.out.println("The recording starts after tick " + target);
+                return;
+            }
+            System.out.println("Tick " + reader.getTick() + ": " + reader.getEntities().size() + " entities, "
+                    + reader.getChangedBlocks().size() + " changed blocks");
+            for (Entity entity : reader.getEntities().values()) {
+                System.out.println("  " + entity);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+}
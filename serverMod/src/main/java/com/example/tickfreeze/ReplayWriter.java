@@ -0,0 +1,363 @@
+package com.example.tickfreeze;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the samples of one arena as a recording ({@link ReplayFormat}).
+ *
+ * Keeps the state it wrote last, so samples only have to carry what the server saw this tick: every tick is written
+ * as the difference to that state, and every keyframe interval as the whole state instead. Ticks without changes are
+ * not written at all. Once a file is larger than maxFileBytes the next sample starts a new one, beginning with a
+ * keyframe, so every file can be read on its own.
+ *
+ * Only uses the JDK. Not thread safe, {@link EpisodeRecorder} calls it from its writer thread only.
+ */
+public class ReplayWriter implements Closeable {
+
+    /**
+     * What the server saw of an arena in one tick. Filled on the server thread, written and reused on the writer
+     * thread.
+     */
+    public static final class Sample {
+        long tick;
+        boolean reset;
+        // Every entity in the arena, also those that were not captured this tick, unless entitiesSkipped
+        boolean entitiesSkipped;
+        int[] present = new int[64];
+        int presentCount;
+        // The captured entities, FIELDS values each
+        int[] ids = new int[64];
+        String[] types = new String[64];
+        String[] names = new String[64];
+        int[] values = new int[64 * ReplayFormat.FIELDS];
+        int entityCount;
+        // x, y, z relative to the arena and the block state id
+        int[] blocks = new int[64 * 4];
+        int blockCount;
+
+        void begin(long tick) {
+            this.tick = tick;
+            reset = false;
+            entitiesSkipped = false;
+            presentCount = 0;
+            entityCount = 0;
+            blockCount = 0;
+        }
+
+        void addPresent(int id) {
+            if (presentCount == present.length) {
+                present = Arrays.copyOf(present, presentCount * 2);
+            }
+            present[presentCount++] = id;
+        }
+
+        /**
+         * @return The offset of the entity's fields in values.
+         */
+        int addEntity(int id, String type, String name) {
+            if (entityCount == ids.length) {
+                int size = entityCount * 2;
+                ids = Arrays.copyOf(ids, size);
+                types = Arrays.copyOf(types, size);
+                names = Arrays.copyOf(names, size);
+                values = Arrays.copyOf(values, size * ReplayFormat.FIELDS);
+            }
+            ids[entityCount] = id;
+            types[entityCount] = type;
+            names[entityCount] = name;
+            return entityCount++ * ReplayFormat.FIELDS;
+        }
+
+        void addBlock(int x, int y, int z, int state) {
+            if ((blockCount + 1) * 4 > blocks.length) {
+                blocks = Arrays.copyOf(blocks, blocks.length * 2);
+            }
+            int base = blockCount++ * 4;
+            blocks[base] = x;
+            blocks[base + 1] = y;
+            blocks[base + 2] = z;
+            blocks[base + 3] = state;
+        }
+    }
+
+    private static final class Tracked {
+        final String type;
+        final String name;
+        final int[] fields = new int[ReplayFormat.FIELDS];
+
+        Tracked(String type, String name) {
+            this.type = type;
+            this.name = name;
+        }
+    }
+
+    private final File directory;
+    private final String arena;
+    private final int dimension;
+    private final int[] bounds;
+    private final int keyframeInterval;
+    private final long maxFileBytes;
+
+    private File file;
+    private DataOutputStream out;
+    private final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(4096);
+    private final DataOutputStream payload = new DataOutputStream(payloadBytes);
+    private boolean needKeyframe = true;
+    private long lastKeyframeTick;
+
+    // The state as written so far
+    private final Map<Integer, Tracked> entities = new LinkedHashMap<Integer, Tracked>();
+    private final Map<Long, Integer> blocks = new HashMap<Long, Integer>();
+    // Scratch
+    private final Set<Integer> present = new HashSet<Integer>();
+    private int[] removed = new int[16];
+    private int[] spawned = new int[16];
+    private int[] updated = new int[16];
+    private int[] masks = new int[16];
+
+    private long frames;
+    private long keyframes;
+    private long bytes;
+    private int files;
+
+    /**
+     * @param bounds minX, minY, minZ, maxX, maxY, maxZ of the arena.
+     */
+    public ReplayWriter(File directory, String arena, int dimension, int[] bounds, int keyframeInterval, long maxFileBytes) {
+        this.directory = directory;
+        this.arena = arena;
+        this.dimension = dimension;
+        this.bounds = bounds.clone();
+        this.keyframeInterval = keyframeInterval;
+        // DataOutputStream counts in an int
+        this.maxFileBytes = Math.min(maxFileBytes, Integer.MAX_VALUE / 2);
+    }
+
+    public void write(Sample sample) throws IOException {
+        if (out == null) {
+            open(sample.tick);
+        }
+        boolean keyframe = needKeyframe || sample.tick - lastKeyframeTick >= keyframeInterval;
+        payloadBytes.reset();
+        payload.writeByte(sample.reset ? ReplayFormat.FLAG_RESET : 0);
+        if (sample.reset) {
+            blocks.clear();
+        }
+        boolean changed = applyEntities(sample, !keyframe) | applyBlocks(sample, !keyframe);
+        if (keyframe) {
+            writeKeyframe();
+            needKeyframe = false;
+            lastKeyframeTick = sample.tick;
+            keyframes++;
+        } else if (!changed && !sample.reset) {
+            return;
+        }
+        out.writeByte(keyframe ? ReplayFormat.FRAME_KEYFRAME : ReplayFormat.FRAME_DELTA);
+        ReplayFormat.writeVarLong(out, sample.tick);
+        ReplayFormat.writeVarInt(out, payloadBytes.size());
+        payloadBytes.writeTo(out);
+        frames++;
+        if (out.size() >= maxFileBytes) {
+            closeFile();
+        }
+    }
+
+    /**
+     * Updates the entities from the sample, writing the removed, spawned and updated ones to the payload if delta.
+     * @return true if anything changed.
+     */
+    private boolean applyEntities(Sample sample, boolean delta) throws IOException {
+        present.clear();
+        for (int i = 0; i < sample.presentCount; i++) {
+            present.add(sample.present[i]);
+        }
+        int removedCount = 0;
+        // Without the list of entities nothing is known to be gone
+        for (Iterator<Integer> it = entities.keySet().iterator(); !sample.entitiesSkipped && it.hasNext(); ) {
+            Integer id = it.next();
+            if (!present.contains(id)) {
+                removed = grow(removed, removedCount);
+                removed[removedCount++] = id;
+                it.remove();
+            }
+        }
+        // Only look first, updates are written as differences to the old values
+        int spawnedCount = 0;
+        int updatedCount = 0;
+        for (int i = 0; i < sample.entityCount; i++) {
+            Tracked tracked = entities.get(sample.ids[i]);
+            if (tracked == null) {
+                spawned = grow(spawned, spawnedCount);
+                spawned[spawnedCount++] = i;
+                continue;
+            }
+            int base = i * ReplayFormat.FIELDS;
+            int mask = 0;
+            for (int f = 0; f < ReplayFormat.FIELDS; f++) {
+                if (tracked.fields[f] != sample.values[base + f]) {
+                    mask |= 1 << f;
+                }
+            }
+            if (mask != 0) {
+                updated = grow(updated, updatedCount);
+                masks = grow(masks, updatedCount);
+                updated[updatedCount] = i;
+                masks[updatedCount++] = mask;
+            }
+        }
+
+        if (delta) {
+            ReplayFormat.writeVarInt(payload, removedCount);
+            for (int i = 0; i < removedCount; i++) {
+                ReplayFormat.writeVarInt(payload, removed[i]);
+            }
+            ReplayFormat.writeVarInt(payload, spawnedCount);
+        }
+        for (int i = 0; i < spawnedCount; i++) {
+            int s = spawned[i];
+            Tracked tracked = new Tracked(sample.types[s], sample.names[s]);
+            System.arraycopy(sample.values, s * ReplayFormat.FIELDS, tracked.fields, 0, ReplayFormat.FIELDS);
+            entities.put(sample.ids[s], tracked);
+            if (delta) {
+                writeEntity(sample.ids[s], tracked);
+            }
+        }
+        if (delta) {
+            ReplayFormat.writeVarInt(payload, updatedCount);
+        }
+        for (int i = 0; i < updatedCount; i++) {
+            int u = updated[i];
+            int base = u * ReplayFormat.FIELDS;
+            Tracked tracked = entities.get(sample.ids[u]);
+            if (delta) {
+                ReplayFormat.writeVarInt(payload, sample.ids[u]);
+                ReplayFormat.writeVarInt(payload, masks[i]);
+            }
+            for (int f = 0; f < ReplayFormat.FIELDS; f++) {
+                if ((masks[i] & 1 << f) != 0) {
+                    if (delta) {
+                        ReplayFormat.writeVarInt(payload, ReplayFormat.zigzag(sample.values[base + f] - tracked.fields[f]));
+                    }
+                    tracked.fields[f] = sample.values[base + f];
+                }
+            }
+        }
+        return removedCount + spawnedCount + updatedCount > 0;
+    }
+
+    private boolean applyBlocks(Sample sample, boolean delta) throws IOException {
+        if (delta) {
+            ReplayFormat.writeVarInt(payload, sample.blockCount);
+        }
+        for (int i = 0; i < sample.blockCount; i++) {
+            int base = i * 4;
+            blocks.put(ReplayFormat.blockKey(sample.blocks[base], sample.blocks[base + 1], sample.blocks[base + 2]),
+                    sample.blocks[base + 3]);
+            if (delta) {
+                writeBlock(sample.blocks[base], sample.blocks[base + 1], sample.blocks[base + 2], sample.blocks[base + 3]);
+            }
+        }
+        return sample.blockCount > 0;
+    }
+
+    private void writeKeyframe() throws IOException {
+        ReplayFormat.writeVarInt(payload, entities.size());
+        for (Map.Entry<Integer, Tracked> entry : entities.entrySet()) {
+            writeEntity(entry.getKey(), entry.getValue());
+        }
+        ReplayFormat.writeVarInt(payload, blocks.size());
+        for (Map.Entry<Long, Integer> entry : blocks.entrySet()) {
+            long key = entry.getKey();
+            writeBlock(ReplayFormat.blockKeyX(key), ReplayFormat.blockKeyY(key), ReplayFormat.blockKeyZ(key),
+                    entry.getValue());
+        }
+    }
+
+    private void writeEntity(int id, Tracked tracked) throws IOException {
+        ReplayFormat.writeVarInt(payload, id);
+        payload.writeUTF(tracked.type);
+        payload.writeUTF(tracked.name);
+        for (int f = 0; f < ReplayFormat.FIELDS; f++) {
+            ReplayFormat.writeVarInt(payload, ReplayFormat.zigzag(tracked.fields[f]));
+        }
+    }
+
+    private void writeBlock(int x, int y, int z, int state) throws IOException {
+        ReplayFormat.writeVarInt(payload, x);
+        ReplayFormat.writeVarInt(payload, y);
+        ReplayFormat.writeVarInt(payload, z);
+        ReplayFormat.writeVarInt(payload, state);
+    }
+
+    private static int[] grow(int[] array, int count) {
+        return count < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+
+    private void open(long tick) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        String time = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        file = new File(directory, arena.replaceAll("[^A-Za-z0-9_-]", "_") + "-" + time + "-" + tick
+                + ReplayFormat.EXTENSION);
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        out.writeInt(ReplayFormat.MAGIC);
+        out.writeByte(ReplayFormat.VERSION);
+        out.writeByte(ReplayFormat.FIELDS);
+        out.writeUTF(arena);
+        out.writeInt(dimension);
+        for (int bound : bounds) {
+            out.writeInt(bound);
+        }
+        out.writeInt(keyframeInterval);
+        out.writeLong(System.currentTimeMillis());
+        needKeyframe = true;
+        files++;
+    }
+
+    private void closeFile() throws IOException {
+        if (out != null) {
+            bytes += out.size();
+            DataOutputStream closing = out;
+            out = null;
+            closing.close();
+        }
+    }
+
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeFile();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getStatusLine() {
+        DataOutputStream current = out;
+        return frames + " frames (" + keyframes + " keyframes), " + entities.size() + " entities, " + blocks.size()
+                + " changed blocks, " + String.format("%.1f", (bytes + (current != null ? current.size() : 0)) / 1e6)
+                + " MB in " + files + " files" + (file != null ? ", " + file.getName() : "");
+    }
+}
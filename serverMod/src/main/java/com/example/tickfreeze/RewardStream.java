@@ -0,0 +1,370 @@
+package com.example.tickfreeze;
+
+import com.google.common.base.Charsets;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.event.entity.living.LivingDeathEvent;
+import net.minecraftforge.event.entity.living.LivingHurtEvent;
+import net.minecraftforge.fml.common.eventhandler.EventPriority;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Combat events as the server sees them, sent to the backend once per tick (POST /server-rewards) instead of every
+ * bot guessing them from client events and health polling (CambiumMod's RewardListener).
+ *
+ * Per tick and player it collects
+ * <ul>
+ * <li>damage_dealt / damage_taken: the health the victim actually lost this tick, after armor and absorption,
+ * attributed to the attacker of the hurt events,</li>
+ * <li>kill / killed: a player killed another living entity or was killed, deaths are still rewarded through
+ * /death/,</li>
+ * <li>projectile_hit / knockback_taken: {@link ProjectileKnockbackHandler} knocked a player back.</li>
+ * </ul>
+ * At the end of the tick the events of all players go out as one batch tagged with the server tick, the same tick
+ * that observations built by {@link BatchedInference} carry. Bots are told over the cambium channel (REWARDS) so they
+ * stop sending these events themselves.
+ *
+ * The backend is cambium.backend.url (http://backend:8000). Batches are sent on the "Cambium rewards" thread; if the
+ * backend falls behind, waiting batches go out together in one request, at most cambium.serverRewards.queue (256)
+ * ticks are kept. cambium.serverRewards=false turns it off.
+ *
+ * Events arrive and batches are built on the server thread.
+ */
+public class RewardStream {
+
+    /**
+     * The hurt events of one entity in the current tick.
+     */
+    private static final class Hurt {
+        final float healthBefore;
+        Entity attacker;
+        boolean projectile;
+
+        Hurt(float healthBefore) {
+            this.healthBefore = healthBefore;
+        }
+    }
+
+    private final String baseUrl = System.getProperty("cambium.backend.url", "http://backend:8000");
+    private final int timeoutMillis = Integer.getInteger("cambium.serverRewards.timeout", 1000);
+    private final LinkedBlockingQueue<JsonObject> outgoing =
+            new LinkedBlockingQueue<JsonObject>(Integer.getInteger("cambium.serverRewards.queue", 256));
+    private volatile boolean enabled = !"false".equalsIgnoreCase(System.getProperty("cambium.serverRewards", "true"));
+    private volatile boolean announce;
+    private CambiumChannel channel;
+    private Thread sender;
+
+    // Server thread only
+    private final Map<EntityLivingBase, Hurt> hurts = new IdentityHashMap<EntityLivingBase, Hurt>();
+    private final Map<EntityPlayer, JsonArray> events = new LinkedHashMap<EntityPlayer, JsonArray>();
+    private long ticks;
+    private long eventCount;
+    private long dropped;
+    // Sender thread only
+    private volatile long requests;
+    private volatile long failed;
+    private volatile String lastError;
+
+    public void setChannel(CambiumChannel channel) {
+        this.channel = channel;
+    }
+
+    public void start() {
+        sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sendLoop();
+            }
+        }, "Cambium rewards");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        if (event.player instanceof EntityPlayerMP) {
+            channel.sendRewards((EntityPlayerMP) event.player, enabled);
+        }
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void onLivingHurt(LivingHurtEvent event) {
+        if (!enabled || event.entity.worldObj.isRemote || event.isCanceled()) {
+            return;
+        }
+        Entity attacker = event.source.getEntity();
+        if (!(event.entityLiving instanceof EntityPlayer) && !(attacker instanceof EntityPlayer)) {
+            return;
+        }
+        Hurt hurt = hurts.get(event.entityLiving);
+        if (hurt == null) {
+            hurt = new Hurt(event.entityLiving.getHealth());
+            hurts.put(event.entityLiving, hurt);
+        }
+        if (attacker != null) {
+            hurt.attacker = attacker;
+            hurt.projectile = event.source.getSourceOfDamage() != attacker;
+        }
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void onLivingDeath(LivingDeathEvent event) {
+        if (!enabled || event.entity.worldObj.isRemote || event.isCanceled()) {
+            return;
+        }
+        Entity killer = event.source.getEntity();
+        EntityLivingBase victim = event.entityLiving;
+        if (victim instanceof EntityPlayer) {
+            JsonObject killed = event("killed", 1);
+            addName(killed, "killer", killer);
+            killed.addProperty("cause", event.source.getDamageType());
+            add((EntityPlayer) victim, killed);
+        }
+        if (killer instanceof EntityPlayer && killer != victim) {
+            JsonObject kill = event("kill", 1);
+            kill.addProperty("target", victim.getName());
+            kill.addProperty("player", victim instanceof EntityPlayer);
+            add((EntityPlayer) killer, kill);
+        }
+    }
+
+    /**
+     * Called by {@link ProjectileKnockbackHandler} when a projectile knocked a player back.
+     */
+    public void projectileHit(Entity thrower, EntityPlayer target, String projectile, double knockback) {
+        if (!enabled) {
+            return;
+        }
+        JsonObject taken = event("knockback_taken", knockback);
+        taken.addProperty("projectile", projectile);
+        addName(taken, "attacker", thrower);
+        add(target, taken);
+        if (thrower instanceof EntityPlayer && thrower != target) {
+            JsonObject hit = event("projectile_hit", knockback);
+            hit.addProperty("projectile", projectile);
+            hit.addProperty("target", target.getName());
+            add((EntityPlayer) thrower, hit);
+        }
+    }
+
+    /**
+     * After {@link ProjectileKnockbackHandler} (HIGH), before TickLoop runs the next ticks (LOW).
+     */
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+        MinecraftServer server = MinecraftServer.getServer();
+        if (announce) {
+            announce = false;
+            for (WorldServer world : server.worldServers) {
+                for (Object o : world.playerEntities) {
+                    channel.sendRewards((EntityPlayerMP) o, enabled);
+                }
+            }
+        }
+        ticks++;
+        for (Map.Entry<EntityLivingBase, Hurt> entry : hurts.entrySet()) {
+            addDamage(entry.getKey(), entry.getValue());
+        }
+        hurts.clear();
+        if (events.isEmpty()) {
+            return;
+        }
+
+        JsonObject batch = new JsonObject();
+        batch.addProperty("tick", server.getTickCounter());
+        JsonArray bots = new JsonArray();
+        for (Map.Entry<EntityPlayer, JsonArray> entry : events.entrySet()) {
+            JsonObject bot = new JsonObject();
+            bot.addProperty("bot_name", entry.getKey().getName());
+            bot.add("events", entry.getValue());
+            bot.add("current_state", currentState(entry.getKey()));
+            bots.add(bot);
+        }
+        batch.add("bots", bots);
+        events.clear();
+        if (!outgoing.offer(batch)) {
+            // The backend is behind, the oldest tick goes
+            outgoing.poll();
+            outgoing.offer(batch);
+            dropped++;
+        }
+    }
+
+    private void addDamage(EntityLivingBase victim, Hurt hurt) {
+        float damage = hurt.healthBefore - Math.max(0, victim.getHealth());
+        if (damage <= 0) {
+            // Blocked, absorbed or healed in the same tick
+            return;
+        }
+        if (victim instanceof EntityPlayer) {
+            JsonObject taken = event("damage_taken", damage);
+            addName(taken, "attacker", hurt.attacker);
+            taken.addProperty("projectile", hurt.projectile);
+            add((EntityPlayer) victim, taken);
+        }
+        if (hurt.attacker instanceof EntityPlayer && hurt.attacker != victim) {
+            JsonObject dealt = event("damage_dealt", damage);
+            dealt.addProperty("damage_percentage", Math.min(1.0f, damage / victim.getMaxHealth()));
+            dealt.addProperty("target", victim.getName());
+            dealt.addProperty("projectile", hurt.projectile);
+            add((EntityPlayer) hurt.attacker, dealt);
+        }
+    }
+
+    private static JsonObject event(String type, double amount) {
+        JsonObject event = new JsonObject();
+        event.addProperty("type", type);
+        event.addProperty("amount", amount);
+        return event;
+    }
+
+    private static void addName(JsonObject event, String key, Entity entity) {
+        if (entity != null) {
+            event.addProperty(key, entity.getName());
+        }
+    }
+
+    private void add(EntityPlayer player, JsonObject event) {
+        JsonArray list = events.get(player);
+        if (list == null) {
+            list = new JsonArray();
+            events.put(player, list);
+        }
+        list.add(event);
+        eventCount++;
+    }
+
+    /**
+     * Same fields as RewardListener.buildCurrentState in the mod.
+     */
+    private static JsonObject currentState(EntityPlayer player) {
+        JsonObject data = new JsonObject();
+        data.addProperty("health", player.getHealth());
+        data.addProperty("x", player.posX);
+        data.addProperty("y", player.posY);
+        data.addProperty("z", player.posZ);
+        data.addProperty("yaw", player.rotationYaw);
+        data.addProperty("pitch", player.rotationPitch);
+        int armorPoints = 0;
+        for (int i = 0; i < player.inventory.armorInventory.length; i++) {
+            if (player.inventory.armorInventory[i] != null) {
+                armorPoints += 2;
+            }
+        }
+        data.addProperty("armor", armorPoints);
+        JsonObject state = new JsonObject();
+        state.add("player", data);
+        return state;
+    }
+
+    private void sendLoop() {
+        List<JsonObject> batches = new ArrayList<JsonObject>();
+        while (true) {
+            try {
+                batches.add(outgoing.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            outgoing.drainTo(batches);
+            JsonArray body = new JsonArray();
+            for (JsonObject batch : batches) {
+                body.add(batch);
+            }
+            JsonObject request = new JsonObject();
+            request.add("batches", body);
+            try {
+                post("/server-rewards", request.toString().getBytes(Charsets.UTF_8));
+                requests++;
+            } catch (IOException e) {
+                failed++;
+                lastError = e.toString();
+                if (failed == 1 || failed % 100 == 0) {
+                    System.out.println("[Cambium] Server rewards: request failed (" + failed + " so far): " + e);
+                }
+            }
+            batches.clear();
+        }
+    }
+
+    private void post(String path, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setFixedLengthStreamingMode(body.length);
+        OutputStream out = connection.getOutputStream();
+        try {
+            out.write(body);
+        } finally {
+            out.close();
+        }
+        int status = connection.getResponseCode();
+        // Reading to the end lets HttpURLConnection keep the connection for the next request
+        InputStream in = status == HttpURLConnection.HTTP_OK ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            try {
+                byte[] chunk = new byte[4096];
+                while (in.read(chunk) > 0) {
+                    // Discard
+                }
+            } finally {
+                in.close();
+            }
+        }
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw new IOException("HTTP " + status + " from " + path);
+        }
+    }
+
+    /**
+     * The bots are told at the end of the tick whether to leave these events to the server.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        announce = true;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void resetStats() {
+        ticks = 0;
+        eventCount = 0;
+        dropped = 0;
+        requests = 0;
+        failed = 0;
+        lastError = null;
+    }
+
+    public String getStatusLine() {
+        return "Server rewards " + (enabled ? "on" : "off") + ", backend " + baseUrl + ". " + ticks + " ticks, "
+                + eventCount + " events, " + requests + " requests, " + outgoing.size() + " ticks waiting, " + dropped
+                + " dropped, " + failed + " failed" + (lastError != null ? " (last: " + lastError + ")" : "");
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.tickfreeze;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+
+/**
+ * /rewards [on|off|status|reset], see {@link RewardStream}.
+ */
+public class RewardsCommand extends CommandBase {
+    private final RewardStream rewards;
+
+    public RewardsCommand(RewardStream rewards) {
+        this.rewards = rewards;
+    }
+
+    @Override
+    public String getCommandName() {
+        return "rewards";
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender sender) {
+        return "/rewards [on|off|status|reset]";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void processCommand(ICommandSender sender, String[] args) throws CommandException {
+        if (args.length == 0 || args[0].equals("status")) {
+            // Status only
+        } else if (args[0].equals("on") || args[0].equals("off")) {
+            rewards.setEnabled(args[0].equals("on"));
+        } else if (args[0].equals("reset")) {
+            rewards.resetStats();
+        } else {
+            throw new WrongUsageException(getCommandUsage(sender));
+        }
+        sender.addChatMessage(new ChatComponentText(rewards.getStatusLine()));
+    }
+}
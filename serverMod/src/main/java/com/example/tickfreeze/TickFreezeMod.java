@@ -1,18 +1,73 @@
 package com.example.tickfreeze;
 
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppingEvent;
 
 @Mod(modid = TickFreezeMod.MODID, version = TickFreezeMod.VERSION, acceptableRemoteVersions = "*")
 public class TickFreezeMod {
     public static final String MODID = "tickfreeze";
     public static final String VERSION = "1.0";
 
+    private TickLoop tickLoop;
+    private LockstepBarrier lockstepBarrier;
+    private BatchedInference batchedInference;
+    private RewardStream rewardStream;
+    private ProjectileKnockbackHandler projectileKnockbackHandler;
+    private EpisodeRecorder episodeRecorder;
+    private ArenaSnapshots arenaSnapshots;
+    private ControlServer controlServer;
+
+    @Mod.EventHandler
+    public void init(FMLInitializationEvent event) {
+        // Tick rate control and lockstep ticking for training, replace the removed FreezeCommand
+        tickLoop = new TickLoop();
+        lockstepBarrier = new LockstepBarrier(tickLoop);
+        batchedInference = new BatchedInference();
+        CambiumChannel channel = new CambiumChannel(lockstepBarrier, batchedInference);
+        lockstepBarrier.setChannel(channel);
+        batchedInference.setChannel(channel);
+        FMLCommonHandler.instance().bus().register(lockstepBarrier);
+        FMLCommonHandler.instance().bus().register(tickLoop);
+        FMLCommonHandler.instance().bus().register(batchedInference);
+        // Combat events for the backend, hurt and death events come from the Forge bus
+        rewardStream = new RewardStream();
+        rewardStream.setChannel(channel);
+        FMLCommonHandler.instance().bus().register(rewardStream);
+        MinecraftForge.EVENT_BUS.register(rewardStream);
+        rewardStream.start();
+        // Projectile knockback, checked once per tick for all players
+        projectileKnockbackHandler = new ProjectileKnockbackHandler(rewardStream);
+        FMLCommonHandler.instance().bus().register(projectileKnockbackHandler);
+        // Arena recordings, block changes come from a listener added to each world as it loads
+        episodeRecorder = new EpisodeRecorder();
+        FMLCommonHandler.instance().bus().register(episodeRecorder);
+        MinecraftForge.EVENT_BUS.register(episodeRecorder);
+        episodeRecorder.start();
+        arenaSnapshots = new ArenaSnapshots(episodeRecorder);
+        controlServer = new ControlServer(tickLoop);
+    }
+
     @Mod.EventHandler
     public void onServerStart(FMLServerStartingEvent event) {
-        // Register projectile knockback handler
-        MinecraftForge.EVENT_BUS.register(new ProjectileKnockbackHandler());
-        // FreezeCommand removed - no longer needed
+        event.registerServerCommand(new LockstepCommand(lockstepBarrier));
+        event.registerServerCommand(new TickRateCommand(tickLoop));
+        event.registerServerCommand(new InferenceCommand(batchedInference));
+        event.registerServerCommand(new ProjectileBenchCommand());
+        event.registerServerCommand(new ArenaCommand(arenaSnapshots, tickLoop));
+        event.registerServerCommand(new ControlCommand(controlServer));
+        event.registerServerCommand(new RewardsCommand(rewardStream));
+        event.registerServerCommand(new RecordCommand(episodeRecorder, arenaSnapshots, tickLoop));
+        // Batched commands for the backend, replaces RCON
+        controlServer.start(event.getServer());
+    }
+
+    @Mod.EventHandler
+    public void onServerStopping(FMLServerStoppingEvent event) {
+        controlServer.stop();
+        episodeRecorder.stop();
     }
-}
\ No newline at end of file
+}
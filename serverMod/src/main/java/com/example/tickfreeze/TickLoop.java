@@ -0,0 +1,326 @@
+package com.example.tickfreeze;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.dedicated.DedicatedServer;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.fml.common.eventhandler.EventPriority;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.relauncher.ReflectionHelper;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the server at a different speed than vanilla's 20 TPS and measures every tick.
+ *
+ * MinecraftServer.run() ticks once per 50 ms of wall time and sleeps in between, which we cannot change without a
+ * core mod. So in any mode but NORMAL the end of a tick starts a loop here that calls MinecraftServer.tick() itself,
+ * paced to the target rate (RATE), back to back (MAX), or not at all (PAUSED). The loop keeps the vanilla loop's
+ * clock (MinecraftServer.currentTime) at now, so vanilla neither tries to catch up on the time we spent nor warns
+ * that it cannot keep up, and returns to it once the mode is NORMAL again.
+ *
+ * While paused, network traffic and console commands are still handled, so "/tickrate resume" works from the console,
+ * RCON and the backend (/tick-rate). Player packets, chat commands included, wait until the server ticks again.
+ *
+ * Tick times are logged every cambium.tickrate.logInterval (10) seconds to cambium.tickrate.file (cambium-ticks.csv).
+ *
+ * Ticks and commands run on the server thread, RCON commands on the RCON thread. Work that has to touch the world from
+ * another thread goes through {@link #callOnServerThread}, which also runs while paused.
+ */
+public class TickLoop {
+    public enum Mode {
+        /** Vanilla 20 TPS. */
+        NORMAL,
+        /** A fixed rate, see {@link #setRate}. */
+        RATE,
+        /** As fast as the server can tick. */
+        MAX,
+        /** No ticks. */
+        PAUSED
+    }
+
+    public static final double VANILLA_TPS = 20.0;
+    private static final Field CURRENT_TIME = ReflectionHelper.findField(MinecraftServer.class, "currentTime", "field_175591_ab");
+    private static final long PAUSE_POLL_MILLIS = 50;
+    // Ticks that are this far behind schedule are not caught up on
+    private static final long MAX_BEHIND_NANOS = 1000000000L;
+    private static final int HISTORY = 1200;
+
+    private volatile Mode mode = Mode.NORMAL;
+    private volatile Mode modeBeforePause = Mode.NORMAL;
+    private volatile double rate = VANILLA_TPS;
+    private volatile boolean lockstepFast;
+    private boolean inLoop;
+    // Handed over by other threads, run before every tick and while paused
+    private final Queue<FutureTask<?>> tasks = new ConcurrentLinkedQueue<FutureTask<?>>();
+
+    // Tick timing, server thread only
+    private final long[] durations = new long[HISTORY];
+    private final long[] ends = new long[HISTORY];
+    private long ticks;
+    private long tickStart;
+    private long maxDuration;
+    private final File logFile = new File(System.getProperty("cambium.tickrate.file", "cambium-ticks.csv"));
+    private final long logIntervalNanos = Long.getLong("cambium.tickrate.logInterval", 10L) * 1000000000L;
+    private long nextLog = System.nanoTime() + logIntervalNanos;
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        if (mode == Mode.PAUSED && this.mode != Mode.PAUSED) {
+            modeBeforePause = this.mode;
+        }
+        this.mode = mode;
+    }
+
+    /**
+     * Continues with the mode that was active before the pause.
+     */
+    public void resume() {
+        if (mode == Mode.PAUSED) {
+            mode = modeBeforePause;
+        }
+    }
+
+    /**
+     * Switches to RATE with the given ticks per second.
+     */
+    public void setRate(double ticksPerSecond) {
+        rate = ticksPerSecond;
+        setMode(Mode.RATE);
+    }
+
+    /**
+     * Lockstep asks for back to back ticks while bots take part, see {@link LockstepBarrier}. Only applies in NORMAL
+     * mode, an explicit rate or pause wins.
+     */
+    public void setLockstepFast(boolean lockstepFast) {
+        this.lockstepFast = lockstepFast;
+    }
+
+    private Mode effectiveMode() {
+        Mode current = mode;
+        return current == Mode.NORMAL && lockstepFast ? Mode.MAX : current;
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOW)
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.START) {
+            runTasks();
+            tickStart = System.nanoTime();
+            return;
+        }
+        long now = System.nanoTime();
+        long duration = now - tickStart;
+        int slot = (int) (ticks % HISTORY);
+        durations[slot] = duration;
+        ends[slot] = now;
+        ticks++;
+        maxDuration = Math.max(maxDuration, duration);
+        if (logIntervalNanos > 0 && now >= nextLog) {
+            nextLog = now + logIntervalNanos;
+            log();
+        }
+
+        // Low priority: the lockstep barrier has announced this tick before the next one starts
+        if (!inLoop && effectiveMode() != Mode.NORMAL) {
+            runLoop(MinecraftServer.getServer());
+        }
+    }
+
+    private void runLoop(MinecraftServer server) {
+        inLoop = true;
+        try {
+            long next = System.nanoTime();
+            while (server.isServerRunning()) {
+                Mode current = effectiveMode();
+                if (current == Mode.NORMAL) {
+                    break;
+                }
+                if (current == Mode.PAUSED) {
+                    idle(server);
+                    Thread.sleep(PAUSE_POLL_MILLIS);
+                    next = System.nanoTime();
+                    continue;
+                }
+                if (current == Mode.RATE) {
+                    next += (long) (1000000000L / Math.max(0.01, rate));
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+                    } else if (wait < -MAX_BEHIND_NANOS) {
+                        next = System.nanoTime();
+                    }
+                }
+                server.tick();
+                resetClock(server);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inLoop = false;
+            resetClock(server);
+        }
+    }
+
+    /**
+     * What the server does between ticks except ticking: network and console commands.
+     */
+    private void idle(MinecraftServer server) {
+        server.getNetworkSystem().networkTick();
+        if (server instanceof DedicatedServer) {
+            ((DedicatedServer) server).executePendingCommands();
+        }
+        runTasks();
+        resetClock(server);
+    }
+
+    /**
+     * Runs task on the server thread and waits for it, directly if called from there. Unlike
+     * MinecraftServer.callFromMainThread this also works while paused.
+     * @throws TimeoutException if the server did not get to it within timeoutMillis, it is cancelled then.
+     * @throws Exception whatever the task threw.
+     */
+    public <T> T callOnServerThread(Callable<T> task, long timeoutMillis) throws Exception {
+        if (MinecraftServer.getServer().isCallingFromMinecraftThread()) {
+            return task.call();
+        }
+        FutureTask<T> future = new FutureTask<T>(task);
+        tasks.add(future);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Runs task on the server thread before the next tick, or soon while paused. Does not wait for it.
+     */
+    public void execute(Runnable task) {
+        tasks.add(new FutureTask<Object>(task, null));
+    }
+
+    private void runTasks() {
+        FutureTask<?> task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private static void resetClock(MinecraftServer server) {
+        try {
+            CURRENT_TIME.setLong(server, MinecraftServer.getCurrentTimeMillis());
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public double getTargetTps() {
+        switch (effectiveMode()) {
+            case RATE:
+                return rate;
+            case MAX:
+                return Double.POSITIVE_INFINITY;
+            case PAUSED:
+                return 0;
+            default:
+                return VANILLA_TPS;
+        }
+    }
+
+    /**
+     * @return Ticks per second over the last (up to) HISTORY ticks.
+     */
+    public double getMeasuredTps() {
+        int count = (int) Math.min(ticks, HISTORY);
+        if (count < 2) {
+            return 0;
+        }
+        long newest = ends[(int) ((ticks - 1) % HISTORY)];
+        long oldest = ends[(int) ((ticks - count) % HISTORY)];
+        return newest == oldest ? 0 : (count - 1) * 1e9 / (newest - oldest);
+    }
+
+    /**
+     * @return Mean, median, 99th percentile and max tick duration in ms over the last (up to) HISTORY ticks.
+     */
+    private double[] getDurationStats() {
+        int count = (int) Math.min(ticks, HISTORY);
+        if (count == 0) {
+            return new double[] {0, 0, 0, 0};
+        }
+        long[] sorted = Arrays.copyOf(durations, count);
+        Arrays.sort(sorted);
+        long sum = 0;
+        for (long d : sorted) {
+            sum += d;
+        }
+        return new double[] {sum / 1e6 / count, sorted[count / 2] / 1e6, sorted[Math.min(count - 1, (int) (count * 0.99))] / 1e6, sorted[count - 1] / 1e6};
+    }
+
+    private static int countEntities(MinecraftServer server) {
+        int entities = 0;
+        for (WorldServer world : server.worldServers) {
+            entities += world.loadedEntityList.size();
+        }
+        return entities;
+    }
+
+    public String getStatusLine() {
+        MinecraftServer server = MinecraftServer.getServer();
+        Mode current = effectiveMode();
+        double tps = getMeasuredTps();
+        double[] stats = getDurationStats();
+        String target = current == Mode.MAX ? "max" : current == Mode.PAUSED ? "paused" : String.format("%.1f TPS", getTargetTps());
+        return "Tick rate: " + current + (current != mode ? " (lockstep)" : "") + ", target " + target
+                + String.format(", measured %.1f TPS (%.2fx)", tps, tps / VANILLA_TPS)
+                + String.format(", tick mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms (ever %.2f ms)",
+                        stats[0], stats[1], stats[2], stats[3], maxDuration / 1e6)
+                + ", " + server.getCurrentPlayerCount() + " players, " + countEntities(server) + " entities";
+    }
+
+    public void resetStats() {
+        ticks = 0;
+        maxDuration = 0;
+    }
+
+    private void log() {
+        MinecraftServer server = MinecraftServer.getServer();
+        double[] stats = getDurationStats();
+        boolean header = !logFile.exists() || logFile.length() == 0;
+        try {
+            Writer writer = new FileWriter(logFile, true);
+            try {
+                if (header) {
+                    writer.write("time_ms,mode,target_tps,measured_tps,mean_ms,p50_ms,p99_ms,max_ms,players,entities\n");
+                }
+                writer.write(System.currentTimeMillis() + "," + effectiveMode().name().toLowerCase() + "," + getTargetTps()
+                        + "," + String.format(Locale.ROOT, "%.2f,%.3f,%.3f,%.3f,%.3f", getMeasuredTps(), stats[0], stats[1], stats[2], stats[3])
+                        + "," + server.getCurrentPlayerCount() + "," + countEntities(server) + "\n");
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
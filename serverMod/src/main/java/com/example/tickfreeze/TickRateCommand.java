@@ -0,0 +1,57 @@
+package com.example.tickfreeze;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+
+/**
+ * /tickrate [status|normal|max|pause|resume|reset|&lt;multiplier&gt;x|tps &lt;ticks per second&gt;], see {@link TickLoop}.
+ */
+public class TickRateCommand extends CommandBase {
+    private final TickLoop tickLoop;
+
+    public TickRateCommand(TickLoop tickLoop) {
+        this.tickLoop = tickLoop;
+    }
+
+    @Override
+    public String getCommandName() {
+        return "tickrate";
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender sender) {
+        return "/tickrate [status|normal|max|pause|resume|reset|<multiplier>x|tps <ticks per second>]";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void processCommand(ICommandSender sender, String[] args) throws CommandException {
+        if (args.length == 0 || args[0].equals("status")) {
+            // Status only
+        } else if (args[0].equals("normal")) {
+            tickLoop.setMode(TickLoop.Mode.NORMAL);
+        } else if (args[0].equals("max")) {
+            tickLoop.setMode(TickLoop.Mode.MAX);
+        } else if (args[0].equals("pause")) {
+            tickLoop.setMode(TickLoop.Mode.PAUSED);
+        } else if (args[0].equals("resume")) {
+            tickLoop.resume();
+        } else if (args[0].equals("reset")) {
+            tickLoop.resetStats();
+        } else if (args[0].equals("tps") && args.length == 2) {
+            tickLoop.setRate(parseDouble(args[1], 0.01));
+        } else if (args[0].endsWith("x") && args.length == 1) {
+            tickLoop.setRate(TickLoop.VANILLA_TPS * parseDouble(args[0].substring(0, args[0].length() - 1), 0.0005));
+        } else {
+            throw new WrongUsageException(getCommandUsage(sender));
+        }
+        sender.addChatMessage(new ChatComponentText(tickLoop.getStatusLine()));
+    }
+}